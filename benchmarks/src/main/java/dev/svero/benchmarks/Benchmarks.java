@@ -0,0 +1,49 @@
+package dev.svero.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Runs the benchmarks. Accepts the usual JMH command line options (e.g. a benchmark name pattern or
+ * -p certificates=100) and always adds the GC profiler, so the allocation rate per operation is
+ * reported next to the timings.
+ *
+ * @author Sven Roeseler
+ */
+public class Benchmarks {
+    /**
+     * Entry point.
+     *
+     * @param args Command line arguments
+     * @throws CommandLineOptionException If the arguments could not be parsed
+     * @throws IOException                If the help could not be printed
+     * @throws RunnerException            If a benchmark failed
+     */
+    public static void main(String[] args) throws CommandLineOptionException, IOException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+
+        if (commandLine.shouldList()) {
+            new Runner(commandLine).list();
+            return;
+        }
+
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,63 @@
+package dev.svero.benchmarks;
+
+import dev.svero.tools.CertificateUtils;
+import dev.svero.tools.KeyStoreUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading PEM bundles of different sizes with {@link CertificateUtils} and creating trust stores
+ * from them, sequentially and in parallel. Loading through the compiled cache is measured by
+ * {@link TrustStoreCacheBenchmark}.
+ *
+ * @author Sven Roeseler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CertificateParsingBenchmark {
+    @Param({"1", "100", "10000", "100000"})
+    public int certificates;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private final CertificateUtils certificateUtils = new CertificateUtils();
+    private final KeyStoreUtils keyStoreUtils = new KeyStoreUtils(certificateUtils);
+
+    private Path bundle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bundle = Fixtures.bundle(certificates);
+    }
+
+    @Benchmark
+    public X509Certificate[] importCertificates() {
+        return certificateUtils.importCertificates(bundle, parallel);
+    }
+
+    @Benchmark
+    public KeyStore createKeyStore() throws KeyStoreException {
+        return keyStoreUtils.createKeyStore(certificateUtils.importCertificates(bundle, parallel));
+    }
+}
@@ -0,0 +1,370 @@
+package dev.svero.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Generates the certificates, PEM bundles and key stores used by the benchmarks. The certificates are
+ * encoded by hand (DER) and signed with ECDSA P-256, so no external library and no keytool run is needed.
+ * Generated bundles are kept in a directory below java.io.tmpdir, so the forked benchmark JVMs do not
+ * have to create them again.
+ *
+ * @author Sven Roeseler
+ */
+public final class Fixtures {
+    /**
+     * Password of all generated key stores.
+     */
+    public static final String PASSWORD = "changeit";
+
+    private static final Path DIRECTORY = Path.of(System.getProperty("java.io.tmpdir"), "sslchecker-benchmarks");
+
+    private static final String ECDSA_WITH_SHA256 = "1.2.840.10045.4.3.2";
+    private static final String COMMON_NAME = "2.5.4.3";
+    private static final String SUBJECT_KEY_IDENTIFIER = "2.5.29.14";
+    private static final String AUTHORITY_KEY_IDENTIFIER = "2.5.29.35";
+    private static final String BASIC_CONSTRAINTS = "2.5.29.19";
+    private static final String SUBJECT_ALTERNATIVE_NAME = "2.5.29.17";
+    private static final String EXTENDED_KEY_USAGE = "2.5.29.37";
+    private static final String SERVER_AUTH = "1.3.6.1.5.5.7.3.1";
+
+    private static final DateTimeFormatter UTC_TIME = DateTimeFormatter.ofPattern("yyMMddHHmmss'Z'");
+
+    private Fixtures() {
+    }
+
+    /**
+     * CA and server certificate for the embedded TLS server.
+     *
+     * @param caCertificate     Self-signed CA certificate
+     * @param serverCertificate Server certificate issued by the CA (localhost, 127.0.0.1)
+     * @param serverKey         Private key of the server certificate
+     */
+    public record Pki(X509Certificate caCertificate, X509Certificate serverCertificate, PrivateKey serverKey) {
+        /**
+         * Creates a PKCS12 key store with the server key and the certificate chain.
+         *
+         * @return Key store for the server
+         */
+        public KeyStore serverKeyStore() {
+            try {
+                KeyStore keyStore = KeyStore.getInstance("PKCS12");
+                keyStore.load(null);
+                keyStore.setKeyEntry("server", serverKey, PASSWORD.toCharArray(),
+                        new Certificate[]{serverCertificate, caCertificate});
+                return keyStore;
+            } catch (GeneralSecurityException | IOException ex) {
+                throw new RuntimeException("Could not create the server key store", ex);
+            }
+        }
+
+        /**
+         * Creates a PKCS12 trust store with the CA certificate.
+         *
+         * @return Trust store for the client
+         */
+        public KeyStore trustStore() {
+            try {
+                KeyStore trustStore = KeyStore.getInstance("PKCS12");
+                trustStore.load(null);
+                trustStore.setCertificateEntry("ca", caCertificate);
+                return trustStore;
+            } catch (GeneralSecurityException | IOException ex) {
+                throw new RuntimeException("Could not create the trust store", ex);
+            }
+        }
+    }
+
+    /**
+     * Creates a new CA and a server certificate for localhost and 127.0.0.1.
+     *
+     * @return Generated PKI
+     */
+    public static Pki createPki() {
+        KeyPair caKeys = generateKeyPair();
+        KeyPair serverKeys = generateKeyPair();
+
+        X509Certificate ca = createCertificate("Benchmark CA", caKeys, "Benchmark CA", caKeys, BigInteger.ONE, true);
+        X509Certificate server = createCertificate("localhost", serverKeys, "Benchmark CA", caKeys,
+                BigInteger.TWO, false);
+
+        return new Pki(ca, server, serverKeys.getPrivate());
+    }
+
+    /**
+     * Creates the specified number of distinct self-signed CA certificates. All certificates share one
+     * key pair, only subject and serial number differ.
+     *
+     * @param count Number of certificates
+     * @return Generated certificates
+     */
+    public static List<X509Certificate> createAnchors(final int count) {
+        KeyPair keys = generateKeyPair();
+
+        List<X509Certificate> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String name = "Benchmark Anchor " + i;
+            result.add(createCertificate(name, keys, name, keys, BigInteger.valueOf(i + 1L), true));
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets a PEM bundle with the specified number of certificates. The bundle is created on first use.
+     *
+     * @param count Number of certificates
+     * @return Path of the bundle
+     */
+    public static Path bundle(final int count) {
+        Path file = DIRECTORY.resolve("bundle-" + count + ".pem");
+
+        if (Files.notExists(file)) {
+            writeAtomically(file, out -> writePem(createAnchors(count), out));
+        }
+
+        return file;
+    }
+
+    /**
+     * Gets a key store file with the specified number of trusted certificates. The file is created on
+     * first use.
+     *
+     * @param count Number of certificates
+     * @param type  Key store type (JKS, PKCS12)
+     * @return Path of the key store
+     */
+    public static Path keyStore(final int count, final String type) {
+        Path file = DIRECTORY.resolve("truststore-" + count + "." + type.toLowerCase());
+
+        if (Files.notExists(file)) {
+            List<X509Certificate> certificates = readBundle(bundle(count));
+
+            writeAtomically(file, out -> {
+                try {
+                    KeyStore keyStore = KeyStore.getInstance(type);
+                    keyStore.load(null);
+                    for (int i = 0; i < certificates.size(); i++) {
+                        keyStore.setCertificateEntry(String.valueOf(i + 1), certificates.get(i));
+                    }
+                    keyStore.store(out, PASSWORD.toCharArray());
+                } catch (GeneralSecurityException ex) {
+                    throw new IOException(ex);
+                }
+            });
+        }
+
+        return file;
+    }
+
+    /**
+     * Reads all certificates of the specified PEM bundle with the JDK certificate factory.
+     *
+     * @param bundle PEM file
+     * @return Certificates
+     */
+    public static List<X509Certificate> readBundle(final Path bundle) {
+        try (var in = Files.newInputStream(bundle)) {
+            List<X509Certificate> result = new ArrayList<>();
+            for (Certificate certificate : CertificateFactory.getInstance("X.509").generateCertificates(in)) {
+                result.add((X509Certificate) certificate);
+            }
+            return result;
+        } catch (GeneralSecurityException | IOException ex) {
+            throw new RuntimeException("Could not read " + bundle, ex);
+        }
+    }
+
+    private static void writePem(final List<X509Certificate> certificates, final OutputStream out)
+            throws IOException {
+        Base64.Encoder encoder = Base64.getMimeEncoder(64, new byte[]{'\n'});
+
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII));
+        for (X509Certificate certificate : certificates) {
+            writer.write("-----BEGIN CERTIFICATE-----\n");
+            try {
+                writer.write(encoder.encodeToString(certificate.getEncoded()));
+            } catch (GeneralSecurityException ex) {
+                throw new IOException(ex);
+            }
+            writer.write("\n-----END CERTIFICATE-----\n");
+        }
+        writer.flush();
+    }
+
+    private interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private static void writeAtomically(final Path file, final Writer writer) {
+        try {
+            Files.createDirectories(file.getParent());
+
+            Path temporary = Files.createTempFile(file.getParent(), "fixture", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                writer.write(out);
+            }
+
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not create fixture " + file, ex);
+        }
+    }
+
+    private static KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException ex) {
+            throw new RuntimeException("Could not generate EC key pair", ex);
+        }
+    }
+
+    /**
+     * Creates a X.509 v3 certificate valid from yesterday for one year.
+     */
+    private static X509Certificate createCertificate(final String subject, final KeyPair subjectKeys,
+                                                     final String issuer, final KeyPair issuerKeys,
+                                                     final BigInteger serial, final boolean ca) {
+        Objects.requireNonNull(subject);
+        Objects.requireNonNull(issuer);
+
+        try {
+            ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+            byte[] subjectKeyId = keyIdentifier(subjectKeys);
+
+            List<byte[]> extensions = new ArrayList<>();
+            extensions.add(extension(SUBJECT_KEY_IDENTIFIER, false, tlv(0x04, subjectKeyId)));
+            extensions.add(extension(AUTHORITY_KEY_IDENTIFIER, false,
+                    sequence(tlv(0x80, keyIdentifier(issuerKeys)))));
+
+            if (ca) {
+                extensions.add(extension(BASIC_CONSTRAINTS, true, sequence(tlv(0x01, new byte[]{(byte) 0xff}))));
+            } else {
+                extensions.add(extension(SUBJECT_ALTERNATIVE_NAME, false, sequence(
+                        tlv(0x82, subject.getBytes(StandardCharsets.US_ASCII)),
+                        tlv(0x87, new byte[]{127, 0, 0, 1}))));
+                extensions.add(extension(EXTENDED_KEY_USAGE, false, sequence(oid(SERVER_AUTH))));
+            }
+
+            byte[] algorithm = sequence(oid(ECDSA_WITH_SHA256));
+            byte[] tbs = sequence(
+                    tlv(0xa0, tlv(0x02, new byte[]{2})),
+                    tlv(0x02, serial.toByteArray()),
+                    algorithm,
+                    name(issuer),
+                    sequence(time(now.minusDays(1)), time(now.plusYears(1))),
+                    name(subject),
+                    subjectKeys.getPublic().getEncoded(),
+                    tlv(0xa3, sequence(extensions.toArray(new byte[0][]))));
+
+            Signature signature = Signature.getInstance("SHA256withECDSA");
+            signature.initSign(issuerKeys.getPrivate());
+            signature.update(tbs);
+            byte[] signed = signature.sign();
+
+            byte[] bitString = new byte[signed.length + 1];
+            System.arraycopy(signed, 0, bitString, 1, signed.length);
+
+            byte[] encoded = sequence(tbs, algorithm, tlv(0x03, bitString));
+            return (X509Certificate) CertificateFactory.getInstance("X.509")
+                    .generateCertificate(new ByteArrayInputStream(encoded));
+        } catch (GeneralSecurityException ex) {
+            throw new RuntimeException("Could not create certificate for " + subject, ex);
+        }
+    }
+
+    private static byte[] keyIdentifier(final KeyPair keys) throws GeneralSecurityException {
+        return MessageDigest.getInstance("SHA-1").digest(keys.getPublic().getEncoded());
+    }
+
+    private static byte[] extension(final String id, final boolean critical, final byte[] value) {
+        return critical
+                ? sequence(oid(id), tlv(0x01, new byte[]{(byte) 0xff}), tlv(0x04, value))
+                : sequence(oid(id), tlv(0x04, value));
+    }
+
+    private static byte[] name(final String commonName) {
+        byte[] attribute = sequence(oid(COMMON_NAME), tlv(0x0c, commonName.getBytes(StandardCharsets.UTF_8)));
+        return sequence(tlv(0x31, attribute));
+    }
+
+    private static byte[] time(final ZonedDateTime time) {
+        return tlv(0x17, UTC_TIME.format(time).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] oid(final String id) {
+        String[] parts = id.split("\\.");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(Integer.parseInt(parts[0]) * 40 + Integer.parseInt(parts[1]));
+
+        for (int i = 2; i < parts.length; i++) {
+            long value = Long.parseLong(parts[i]);
+
+            int shift = 63 - Long.numberOfLeadingZeros(value | 1);
+            for (int bits = shift / 7 * 7; bits > 0; bits -= 7) {
+                out.write((int) ((value >>> bits) & 0x7f) | 0x80);
+            }
+            out.write((int) (value & 0x7f));
+        }
+
+        return tlv(0x06, out.toByteArray());
+    }
+
+    private static byte[] sequence(final byte[]... elements) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] element : elements) {
+            out.writeBytes(element);
+        }
+
+        return tlv(0x30, out.toByteArray());
+    }
+
+    private static byte[] tlv(final int tag, final byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length + 6);
+        out.write(tag);
+
+        int length = content.length;
+        if (length < 0x80) {
+            out.write(length);
+        } else {
+            int count = (32 - Integer.numberOfLeadingZeros(length) + 7) / 8;
+            out.write(0x80 | count);
+            for (int i = count - 1; i >= 0; i--) {
+                out.write(length >>> (i * 8));
+            }
+        }
+
+        out.writeBytes(content);
+        return out.toByteArray();
+    }
+}
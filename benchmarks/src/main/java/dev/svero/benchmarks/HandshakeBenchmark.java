@@ -0,0 +1,107 @@
+package dev.svero.benchmarks;
+
+import dev.svero.tools.HandshakeUtils;
+import dev.svero.tools.SSLUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures full and resumed TLS handshakes of {@link HandshakeUtils} against an embedded server on the
+ * loopback interface.
+ *
+ * @author Sven Roeseler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandshakeBenchmark {
+    private static final String HOST = "localhost";
+
+    @Param({"TLSv1.2", "TLSv1.3"})
+    public String protocol;
+
+    @Param({"false", "true"})
+    public boolean resumed;
+
+    private TlsServer server;
+    private SSLContext clientContext;
+    private Client client;
+
+    /**
+     * Handshake client which reads the single byte sent by the server, so TLS 1.3 session tickets are
+     * processed before the connection is closed.
+     */
+    private static final class Client extends HandshakeUtils {
+        Client(final SSLContext sslContext) {
+            super(sslContext);
+        }
+
+        SSLSession handshakeAndRead(final String host, final int port) throws IOException {
+            try (SSLSocket socket = connect(host, port)) {
+                socket.startHandshake();
+                socket.getInputStream().read();
+                return socket.getSession();
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Fixtures.Pki pki = Fixtures.createPki();
+        SSLUtils sslUtils = new SSLUtils();
+
+        server = new TlsServer(sslUtils.createSSLContext(null, pki.serverKeyStore(), Fixtures.PASSWORD), protocol);
+        clientContext = sslUtils.createSSLContext(pki.trustStore());
+        client = new Client(clientContext);
+
+        // Creates the session which is resumed by the following handshakes
+        client.handshakeAndRead(HOST, server.getPort());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Benchmark
+    public SSLSession handshake() throws IOException {
+        SSLSession session = client.handshakeAndRead(HOST, server.getPort());
+
+        if (!resumed) {
+            invalidateSessions(clientContext.getClientSessionContext());
+        }
+
+        return session;
+    }
+
+    private static void invalidateSessions(final SSLSessionContext sessionContext) {
+        for (byte[] id : Collections.list(sessionContext.getIds())) {
+            SSLSession session = sessionContext.getSession(id);
+            if (session != null) {
+                session.invalidate();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package dev.svero.benchmarks;
+
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+import dev.svero.tools.HttpUtils;
+import dev.svero.tools.SSLUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures GET requests of {@link HttpUtils} against an embedded HTTPS server, either over the pooled
+ * connection of a shared client or with a new client (and therefore a new connection) per request.
+ *
+ * @author Sven Roeseler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// Without TCP_NODELAY the delayed ACKs of the loopback interface dominate the response time of the server
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class HttpRequestBenchmark {
+    private static final byte[] BODY = "OK".getBytes(StandardCharsets.US_ASCII);
+
+    @Param({"TLSv1.2", "TLSv1.3"})
+    public String protocol;
+
+    @Param({"true", "false"})
+    public boolean reuseClient;
+
+    private HttpsServer server;
+    private HttpUtils httpUtils;
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Fixtures.Pki pki = Fixtures.createPki();
+        SSLUtils sslUtils = new SSLUtils();
+
+        SSLContext serverContext = sslUtils.createSSLContext(null, pki.serverKeyStore(), Fixtures.PASSWORD);
+
+        server = HttpsServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+        server.setHttpsConfigurator(new HttpsConfigurator(serverContext) {
+            @Override
+            public void configure(final HttpsParameters parameters) {
+                parameters.setProtocols(new String[]{protocol});
+            }
+        });
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, BODY.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(BODY);
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(2));
+        server.start();
+
+        url = "https://localhost:" + server.getAddress().getPort() + "/";
+
+        httpUtils = new HttpUtils(sslUtils.createSSLContext(pki.trustStore()));
+        httpUtils.setVersion(HttpClient.Version.HTTP_1_1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        httpUtils.close();
+        server.stop(0);
+    }
+
+    @Benchmark
+    public String getRequest() throws IOException, InterruptedException {
+        if (!reuseClient) {
+            // Drops the current client, so the request has to open a new connection
+            httpUtils.close();
+        }
+
+        return httpUtils.getRequest(url);
+    }
+}
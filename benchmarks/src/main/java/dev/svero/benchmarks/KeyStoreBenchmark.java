@@ -0,0 +1,60 @@
+package dev.svero.benchmarks;
+
+import dev.svero.tools.CertificateUtils;
+import dev.svero.tools.KeyStoreUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading JKS and PKCS12 trust stores with {@link KeyStoreUtils} and calculating their
+ * fingerprints, which is done for every SSL context lookup.
+ *
+ * @author Sven Roeseler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KeyStoreBenchmark {
+    @Param({"JKS", "PKCS12"})
+    public String type;
+
+    @Param({"1", "100", "10000"})
+    public int certificates;
+
+    private final KeyStoreUtils keyStoreUtils = new KeyStoreUtils(new CertificateUtils());
+
+    private String file;
+    private KeyStore keyStore;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        file = Fixtures.keyStore(certificates, type).toString();
+        keyStore = keyStoreUtils.loadKeyStore(file, Fixtures.PASSWORD, type);
+    }
+
+    @Benchmark
+    public KeyStore loadKeyStore() {
+        return keyStoreUtils.loadKeyStore(file, Fixtures.PASSWORD, type);
+    }
+
+    @Benchmark
+    public String fingerprint() {
+        return KeyStoreUtils.fingerprint(keyStore);
+    }
+}
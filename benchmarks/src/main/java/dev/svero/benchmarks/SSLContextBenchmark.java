@@ -0,0 +1,67 @@
+package dev.svero.benchmarks;
+
+import dev.svero.tools.CertificateUtils;
+import dev.svero.tools.KeyStoreUtils;
+import dev.svero.tools.SSLUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.SSLContext;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures creating SSL contexts with {@link SSLUtils} for trust stores of different sizes, with the
+ * default and the indexed trust manager, and the lookup of an already created (memoized) context.
+ *
+ * @author Sven Roeseler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SSLContextBenchmark {
+    @Param({"1", "100", "10000"})
+    public int certificates;
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    private final SSLUtils sslUtils = new SSLUtils();
+
+    private KeyStore trustStore;
+
+    @Setup(Level.Trial)
+    public void setUp() throws KeyStoreException {
+        KeyStoreUtils keyStoreUtils = new KeyStoreUtils(new CertificateUtils());
+        trustStore = keyStoreUtils.createKeyStore(Fixtures.readBundle(Fixtures.bundle(certificates))
+                .toArray(new X509Certificate[0]));
+
+        sslUtils.setIndexedTrustManager(indexed);
+        sslUtils.getSSLContext(trustStore, null, null);
+    }
+
+    @Benchmark
+    public SSLContext createSSLContext() {
+        return sslUtils.createSSLContext(trustStore);
+    }
+
+    @Benchmark
+    public SSLContext getMemoizedSSLContext() {
+        return sslUtils.getSSLContext(trustStore, null, null);
+    }
+}
@@ -0,0 +1,90 @@
+package dev.svero.benchmarks;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal TLS server on the loopback interface for the handshake benchmarks. Every connection completes
+ * the handshake, receives a single byte (so TLS 1.3 session tickets are delivered before it) and is
+ * closed. Only the specified protocol version is enabled.
+ *
+ * @author Sven Roeseler
+ */
+public class TlsServer implements AutoCloseable {
+    private final SSLServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "benchmark-tls-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates and starts a new server on a free port.
+     *
+     * @param sslContext SSL context with the key material of the server
+     * @param protocol   Enabled protocol version (TLSv1.2, TLSv1.3)
+     * @throws IOException If the server socket could not be created
+     */
+    public TlsServer(final SSLContext sslContext, final String protocol) throws IOException {
+        Objects.requireNonNull(sslContext);
+        Objects.requireNonNull(protocol);
+
+        serverSocket = (SSLServerSocket) sslContext.getServerSocketFactory()
+                .createServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        serverSocket.setEnabledProtocols(new String[]{protocol});
+
+        executor.execute(this::accept);
+    }
+
+    /**
+     * Gets the port of the server.
+     *
+     * @return Port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                SSLSocket socket = (SSLSocket) serverSocket.accept();
+                executor.execute(() -> handle(socket));
+            }
+        } catch (SocketException ex) {
+            // Server has been closed
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not accept connection", ex);
+        }
+    }
+
+    private static void handle(final SSLSocket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            socket.startHandshake();
+
+            OutputStream out = socket.getOutputStream();
+            out.write('.');
+            out.flush();
+        } catch (IOException ex) {
+            // Client went away - nothing to do for a benchmark server
+        }
+    }
+
+    /**
+     * Stops the server.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+}
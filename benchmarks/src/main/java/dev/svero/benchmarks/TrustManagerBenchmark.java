@@ -0,0 +1,85 @@
+package dev.svero.benchmarks;
+
+import dev.svero.tools.IndexedTrustManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the validation of a server certificate chain against trust stores of different sizes with
+ * the default trust manager of the JDK and the {@link IndexedTrustManager}.
+ *
+ * @author Sven Roeseler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrustManagerBenchmark {
+    private static final String AUTH_TYPE = "ECDHE_ECDSA";
+
+    @Param({"100", "10000", "100000"})
+    public int anchors;
+
+    @Param({"default", "indexed"})
+    public String trustManager;
+
+    private X509TrustManager manager;
+    private X509Certificate[] chain;
+
+    @Setup(Level.Trial)
+    public void setUp() throws GeneralSecurityException, IOException {
+        Fixtures.Pki pki = Fixtures.createPki();
+        chain = new X509Certificate[]{pki.serverCertificate(), pki.caCertificate()};
+
+        List<X509Certificate> certificates = Fixtures.readBundle(Fixtures.bundle(anchors));
+
+        KeyStore trustStore = KeyStore.getInstance("PKCS12");
+        trustStore.load(null);
+        for (int i = 0; i < certificates.size(); i++) {
+            trustStore.setCertificateEntry(String.valueOf(i + 1), certificates.get(i));
+        }
+        trustStore.setCertificateEntry("ca", pki.caCertificate());
+
+        if ("indexed".equals(trustManager)) {
+            manager = IndexedTrustManager.fromKeyStore(trustStore);
+        } else {
+            TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init(trustStore);
+
+            for (TrustManager candidate : factory.getTrustManagers()) {
+                if (candidate instanceof X509TrustManager x509TrustManager) {
+                    manager = x509TrustManager;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public X509Certificate[] checkServerTrusted() throws CertificateException {
+        manager.checkServerTrusted(chain, AUTH_TYPE);
+        return chain;
+    }
+}
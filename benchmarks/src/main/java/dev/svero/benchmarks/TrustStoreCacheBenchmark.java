@@ -0,0 +1,56 @@
+package dev.svero.benchmarks;
+
+import dev.svero.tools.CertificateUtils;
+import dev.svero.tools.TrustStoreCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading PEM bundles of different sizes through the compiled {@link TrustStoreCache}. The
+ * cache file is created during the setup, so every operation is a cache hit.
+ *
+ * @author Sven Roeseler
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrustStoreCacheBenchmark {
+    @Param({"1", "100", "10000", "100000"})
+    public int certificates;
+
+    private Path bundle;
+    private TrustStoreCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        bundle = Fixtures.bundle(certificates);
+
+        cache = new TrustStoreCache(Files.createTempDirectory("trust-cache"), new CertificateUtils());
+        cache.load(bundle);
+    }
+
+    @Benchmark
+    public Map<String, X509Certificate> loadFromCache() {
+        return cache.load(bundle);
+    }
+}
@@ -1,9 +1,25 @@
 package dev.svero.sslchecker;
 
 import dev.svero.tools.CertificateUtils;
+import dev.svero.tools.CipherSuiteScanner;
+import dev.svero.tools.HandshakeLoadGenerator;
+import dev.svero.tools.HandshakeLoadResult;
+import dev.svero.tools.HandshakeUtils;
 import dev.svero.tools.HttpUtils;
+import dev.svero.tools.IndexedKeyManager;
 import dev.svero.tools.KeyStoreUtils;
+import dev.svero.tools.SSLContextReloader;
 import dev.svero.tools.SSLUtils;
+import dev.svero.tools.TrustStoreCache;
+import dev.svero.tools.inventory.CertificateInventory;
+import dev.svero.tools.limit.ConnectionLimiter;
+import dev.svero.tools.metrics.CheckMetrics;
+import dev.svero.tools.metrics.Histogram;
+import dev.svero.tools.metrics.MetricsExporter;
+import dev.svero.tools.metrics.Phase;
+import dev.svero.tools.metrics.PhaseTimings;
+import dev.svero.tools.nio.NioHandshakeEngine;
+import dev.svero.tools.revocation.RevocationChecker;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.Options;
@@ -13,10 +29,30 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLContext;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Implements the entry point for the application.
@@ -46,6 +82,98 @@ public class Application {
     private final SSLUtils sslUtils = new SSLUtils();
     private final HttpUtils httpUtils = new HttpUtils();
 
+    private HandshakeUtils handshakeUtils;
+    private NioHandshakeEngine nioEngine;
+    private SSLContextReloader reloader;
+    private CheckMetrics metrics;
+    private RevocationChecker revocationChecker;
+    private ResultWriter resultWriter;
+    private StateStore stateStore;
+    private ConnectionLimiter limiter;
+    private volatile SSLContext context;
+
+    /**
+     * Checkers of the resident server for other modes or certificate files than the default ones, which are
+     * rebuilt when the certificate file or the default SSL context changes. A replaced profile is retired:
+     * its HTTP client is closed as soon as the checks still using it have completed.
+     *
+     * @param lastModified Modification time of the certificate file (0 for the default trust material)
+     * @param context      SSL context used by the checker
+     * @param checker      Checker
+     * @param httpUtils    HTTP client of the checker or null
+     */
+    private record ServerProfile(long lastModified, SSLContext context, TargetChecker checker, HttpUtils httpUtils,
+                                 AtomicInteger users) {
+        private static final int RETIRED = Integer.MIN_VALUE / 2;
+
+        ServerProfile(final long lastModified, final SSLContext context, final TargetChecker checker,
+                      final HttpUtils httpUtils) {
+            this(lastModified, context, checker, httpUtils, new AtomicInteger());
+        }
+
+        /**
+         * Registers a check using the profile.
+         *
+         * @return False if the profile has already been retired
+         */
+        boolean acquire() {
+            return users.getAndUpdate(count -> count < 0 ? count : count + 1) >= 0;
+        }
+
+        /**
+         * Deregisters a check and closes the HTTP client if it was the last check of a retired profile.
+         */
+        void release() {
+            if (users.decrementAndGet() == RETIRED) {
+                close();
+            }
+        }
+
+        /**
+         * Retires the profile. The HTTP client is closed immediately if no check is using it.
+         */
+        void retire() {
+            if (users.getAndAdd(RETIRED) == 0) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (httpUtils != null) {
+                httpUtils.close();
+            }
+        }
+
+        /**
+         * Creates a checker which performs a single check using this profile and releases it afterwards.
+         */
+        TargetChecker lease() {
+            return target -> {
+                try {
+                    return checker.check(target);
+                } finally {
+                    release();
+                }
+            };
+        }
+    }
+
+    private final Map<String, ServerProfile> serverProfiles = new ConcurrentHashMap<>();
+
+    private final AtomicLong unchanged = new AtomicLong();
+
+    private static final Duration RELOAD_DEBOUNCE = Duration.ofSeconds(2);
+
+    private static final int DEFAULT_CONCURRENCY = 256;
+    private static final int DEFAULT_LOAD_CONNECTIONS = 64;
+    private static final int MAX_LOAD_CONNECTIONS = 4096;
+
+    private static final long DEFAULT_MIN_INTERVAL = 300;
+    private static final long DEFAULT_MAX_INTERVAL = 86_400;
+    private static final Duration STATUS_INTERVAL = Duration.ofMinutes(1);
+
+    private static final int MAX_SERVER_PROFILES = 32;
+
     /**
      * Defines the available command-line options.
      *
@@ -55,13 +183,91 @@ public class Application {
         Options options = new Options();
 
         options.addOption(null, "certs", true, "File with certificates (PEM)");
+        options.addOption(null, "certsCache", true, "Directory for compiled caches of the certificate files");
         options.addOption(null, "trustStore", true, "Trust store file");
         options.addOption(null, "trustStorePassword", true, "Trust store password");
+        options.addOption(null, "indexedTrust", false, "Use an indexed trust manager for large trust stores");
+
+        options.addOption(null, "revocation", true, "Revocation checking using OCSP and CRLs: off, soft (reject "
+                + "revoked certificates) or hard (also reject certificates with unknown status) (default: off)");
+        options.addOption(null, "revocationCache", true, "Directory for the cached OCSP responses and CRL indexes");
 
         options.addOption(null, "keyStore", true, "Key store file");
         options.addOption(null, "keyStorePassword", true, "Key store password");
+        options.addOption(null, "indexedKeys", false, "Select the client certificate per connection by host and "
+                + "requested issuer for key stores with many identities");
+        options.addOption(null, "clientAliases", true, "File with the key store alias to use per host (one "
+                + "\"host alias\" per line, implies \"indexedKeys\")");
+
+        options.addOption(null, "watch", false, "Reload the certificates, trust store and key store if they change");
 
         options.addOption(null, "url", true, "The url to call");
+        options.addOption(null, "targets", true, "File with URLs or hosts to check (one per line)");
+        options.addOption(null, "concurrency", true, "Maximum number of concurrent checks (default: "
+                + DEFAULT_CONCURRENCY + ")");
+        options.addOption(null, "hostConcurrency", true, "Maximum number of concurrent checks per host; the limit "
+                + "of every host adapts to timeouts and resets (enables the connection limiter)");
+        options.addOption(null, "rate", true, "Maximum number of new connections per second (enables the "
+                + "connection limiter)");
+        options.addOption(null, "hostRate", true, "Maximum number of new connections per second and host "
+                + "(enables the connection limiter)");
+
+        options.addOption(null, "mode", true, "Check mode: get (GET request, status 200 expected), probe (GET "
+                + "request with capped body), handshake (TLS handshake only) or nio (TLS handshake only using "
+                + "non-blocking I/O), enumerate (accepted protocols and cipher suites), resume (full handshake "
+                + "followed by resumed ones) or load (sustained handshake load against the url) (default: get, "
+                + "handshake with option \"state\")");
+        options.addOption(null, "maxBodyBytes", true, "Maximum number of body bytes read in probe mode (default: 0)");
+
+        options.addOption(null, "connectTimeout", true, "Connect timeout in seconds (default: 10)");
+        options.addOption(null, "httpVersion", true, "Preferred HTTP version: 1.1 or 2 (default: 2)");
+        options.addOption(null, "handshakeTimeout", true, "Handshake timeout in seconds (default: 10)");
+        options.addOption(null, "scanTimeout", true, "Maximum duration of the enumeration of one target in seconds "
+                + "(default: 60)");
+        options.addOption(null, "resumptions", true, "Number of resumed handshakes after the full handshake in "
+                + "resume mode (default: 5)");
+        options.addOption(null, "sessionCacheSize", true, "Maximum number of cached TLS sessions (default: JVM "
+                + "default)");
+        options.addOption(null, "sessionTimeout", true, "Lifetime of cached TLS sessions in seconds (default: JVM "
+                + "default)");
+        options.addOption(null, "loadRate", true, "Handshakes per second scheduled in load mode (default: as many "
+                + "as the connections complete)");
+        options.addOption(null, "loadDuration", true, "Duration of the load test in seconds (default: 10)");
+        options.addOption(null, "loadConnections", true, "Number of concurrent connections in load mode "
+                + "(default: " + DEFAULT_LOAD_CONNECTIONS + ")");
+        options.addOption(null, "loadResume", false, "Resume cached sessions in load mode instead of performing "
+                + "full handshakes");
+        options.addOption(null, "ioThreads", true, "Number of I/O threads in nio mode (default: number of CPUs)");
+
+        options.addOption(null, "state", true, "State file for incremental checks: chains unchanged since the "
+                + "last check are not validated again and only changed endpoints are reported");
+
+        options.addOption(null, "daemon", false, "Check the targets continuously with adaptive intervals");
+        options.addOption(null, "minInterval", true, "Shortest interval between two checks of a target in daemon "
+                + "mode in seconds (default: " + DEFAULT_MIN_INTERVAL + ")");
+        options.addOption(null, "maxInterval", true, "Longest interval between two checks of a target in daemon "
+                + "mode in seconds (default: " + DEFAULT_MAX_INTERVAL + ")");
+
+        options.addOption(null, "serve", true, "Run as resident server which accepts checks on the specified port "
+                + "of the loopback interface (see CheckClient)");
+        options.addOption(null, "serveToken", true, "File for the access token of the resident server (default: "
+                + "~/.sslchecker/server-<port>.token)");
+        options.addOption(null, "serveCerts", true, "Directory from which the resident server accepts certificate "
+                + "files (default: none)");
+
+        options.addOption(null, "output", true, "File for one record per check result (\"-\" for the standard "
+                + "output)");
+        options.addOption(null, "inventory", true, "Write an expiry report of all certificates in the specified "
+                + "directory or file (PEM bundles, DER files and key stores; may be repeated) instead of checking "
+                + "targets");
+        options.addOption(null, "expiringWithin", true, "Only report certificates expiring within the specified "
+                + "number of days in the inventory");
+        options.addOption(null, "format", true, "Format of the output file: ndjson or csv (default: ndjson)");
+
+        options.addOption(null, "metricsFile", true, "File for the phase timings in Prometheus text format "
+                + "(written at the end of the run)");
+        options.addOption(null, "metricsJson", true, "File for the JSON summary of the phase timings "
+                + "(written at the end of the run)");
 
         return options;
     }
@@ -72,35 +278,1131 @@ public class Application {
      * @param args String array with command-line arguments
      * @throws ParseException If the command-line arguments could not be parsed successfully
      */
-    private void run(String[] args) throws ParseException, KeyStoreException {
+    private void run(String[] args) throws ParseException, KeyStoreException, InterruptedException, IOException {
         final Options options = createOptions();
         final CommandLine cmd = DefaultParser.builder().build().parse(options, args);
 
+        if (cmd.hasOption("inventory")) {
+            runInventory(cmd);
+            return;
+        }
+
+        sslUtils.setIndexedTrustManager(cmd.hasOption("indexedTrust"));
+
+        if (!configureSessionCache(cmd) || !configureKeyManager(cmd) || !configureRevocation(cmd)
+                || !openStateStore(cmd)) {
+            return;
+        }
+
+        context = createSSLContext(cmd);
+        if (context == null) {
+            return;
+        }
+
+        LOGGER.debug("SSL context successfully created: {}", context.toString());
+        httpUtils.setSSLContext(context);
+
+        if (!configureHttpUtils(cmd, httpUtils)) {
+            return;
+        }
+
+        TargetChecker checker = createChecker(cmd, context);
+        if (checker == null || (checker = createLimiter(cmd, checker)) == null) {
+            return;
+        }
+
+        // Histograms per target are only needed if they are exported
+        metrics = new CheckMetrics(cmd.hasOption("metricsFile") || cmd.hasOption("metricsJson"));
+
+        if (!openResultWriter(cmd)) {
+            return;
+        }
+
+        try {
+            if (cmd.hasOption("watch")) {
+                startReloader(cmd, context);
+            }
+
+            if ("load".equals(cmd.getOptionValue("mode"))) {
+                runLoad(cmd);
+            } else if (cmd.hasOption("serve")) {
+                runServer(cmd, checker);
+            } else if (cmd.hasOption("daemon")) {
+                runDaemon(cmd, checker);
+            } else if (cmd.hasOption("targets")) {
+                runBulk(cmd, checker);
+            } else {
+                runSingle(cmd, checker);
+            }
+
+            exportMetrics(cmd);
+        } finally {
+            if (resultWriter != null) {
+                resultWriter.close();
+            }
+
+            if (reloader != null) {
+                reloader.close();
+            }
+
+            httpUtils.close();
+            serverProfiles.values().stream().map(ServerProfile::httpUtils).filter(Objects::nonNull)
+                    .forEach(HttpUtils::close);
+
+            if (nioEngine != null) {
+                nioEngine.close();
+            }
+
+            if (revocationChecker != null) {
+                revocationChecker.close();
+            }
+
+            if (stateStore != null) {
+                stateStore.close();
+            }
+
+            if (limiter != null) {
+                limiter.close();
+            }
+        }
+    }
+
+    /**
+     * Opens the state store specified by the argument "state" and skips the validation of chains which
+     * have not changed since the last check.
+     *
+     * @param cmd Parsed command-line arguments
+     * @return True if the arguments are valid
+     * @throws IOException If the state store could not be opened
+     */
+    private boolean openStateStore(final CommandLine cmd) throws IOException {
+        if (!cmd.hasOption("state")) {
+            return true;
+        }
+
+        final String filename = cmd.getOptionValue("state");
+        if (StringUtils.isBlank(filename)) {
+            LOGGER.error("The parameter \"state\" has no valid value");
+            return false;
+        }
+
+        stateStore = StateStore.open(Path.of(filename));
+        sslUtils.setKnownChains(stateStore::isKnownChain);
+
+        LOGGER.info("Incremental mode: {} endpoint states loaded from {}", stateStore.size(), filename);
+        return true;
+    }
+
+    /**
+     * Opens the result writer if an output file is specified by the argument "output".
+     *
+     * @param cmd Parsed command-line arguments
+     * @return True if the arguments are valid
+     * @throws IOException If the output file could not be created
+     */
+    private boolean openResultWriter(final CommandLine cmd) throws IOException {
+        if (!cmd.hasOption("output")) {
+            return true;
+        }
+
+        final String destination = cmd.getOptionValue("output");
+        if (StringUtils.isBlank(destination)) {
+            LOGGER.error("The parameter \"output\" has no valid value");
+            return false;
+        }
+
+        final ResultWriter.Format format;
+        try {
+            format = ResultWriter.Format.valueOf(cmd.getOptionValue("format", "ndjson").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            LOGGER.error("The parameter \"format\" must be either ndjson or csv");
+            return false;
+        }
+
+        resultWriter = ResultWriter.open(destination, format);
+        return true;
+    }
+
+    /**
+     * Configures the client session cache of the SSL contexts using the arguments "sessionCacheSize" and
+     * "sessionTimeout".
+     *
+     * @param cmd Parsed command-line arguments
+     * @return True if the arguments are valid
+     */
+    private boolean configureSessionCache(final CommandLine cmd) {
+        final long size = getPositiveNumber(cmd, "sessionCacheSize", 0);
+        final long timeout = getPositiveNumber(cmd, "sessionTimeout", 0);
+        if (size < 0 || timeout < 0) {
+            return false;
+        }
+
+        if (size > 0 || timeout > 0) {
+            sslUtils.setSessionCache(size > 0 ? (int) Math.min(size, Integer.MAX_VALUE) : -1,
+                    timeout > 0 ? (int) Math.min(timeout, Integer.MAX_VALUE) : -1);
+        }
+
+        return true;
+    }
+
+    /**
+     * Enables the indexed key manager if requested by the argument "indexedKeys" or "clientAliases".
+     *
+     * @param cmd Parsed command-line arguments
+     * @return True if the arguments are valid
+     */
+    private boolean configureKeyManager(final CommandLine cmd) {
+        if (!cmd.hasOption("clientAliases")) {
+            sslUtils.setHostAliases(cmd.hasOption("indexedKeys") ? Map.of() : null);
+            return true;
+        }
+
+        final String filename = cmd.getOptionValue("clientAliases");
+        if (StringUtils.isBlank(filename)) {
+            LOGGER.error("The parameter \"clientAliases\" has no valid value");
+            return false;
+        }
+
+        try {
+            Map<String, String> hostAliases = IndexedKeyManager.readHostAliases(Path.of(filename));
+            LOGGER.info("Read {} client aliases from {}", hostAliases.size(), filename);
+            sslUtils.setHostAliases(hostAliases);
+        } catch (RuntimeException ex) {
+            LOGGER.error("Could not read the client aliases: {}", ex.getMessage());
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Enables revocation checking if requested by the argument "revocation".
+     *
+     * @param cmd Parsed command-line arguments
+     * @return True if the arguments are valid
+     */
+    private boolean configureRevocation(final CommandLine cmd) {
+        final String mode = cmd.getOptionValue("revocation", "off");
+        if ("off".equals(mode)) {
+            return true;
+        }
+
+        if (!"soft".equals(mode) && !"hard".equals(mode)) {
+            LOGGER.error("The parameter \"revocation\" must be off, soft or hard");
+            return false;
+        }
+
+        Path cacheDirectory = null;
+        if (cmd.hasOption("revocationCache")) {
+            final String directory = cmd.getOptionValue("revocationCache");
+            if (StringUtils.isBlank(directory)) {
+                LOGGER.error("The parameter \"revocationCache\" has no valid value");
+                return false;
+            }
+
+            cacheDirectory = Path.of(directory);
+        }
+
+        revocationChecker = new RevocationChecker(cacheDirectory);
+        sslUtils.setRevocationChecker(revocationChecker, "hard".equals(mode));
+        return true;
+    }
+
+    /**
+     * Starts watching the certificate, trust store and key store files. A changed file rebuilds the
+     * SSL context, which is then swapped into the HTTP and handshake utilities.
+     *
+     * @param cmd     Parsed command-line arguments
+     * @param context SSL context currently in use
+     * @throws IOException If the files could not be watched
+     */
+    private void startReloader(final CommandLine cmd, final SSLContext context) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String option : new String[]{"certs", "trustStore", "keyStore"}) {
+            if (cmd.hasOption(option)) {
+                files.add(Path.of(cmd.getOptionValue(option)));
+            }
+        }
+
+        if (files.isEmpty()) {
+            LOGGER.warn("No certificate, trust store or key store file specified - nothing to watch");
+            return;
+        }
+
+        reloader = new SSLContextReloader(() -> {
+            try {
+                SSLContext newContext = createSSLContext(cmd);
+                if (newContext == null) {
+                    throw new IllegalStateException("Invalid trust store or key store configuration");
+                }
+
+                return newContext;
+            } catch (KeyStoreException ex) {
+                throw new RuntimeException(ex);
+            }
+        }, context, files, RELOAD_DEBOUNCE);
+
+        reloader.addListener(newContext -> this.context = newContext);
+        reloader.addListener(httpUtils::setSSLContext);
+        if (handshakeUtils != null) {
+            reloader.addListener(handshakeUtils::setSSLContext);
+        }
+        if (nioEngine != null) {
+            reloader.addListener(nioEngine::setSSLContext);
+        }
+
+        reloader.start();
+    }
+
+    /**
+     * Configures the HTTP client settings specified by the command-line arguments.
+     *
+     * @param cmd       Parsed command-line arguments
+     * @param httpUtils HTTP client to configure
+     * @return True if the arguments are valid
+     */
+    private boolean configureHttpUtils(final CommandLine cmd, final HttpUtils httpUtils) {
+        if (cmd.hasOption("connectTimeout")) {
+            long seconds = getPositiveNumber(cmd, "connectTimeout", 0);
+            if (seconds < 1) {
+                return false;
+            }
+
+            httpUtils.setConnectTimeout(Duration.ofSeconds(seconds));
+        }
+
+        if (cmd.hasOption("httpVersion")) {
+            final String version = cmd.getOptionValue("httpVersion");
+            if ("1.1".equals(version)) {
+                httpUtils.setVersion(HttpClient.Version.HTTP_1_1);
+            } else if ("2".equals(version)) {
+                httpUtils.setVersion(HttpClient.Version.HTTP_2);
+            } else {
+                LOGGER.error("The parameter \"httpVersion\" must be either 1.1 or 2");
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Creates the check for the mode specified by the argument "mode".
+     *
+     * @param cmd     Parsed command-line arguments
+     * @param context SSL context to use
+     * @return Created check or null if the arguments are invalid
+     */
+    private TargetChecker createChecker(final CommandLine cmd, final SSLContext context) {
+        final String mode = cmd.getOptionValue("mode", cmd.hasOption("state") ? "handshake" : "get");
+
+        final long connectTimeout = getPositiveNumber(cmd, "connectTimeout", 10);
+        final long handshakeTimeout = getPositiveNumber(cmd, "handshakeTimeout", 10);
+        if (connectTimeout < 1 || handshakeTimeout < 1) {
+            return null;
+        }
+
+        switch (mode) {
+            case "get":
+                return new HttpTargetChecker(httpUtils);
+            case "probe":
+                final long maxBodyBytes = getMaxBodyBytes(cmd);
+                if (maxBodyBytes < 0) {
+                    return null;
+                }
+
+                return new HttpTargetChecker(httpUtils, maxBodyBytes);
+            case "handshake":
+            case "load":
+                handshakeUtils = new HandshakeUtils(context);
+                handshakeUtils.setConnectTimeout(Duration.ofSeconds(connectTimeout));
+                handshakeUtils.setHandshakeTimeout(Duration.ofSeconds(handshakeTimeout));
+
+                return new HandshakeTargetChecker(handshakeUtils);
+            case "resume":
+                final long resumptions = getPositiveNumber(cmd, "resumptions", 5);
+                if (resumptions < 1) {
+                    return null;
+                }
+
+                handshakeUtils = new HandshakeUtils(context);
+                handshakeUtils.setConnectTimeout(Duration.ofSeconds(connectTimeout));
+                handshakeUtils.setHandshakeTimeout(Duration.ofSeconds(handshakeTimeout));
+
+                return new ResumptionTargetChecker(handshakeUtils, (int) Math.min(resumptions, 1000));
+            case "nio":
+                final long ioThreads = getPositiveNumber(cmd, "ioThreads", Runtime.getRuntime().availableProcessors());
+                if (ioThreads < 1) {
+                    return null;
+                }
+
+                try {
+                    nioEngine = new NioHandshakeEngine(context, (int) Math.min(ioThreads, 256),
+                            Duration.ofSeconds(connectTimeout), Duration.ofSeconds(handshakeTimeout));
+                } catch (IOException ex) {
+                    LOGGER.error("Could not start the handshake engine: {}", ex.getMessage());
+                    return null;
+                }
+
+                return new NioHandshakeTargetChecker(nioEngine);
+            case "enumerate":
+                final long scanTimeout = getPositiveNumber(cmd, "scanTimeout", 60);
+                if (scanTimeout < 1) {
+                    return null;
+                }
+
+                CipherSuiteScanner scanner = new CipherSuiteScanner(context, sslUtils.getKeyManagers(context));
+                scanner.setConnectTimeout(Duration.ofSeconds(connectTimeout));
+                scanner.setHandshakeTimeout(Duration.ofSeconds(handshakeTimeout));
+                scanner.setMaxDuration(Duration.ofSeconds(scanTimeout));
+                LOGGER.info("Enumerating the protocols {}", scanner.getProtocols());
+
+                return new EnumerationTargetChecker(scanner);
+            default:
+                LOGGER.error("Unknown mode \"{}\"", mode);
+                return null;
+        }
+    }
+
+    /**
+     * Creates the connection limiter if one of the arguments "hostConcurrency", "rate" or "hostRate" is
+     * specified and wraps the specified checker, so every check needs a permit of the limiter. The global
+     * limit is the value of the argument "concurrency".
+     *
+     * @param cmd     Parsed command-line arguments
+     * @param checker Check to limit
+     * @return Limited check, the specified check if no limiter is used or null if the arguments are invalid
+     */
+    private TargetChecker createLimiter(final CommandLine cmd, final TargetChecker checker) {
+        if (!cmd.hasOption("hostConcurrency") && !cmd.hasOption("rate") && !cmd.hasOption("hostRate")) {
+            return checker;
+        }
+
+        final long concurrency = getPositiveNumber(cmd, "concurrency", DEFAULT_CONCURRENCY);
+        final long hostConcurrency = getPositiveNumber(cmd, "hostConcurrency", concurrency);
+        final double rate = getPositiveRate(cmd, "rate");
+        final double hostRate = getPositiveRate(cmd, "hostRate");
+        if (concurrency < 1 || hostConcurrency < 1 || rate < 0 || hostRate < 0) {
+            return null;
+        }
+
+        limiter = new ConnectionLimiter((int) Math.min(Integer.MAX_VALUE, concurrency),
+                (int) Math.min(Integer.MAX_VALUE, hostConcurrency), rate, hostRate);
+        LOGGER.info("Connection limits: {} in total, {} per host, {} per second, {} per second and host",
+                concurrency, hostConcurrency, rate > 0 ? rate : "unlimited", hostRate > 0 ? hostRate : "unlimited");
+
+        return new LimitedTargetChecker(checker, limiter);
+    }
+
+    /**
+     * Reads the value of the specified option as positive rate.
+     *
+     * @param cmd    Parsed command-line arguments
+     * @param option Name of the option
+     * @return Value of the option, 0 if the option is not set or -1 if the value is not a positive number
+     */
+    private double getPositiveRate(final CommandLine cmd, final String option) {
+        if (!cmd.hasOption(option)) {
+            return 0;
+        }
+
+        double value;
+        try {
+            value = Double.parseDouble(cmd.getOptionValue(option));
+        } catch (NumberFormatException ex) {
+            value = -1;
+        }
+
+        if (!(value > 0) || Double.isInfinite(value)) {
+            LOGGER.error("The parameter \"{}\" must be a positive number", option);
+            return -1;
+        }
+
+        return value;
+    }
+
+    /**
+     * Reads the maximum number of body bytes read in probe mode from the argument "maxBodyBytes".
+     *
+     * @param cmd Parsed command-line arguments
+     * @return Maximum number of body bytes (0 if not specified) or -1 if the value is invalid
+     */
+    private long getMaxBodyBytes(final CommandLine cmd) {
+        if (!cmd.hasOption("maxBodyBytes")) {
+            return 0;
+        }
+
+        long maxBodyBytes;
+        try {
+            maxBodyBytes = Long.parseLong(cmd.getOptionValue("maxBodyBytes"));
+        } catch (NumberFormatException ex) {
+            maxBodyBytes = -1;
+        }
+
+        if (maxBodyBytes < 0) {
+            LOGGER.error("The parameter \"maxBodyBytes\" must not be negative");
+            return -1;
+        }
+
+        return maxBodyBytes;
+    }
+
+    /**
+     * Reads the value of the specified option as positive number.
+     *
+     * @param cmd          Parsed command-line arguments
+     * @param option       Name of the option
+     * @param defaultValue Value to return if the option is not set
+     * @return Value of the option or -1 if the value is not a positive number
+     */
+    private long getPositiveNumber(final CommandLine cmd, final String option, final long defaultValue) {
+        if (!cmd.hasOption(option)) {
+            return defaultValue;
+        }
+
+        long value;
+        try {
+            value = Long.parseLong(cmd.getOptionValue(option));
+        } catch (NumberFormatException ex) {
+            value = -1;
+        }
+
+        if (value < 1) {
+            LOGGER.error("The parameter \"{}\" must be a positive number", option);
+            return -1;
+        }
+
+        return value;
+    }
+
+    /**
+     * Records the timings of a check in the metrics, logs its result and passes it to the result writer.
+     *
+     * @param result Result of the check
+     */
+    private void processResult(final CheckResult result) {
+        metrics.record(result.target().url(), result.success(), result.timings(), result.duration());
+
+        if (stateStore != null && !updateState(result)) {
+            return;
+        }
+
+        logResult(result);
+
+        if (resultWriter != null) {
+            resultWriter.write(result);
+        }
+    }
+
+    /**
+     * Stores the state of the checked endpoint and logs the changes since the last check.
+     *
+     * @param result Result of the check
+     * @return True if the state has changed
+     */
+    private boolean updateState(final CheckResult result) {
+        final EndpointState state = EndpointState.of(result, sslUtils.getTrustConfiguration(context),
+                System.currentTimeMillis());
+        final List<String> changes = state.changesSince(stateStore.get(state.target()));
+        stateStore.put(state);
+
+        if (changes.isEmpty()) {
+            unchanged.incrementAndGet();
+            LOGGER.debug("{}: unchanged", result.target());
+            return false;
+        }
+
+        LOGGER.info("{}: {}", result.target(), String.join(", ", changes));
+        return true;
+    }
+
+    /**
+     * Logs the result of a check.
+     *
+     * @param result Result to log
+     */
+    private void logResult(final CheckResult result) {
+        final long millis = result.duration() / 1_000_000;
+
+        if (!result.success()) {
+            LOGGER.error("{}: {} ({} ms)", result.target(), result.message(), millis);
+        } else if (result.session() != null) {
+            LOGGER.info("{}: {} ({} ms, {}, {})", result.target(), result.message(), millis,
+                    result.session().protocol(), result.session().cipherSuite());
+        } else {
+            LOGGER.info("{}: {} ({} ms)", result.target(), result.message(), millis);
+        }
+
+        if (result.timings() != null && LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{}: {}", result.target(), result.timings());
+        }
+    }
+
+    /**
+     * Checks the URL specified by the argument "url".
+     *
+     * @param cmd     Parsed command-line arguments
+     * @param checker Check to perform
+     */
+    private void runSingle(final CommandLine cmd, final TargetChecker checker) {
+        String url = "https://www.google.de/";
+
+        if (cmd.hasOption("url")) {
+            url = cmd.getOptionValue("url");
+            if (StringUtils.isBlank(url)) {
+                LOGGER.error("The argument \"url\" has no valid value");
+                return;
+            }
+        }
+
+        processResult(checker.check(Target.parse(url)));
+    }
+
+    /**
+     * Writes an expiry report of all certificates found in the files and directories specified by the
+     * argument "inventory" to the destination specified by the argument "output" (default: standard
+     * output). Key stores are opened with the value of the argument "trustStorePassword" (default:
+     * changeit).
+     *
+     * @param cmd Parsed command-line arguments
+     * @throws InterruptedException If the scan was interrupted
+     * @throws IOException          If the report could not be written
+     */
+    private void runInventory(final CommandLine cmd) throws InterruptedException, IOException {
+        List<Path> roots = new ArrayList<>();
+        for (String value : cmd.getOptionValues("inventory")) {
+            if (StringUtils.isBlank(value) || Files.notExists(Path.of(value))) {
+                LOGGER.error("The parameter \"inventory\" must be an existing directory or file");
+                return;
+            }
+
+            roots.add(Path.of(value));
+        }
+
+        long maxDays = -1;
+        if (cmd.hasOption("expiringWithin")) {
+            maxDays = getPositiveNumber(cmd, "expiringWithin", 0);
+            if (maxDays < 1) {
+                return;
+            }
+        }
+
+        final ResultWriter.Format format;
+        try {
+            format = ResultWriter.Format.valueOf(cmd.getOptionValue("format", "ndjson").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            LOGGER.error("The parameter \"format\" must be either ndjson or csv");
+            return;
+        }
+
+        final String destination = cmd.getOptionValue("output", "-");
+        final boolean standardOutput = "-".equals(destination);
+        final Writer writer = standardOutput
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(Path.of(destination), StandardCharsets.UTF_8);
+
+        final CertificateInventory inventory = new CertificateInventory(keyStoreUtils,
+                cmd.getOptionValue("trustStorePassword", "changeit"), Runtime.getRuntime().availableProcessors());
+
+        try (InventoryReport report = new InventoryReport(writer, format, Instant.now(), maxDays, !standardOutput)) {
+            CertificateInventory.Summary summary = inventory.scan(roots, report);
+
+            final double seconds = summary.duration() / 1_000_000_000.0;
+            LOGGER.info("Found {} certificates in {} files in {} ms ({} certificates/s), {} unreadable",
+                    summary.certificates(), summary.files(), summary.duration() / 1_000_000,
+                    String.format("%.0f", summary.certificates() / Math.max(seconds, 0.001)), summary.failed());
+            LOGGER.info("{} certificates expired, {} expire within 30 days, {} reported", report.getExpired(),
+                    report.getExpiring(), report.getWritten());
+        }
+    }
+
+    /**
+     * Generates a handshake load against the host of the argument "url" as specified by the arguments
+     * "loadRate", "loadDuration", "loadConnections" and "loadResume" and logs the achieved rate, the errors
+     * and the latency percentiles.
+     *
+     * @param cmd Parsed command-line arguments
+     * @throws InterruptedException If the load test was interrupted
+     */
+    private void runLoad(final CommandLine cmd) throws InterruptedException {
+        final String url = cmd.getOptionValue("url");
+        if (StringUtils.isBlank(url)) {
+            LOGGER.error("The load mode needs the server specified by the parameter \"url\"");
+            return;
+        }
+
+        final double rate = getPositiveRate(cmd, "loadRate");
+        final long seconds = getPositiveNumber(cmd, "loadDuration", 10);
+        final long connections = getPositiveNumber(cmd, "loadConnections", DEFAULT_LOAD_CONNECTIONS);
+        if (rate < 0 || seconds < 1 || connections < 1) {
+            return;
+        }
+
+        final Target target = Target.parse(url);
+        final boolean resume = cmd.hasOption("loadResume");
+
+        HandshakeLoadGenerator generator = new HandshakeLoadGenerator(handshakeUtils,
+                (int) Math.min(connections, MAX_LOAD_CONNECTIONS));
+        generator.setRate(rate);
+        generator.setDuration(Duration.ofSeconds(seconds));
+        generator.setResume(resume);
+
+        LOGGER.info("Generating {} {} handshakes with {}:{} for {} s using {} connections",
+                rate > 0 ? String.format(Locale.ROOT, "%.1f", rate) + "/s" : "unpaced", resume ? "resumed" : "full",
+                target.host(), target.port(), seconds, Math.min(connections, MAX_LOAD_CONNECTIONS));
+
+        final HandshakeLoadResult result = generator.run(target.host(), target.port());
+
+        LOGGER.info("Achieved {} handshakes/s in {} ms: {} succeeded ({} resumed), {} failed, {} not started",
+                String.format(Locale.ROOT, "%.1f", result.achievedRate()), result.duration() / 1_000_000,
+                result.succeeded(), result.resumed(), result.failed(), result.missed());
+        if (result.latency().getCount() > 0) {
+            LOGGER.info("Latency from scheduled start: {}", formatPercentiles(result.latency()));
+        }
+
+        if (result.serviceTime().getCount() > 0) {
+            LOGGER.info("Handshake duration: {}", formatPercentiles(result.serviceTime()));
+        }
+
+        if (result.errorLatency().getCount() > 0) {
+            LOGGER.info("Latency of failed handshakes from scheduled start: {}",
+                    formatPercentiles(result.errorLatency()));
+        }
+
+        if (!result.errors().isEmpty()) {
+            LOGGER.warn("Errors: {}", result.errors());
+        }
+    }
+
+    /**
+     * Formats the percentiles of a histogram with durations in microseconds.
+     *
+     * @param histogram Histogram
+     * @return Formatted percentiles, e.g. "p50 1.2 ms, p90 2.0 ms, p99 4.5 ms, p99.9 9.1 ms, max 12.0 ms"
+     */
+    private static String formatPercentiles(final Histogram histogram) {
+        return String.format(Locale.ROOT, "p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, p99.9 %.1f ms, max %.1f ms",
+                histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+                histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+                histogram.getMax() / 1000.0);
+    }
+
+    /**
+     * Checks all targets from the file specified by the argument "targets" using the already
+     * configured SSL context.
+     *
+     * @param cmd     Parsed command-line arguments
+     * @param checker Check to perform for every target
+     * @throws InterruptedException If the run was interrupted
+     */
+    private void runBulk(final CommandLine cmd, final TargetChecker checker) throws InterruptedException {
+        final String targetsFilename = cmd.getOptionValue("targets");
+        if (StringUtils.isBlank(targetsFilename)) {
+            LOGGER.error("The parameter \"targets\" has no valid value");
+            return;
+        }
+
+        final int concurrency = (int) Math.min(Integer.MAX_VALUE,
+                getPositiveNumber(cmd, "concurrency", DEFAULT_CONCURRENCY));
+        if (concurrency < 1) {
+            return;
+        }
+
+        List<Target> targets = BulkChecker.readTargets(Path.of(targetsFilename));
+        LOGGER.info("Checking {} targets with a maximum concurrency of {}", targets.size(), concurrency);
+
+        BulkChecker bulkChecker = new BulkChecker(checker, concurrency);
+        BulkChecker.Summary summary = bulkChecker.run(targets, this::processResult);
+
+        LOGGER.info("Checked {} targets in {} ms: {} succeeded, {} failed ({} checks/min)",
+                summary.total(), summary.elapsed().toMillis(), summary.succeeded(), summary.failed(),
+                String.format("%.1f", summary.checksPerMinute()));
+
+        if (stateStore != null) {
+            LOGGER.info("{} of {} endpoints unchanged since the last check", unchanged.get(), summary.total());
+            stateStore.retain(targets.stream().map(Target::url).toList());
+        }
+
+        if (limiter != null) {
+            logLimits();
+        }
+
+        if (nioEngine != null) {
+            NioHandshakeEngine.Statistics statistics = nioEngine.getStatistics();
+            LOGGER.info("Handshake engine: {} connections at peak, {} network buffers of {} bytes allocated",
+                    statistics.peakActive(), statistics.buffersAllocated(), statistics.bufferSize());
+        }
+
+        for (Phase phase : Phase.values()) {
+            Histogram histogram = metrics.getAggregate().getHistogram(phase);
+            if (histogram.getCount() > 0) {
+                LOGGER.info("Phase {}: p50 {} ms, p90 {} ms, p99 {} ms, max {} ms ({} checks)", phase.getLabel(),
+                        histogram.getValueAtPercentile(50) / 1_000, histogram.getValueAtPercentile(90) / 1_000,
+                        histogram.getValueAtPercentile(99) / 1_000, histogram.getMax() / 1_000,
+                        histogram.getCount());
+            }
+        }
+    }
+
+    /**
+     * Checks all targets from the file specified by the argument "targets" continuously until the JVM is
+     * shut down. The status is logged and the metrics are exported every minute.
+     *
+     * @param cmd     Parsed command-line arguments
+     * @param checker Check to perform for every target
+     * @throws InterruptedException If the run was interrupted
+     */
+    private void runDaemon(final CommandLine cmd, final TargetChecker checker) throws InterruptedException {
+        final String targetsFilename = cmd.getOptionValue("targets");
+        if (StringUtils.isBlank(targetsFilename)) {
+            LOGGER.error("The daemon mode needs a file with targets specified by the parameter \"targets\"");
+            return;
+        }
+
+        final int concurrency = (int) Math.min(Integer.MAX_VALUE,
+                getPositiveNumber(cmd, "concurrency", DEFAULT_CONCURRENCY));
+        final long minInterval = getPositiveNumber(cmd, "minInterval", DEFAULT_MIN_INTERVAL);
+        final long maxInterval = getPositiveNumber(cmd, "maxInterval", DEFAULT_MAX_INTERVAL);
+        if (concurrency < 1 || minInterval < 1 || maxInterval < 1) {
+            return;
+        }
+
+        if (maxInterval < minInterval) {
+            LOGGER.error("The parameter \"maxInterval\" must not be less than \"minInterval\"");
+            return;
+        }
+
+        List<Target> targets = BulkChecker.readTargets(Path.of(targetsFilename));
+        LOGGER.info("Monitoring {} targets with intervals between {} s and {} s and a maximum concurrency of {}",
+                targets.size(), minInterval, maxInterval, concurrency);
+
+        final MonitorDaemon daemon = new MonitorDaemon(checker, concurrency,
+                new SchedulePolicy(Duration.ofSeconds(minInterval), Duration.ofSeconds(maxInterval)));
+
+        final Thread mainThread = Thread.currentThread();
+        final Thread shutdownHook = new Thread(() -> {
+            LOGGER.info("Stopping the daemon");
+            daemon.stop();
+            try {
+                mainThread.join(Duration.ofMinutes(2).toMillis());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, "daemon-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+        ScheduledExecutorService statusExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "daemon-status");
+            thread.setDaemon(true);
+            return thread;
+        });
+        statusExecutor.scheduleAtFixedRate(() -> {
+            MonitorDaemon.Statistics statistics = daemon.getStatistics();
+            LOGGER.info("{} targets: {} checks ({} failed), {} targets failing, {} checks/h scheduled",
+                    statistics.targets(), statistics.checks(), statistics.failedChecks(),
+                    statistics.failingTargets(), String.format("%.1f", statistics.checksPerHour()));
+            if (limiter != null) {
+                logLimits();
+            }
+            exportMetrics(cmd);
+        }, STATUS_INTERVAL.toMillis(), STATUS_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+
+        try {
+            daemon.run(targets, this::processResult);
+        } finally {
+            statusExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the resident server until the JVM is shut down. Every request is checked by the specified
+     * checker unless it asks for another mode or certificate file.
+     *
+     * @param cmd     Parsed command-line arguments
+     * @param checker Default check
+     * @throws IOException          If the server could not be started
+     * @throws InterruptedException If the server was interrupted
+     */
+    private void runServer(final CommandLine cmd, final TargetChecker checker)
+            throws IOException, InterruptedException {
+        final long port = getPositiveNumber(cmd, "serve", 0);
+        final long concurrency = getPositiveNumber(cmd, "concurrency", DEFAULT_CONCURRENCY);
+        if (port < 1 || concurrency < 1) {
+            return;
+        }
+
+        if (port > 65535) {
+            LOGGER.error("The parameter \"serve\" must be a port number");
+            return;
+        }
+
+        final Path tokenFile = cmd.hasOption("serveToken") ? Path.of(cmd.getOptionValue("serveToken"))
+                : CheckClient.defaultTokenFile((int) port);
+
+        final CheckServer server = new CheckServer((int) port, (int) Math.min(Integer.MAX_VALUE, concurrency),
+                (mode, certs) -> getServerChecker(cmd, checker, mode, certs), this::processResult, out -> {
+                    MetricsExporter.writePrometheus(metrics, out);
+                    if (limiter != null) {
+                        MetricsExporter.writePrometheus(limiter.getStatistics(), out);
+                    }
+                }, tokenFile);
+        LOGGER.info("Access token written to {}", tokenFile);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            LOGGER.info("Stopping the server");
+            server.close();
+        }, "server-shutdown"));
+
+        server.run();
+    }
+
+    /**
+     * Gets the checker of the resident server for the specified mode and certificate file. The checkers
+     * for other modes or certificate files than the default ones are created on first use and kept until
+     * the certificate file or the default SSL context changes. The key store and the other settings are
+     * taken from the command-line arguments. Certificate files are only accepted from the directory
+     * specified by the argument "serveCerts".
+     *
+     * @param cmd            Parsed command-line arguments
+     * @param defaultChecker Checker for the default mode and trust material
+     * @param mode           Requested mode (get, probe or handshake) or null for the default mode
+     * @param certs          Requested certificate file or null for the default trust material
+     * @return Checker for a single check
+     * @throws KeyStoreException If the trust store could not be created
+     * @throws IOException       If the certificate file could not be read
+     */
+    private TargetChecker getServerChecker(final CommandLine cmd, final TargetChecker defaultChecker,
+                                           final String mode, final String certs)
+            throws KeyStoreException, IOException {
+        if (mode == null && certs == null) {
+            return defaultChecker;
+        }
+
+        final String effectiveMode = mode != null ? mode
+                : cmd.getOptionValue("mode", cmd.hasOption("state") ? "handshake" : "get");
+        if (!List.of("get", "probe", "handshake").contains(effectiveMode)) {
+            throw new IllegalArgumentException("Mode \"" + effectiveMode + "\" is not supported by the server");
+        }
+
+        final Path certsFile = certs == null ? null : resolveServerCerts(cmd, certs);
+
+        final long lastModified = certsFile == null ? 0 : Files.getLastModifiedTime(certsFile).toMillis();
+        final SSLContext defaultContext = context;
+        final String key = effectiveMode + "|" + certsFile;
+
+        ServerProfile profile = serverProfiles.get(key);
+        if (profile != null && profile.lastModified() == lastModified
+                && (certsFile != null || profile.context() == defaultContext) && profile.acquire()) {
+            return profile.lease();
+        }
+
+        synchronized (serverProfiles) {
+            // Profiles in the map are only retired while holding the lock, so this one can be acquired
+            profile = serverProfiles.get(key);
+            if (profile != null && profile.lastModified() == lastModified
+                    && (certsFile != null || profile.context() == defaultContext) && profile.acquire()) {
+                return profile.lease();
+            }
+
+            if (serverProfiles.size() >= MAX_SERVER_PROFILES && !serverProfiles.containsKey(key)) {
+                throw new IllegalArgumentException("Too many different modes and certificate files");
+            }
+
+            final SSLContext profileContext = certsFile == null ? defaultContext
+                    : createSSLContext(cmd, certsFile.toString());
+            if (profileContext == null) {
+                throw new IllegalArgumentException("Invalid trust store or key store configuration");
+            }
+
+            HttpUtils profileHttpUtils = null;
+            TargetChecker profileChecker;
+            if ("handshake".equals(effectiveMode)) {
+                HandshakeUtils profileHandshakeUtils = new HandshakeUtils(profileContext);
+                profileHandshakeUtils.setConnectTimeout(
+                        Duration.ofSeconds(getPositiveNumber(cmd, "connectTimeout", 10)));
+                profileHandshakeUtils.setHandshakeTimeout(
+                        Duration.ofSeconds(getPositiveNumber(cmd, "handshakeTimeout", 10)));
+                profileChecker = new HandshakeTargetChecker(profileHandshakeUtils);
+            } else {
+                profileHttpUtils = new HttpUtils();
+                configureHttpUtils(cmd, profileHttpUtils);
+                profileHttpUtils.setSSLContext(profileContext);
+                profileChecker = "get".equals(effectiveMode) ? new HttpTargetChecker(profileHttpUtils)
+                        : new HttpTargetChecker(profileHttpUtils, getMaxBodyBytes(cmd));
+            }
+
+            if (limiter != null) {
+                profileChecker = new LimitedTargetChecker(profileChecker, limiter);
+            }
+
+            LOGGER.info("Created checker for mode {} and certificates {}", effectiveMode,
+                    certsFile == null ? "(default)" : certsFile);
+
+            profile = new ServerProfile(lastModified, profileContext, profileChecker, profileHttpUtils);
+            profile.acquire();
+
+            ServerProfile previous = serverProfiles.put(key, profile);
+            if (previous != null) {
+                previous.retire();
+            }
+
+            return profile.lease();
+        }
+    }
+
+    /**
+     * Resolves a certificate file requested from the resident server. The file has to be located in the
+     * directory specified by the argument "serveCerts"; symbolic links are resolved before the check.
+     *
+     * @param cmd   Parsed command-line arguments
+     * @param certs Requested certificate file
+     * @return Real path of the file
+     * @throws IOException If the directory could not be resolved
+     */
+    private static Path resolveServerCerts(final CommandLine cmd, final String certs) throws IOException {
+        final String directory = cmd.getOptionValue("serveCerts");
+        if (StringUtils.isBlank(directory)) {
+            throw new IllegalArgumentException("Certificate files are not allowed - the server has been started "
+                    + "without the parameter \"serveCerts\"");
+        }
+
+        final Path allowed = Path.of(directory).toRealPath();
+        final Path requested = allowed.resolve(certs).normalize();
+
+        final Path file;
+        try {
+            file = requested.toRealPath();
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("File not found: " + requested);
+        }
+
+        if (!file.startsWith(allowed) || !Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("File not allowed: " + requested);
+        }
+
+        return file;
+    }
+
+    /**
+     * Logs the connection limits of the hosts whose connections were dropped.
+     */
+    private void logLimits() {
+        final ConnectionLimiter.Statistics statistics = limiter.getStatistics();
+
+        int dropping = 0;
+        for (ConnectionLimiter.HostStatistics host : statistics.hosts()) {
+            if (host.dropped() > 0) {
+                dropping++;
+                LOGGER.debug("Host {}: limit {}, {} of {} connections dropped", host.host(), host.limit(),
+                        host.dropped(), host.released());
+            }
+        }
+
+        LOGGER.info("Connection limiter: {} hosts, {} with dropped connections, {} connections open, {} waiting",
+                statistics.hosts().size(), dropping, statistics.inFlight(), statistics.waiting());
+    }
+
+    /**
+     * Writes the collected metrics to the files specified by the arguments "metricsFile" (Prometheus
+     * text format) and "metricsJson" (JSON summary). The limits of the connection limiter are included if
+     * it is used.
+     *
+     * @param cmd Parsed command-line arguments
+     */
+    private void exportMetrics(final CommandLine cmd) {
+        for (String option : new String[]{"metricsFile", "metricsJson"}) {
+            if (!cmd.hasOption(option)) {
+                continue;
+            }
+
+            final String filename = cmd.getOptionValue(option);
+            if (StringUtils.isBlank(filename)) {
+                LOGGER.error("The parameter \"{}\" has no valid value", option);
+                continue;
+            }
+
+            try (Writer writer = Files.newBufferedWriter(Path.of(filename), StandardCharsets.UTF_8)) {
+                final ConnectionLimiter.Statistics limits = limiter == null ? null : limiter.getStatistics();
+
+                if ("metricsFile".equals(option)) {
+                    MetricsExporter.writePrometheus(metrics, writer);
+                    if (limits != null) {
+                        MetricsExporter.writePrometheus(limits, writer);
+                    }
+                } else {
+                    MetricsExporter.writeJson(metrics, limits, writer);
+                }
+
+                LOGGER.info("Metrics written to {}", filename);
+            } catch (IOException ex) {
+                LOGGER.error("Could not write metrics to {}: {}", filename, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Creates the SSL context using the trust store and key store specified by the command-line
+     * arguments.
+     *
+     * @param cmd Parsed command-line arguments
+     * @return SSL context or null if the arguments are invalid
+     * @throws KeyStoreException If a keystore could not be created
+     */
+    private SSLContext createSSLContext(final CommandLine cmd) throws KeyStoreException {
+        return createSSLContext(cmd, cmd.getOptionValue("certs"));
+    }
+
+    /**
+     * Creates the SSL context using the specified certificate file or the trust store specified by the
+     * command-line arguments and the key store specified by the command-line arguments.
+     *
+     * @param cmd             Parsed command-line arguments
+     * @param caCertsFilename File with trusted certificates (PEM) or null to use the argument "trustStore"
+     * @return SSL context or null if the arguments are invalid
+     * @throws KeyStoreException If a keystore could not be created
+     */
+    private SSLContext createSSLContext(final CommandLine cmd, final String caCertsFilename)
+            throws KeyStoreException {
         KeyStore trustStore = null;
-        if (cmd.hasOption("certs")) {
-            final String caCertsFilename = cmd.getOptionValue("certs");
+        if (caCertsFilename != null) {
             if (StringUtils.isBlank(caCertsFilename)) {
                 LOGGER.error("The parameter \"certs\" has no valid value");
-                return;
+                return null;
             }
 
-            X509Certificate[] certificates = certificateUtils.importCertificates(Path.of(caCertsFilename));
-            if (certificates.length == 0) {
-                LOGGER.warn("No certificates found in {} - using default JVM trust store", caCertsFilename);
+            if (cmd.hasOption("certsCache")) {
+                final String cacheDirectory = cmd.getOptionValue("certsCache");
+                if (StringUtils.isBlank(cacheDirectory)) {
+                    LOGGER.error("The parameter \"certsCache\" has no valid value");
+                    return null;
+                }
+
+                TrustStoreCache cache = new TrustStoreCache(Path.of(cacheDirectory), certificateUtils);
+                Map<String, X509Certificate> certificates = cache.load(Path.of(caCertsFilename));
+                if (certificates.isEmpty()) {
+                    LOGGER.warn("No certificates found in {} - using default JVM trust store", caCertsFilename);
+                } else {
+                    trustStore = keyStoreUtils.createKeyStore(certificates);
+                }
             } else {
-                trustStore = keyStoreUtils.createKeyStore(certificates);
+                X509Certificate[] certificates = certificateUtils.importCertificates(Path.of(caCertsFilename), true);
+                if (certificates.length == 0) {
+                    LOGGER.warn("No certificates found in {} - using default JVM trust store", caCertsFilename);
+                } else {
+                    trustStore = keyStoreUtils.createKeyStore(certificates);
+                }
             }
         } else if (cmd.hasOption("trustStore")) {
             if (!cmd.hasOption("trustStorePassword")) {
                 LOGGER.error("You need to specify the password for the trust store");
-                return;
+                return null;
             }
 
             final String trustStoreFilename = cmd.getOptionValue("trustStore");
             final String trustStorePassword = cmd.getOptionValue("trustStorePassword");
             if (StringUtils.isAnyBlank(trustStoreFilename, trustStorePassword)) {
                 LOGGER.error("Either the specified trust store filename or the trust store password are invalid");
-                return;
+                return null;
             }
 
             LOGGER.debug("Using trust store {}", trustStoreFilename);
@@ -114,38 +1416,19 @@ public class Application {
         if (cmd.hasOption("keyStore")) {
             if (!cmd.hasOption("keyStorePassword")) {
                 LOGGER.error("You need to specified a key store password");
-                return;
+                return null;
             }
 
             final String keyStoreFilename = cmd.getOptionValue("keyStore");
             keyStorePassword = cmd.getOptionValue("keyStorePassword");
             if (StringUtils.isAnyBlank(keyStoreFilename, keyStorePassword)) {
                 LOGGER.error("Either the specified key store filename or the key store password are invalid");
-                return;
+                return null;
             }
 
             keyStore = keyStoreUtils.loadKeyStore(keyStoreFilename, keyStorePassword);
         }
 
-        SSLContext context = sslUtils.createSSLContext(trustStore, keyStore, keyStorePassword);
-        LOGGER.debug("SSL context successfully created: {}", context.toString());
-        httpUtils.setSSLContext(context);
-
-        String url = "https://www.google.de/";
-
-        if (cmd.hasOption("url")) {
-            url = cmd.getOptionValue("url");
-            if (StringUtils.isBlank(url)) {
-                LOGGER.error("The argument \"url\" has no valid value");
-                return;
-            }
-        }
-
-        try {
-            String response = httpUtils.getRequest(url);
-            LOGGER.debug("Response:\n{}", response);
-        } catch (Exception ex) {
-            LOGGER.error("Could not perform a GET request for {} due to an unexpected error: {}", url, ex.getMessage());
-        }
+        return sslUtils.getSSLContext(trustStore, keyStore, keyStorePassword);
     }
 }
@@ -0,0 +1,203 @@
+package dev.svero.sslchecker;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Checks a list of targets concurrently. If the JVM supports virtual threads, every blocking check runs
+ * on its own virtual thread. Otherwise a pool of platform threads is used. Non-blocking checks do not use
+ * these threads at all. In all cases the number of checks running at the same time is limited by the
+ * configured maximum concurrency.
+ *
+ * @author Sven Roeseler
+ */
+public class BulkChecker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkChecker.class);
+
+    /**
+     * Summary of a bulk run.
+     *
+     * @param total     Number of checked targets
+     * @param succeeded Number of successful checks
+     * @param failed    Number of failed checks
+     * @param elapsed   Duration of the whole run
+     */
+    public record Summary(int total, int succeeded, int failed, Duration elapsed) {
+        /**
+         * Calculates the throughput of the run.
+         *
+         * @return Checks per minute
+         */
+        public double checksPerMinute() {
+            long millis = Math.max(1, elapsed.toMillis());
+            return total * 60_000.0 / millis;
+        }
+    }
+
+    private final TargetChecker checker;
+    private final int maxConcurrency;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param checker        Check to perform for every target
+     * @param maxConcurrency Maximum number of checks running at the same time
+     */
+    public BulkChecker(final TargetChecker checker, final int maxConcurrency) {
+        Objects.requireNonNull(checker);
+
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be greater than zero");
+        }
+
+        this.checker = checker;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Reads the targets from the specified file. Every line contains either a URL or a host name
+     * with an optional port. Blank lines and lines starting with # are ignored.
+     *
+     * @param targetsFile File with targets
+     * @return List with targets
+     */
+    public static List<Target> readTargets(final Path targetsFile) {
+        Objects.requireNonNull(targetsFile);
+
+        if (!Files.exists(targetsFile)) {
+            throw new IllegalArgumentException("File not found: " + targetsFile);
+        }
+
+        List<Target> targets = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(targetsFile, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (StringUtils.isBlank(line) || line.strip().startsWith("#")) {
+                    continue;
+                }
+
+                try {
+                    targets.add(Target.parse(line));
+                } catch (IllegalArgumentException ex) {
+                    LOGGER.warn("Ignoring invalid target in line {}: {}", lineNumber, ex.getMessage());
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not read targets from " + targetsFile, ex);
+        }
+
+        return targets;
+    }
+
+    /**
+     * Checks all specified targets. Every result is passed to the specified consumer as soon as the
+     * check has finished. The consumer may be called from different threads at the same time. If the
+     * consumer throws an exception, it is logged and the check is counted as failed.
+     *
+     * @param targets  Targets to check
+     * @param consumer Consumer for the results
+     * @return Summary of the run
+     * @throws InterruptedException If the run was interrupted
+     */
+    public Summary run(final List<Target> targets, final Consumer<CheckResult> consumer) throws InterruptedException {
+        Objects.requireNonNull(targets);
+        Objects.requireNonNull(consumer);
+
+        final Semaphore permits = new Semaphore(maxConcurrency);
+        final AtomicInteger succeeded = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final long start = System.nanoTime();
+
+        ExecutorService executor = createExecutor(maxConcurrency);
+        try {
+            for (Target target : targets) {
+                permits.acquire();
+                checker.checkAsync(target, executor).whenComplete((result, ex) -> {
+                    try {
+                        if (ex != null) {
+                            failed.incrementAndGet();
+                            LOGGER.error("Unexpected error while checking {}", target, ex);
+                            return;
+                        }
+
+                        if (deliver(consumer, result) && result.success()) {
+                            succeeded.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+
+            // Wait for the checks still running. The executor is shut down afterwards, because checks
+            // waiting for a connection permit only submit their task when the permit is granted.
+            permits.acquire(maxConcurrency);
+            permits.release(maxConcurrency);
+        } finally {
+            executor.shutdown();
+        }
+
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        return new Summary(targets.size(), succeeded.get(), failed.get(), Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Passes the specified result to the consumer. The checks complete on arbitrary threads and nobody
+     * waits for the returned stages, so an exception of the consumer would otherwise get lost.
+     *
+     * @param consumer Consumer for the results
+     * @param result   Result of a check
+     * @return False if the consumer failed
+     */
+    static boolean deliver(final Consumer<CheckResult> consumer, final CheckResult result) {
+        try {
+            consumer.accept(result);
+            return true;
+        } catch (RuntimeException ex) {
+            LOGGER.error("Could not process the result of {}", result.target(), ex);
+            return false;
+        }
+    }
+
+    /**
+     * Creates the executor for the checks. Uses virtual threads if the running JVM supports them.
+     *
+     * @param maxConcurrency Number of platform threads used if virtual threads are not available
+     * @return Executor service
+     */
+    static ExecutorService createExecutor(final int maxConcurrency) {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            LOGGER.debug("Using virtual threads for checks");
+            return executor;
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+            LOGGER.debug("Virtual threads not available - using {} platform threads", maxConcurrency);
+            return Executors.newFixedThreadPool(maxConcurrency);
+        }
+    }
+}
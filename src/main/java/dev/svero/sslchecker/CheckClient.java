@@ -0,0 +1,173 @@
+package dev.svero.sslchecker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Thin client for the resident server ({@link CheckServer}). It forwards the arguments "url", "mode" and
+ * "certs" to the server and prints the result as JSON object. The client deliberately uses neither the
+ * logging framework nor the TLS classes, so it starts in a few milliseconds.
+ * <p>
+ * The token of the server is read from the file given by "token" (default: see
+ * {@link #defaultTokenFile(int)}).
+ * <p>
+ * Usage: {@code java -cp SSLChecker.jar dev.svero.sslchecker.CheckClient --port 8765 --url https://example.com/}
+ * <p>
+ * The exit code is 0 if the check succeeded, 1 if it failed and 2 if the request could not be processed.
+ *
+ * @author Sven Roeseler
+ */
+public final class CheckClient {
+    private static final int DEFAULT_PORT = 8765;
+    private static final int TIMEOUT_MILLIS = 120_000;
+
+    private CheckClient() {
+    }
+
+    /**
+     * Gets the file the server on the specified port writes its token to by default:
+     * {@code ~/.sslchecker/server-<port>.token}.
+     *
+     * @param port Port of the server
+     * @return Token file
+     */
+    public static Path defaultTokenFile(final int port) {
+        return Path.of(System.getProperty("user.home"), ".sslchecker", "server-" + port + ".token");
+    }
+
+    /**
+     * Entry point.
+     *
+     * @param args String array with command-line arguments
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Forwards a check to the server.
+     *
+     * @param args Command-line arguments
+     * @param out  Stream for the result
+     * @param err  Stream for errors
+     * @return Exit code
+     */
+    static int run(final String[] args, final PrintStream out, final PrintStream err) {
+        int port = DEFAULT_PORT;
+        Path tokenFile = null;
+        StringBuilder query = new StringBuilder();
+
+        for (int i = 0; i < args.length; i++) {
+            final String name = args[i];
+            if (i + 1 >= args.length || !name.startsWith("--")) {
+                err.println("Invalid argument " + name + " - usage: --url <url> [--mode <mode>] [--certs <file>] "
+                        + "[--port <port>] [--token <file>]");
+                return 2;
+            }
+
+            final String value = args[++i];
+            switch (name) {
+                case "--port":
+                    try {
+                        port = Integer.parseInt(value);
+                    } catch (NumberFormatException ex) {
+                        err.println("The parameter \"port\" must be a number");
+                        return 2;
+                    }
+                    break;
+                case "--token":
+                    tokenFile = Path.of(value);
+                    break;
+                case "--certs":
+                    // The server may run in another working directory
+                    appendParameter(query, "certs", Path.of(value).toAbsolutePath().toString());
+                    break;
+                case "--url":
+                case "--mode":
+                    appendParameter(query, name.substring(2), value);
+                    break;
+                default:
+                    err.println("Unknown argument " + name);
+                    return 2;
+            }
+        }
+
+        if (tokenFile == null) {
+            tokenFile = defaultTokenFile(port);
+        }
+
+        final String token;
+        try {
+            token = Files.readString(tokenFile, StandardCharsets.US_ASCII).strip();
+        } catch (IOException ex) {
+            err.println("Could not read the token of the server from " + tokenFile + ": " + ex.getMessage());
+            return 2;
+        }
+
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), TIMEOUT_MILLIS);
+            socket.setSoTimeout(TIMEOUT_MILLIS);
+
+            OutputStream request = socket.getOutputStream();
+            request.write(("GET /check" + query + " HTTP/1.1\r\nHost: localhost:" + port
+                    + "\r\nAuthorization: Bearer " + token
+                    + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            request.flush();
+
+            return handleResponse(readAll(socket.getInputStream()), out, err);
+        } catch (IOException ex) {
+            err.println("Could not reach the server on port " + port + ": " + ex.getMessage());
+            return 2;
+        }
+    }
+
+    private static void appendParameter(final StringBuilder query, final String name, final String value) {
+        query.append(query.length() == 0 ? "?" : "&").append(name).append('=')
+                .append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+    }
+
+    private static int handleResponse(final byte[] response, final PrintStream out, final PrintStream err) {
+        final String text = new String(response, StandardCharsets.UTF_8);
+        final int headerEnd = text.indexOf("\r\n\r\n");
+        if (headerEnd < 0) {
+            err.println("Invalid response from the server");
+            return 2;
+        }
+
+        final String headers = text.substring(0, headerEnd);
+        final String body = text.substring(headerEnd + 4);
+
+        if (!headers.startsWith("HTTP/1.1 200")) {
+            err.print(body);
+            return 2;
+        }
+
+        out.print(body);
+        out.flush();
+
+        return headers.toLowerCase(Locale.ROOT).contains("\r\nx-check-result: success") ? 0 : 1;
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+        byte[] chunk = new byte[8192];
+
+        int read;
+        while ((read = in.read(chunk)) >= 0) {
+            buffer.write(chunk, 0, read);
+        }
+
+        return buffer.toByteArray();
+    }
+}
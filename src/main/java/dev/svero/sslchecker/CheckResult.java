@@ -0,0 +1,120 @@
+package dev.svero.sslchecker;
+
+import dev.svero.tools.TlsResumption;
+import dev.svero.tools.TlsSessionInfo;
+import dev.svero.tools.TlsSupport;
+import dev.svero.tools.metrics.PhaseTimings;
+
+/**
+ * Holds the outcome of the check of a single target.
+ *
+ * @param target     Checked target
+ * @param success    True if the check succeeded
+ * @param message    Short description of the outcome
+ * @param duration   Duration of the check in nanoseconds
+ * @param session    Negotiated TLS session parameters or null if unknown
+ * @param timings    Durations of the phases of the check or null if unknown
+ * @param support    Accepted protocols and cipher suites or null if not enumerated
+ * @param resumption Outcome of the session resumption measurement or null if not measured
+ * @param statusCode HTTP status code of the response or -1 if no response was received
+ * @param error      Error which caused the failure or null if unknown
+ * @author Sven Roeseler
+ */
+public record CheckResult(Target target, boolean success, String message, long duration, TlsSessionInfo session,
+                          PhaseTimings timings, TlsSupport support, TlsResumption resumption, int statusCode,
+                          Throwable error) {
+    /**
+     * Creates a result for a successful check.
+     *
+     * @param target   Checked target
+     * @param message  Short description of the outcome
+     * @param duration Duration of the check in nanoseconds
+     * @return Created result
+     */
+    public static CheckResult success(final Target target, final String message, final long duration) {
+        return new CheckResult(target, true, message, duration, null, null, null, null, -1, null);
+    }
+
+    /**
+     * Creates a result for a successful check with known TLS session parameters.
+     *
+     * @param target   Checked target
+     * @param message  Short description of the outcome
+     * @param duration Duration of the check in nanoseconds
+     * @param session  Negotiated TLS session parameters
+     * @return Created result
+     */
+    public static CheckResult success(final Target target, final String message, final long duration,
+                                      final TlsSessionInfo session) {
+        return new CheckResult(target, true, message, duration, session, null, null, null, -1, null);
+    }
+
+    /**
+     * Creates a result for a failed check.
+     *
+     * @param target   Checked target
+     * @param message  Short description of the error
+     * @param duration Duration of the check in nanoseconds
+     * @return Created result
+     */
+    public static CheckResult failure(final Target target, final String message, final long duration) {
+        return new CheckResult(target, false, message, duration, null, null, null, null, -1, null);
+    }
+
+    /**
+     * Creates a result for a failed check using the specified exception as description.
+     *
+     * @param target   Checked target
+     * @param ex       Exception which caused the failure
+     * @param duration Duration of the check in nanoseconds
+     * @return Created result
+     */
+    public static CheckResult failure(final Target target, final Throwable ex, final long duration) {
+        return new CheckResult(target, false, ex.getClass().getSimpleName() + ": " + ex.getMessage(), duration,
+                null, null, null, null, -1, ex);
+    }
+
+    /**
+     * Creates a copy of this result with the specified phase timings.
+     *
+     * @param timings Durations of the phases of the check
+     * @return Created result
+     */
+    public CheckResult withTimings(final PhaseTimings timings) {
+        return new CheckResult(target, success, message, duration, session, timings, support, resumption,
+                statusCode, error);
+    }
+
+    /**
+     * Creates a copy of this result with the specified protocols and cipher suites.
+     *
+     * @param support Accepted protocols and cipher suites
+     * @return Created result
+     */
+    public CheckResult withSupport(final TlsSupport support) {
+        return new CheckResult(target, success, message, duration, session, timings, support, resumption,
+                statusCode, error);
+    }
+
+    /**
+     * Creates a copy of this result with the specified outcome of a resumption measurement.
+     *
+     * @param resumption Outcome of the session resumption measurement
+     * @return Created result
+     */
+    public CheckResult withResumption(final TlsResumption resumption) {
+        return new CheckResult(target, success, message, duration, session, timings, support, resumption,
+                statusCode, error);
+    }
+
+    /**
+     * Creates a copy of this result with the specified HTTP status code.
+     *
+     * @param statusCode HTTP status code of the response
+     * @return Created result
+     */
+    public CheckResult withStatusCode(final int statusCode) {
+        return new CheckResult(target, success, message, duration, session, timings, support, resumption,
+                statusCode, error);
+    }
+}
@@ -0,0 +1,338 @@
+package dev.svero.sslchecker;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Resident server which performs checks on request, so the JVM start, the loading of the trust and key
+ * stores and the creation of the SSL contexts and HTTP clients are paid only once. The server only listens
+ * on the loopback interface and provides the following endpoints:
+ * <ul>
+ *     <li>{@code GET /check?url=...[&mode=...][&certs=...]} checks the URL and returns the result as JSON
+ *     object (see {@link ResultWriter}). The header {@code X-Check-Result} is either {@code success} or
+ *     {@code failure}.</li>
+ *     <li>{@code GET /metrics} returns the metrics in the Prometheus text format.</li>
+ *     <li>{@code GET /health} returns {@code OK}.</li>
+ * </ul>
+ * Every request has to name the loopback interface in its {@code Host} header, so web pages cannot reach
+ * the server by DNS rebinding. Except for {@code /health}, every request also has to present the token of
+ * the server as {@code Authorization: Bearer <token>}. The token is generated at the start and written to
+ * a file only readable by the owner (see {@link CheckClient#defaultTokenFile(int)}), so only the user who
+ * started the server can use it.
+ *
+ * @author Sven Roeseler
+ */
+public class CheckServer implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CheckServer.class);
+
+    /**
+     * Provides the checker for the mode and the certificate file of a request.
+     */
+    @FunctionalInterface
+    public interface CheckerFactory {
+        /**
+         * Gets the checker for the specified mode and certificate file.
+         *
+         * @param mode  Check mode or null for the default mode of the server
+         * @param certs File with trusted certificates (PEM) or null for the default trust material
+         * @return Checker
+         * @throws IllegalArgumentException If the mode or the file is invalid
+         * @throws Exception                If the checker could not be created
+         */
+        TargetChecker getChecker(String mode, String certs) throws Exception;
+    }
+
+    /**
+     * Writes the current metrics.
+     */
+    @FunctionalInterface
+    public interface MetricsWriter {
+        /**
+         * Writes the metrics in the Prometheus text format.
+         *
+         * @param out Target
+         * @throws IOException If the metrics could not be written
+         */
+        void write(Appendable out) throws IOException;
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final CheckerFactory factory;
+    private final Consumer<CheckResult> consumer;
+    private final MetricsWriter metricsWriter;
+    private final Path tokenFile;
+    private final byte[] token;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private static final Set<String> LOOPBACK_HOSTS = Set.of("localhost", "127.0.0.1", "[::1]");
+    private static final int TOKEN_BYTES = 32;
+
+    /**
+     * Creates a new server listening on the specified port of the loopback interface. The server is not
+     * started yet, but its token has already been written to the specified file.
+     *
+     * @param port           Port (0 for any free port)
+     * @param maxConcurrency Number of platform threads used if virtual threads are not available
+     * @param factory        Provides the checkers for the requests
+     * @param consumer       Consumer for every result (e.g. logging and metrics)
+     * @param metricsWriter  Writes the metrics for the endpoint /metrics
+     * @param tokenFile      File for the token of the server (replaced if it exists, deleted on close)
+     * @throws IOException If the port could not be bound or the token could not be written
+     */
+    public CheckServer(final int port, final int maxConcurrency, final CheckerFactory factory,
+                       final Consumer<CheckResult> consumer, final MetricsWriter metricsWriter,
+                       final Path tokenFile) throws IOException {
+        Objects.requireNonNull(factory);
+        Objects.requireNonNull(consumer);
+        Objects.requireNonNull(metricsWriter);
+        Objects.requireNonNull(tokenFile);
+
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("port must be between 0 and 65535");
+        }
+
+        this.factory = factory;
+        this.consumer = consumer;
+        this.metricsWriter = metricsWriter;
+        this.tokenFile = tokenFile;
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 128);
+
+        byte[] generated = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(generated);
+        this.token = HexFormat.of().formatHex(generated).getBytes(StandardCharsets.US_ASCII);
+        try {
+            writeToken(tokenFile, token);
+        } catch (IOException ex) {
+            server.stop(0);
+            throw ex;
+        }
+
+        this.executor = BulkChecker.createExecutor(maxConcurrency);
+        this.server.setExecutor(executor);
+
+        this.server.createContext("/check", this::handleCheck).getFilters().add(guard(true));
+        this.server.createContext("/metrics", this::handleMetrics).getFilters().add(guard(true));
+        this.server.createContext("/health", exchange -> respond(exchange, 200, "text/plain", "OK\n"))
+                .getFilters().add(guard(false));
+    }
+
+    /**
+     * Gets the address the server is listening on.
+     *
+     * @return Address
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Starts the server and waits until it is stopped by {@link #close()}.
+     *
+     * @throws InterruptedException If the calling thread was interrupted
+     */
+    public void run() throws InterruptedException {
+        server.start();
+        LOGGER.info("Listening on http://{}:{}/", server.getAddress().getHostString(), server.getAddress().getPort());
+
+        stopped.await();
+    }
+
+    /**
+     * Stops the server. Requests in progress are given up to five seconds to complete.
+     */
+    @Override
+    public void close() {
+        if (stopped.getCount() == 0) {
+            return;
+        }
+
+        server.stop(5);
+        executor.shutdown();
+        stopped.countDown();
+
+        try {
+            Files.deleteIfExists(tokenFile);
+        } catch (IOException ex) {
+            LOGGER.warn("Could not delete the token file {}: {}", tokenFile, ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes the token to a new file which is only readable and writable by the owner (if the file system
+     * supports POSIX permissions).
+     */
+    private static void writeToken(final Path file, final byte[] token) throws IOException {
+        final Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        // Recreated, so a file with wider permissions is never reused
+        Files.deleteIfExists(file);
+
+        final boolean posix = file.getFileSystem().supportedFileAttributeViews().contains("posix");
+        try {
+            if (posix) {
+                Files.createFile(file,
+                        PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+            } else {
+                Files.createFile(file);
+            }
+        } catch (FileAlreadyExistsException ex) {
+            throw new IOException("Token file " + file + " has been created concurrently", ex);
+        }
+
+        Files.write(file, token);
+    }
+
+    /**
+     * Creates the filter which rejects requests for other hosts than the loopback interface and, if
+     * required, requests without the token of the server.
+     */
+    private Filter guard(final boolean authenticate) {
+        return new Filter() {
+            @Override
+            public void doFilter(final HttpExchange exchange, final Chain chain) throws IOException {
+                if (!isLoopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+                    reject(exchange, 421, "Invalid host\n");
+                } else if (authenticate && !isAuthorized(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                    exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                    reject(exchange, 401, "Missing or invalid token\n");
+                } else {
+                    chain.doFilter(exchange);
+                }
+            }
+
+            @Override
+            public String description() {
+                return "Checks the host and the token";
+            }
+        };
+    }
+
+    private static boolean isLoopbackHost(final String host) {
+        if (host == null) {
+            return false;
+        }
+
+        String name = host.strip().toLowerCase(Locale.ROOT);
+        final int colon = name.lastIndexOf(':');
+        if (colon >= 0 && colon > name.lastIndexOf(']')) {
+            name = name.substring(0, colon);
+        }
+
+        return LOOPBACK_HOSTS.contains(name);
+    }
+
+    private boolean isAuthorized(final String authorization) {
+        final String prefix = "Bearer ";
+        if (authorization == null || !authorization.regionMatches(true, 0, prefix, 0, prefix.length())) {
+            return false;
+        }
+
+        return MessageDigest.isEqual(token,
+                authorization.substring(prefix.length()).strip().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void reject(final HttpExchange exchange, final int status, final String body) throws IOException {
+        LOGGER.warn("Rejected request for {} from {} ({})", exchange.getRequestURI().getPath(),
+                exchange.getRemoteAddress(), status);
+        respond(exchange, status, "text/plain", body);
+    }
+
+    private void handleCheck(final HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, "text/plain", "Method not allowed\n");
+            return;
+        }
+
+        final Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        final String url = parameters.get("url");
+        if (url == null || url.isBlank()) {
+            respond(exchange, 400, "text/plain", "The parameter \"url\" is missing\n");
+            return;
+        }
+
+        final Target target;
+        final TargetChecker checker;
+        try {
+            target = Target.parse(url);
+            checker = factory.getChecker(parameters.get("mode"), parameters.get("certs"));
+        } catch (IllegalArgumentException ex) {
+            respond(exchange, 400, "text/plain", ex.getMessage() + "\n");
+            return;
+        } catch (Exception ex) {
+            LOGGER.error("Could not create the checker for {}: {}", url, ex.toString());
+            respond(exchange, 500, "text/plain", ex + "\n");
+            return;
+        }
+
+        final CheckResult result = checker.check(target);
+        consumer.accept(result);
+
+        exchange.getResponseHeaders().set("X-Check-Result", result.success() ? "success" : "failure");
+        respond(exchange, 200, "application/json", ResultWriter.toJson(result, Instant.now()));
+    }
+
+    private void handleMetrics(final HttpExchange exchange) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        metricsWriter.write(sb);
+        respond(exchange, 200, "text/plain; version=0.0.4", sb.toString());
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String contentType,
+                                final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(final String query) {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+
+        for (String pair : query.split("&")) {
+            int index = pair.indexOf('=');
+            if (index > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, index), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(index + 1), StandardCharsets.UTF_8));
+            }
+        }
+
+        return parameters;
+    }
+}
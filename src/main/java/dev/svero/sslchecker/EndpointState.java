@@ -0,0 +1,94 @@
+package dev.svero.sslchecker;
+
+import dev.svero.tools.CertificateUtils;
+import dev.svero.tools.TlsSessionInfo;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * State of an endpoint as seen by its last check.
+ *
+ * @param target      URL of the target
+ * @param endpoint    Host and port of the target (host:port)
+ * @param checkedAt   Time of the check in milliseconds since the epoch
+ * @param success     True if the check succeeded
+ * @param fingerprint SHA-256 fingerprint of the peer chain or null if unknown
+ * @param trust       Fingerprint of the trust configuration the chain was validated with or null if unknown
+ * @param protocol    Negotiated protocol or null if unknown
+ * @param cipherSuite Negotiated cipher suite or null if unknown
+ * @param notAfter    Expiry of the peer certificate in milliseconds since the epoch or -1 if unknown
+ * @param message     Short description of the outcome
+ * @author Sven Roeseler
+ */
+public record EndpointState(String target, String endpoint, long checkedAt, boolean success, String fingerprint,
+                            String trust, String protocol, String cipherSuite, long notAfter, String message) {
+    /**
+     * Creates the state described by the specified result.
+     *
+     * @param result    Result of a check
+     * @param trust     Fingerprint of the trust configuration used by the check or null if unknown
+     * @param checkedAt Time of the check in milliseconds since the epoch
+     * @return Created state
+     */
+    public static EndpointState of(final CheckResult result, final String trust, final long checkedAt) {
+        Objects.requireNonNull(result);
+
+        final Target target = result.target();
+        final TlsSessionInfo session = result.session();
+
+        String fingerprint = null;
+        long notAfter = -1;
+        if (session != null && !session.peerCertificates().isEmpty()) {
+            fingerprint = CertificateUtils.chainFingerprint(session.peerCertificates());
+            X509Certificate leaf = session.peerCertificate();
+            notAfter = leaf.getNotAfter().getTime();
+        }
+
+        return new EndpointState(target.url(), target.host() + ":" + target.port(), checkedAt, result.success(),
+                fingerprint, trust, session == null ? null : session.protocol(),
+                session == null ? null : session.cipherSuite(), notAfter, result.message());
+    }
+
+    /**
+     * Describes the differences to the specified previous state. The time of the check is ignored and the
+     * message is only compared for failed checks.
+     *
+     * @param previous Previous state or null if the endpoint has not been checked before
+     * @return Descriptions of the changes (empty if nothing has changed)
+     */
+    public List<String> changesSince(final EndpointState previous) {
+        List<String> changes = new ArrayList<>();
+
+        if (previous == null) {
+            changes.add("new endpoint");
+            return changes;
+        }
+
+        if (success != previous.success) {
+            changes.add(success ? "check succeeds again" : "check fails");
+        } else if (!success && !Objects.equals(message, previous.message)) {
+            changes.add("error changed");
+        }
+
+        compare(changes, "chain", previous.fingerprint, fingerprint);
+        compare(changes, "protocol", previous.protocol, protocol);
+        compare(changes, "cipher suite", previous.cipherSuite, cipherSuite);
+
+        if (notAfter != previous.notAfter && notAfter >= 0 && previous.notAfter >= 0) {
+            changes.add("expiry changed");
+        }
+
+        return changes;
+    }
+
+    private static void compare(final List<String> changes, final String name, final String previous,
+                                final String current) {
+        // Unknown values (failed checks) are reported by the change of the outcome
+        if (previous != null && current != null && !previous.equals(current)) {
+            changes.add(name + " changed from " + previous + " to " + current);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package dev.svero.sslchecker;
+
+import dev.svero.tools.CipherSuiteScanner;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Checks a target by enumerating the protocols and cipher suites it accepts. The check succeeds if at
+ * least one protocol is accepted. The protocols of a target are enumerated in parallel, so a single check
+ * may use one connection per protocol at the same time.
+ *
+ * @author Sven Roeseler
+ */
+public class EnumerationTargetChecker implements TargetChecker {
+    private final CipherSuiteScanner scanner;
+
+    /**
+     * Creates a new instance using the specified scanner.
+     *
+     * @param scanner Scanner for protocols and cipher suites
+     */
+    public EnumerationTargetChecker(final CipherSuiteScanner scanner) {
+        Objects.requireNonNull(scanner);
+
+        this.scanner = scanner;
+    }
+
+    @Override
+    public CheckResult check(final Target target) {
+        return checkAsync(target, Runnable::run).join();
+    }
+
+    @Override
+    public CompletableFuture<CheckResult> checkAsync(final Target target, final Executor executor) {
+        final long start = System.nanoTime();
+
+        return scanner.scan(target.host(), target.port(), executor).handle((support, ex) -> {
+            if (ex == null) {
+                return new CheckResult(target, !support.accepted().isEmpty(), support.summary(),
+                        System.nanoTime() - start, null, null, support, null, -1, null);
+            }
+
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            return CheckResult.failure(target, cause, System.nanoTime() - start);
+        });
+    }
+}
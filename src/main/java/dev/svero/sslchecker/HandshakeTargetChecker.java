@@ -0,0 +1,41 @@
+package dev.svero.sslchecker;
+
+import dev.svero.tools.HandshakeUtils;
+import dev.svero.tools.TlsSessionInfo;
+import dev.svero.tools.metrics.PhaseTimings;
+
+import java.util.Objects;
+
+/**
+ * Checks a target by performing a TLS handshake only. No HTTP request is sent.
+ *
+ * @author Sven Roeseler
+ */
+public class HandshakeTargetChecker implements TargetChecker {
+    private final HandshakeUtils handshakeUtils;
+
+    /**
+     * Creates a new instance using the specified instance of HandshakeUtils.
+     *
+     * @param handshakeUtils Instance of HandshakeUtils
+     */
+    public HandshakeTargetChecker(final HandshakeUtils handshakeUtils) {
+        Objects.requireNonNull(handshakeUtils);
+
+        this.handshakeUtils = handshakeUtils;
+    }
+
+    @Override
+    public CheckResult check(final Target target) {
+        final long start = System.nanoTime();
+        final PhaseTimings timings = new PhaseTimings();
+
+        try {
+            TlsSessionInfo session = handshakeUtils.handshake(target.host(), target.port(), timings);
+            return CheckResult.success(target, "Handshake completed", System.nanoTime() - start, session)
+                    .withTimings(timings);
+        } catch (Exception ex) {
+            return CheckResult.failure(target, ex, System.nanoTime() - start).withTimings(timings);
+        }
+    }
+}
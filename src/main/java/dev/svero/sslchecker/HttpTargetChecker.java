@@ -0,0 +1,76 @@
+package dev.svero.sslchecker;
+
+import dev.svero.tools.HttpUtils;
+import dev.svero.tools.TlsSessionInfo;
+import dev.svero.tools.metrics.PhaseTimings;
+
+import java.net.http.HttpResponse;
+import java.util.Objects;
+
+/**
+ * Checks a target by performing a GET request for its URL. By default the check only succeeds if the
+ * server responds with status code 200. The body is read but not kept. In probe mode every response
+ * counts as success and at most the configured number of body bytes is downloaded.
+ *
+ * @author Sven Roeseler
+ */
+public class HttpTargetChecker implements TargetChecker {
+    private final HttpUtils httpUtils;
+    private final long maxBodyBytes;
+
+    /**
+     * Creates a new instance using the specified instance of HttpUtils. The complete body is read and
+     * the status code 200 is expected.
+     *
+     * @param httpUtils Instance of HttpUtils
+     */
+    public HttpTargetChecker(final HttpUtils httpUtils) {
+        this(httpUtils, -1);
+    }
+
+    /**
+     * Creates a new instance in probe mode which reads at most the specified number of body bytes.
+     * A negative value disables the probe mode.
+     *
+     * @param httpUtils    Instance of HttpUtils
+     * @param maxBodyBytes Maximum number of body bytes to read
+     */
+    public HttpTargetChecker(final HttpUtils httpUtils, final long maxBodyBytes) {
+        Objects.requireNonNull(httpUtils);
+
+        this.httpUtils = httpUtils;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    @Override
+    public CheckResult check(final Target target) {
+        final long start = System.nanoTime();
+        final PhaseTimings timings = new PhaseTimings();
+
+        try {
+            if (maxBodyBytes < 0) {
+                HttpResponse<Long> response = httpUtils.checkRequest(target.url(), timings);
+                if (response.statusCode() != 200) {
+                    return CheckResult.failure(target, "Unexpected status code " + response.statusCode(),
+                            System.nanoTime() - start).withStatusCode(response.statusCode()).withTimings(timings);
+                }
+
+                TlsSessionInfo session = response.sslSession().map(TlsSessionInfo::of).orElse(null);
+
+                return CheckResult.success(target, "OK", System.nanoTime() - start, session).withStatusCode(200)
+                        .withTimings(timings);
+            }
+
+            HttpResponse<Long> response = httpUtils.probeRequest(target.url(), maxBodyBytes, timings);
+            TlsSessionInfo session = response.sslSession().map(TlsSessionInfo::of).orElse(null);
+
+            return CheckResult.success(target, "HTTP " + response.statusCode(), System.nanoTime() - start,
+                    session).withStatusCode(response.statusCode()).withTimings(timings);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return CheckResult.failure(target, "Interrupted", System.nanoTime() - start).withTimings(timings);
+        } catch (Exception ex) {
+            return CheckResult.failure(target, ex, System.nanoTime() - start).withTimings(timings);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package dev.svero.sslchecker;
+
+import dev.svero.tools.JsonUtils;
+import dev.svero.tools.inventory.CertificateFields;
+import dev.svero.tools.inventory.CertificateInventory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Writes the certificates found by a {@link CertificateInventory} as expiry report with one record per
+ * certificate, either as NDJSON or as CSV. Optionally only certificates expiring within a number of days
+ * (including expired ones) are written. May be called from different threads at the same time.
+ *
+ * @author Sven Roeseler
+ */
+public class InventoryReport implements Consumer<CertificateInventory.Entry>, AutoCloseable {
+    private static final String CSV_HEADER = "file,entry,subject,issuer,not_before,not_after,days_left,"
+            + "subject_alt_names,sha256";
+
+    private static final long EXPIRING_DAYS = 30;
+
+    private final Writer writer;
+    private final boolean closeWriter;
+    private final ResultWriter.Format format;
+    private final Instant now;
+    private final long maxDays;
+    private final StringBuilder sb = new StringBuilder(1024);
+
+    private long written;
+    private long expired;
+    private long expiring;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param writer      Destination
+     * @param format      Output format
+     * @param now         Reference time for the remaining days
+     * @param maxDays     Only certificates expiring within this number of days are written (-1 for all)
+     * @param closeWriter True to close the writer when this instance is closed
+     * @throws IOException If the CSV header could not be written
+     */
+    public InventoryReport(final Writer writer, final ResultWriter.Format format, final Instant now,
+                           final long maxDays, final boolean closeWriter) throws IOException {
+        Objects.requireNonNull(writer);
+        Objects.requireNonNull(format);
+        Objects.requireNonNull(now);
+
+        this.writer = writer;
+        this.format = format;
+        this.now = now;
+        this.maxDays = maxDays;
+        this.closeWriter = closeWriter;
+
+        if (format == ResultWriter.Format.CSV) {
+            writer.write(CSV_HEADER + "\n");
+        }
+    }
+
+    @Override
+    public synchronized void accept(final CertificateInventory.Entry entry) {
+        final CertificateFields fields = entry.fields();
+        final long daysLeft = Math.floorDiv(Duration.between(now, fields.notAfter()).getSeconds(), 86400L);
+
+        if (daysLeft < 0) {
+            expired++;
+        } else if (daysLeft < EXPIRING_DAYS) {
+            expiring++;
+        }
+
+        if (maxDays >= 0 && daysLeft > maxDays) {
+            return;
+        }
+
+        sb.setLength(0);
+        if (format == ResultWriter.Format.CSV) {
+            appendCsv(entry, daysLeft);
+        } else {
+            appendJson(entry, daysLeft);
+        }
+
+        try {
+            writer.append(sb);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        written++;
+    }
+
+    /**
+     * Gets the number of records written.
+     *
+     * @return Number of records
+     */
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    /**
+     * Gets the number of expired certificates found, including the ones not written.
+     *
+     * @return Number of expired certificates
+     */
+    public synchronized long getExpired() {
+        return expired;
+    }
+
+    /**
+     * Gets the number of certificates found which expire within the next 30 days.
+     *
+     * @return Number of certificates
+     */
+    public synchronized long getExpiring() {
+        return expiring;
+    }
+
+    /**
+     * Flushes the report and closes the destination if requested.
+     *
+     * @throws IOException If the report could not be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            writer.flush();
+        } finally {
+            if (closeWriter) {
+                writer.close();
+            }
+        }
+    }
+
+    private void appendJson(final CertificateInventory.Entry entry, final long daysLeft) {
+        final CertificateFields fields = entry.fields();
+
+        sb.append("{\"file\":");
+        JsonUtils.appendString(sb, entry.file().toString());
+        sb.append(",\"entry\":");
+        JsonUtils.appendString(sb, entry.entry());
+        sb.append(",\"subject\":");
+        JsonUtils.appendString(sb, fields.subject());
+        sb.append(",\"issuer\":");
+        JsonUtils.appendString(sb, fields.issuer());
+        sb.append(",\"notBefore\":\"").append(fields.notBefore()).append('"');
+        sb.append(",\"notAfter\":\"").append(fields.notAfter()).append('"');
+        sb.append(",\"daysLeft\":").append(daysLeft);
+        sb.append(",\"subjectAltNames\":[");
+
+        final List<String> names = fields.subjectAltNames();
+        for (int i = 0; i < names.size(); i++) {
+            sb.append(i == 0 ? "" : ",");
+            JsonUtils.appendString(sb, names.get(i));
+        }
+
+        sb.append("],\"sha256\":\"").append(fields.sha256()).append("\"}\n");
+    }
+
+    private void appendCsv(final CertificateInventory.Entry entry, final long daysLeft) {
+        final CertificateFields fields = entry.fields();
+
+        ResultWriter.appendCsvValue(sb, entry.file().toString());
+        sb.append(',');
+        ResultWriter.appendCsvValue(sb, entry.entry());
+        sb.append(',');
+        ResultWriter.appendCsvValue(sb, fields.subject());
+        sb.append(',');
+        ResultWriter.appendCsvValue(sb, fields.issuer());
+        sb.append(',').append(fields.notBefore()).append(',').append(fields.notAfter()).append(',').append(daysLeft)
+                .append(',');
+        // Multiple names are separated by spaces like the chains of the result writer
+        ResultWriter.appendCsvValue(sb, String.join(" ", fields.subjectAltNames()));
+        sb.append(',').append(fields.sha256()).append('\n');
+    }
+}
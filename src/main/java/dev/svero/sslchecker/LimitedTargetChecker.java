@@ -0,0 +1,115 @@
+package dev.svero.sslchecker;
+
+import dev.svero.tools.limit.ConnectionLimiter;
+
+import java.io.EOFException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Performs the checks of another checker only when the connection limiter grants a permit for the host
+ * of the target. The outcome of every check adapts the limit of the host: timeouts, resets, refused
+ * connections and throttling responses (HTTP 429 and 503) decrease it, successful checks increase it and
+ * all other failures leave it unchanged. The duration of a check does not include the time spent waiting
+ * for the permit. Throttling responses are detected by the status code of the result and the other
+ * failures by the type of the error (or one of its causes), never by the message.
+ *
+ * @author Sven Roeseler
+ */
+public class LimitedTargetChecker implements TargetChecker {
+    /**
+     * Errors which indicate that the peer is overloaded: timeouts, refused connections (ConnectException
+     * is a SocketException), resets, broken pipes and connections closed during the handshake.
+     */
+    private static final List<Class<? extends Throwable>> DROP_ERRORS = List.of(TimeoutException.class,
+            HttpTimeoutException.class, SocketTimeoutException.class, SocketException.class, EOFException.class);
+
+    private final TargetChecker delegate;
+    private final ConnectionLimiter limiter;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param delegate Checker which performs the checks
+     * @param limiter  Limiter for the connections
+     */
+    public LimitedTargetChecker(final TargetChecker delegate, final ConnectionLimiter limiter) {
+        Objects.requireNonNull(delegate);
+        Objects.requireNonNull(limiter);
+
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public CheckResult check(final Target target) {
+        final ConnectionLimiter.Permit permit;
+        try {
+            permit = limiter.acquire(target.host()).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return CheckResult.failure(target, "Interrupted", 0);
+        } catch (ExecutionException ex) {
+            return CheckResult.failure(target, "No connection permit: " + ex.getCause().getMessage(), 0);
+        }
+
+        CheckResult result = null;
+        try {
+            result = delegate.check(target);
+            return result;
+        } finally {
+            permit.release(result == null ? ConnectionLimiter.Outcome.IGNORED : classify(result));
+        }
+    }
+
+    @Override
+    public CompletableFuture<CheckResult> checkAsync(final Target target, final Executor executor) {
+        // The check is started by the executor, because the permit may be granted by any thread
+        return limiter.acquire(target.host()).thenComposeAsync(permit -> {
+            try {
+                return delegate.checkAsync(target, executor).whenComplete((result, ex) ->
+                        permit.release(ex != null ? ConnectionLimiter.Outcome.IGNORED : classify(result)));
+            } catch (RuntimeException ex) {
+                permit.release(ConnectionLimiter.Outcome.IGNORED);
+                throw ex;
+            }
+        }, executor);
+    }
+
+    /**
+     * Determines the outcome of a check for the connection limiter.
+     *
+     * @param result Result of the check
+     * @return Outcome
+     */
+    static ConnectionLimiter.Outcome classify(final CheckResult result) {
+        if (result.statusCode() == 429 || result.statusCode() == 503) {
+            return ConnectionLimiter.Outcome.DROPPED;
+        }
+
+        if (result.success()) {
+            return ConnectionLimiter.Outcome.SUCCESS;
+        }
+
+        for (Throwable cause = result.error(); cause != null; cause = cause.getCause()) {
+            for (Class<? extends Throwable> type : DROP_ERRORS) {
+                if (type.isInstance(cause)) {
+                    return ConnectionLimiter.Outcome.DROPPED;
+                }
+            }
+
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+
+        return ConnectionLimiter.Outcome.IGNORED;
+    }
+}
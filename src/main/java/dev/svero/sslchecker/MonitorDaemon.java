@@ -0,0 +1,254 @@
+package dev.svero.sslchecker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Checks a list of targets continuously. Every target is kept in a priority queue ordered by the time of
+ * its next check, so the scheduler only ever looks at the head of the queue and handles tens of
+ * thousands of targets with a single thread. The interval until the next check of a target is
+ * calculated by a {@link SchedulePolicy} from the result of its last check.
+ * <p>
+ * The checks run on the same executors as the checks of {@link BulkChecker} and the number of checks
+ * running at the same time is limited by the configured maximum concurrency. If more checks are due
+ * than can run at the same time, they are delayed until a running check finishes.
+ *
+ * @author Sven Roeseler
+ */
+public class MonitorDaemon {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MonitorDaemon.class);
+
+    /**
+     * Snapshot of the state of the daemon.
+     *
+     * @param targets        Number of monitored targets
+     * @param checks         Number of checks performed since the start
+     * @param failedChecks   Number of failed checks since the start
+     * @param failingTargets Number of targets whose last check failed
+     * @param checksPerHour  Number of checks per hour resulting from the current intervals
+     */
+    public record Statistics(int targets, long checks, long failedChecks, int failingTargets, double checksPerHour) {
+    }
+
+    /**
+     * Scheduling state of a single target.
+     */
+    private static final class ScheduledTarget implements Delayed {
+        private final Target target;
+
+        private volatile long dueNanos;
+        private volatile Duration interval;
+        private volatile int consecutiveFailures;
+
+        ScheduledTarget(final Target target, final long dueNanos) {
+            this.target = target;
+            this.dueNanos = dueNanos;
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+            return Long.compare(dueNanos, ((ScheduledTarget) other).dueNanos);
+        }
+    }
+
+    private final TargetChecker checker;
+    private final int maxConcurrency;
+    private final SchedulePolicy policy;
+
+    private final DelayQueue<ScheduledTarget> queue = new DelayQueue<>();
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong failedChecks = new AtomicLong();
+
+    private final Object runnerLock = new Object();
+    private volatile Thread runner;
+    private volatile boolean stopped;
+    private boolean scheduling;
+    private volatile int targetCount;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param checker        Check to perform for every target
+     * @param maxConcurrency Maximum number of checks running at the same time
+     * @param policy         Policy for the intervals between the checks
+     */
+    public MonitorDaemon(final TargetChecker checker, final int maxConcurrency, final SchedulePolicy policy) {
+        Objects.requireNonNull(checker);
+        Objects.requireNonNull(policy);
+
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be greater than zero");
+        }
+
+        this.checker = checker;
+        this.maxConcurrency = maxConcurrency;
+        this.policy = policy;
+    }
+
+    /**
+     * Checks the specified targets until {@link #stop()} is called. The first checks are spread randomly
+     * over the minimum interval. Every result is passed to the specified consumer as soon as the check
+     * has finished. The consumer may be called from different threads at the same time. If the consumer
+     * throws an exception, it is logged and the check is counted as failed.
+     *
+     * @param targets  Targets to check
+     * @param consumer Consumer for the results
+     * @throws InterruptedException If the calling thread was interrupted by someone else than {@link #stop()}
+     */
+    public void run(final List<Target> targets, final Consumer<CheckResult> consumer) throws InterruptedException {
+        Objects.requireNonNull(targets);
+        Objects.requireNonNull(consumer);
+
+        synchronized (runnerLock) {
+            if (runner != null) {
+                throw new IllegalStateException("The daemon is already running");
+            }
+
+            runner = Thread.currentThread();
+            scheduling = true;
+        }
+
+        targetCount = targets.size();
+
+        final long now = System.nanoTime();
+        final long spread = policy.getMinInterval().toNanos();
+        for (Target target : targets) {
+            queue.add(new ScheduledTarget(target, now + ThreadLocalRandom.current().nextLong(spread)));
+        }
+
+        final Semaphore permits = new Semaphore(maxConcurrency);
+        final ExecutorService executor = BulkChecker.createExecutor(maxConcurrency);
+
+        try {
+            while (!stopped) {
+                final ScheduledTarget scheduled = queue.take();
+                permits.acquire();
+
+                checker.checkAsync(scheduled.target, executor).whenComplete((result, ex) -> {
+                    try {
+                        if (ex != null) {
+                            LOGGER.error("Unexpected error while checking {}", scheduled.target, ex);
+                            result = CheckResult.failure(scheduled.target, "Unexpected error: " + ex.getMessage(), 0);
+                        }
+
+                        reschedule(scheduled, result);
+                        if (!BulkChecker.deliver(consumer, result) && result.success()) {
+                            failedChecks.incrementAndGet();
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        } catch (InterruptedException ex) {
+            if (!stopped) {
+                executor.shutdown();
+                throw ex;
+            }
+        }
+
+        synchronized (runnerLock) {
+            scheduling = false;
+        }
+
+        // stop() may have interrupted the thread after the loop noticed the flag
+        if (stopped) {
+            Thread.interrupted();
+        }
+
+        // Wait for the checks still running. The executor is shut down afterwards, because checks waiting
+        // for a connection permit only submit their task when the permit is granted.
+        try {
+            if (permits.tryAcquire(maxConcurrency, 1, TimeUnit.MINUTES)) {
+                permits.release(maxConcurrency);
+            } else {
+                LOGGER.warn("Some checks did not finish within one minute after stopping");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Stops the daemon. Checks already running are completed, but no further checks are started.
+     */
+    public void stop() {
+        synchronized (runnerLock) {
+            stopped = true;
+
+            // Only wakes up the scheduling loop, not the wait for the running checks
+            if (scheduling) {
+                runner.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Creates a snapshot of the state of the daemon. The targets currently being checked are not
+     * included in the number of failing targets and the checks per hour.
+     *
+     * @return Statistics
+     */
+    public Statistics getStatistics() {
+        int failing = 0;
+        double perHour = 0;
+
+        for (ScheduledTarget scheduled : queue) {
+            if (scheduled.consecutiveFailures > 0) {
+                failing++;
+            }
+
+            // Targets which have not been checked yet will be checked after the minimum interval
+            Duration interval = scheduled.interval != null ? scheduled.interval : policy.getMinInterval();
+            perHour += 3_600_000.0 / Math.max(1, interval.toMillis());
+        }
+
+        return new Statistics(targetCount, checks.get(), failedChecks.get(), failing, perHour);
+    }
+
+    /**
+     * Updates the state of a target using the result of its last check and puts it back into the queue.
+     *
+     * @param scheduled Checked target
+     * @param result    Result of the check
+     */
+    private void reschedule(final ScheduledTarget scheduled, final CheckResult result) {
+        checks.incrementAndGet();
+
+        if (result.success()) {
+            scheduled.consecutiveFailures = 0;
+        } else {
+            failedChecks.incrementAndGet();
+            scheduled.consecutiveFailures++;
+        }
+
+        Duration interval = policy.nextInterval(scheduled.interval, result, scheduled.consecutiveFailures,
+                Instant.now());
+        scheduled.interval = interval;
+        scheduled.dueNanos = System.nanoTime() + policy.withJitter(interval).toNanos();
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Next check of {} in {} s", scheduled.target, interval.toSeconds());
+        }
+
+        queue.add(scheduled);
+    }
+}
@@ -0,0 +1,51 @@
+package dev.svero.sslchecker;
+
+import dev.svero.tools.metrics.PhaseTimings;
+import dev.svero.tools.nio.NioHandshakeEngine;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Checks a target by performing a TLS handshake using the non-blocking handshake engine. No HTTP
+ * request is sent and no thread is blocked while the handshake is in progress.
+ *
+ * @author Sven Roeseler
+ */
+public class NioHandshakeTargetChecker implements TargetChecker {
+    private final NioHandshakeEngine engine;
+
+    /**
+     * Creates a new instance using the specified engine.
+     *
+     * @param engine Handshake engine
+     */
+    public NioHandshakeTargetChecker(final NioHandshakeEngine engine) {
+        Objects.requireNonNull(engine);
+
+        this.engine = engine;
+    }
+
+    @Override
+    public CheckResult check(final Target target) {
+        return checkAsync(target, Runnable::run).join();
+    }
+
+    @Override
+    public CompletableFuture<CheckResult> checkAsync(final Target target, final Executor executor) {
+        final long start = System.nanoTime();
+        final PhaseTimings timings = new PhaseTimings();
+
+        return engine.handshake(target.host(), target.port(), timings).handle((session, ex) -> {
+            if (ex == null) {
+                return CheckResult.success(target, "Handshake completed", System.nanoTime() - start, session)
+                        .withTimings(timings);
+            }
+
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            return CheckResult.failure(target, cause, System.nanoTime() - start).withTimings(timings);
+        });
+    }
+}
@@ -0,0 +1,448 @@
+package dev.svero.sslchecker;
+
+import dev.svero.tools.CertificateUtils;
+import dev.svero.tools.JsonUtils;
+import dev.svero.tools.TlsResumption;
+import dev.svero.tools.TlsSessionInfo;
+import dev.svero.tools.TlsSupport;
+import dev.svero.tools.metrics.Phase;
+import dev.svero.tools.metrics.PhaseTimings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes one record per check result as NDJSON (one JSON object per line) or CSV. The results are passed
+ * through a bounded queue to a writer thread, which formats them and writes them in batches. The output
+ * is flushed after every batch, so consumers can read the records while the checks are still running.
+ * If the writer thread cannot keep up, {@link #write(CheckResult)} blocks until there is room in the
+ * queue, so the memory used does not depend on the number of checks.
+ * <p>
+ * Every record contains the target, the outcome, the phase timings, the negotiated protocol and cipher
+ * suite and the SHA-256 fingerprint and expiry date of every certificate of the peer chain. NDJSON records
+ * of enumeration checks also contain the accepted protocols and cipher suites, records of resumption
+ * checks the number of resumed handshakes and their durations.
+ *
+ * @author Sven Roeseler
+ */
+public class ResultWriter implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResultWriter.class);
+
+    /**
+     * Output format.
+     */
+    public enum Format {
+        /**
+         * One JSON object per line.
+         */
+        NDJSON,
+
+        /**
+         * Comma-separated values with a header line.
+         */
+        CSV
+    }
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_BATCH = 256;
+
+    private static final String CSV_HEADER = "time,target,host,port,success,message,duration_ms,dns_ms,connect_ms,"
+            + "handshake_ms,ttfb_ms,body_ms,total_ms,protocol,cipher_suite,leaf_not_after,chain_sha256,"
+            + "chain_not_after";
+
+    private final Writer writer;
+    private final boolean closeWriter;
+    private final Format format;
+    private final BlockingQueue<Entry> queue;
+    private final Thread thread;
+
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    private long written;
+
+    /**
+     * Result together with the time it was passed to the writer.
+     */
+    private record Entry(CheckResult result, Instant time) {
+    }
+
+    /**
+     * Creates a new instance which writes to the specified writer.
+     *
+     * @param writer      Destination
+     * @param format      Output format
+     * @param capacity    Maximum number of results waiting to be written
+     * @param closeWriter True to close the writer when this instance is closed
+     */
+    public ResultWriter(final Writer writer, final Format format, final int capacity, final boolean closeWriter) {
+        Objects.requireNonNull(writer);
+        Objects.requireNonNull(format);
+
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be greater than zero");
+        }
+
+        this.writer = writer;
+        this.format = format;
+        this.closeWriter = closeWriter;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+
+        this.thread = new Thread(this::drain, "result-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Creates a new instance which writes to the specified file or to the standard output.
+     *
+     * @param destination Name of the file or "-" for the standard output
+     * @param format      Output format
+     * @return Created instance
+     * @throws IOException If the file could not be created
+     */
+    public static ResultWriter open(final String destination, final Format format) throws IOException {
+        Objects.requireNonNull(destination);
+
+        if ("-".equals(destination)) {
+            return new ResultWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), format,
+                    DEFAULT_CAPACITY, false);
+        }
+
+        return new ResultWriter(Files.newBufferedWriter(Path.of(destination), StandardCharsets.UTF_8), format,
+                DEFAULT_CAPACITY, true);
+    }
+
+    /**
+     * Queues the specified result for writing. Blocks if the queue is full. May be called from different
+     * threads at the same time.
+     *
+     * @param result Result to write
+     */
+    public void write(final CheckResult result) {
+        Objects.requireNonNull(result);
+
+        if (closed) {
+            throw new IllegalStateException("The writer has been closed");
+        }
+
+        final Entry entry = new Entry(result, Instant.now());
+
+        try {
+            queue.put(entry);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while waiting to write the result of {}", result.target());
+        }
+    }
+
+    /**
+     * Writes the results still queued and closes the destination unless it is the standard output.
+     *
+     * @throws IOException If the results could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            writer.flush();
+        } finally {
+            if (closeWriter) {
+                writer.close();
+            }
+        }
+
+        LOGGER.debug("{} results written", written);
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Main loop of the writer thread.
+     */
+    private void drain() {
+        final List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        final StringBuilder sb = new StringBuilder(4096);
+
+        if (format == Format.CSV) {
+            try {
+                writer.write(CSV_HEADER + "\n");
+                writer.flush();
+            } catch (IOException ex) {
+                LOGGER.error("Could not write results: {}", ex.getMessage());
+                failure = ex;
+            }
+        }
+
+        while (true) {
+            try {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed && queue.isEmpty()) {
+                        break;
+                    }
+
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+            } catch (InterruptedException ex) {
+                break;
+            }
+
+            for (Entry entry : batch) {
+                if (format == Format.CSV) {
+                    appendCsv(sb, entry);
+                } else {
+                    appendJson(sb, entry);
+                }
+            }
+
+            written += batch.size();
+            batch.clear();
+
+            // The queue is drained even after an error, so callers are never blocked
+            if (failure == null) {
+                try {
+                    writer.append(sb);
+                    writer.flush();
+                } catch (IOException ex) {
+                    LOGGER.error("Could not write results: {}", ex.getMessage());
+                    failure = ex;
+                }
+            }
+
+            sb.setLength(0);
+        }
+    }
+
+    /**
+     * Formats a single result as NDJSON record.
+     *
+     * @param result Result to format
+     * @param time   Time of the result
+     * @return JSON object terminated by a line feed
+     */
+    static String toJson(final CheckResult result, final Instant time) {
+        StringBuilder sb = new StringBuilder(512);
+        appendJson(sb, new Entry(result, time));
+        return sb.toString();
+    }
+
+    private static void appendJson(final StringBuilder sb, final Entry entry) {
+        final CheckResult result = entry.result();
+        final Target target = result.target();
+
+        sb.append("{\"time\":");
+        JsonUtils.appendString(sb, entry.time().toString());
+        sb.append(",\"target\":");
+        JsonUtils.appendString(sb, target.url());
+        sb.append(",\"host\":");
+        JsonUtils.appendString(sb, target.host());
+        sb.append(",\"port\":").append(target.port());
+        sb.append(",\"success\":").append(result.success());
+        sb.append(",\"message\":");
+        JsonUtils.appendString(sb, result.message());
+        sb.append(",\"durationMs\":").append(millis(result.duration()));
+
+        final PhaseTimings timings = result.timings();
+        if (timings != null) {
+            sb.append(",\"timings\":{");
+            boolean first = true;
+            for (Phase phase : Phase.values()) {
+                if (timings.isRecorded(phase)) {
+                    sb.append(first ? "" : ",").append('"').append(phase.getLabel()).append("Ms\":")
+                            .append(millis(timings.get(phase)));
+                    first = false;
+                }
+            }
+            sb.append('}');
+        }
+
+        final TlsSessionInfo session = result.session();
+        if (session != null) {
+            sb.append(",\"protocol\":");
+            JsonUtils.appendString(sb, session.protocol());
+            sb.append(",\"cipherSuite\":");
+            JsonUtils.appendString(sb, session.cipherSuite());
+            sb.append(",\"chain\":[");
+
+            boolean first = true;
+            for (X509Certificate certificate : session.peerCertificates()) {
+                sb.append(first ? "{" : ",{").append("\"subject\":");
+                JsonUtils.appendString(sb, certificate.getSubjectX500Principal().getName());
+                sb.append(",\"sha256\":");
+                JsonUtils.appendString(sb, fingerprint(certificate));
+                sb.append(",\"notAfter\":");
+                JsonUtils.appendString(sb, certificate.getNotAfter().toInstant().toString());
+                sb.append('}');
+                first = false;
+            }
+
+            sb.append(']');
+        }
+
+        final TlsSupport support = result.support();
+        if (support != null) {
+            sb.append(",\"support\":{\"complete\":").append(support.complete())
+                    .append(",\"attempts\":").append(support.attempts())
+                    .append(",\"accepted\":{");
+
+            boolean first = true;
+            for (Map.Entry<String, List<String>> protocol : support.accepted().entrySet()) {
+                sb.append(first ? "" : ",");
+                JsonUtils.appendString(sb, protocol.getKey());
+                sb.append(':');
+                appendJsonArray(sb, protocol.getValue());
+                first = false;
+            }
+
+            sb.append("},\"rejected\":");
+            appendJsonArray(sb, support.rejected());
+            sb.append(",\"untested\":");
+            appendJsonArray(sb, support.untested());
+            sb.append('}');
+        }
+
+        final TlsResumption resumption = result.resumption();
+        if (resumption != null) {
+            sb.append(",\"resumption\":{\"attempts\":").append(resumption.attempts())
+                    .append(",\"resumed\":").append(resumption.resumed())
+                    .append(",\"fullMs\":").append(millis(resumption.fullHandshake()));
+            appendOptionalMillis(sb, "fullCpuMs", resumption.fullCpu());
+            appendOptionalMillis(sb, "resumedMs", resumption.resumedHandshake());
+            appendOptionalMillis(sb, "resumedCpuMs", resumption.resumedCpu());
+            sb.append('}');
+        }
+
+        sb.append("}\n");
+    }
+
+    private static void appendOptionalMillis(final StringBuilder sb, final String name, final long nanos) {
+        if (nanos >= 0) {
+            sb.append(",\"").append(name).append("\":").append(millis(nanos));
+        }
+    }
+
+    private static void appendJsonArray(final StringBuilder sb, final List<String> values) {
+        sb.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            sb.append(i == 0 ? "" : ",");
+            JsonUtils.appendString(sb, values.get(i));
+        }
+        sb.append(']');
+    }
+
+    private static void appendCsv(final StringBuilder sb, final Entry entry) {
+        final CheckResult result = entry.result();
+        final Target target = result.target();
+
+        sb.append(entry.time()).append(',');
+        appendCsvValue(sb, target.url());
+        sb.append(',');
+        appendCsvValue(sb, target.host());
+        sb.append(',').append(target.port());
+        sb.append(',').append(result.success()).append(',');
+        appendCsvValue(sb, result.message());
+        sb.append(',').append(millis(result.duration()));
+
+        final PhaseTimings timings = result.timings();
+        for (Phase phase : Phase.values()) {
+            sb.append(',');
+            if (timings != null && timings.isRecorded(phase)) {
+                sb.append(millis(timings.get(phase)));
+            }
+        }
+
+        final TlsSessionInfo session = result.session();
+        if (session == null) {
+            sb.append(",,,,,\n");
+            return;
+        }
+
+        sb.append(',').append(session.protocol()).append(',').append(session.cipherSuite()).append(',');
+
+        final X509Certificate leaf = session.peerCertificate();
+        if (leaf != null) {
+            sb.append(leaf.getNotAfter().toInstant());
+        }
+
+        // Multiple certificates are separated by spaces, so no quoting is needed
+        StringBuilder fingerprints = new StringBuilder();
+        StringBuilder expiries = new StringBuilder();
+        for (X509Certificate certificate : session.peerCertificates()) {
+            if (fingerprints.length() > 0) {
+                fingerprints.append(' ');
+                expiries.append(' ');
+            }
+
+            fingerprints.append(fingerprint(certificate));
+            expiries.append(certificate.getNotAfter().toInstant());
+        }
+
+        sb.append(',').append(fingerprints).append(',').append(expiries).append('\n');
+    }
+
+    private static String fingerprint(final X509Certificate certificate) {
+        try {
+            return CertificateUtils.fingerprint(certificate.getEncoded());
+        } catch (CertificateEncodingException ex) {
+            return "";
+        }
+    }
+
+    private static String millis(final long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    /**
+     * Appends the specified value as CSV field, quoted only if necessary. Null is appended as empty field.
+     *
+     * @param sb    Destination
+     * @param value Value or null
+     */
+    static void appendCsvValue(final StringBuilder sb, final String value) {
+        if (value == null) {
+            return;
+        }
+
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            sb.append(value);
+            return;
+        }
+
+        sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
@@ -0,0 +1,51 @@
+package dev.svero.sslchecker;
+
+import dev.svero.tools.HandshakeUtils;
+import dev.svero.tools.TlsResumption;
+import dev.svero.tools.metrics.PhaseTimings;
+
+import java.util.Objects;
+
+/**
+ * Checks a target by performing a full TLS handshake followed by a number of handshakes which should
+ * resume the session. The check succeeds if every one of them resumed the session. Checks of the same
+ * endpoint should not run at the same time, because they share the session cache.
+ *
+ * @author Sven Roeseler
+ */
+public class ResumptionTargetChecker implements TargetChecker {
+    private final HandshakeUtils handshakeUtils;
+    private final int resumptions;
+
+    /**
+     * Creates a new instance using the specified instance of HandshakeUtils.
+     *
+     * @param handshakeUtils Instance of HandshakeUtils
+     * @param resumptions    Number of handshakes after the full handshake
+     */
+    public ResumptionTargetChecker(final HandshakeUtils handshakeUtils, final int resumptions) {
+        Objects.requireNonNull(handshakeUtils);
+
+        if (resumptions < 1) {
+            throw new IllegalArgumentException("resumptions must be greater than zero");
+        }
+
+        this.handshakeUtils = handshakeUtils;
+        this.resumptions = resumptions;
+    }
+
+    @Override
+    public CheckResult check(final Target target) {
+        final long start = System.nanoTime();
+        final PhaseTimings timings = new PhaseTimings();
+
+        try {
+            TlsResumption resumption = handshakeUtils.measureResumption(target.host(), target.port(), resumptions,
+                    timings);
+            return new CheckResult(target, resumption.isWorking(), resumption.summary(), System.nanoTime() - start,
+                    resumption.session(), timings, null, resumption, -1, null);
+        } catch (Exception ex) {
+            return CheckResult.failure(target, ex, System.nanoTime() - start).withTimings(timings);
+        }
+    }
+}
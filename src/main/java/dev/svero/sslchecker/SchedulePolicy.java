@@ -0,0 +1,126 @@
+package dev.svero.sslchecker;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Calculates the interval until the next check of a target from the result of the last check.
+ * <ul>
+ *     <li>After a failure the target is checked again after the minimum interval. The interval doubles
+ *     with every further failure, but stays below 16 times the minimum interval.</li>
+ *     <li>After a success the interval doubles until the maximum interval is reached, so stable
+ *     targets are checked less often.</li>
+ *     <li>The interval never exceeds a tenth of the remaining validity of the peer certificate. The
+ *     closer the certificate gets to its expiry, the more often it is checked.</li>
+ * </ul>
+ * Every interval is varied randomly by up to 10 percent, so targets added at the same time do not
+ * stay synchronized.
+ *
+ * @author Sven Roeseler
+ */
+public class SchedulePolicy {
+    private static final int GROWTH_FACTOR = 2;
+    private static final int MAX_FAILURE_BACKOFF = 16;
+    private static final int CHECKS_BEFORE_EXPIRY = 10;
+    private static final double JITTER = 0.1;
+
+    private final Duration minInterval;
+    private final Duration maxInterval;
+
+    /**
+     * Creates a new policy.
+     *
+     * @param minInterval Shortest interval between two checks of a target
+     * @param maxInterval Longest interval between two checks of a target
+     */
+    public SchedulePolicy(final Duration minInterval, final Duration maxInterval) {
+        Objects.requireNonNull(minInterval);
+        Objects.requireNonNull(maxInterval);
+
+        if (minInterval.isNegative() || minInterval.isZero()) {
+            throw new IllegalArgumentException("minInterval must be positive");
+        }
+
+        if (maxInterval.compareTo(minInterval) < 0) {
+            throw new IllegalArgumentException("maxInterval must not be shorter than minInterval");
+        }
+
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+    }
+
+    /**
+     * Gets the shortest interval between two checks of a target.
+     *
+     * @return Minimum interval
+     */
+    public Duration getMinInterval() {
+        return minInterval;
+    }
+
+    /**
+     * Gets the longest interval between two checks of a target.
+     *
+     * @return Maximum interval
+     */
+    public Duration getMaxInterval() {
+        return maxInterval;
+    }
+
+    /**
+     * Calculates the interval until the next check without jitter.
+     *
+     * @param previous            Interval used before the last check or null for the first check
+     * @param result              Result of the last check
+     * @param consecutiveFailures Number of failed checks in a row including the last check
+     * @param now                 Current time
+     * @return Interval until the next check
+     */
+    public Duration nextInterval(final Duration previous, final CheckResult result, final int consecutiveFailures,
+                                 final Instant now) {
+        Objects.requireNonNull(result);
+        Objects.requireNonNull(now);
+
+        if (!result.success()) {
+            final int doublings = Math.min(Math.max(consecutiveFailures - 1, 0), 30);
+            return clamp(minInterval.multipliedBy(Math.min(MAX_FAILURE_BACKOFF, 1L << doublings)));
+        }
+
+        Duration interval = previous == null ? minInterval : previous.multipliedBy(GROWTH_FACTOR);
+
+        final X509Certificate certificate = result.session() != null ? result.session().peerCertificate() : null;
+        if (certificate != null) {
+            Duration remaining = Duration.between(now, certificate.getNotAfter().toInstant());
+            Duration limit = remaining.dividedBy(CHECKS_BEFORE_EXPIRY);
+            if (limit.compareTo(interval) < 0) {
+                interval = limit;
+            }
+        }
+
+        return clamp(interval);
+    }
+
+    /**
+     * Varies the specified interval randomly by up to 10 percent.
+     *
+     * @param interval Interval
+     * @return Interval with jitter, at least one millisecond
+     */
+    public Duration withJitter(final Duration interval) {
+        Objects.requireNonNull(interval);
+
+        final double factor = 1 + ThreadLocalRandom.current().nextDouble(-JITTER, JITTER);
+        return Duration.ofMillis(Math.max(1, (long) (interval.toMillis() * factor)));
+    }
+
+    private Duration clamp(final Duration interval) {
+        if (interval.compareTo(minInterval) < 0) {
+            return minInterval;
+        }
+
+        return interval.compareTo(maxInterval) > 0 ? maxInterval : interval;
+    }
+}
@@ -0,0 +1,366 @@
+package dev.svero.sslchecker;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent store for the last known state of every endpoint. The store is an append-only log: every
+ * update appends a record with the complete state and a CRC-32 checksum. When the store is opened, the
+ * log is read through a memory mapping and the latest state of every target is kept in an in-memory
+ * index. A record which was only partially written (e.g. because the process was killed) is cut off.
+ * <p>
+ * The log grows with every update. It is compacted (rewritten with only the latest states) when it
+ * contains more than twice as many records as targets, and by {@link #retain(Collection)}, which also
+ * drops targets which are no longer checked.
+ * <p>
+ * A chain is only known (see {@link #isKnownChain(String, String, String)}) for the trust configuration
+ * it was validated with.
+ * <p>
+ * All methods are thread-safe.
+ *
+ * @author Sven Roeseler
+ */
+public class StateStore implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StateStore.class);
+
+    private static final int MAGIC = 0x53535354;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    private static final int MIN_RECORDS_FOR_COMPACTION = 1024;
+
+    private final Path file;
+    private final Map<String, EndpointState> states = new HashMap<>();
+    private final Set<String> knownChains = new HashSet<>();
+
+    private FileChannel channel;
+    private long records;
+
+    private StateStore(final Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the store in the specified file. The file is created if it does not exist.
+     *
+     * @param file Log file
+     * @return Opened store
+     * @throws IOException If the file could not be read or created
+     */
+    public static StateStore open(final Path file) throws IOException {
+        Objects.requireNonNull(file);
+
+        StateStore store = new StateStore(file);
+        store.load();
+        return store;
+    }
+
+    /**
+     * Gets the last known state of the specified target.
+     *
+     * @param target URL of the target
+     * @return State or null if the target is unknown
+     */
+    public synchronized EndpointState get(final String target) {
+        return states.get(target);
+    }
+
+    /**
+     * Checks if the chain with the specified fingerprint has been validated successfully for the
+     * specified endpoint under the specified trust configuration by a previous check.
+     *
+     * @param endpoint    Host and port (host:port)
+     * @param trust       Fingerprint of the trust configuration
+     * @param fingerprint SHA-256 fingerprint of the chain
+     * @return True if the chain is known
+     */
+    public synchronized boolean isKnownChain(final String endpoint, final String trust, final String fingerprint) {
+        return knownChains.contains(knownChainKey(endpoint, trust, fingerprint));
+    }
+
+    /**
+     * Stores the specified state. The record is appended to the log immediately, but the log is not
+     * forced to the disk.
+     *
+     * @param state State of a target
+     */
+    public synchronized void put(final EndpointState state) {
+        Objects.requireNonNull(state);
+
+        ensureOpen();
+
+        try {
+            append(channel, state);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not write state of " + state.target() + " to " + file, ex);
+        }
+
+        index(state);
+        records++;
+
+        if (records > MIN_RECORDS_FOR_COMPACTION && records > 2L * states.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Drops the states of all targets not contained in the specified collection and compacts the log.
+     *
+     * @param targets URLs of the targets to keep
+     */
+    public synchronized void retain(final Collection<String> targets) {
+        Objects.requireNonNull(targets);
+
+        Set<String> keep = new HashSet<>(targets);
+        int before = states.size();
+        states.keySet().retainAll(keep);
+
+        knownChains.clear();
+        states.values().forEach(this::index);
+
+        if (states.size() != before) {
+            LOGGER.debug("Dropping {} targets which are no longer checked", before - states.size());
+        }
+
+        if (records != states.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Gets the number of targets in the store.
+     *
+     * @return Number of targets
+     */
+    public synchronized int size() {
+        return states.size();
+    }
+
+    /**
+     * Forces all records to the disk and closes the log.
+     *
+     * @throws IOException If the log could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void ensureOpen() {
+        if (channel == null) {
+            throw new IllegalStateException("The state store has been closed");
+        }
+    }
+
+    private void index(final EndpointState state) {
+        states.put(state.target(), state);
+        if (state.success() && state.fingerprint() != null && state.trust() != null) {
+            knownChains.add(knownChainKey(state.endpoint(), state.trust(), state.fingerprint()));
+        }
+    }
+
+    private static String knownChainKey(final String endpoint, final String trust, final String fingerprint) {
+        return endpoint + '|' + trust + '|' + fingerprint;
+    }
+
+    /**
+     * Reads the log and cuts off a partially written record at its end.
+     */
+    private void load() throws IOException {
+        final long start = System.nanoTime();
+
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        final long size = channel.size();
+        if (size == 0) {
+            writeHeader(channel);
+            return;
+        }
+
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("State store " + file + " is too large");
+        }
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        if (size < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            channel.close();
+            throw new IOException(file + " is not a state store");
+        }
+
+        long valid = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            final int length = buffer.getInt();
+            final int checksum = buffer.getInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE || length > buffer.remaining()) {
+                break;
+            }
+
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            try {
+                index(decode(payload));
+            } catch (BufferUnderflowException | IllegalArgumentException ex) {
+                break;
+            }
+
+            buffer.position(buffer.position() + length);
+            valid = buffer.position();
+            records++;
+        }
+
+        if (valid < size) {
+            LOGGER.warn("Ignoring {} bytes of an incomplete record at the end of {}", size - valid, file);
+            channel.truncate(valid);
+        }
+
+        channel.position(valid);
+
+        LOGGER.debug("Loaded {} endpoint states ({} records) from {} in {} ms", states.size(), records, file,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Rewrites the log with the latest state of every target.
+     */
+    private void compact() {
+        final long before = records;
+        Path temporary = null;
+
+        try {
+            temporary = Files.createTempFile(file.toAbsolutePath().getParent(), "state", ".tmp");
+
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                writeHeader(out);
+                for (EndpointState state : states.values()) {
+                    append(out, state);
+                }
+                out.force(false);
+            }
+
+            channel.close();
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+            records = states.size();
+
+            LOGGER.debug("Compacted {} from {} to {} records", file, before, records);
+        } catch (IOException ex) {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // Nothing to do
+                }
+            }
+
+            throw new RuntimeException("Could not compact state store " + file, ex);
+        }
+    }
+
+    private static void writeHeader(final FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+    }
+
+    private static void append(final FileChannel out, final EndpointState state) throws IOException {
+        byte[] payload = encode(state);
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .flip();
+
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static byte[] encode(final EndpointState state) {
+        List<byte[]> strings = new ArrayList<>();
+        int size = Long.BYTES * 2 + 1;
+
+        for (String value : new String[]{state.target(), state.endpoint(), state.fingerprint(), state.protocol(),
+                state.cipherSuite(), state.message(), state.trust()}) {
+            byte[] encoded = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+            strings.add(encoded);
+            size += Integer.BYTES + (encoded == null ? 0 : encoded.length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(state.checkedAt());
+        buffer.put((byte) (state.success() ? 1 : 0));
+        buffer.putLong(state.notAfter());
+
+        for (byte[] encoded : strings) {
+            buffer.putInt(encoded == null ? -1 : encoded.length);
+            if (encoded != null) {
+                buffer.put(encoded);
+            }
+        }
+
+        return buffer.array();
+    }
+
+    private static EndpointState decode(final ByteBuffer buffer) {
+        final long checkedAt = buffer.getLong();
+        final boolean success = buffer.get() != 0;
+        final long notAfter = buffer.getLong();
+
+        String[] values = new String[7];
+        for (int i = 0; i < values.length; i++) {
+            int length = buffer.getInt();
+            if (length > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid string length " + length);
+            }
+
+            if (length >= 0) {
+                byte[] encoded = new byte[length];
+                buffer.get(encoded);
+                values[i] = new String(encoded, StandardCharsets.UTF_8);
+            }
+        }
+
+        return new EndpointState(values[0], values[1], checkedAt, success, values[2],
+                values[6], values[3], values[4], notAfter, values[5]);
+    }
+}
@@ -0,0 +1,119 @@
+package dev.svero.sslchecker;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.net.URI;
+
+/**
+ * Describes a single endpoint which should be checked.
+ *
+ * @param url  URL used for HTTP based checks
+ * @param host Host name of the endpoint
+ * @param port Port of the endpoint
+ * @author Sven Roeseler
+ */
+public record Target(String url, String host, int port) {
+    private static final int DEFAULT_PORT = 443;
+
+    /**
+     * Parses a line of a targets file. A line may either contain a URL (https://host:port/path) or
+     * a host name with an optional port (host or host:port). IPv6 literals are given either bare (::1) or
+     * in brackets with an optional port ([::1] or [::1]:8443).
+     *
+     * @param line Line to parse
+     * @return Parsed target
+     */
+    public static Target parse(final String line) {
+        if (StringUtils.isBlank(line)) {
+            throw new IllegalArgumentException("line may not be blank");
+        }
+
+        final String value = line.strip();
+
+        if (value.contains("://")) {
+            URI uri = URI.create(value);
+            if (StringUtils.isBlank(uri.getHost())) {
+                throw new IllegalArgumentException("The URL \"" + value + "\" does not contain a host");
+            }
+
+            int port = uri.getPort() >= 0 ? checkPort(uri.getPort(), value) : DEFAULT_PORT;
+            return new Target(value, stripBrackets(uri.getHost()), port);
+        }
+
+        String host = value;
+        int port = DEFAULT_PORT;
+        String portValue = null;
+
+        if (value.startsWith("[")) {
+            // Bracketed IPv6 literal: [addr] or [addr]:port
+            int closing = value.indexOf(']');
+            if (closing < 0) {
+                throw new IllegalArgumentException("Missing closing bracket in \"" + value + "\"");
+            }
+            host = value.substring(1, closing);
+            String rest = value.substring(closing + 1);
+            if (!rest.isEmpty()) {
+                if (rest.charAt(0) != ':') {
+                    throw new IllegalArgumentException("Invalid target \"" + value + "\"");
+                }
+                portValue = rest.substring(1);
+            }
+        } else {
+            // A single colon separates host and port, more than one marks a bare IPv6 literal
+            int separator = value.lastIndexOf(':');
+            if (separator > 0 && value.indexOf(':') == separator) {
+                host = value.substring(0, separator);
+                portValue = value.substring(separator + 1);
+            }
+        }
+
+        if (StringUtils.isBlank(host)) {
+            throw new IllegalArgumentException("The target \"" + value + "\" does not contain a host");
+        }
+
+        if (portValue != null) {
+            try {
+                port = checkPort(Integer.parseInt(portValue), value);
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Invalid port in \"" + value + "\"", ex);
+            }
+        }
+
+        String authority = host.indexOf(':') >= 0 ? "[" + host + "]" : host;
+        String url = port == DEFAULT_PORT ? "https://" + authority + "/" : "https://" + authority + ":" + port + "/";
+        return new Target(url, host, port);
+    }
+
+    /**
+     * Checks that the specified port is in the range of TCP ports.
+     *
+     * @param port  Parsed port
+     * @param value Parsed target (only used for the message)
+     * @return Port
+     */
+    private static int checkPort(final int port, final String value) {
+        if (port < 1 || port > 65535) {
+            throw new IllegalArgumentException("Invalid port in \"" + value + "\"");
+        }
+        return port;
+    }
+
+    /**
+     * Removes the brackets URI adds around IPv6 literals, so the host can be passed on to socket
+     * resolution.
+     *
+     * @param host Host as returned by {@link URI#getHost()}
+     * @return Host without enclosing brackets
+     */
+    private static String stripBrackets(final String host) {
+        if (host.length() > 1 && host.charAt(0) == '[' && host.charAt(host.length() - 1) == ']') {
+            return host.substring(1, host.length() - 1);
+        }
+        return host;
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
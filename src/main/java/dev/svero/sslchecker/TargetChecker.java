@@ -0,0 +1,34 @@
+package dev.svero.sslchecker;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Defines a check which can be performed for a single target.
+ *
+ * @author Sven Roeseler
+ */
+@FunctionalInterface
+public interface TargetChecker {
+    /**
+     * Checks the specified target. Implementations should not throw exceptions but report errors
+     * using the returned result.
+     *
+     * @param target Target to check
+     * @return Result of the check
+     */
+    CheckResult check(Target target);
+
+    /**
+     * Checks the specified target asynchronously. The default implementation runs {@link #check(Target)}
+     * using the specified executor. Checks based on non-blocking I/O override this method and do not
+     * need a thread per check.
+     *
+     * @param target   Target to check
+     * @param executor Executor for blocking checks
+     * @return Future which is completed with the result of the check
+     */
+    default CompletableFuture<CheckResult> checkAsync(final Target target, final Executor executor) {
+        return CompletableFuture.supplyAsync(() -> check(target), executor);
+    }
+}
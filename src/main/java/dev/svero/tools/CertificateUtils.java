@@ -1,16 +1,23 @@
 package dev.svero.tools;
 
+import dev.svero.tools.jfr.CertificateImportEvent;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
 import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Implements methods for handling X.509 certificates.
@@ -20,6 +27,14 @@ import java.util.*;
 public class CertificateUtils {
     private static final Logger LOGGER = LoggerFactory.getLogger(CertificateUtils.class);
 
+    private static final ThreadLocal<CertificateFactory> FACTORY = ThreadLocal.withInitial(() -> {
+        try {
+            return CertificateFactory.getInstance("X.509");
+        } catch (CertificateException ex) {
+            throw new IllegalStateException("No certificate factory for X.509 available", ex);
+        }
+    });
+
     /**
      * Reads one or more X.509 certificates from the specified PEM file.
      *
@@ -27,6 +42,99 @@ public class CertificateUtils {
      * @return Array with found certificates
      */
     public X509Certificate[] importCertificates(Path certificatesFile) {
+        return importCertificates(certificatesFile, false);
+    }
+
+    /**
+     * Reads one or more X.509 certificates from the specified PEM file. Optionally the certificates are
+     * decoded in parallel. The order of the certificates is retained in both cases.
+     *
+     * @param certificatesFile File with certificates in PEM format
+     * @param parallel         True if the certificates should be decoded using all available cores
+     * @return Array with found certificates
+     */
+    public X509Certificate[] importCertificates(Path certificatesFile, boolean parallel) {
+        try (Stream<X509Certificate> certificates = streamCertificates(certificatesFile, parallel)) {
+            return certificates.toArray(X509Certificate[]::new);
+        }
+    }
+
+    /**
+     * Returns a lazily populated stream of the X.509 certificates in the specified PEM file. The file
+     * is read while the stream is consumed, so only the certificates still referenced by the caller
+     * are kept in memory. The stream has to be closed to release the file.
+     *
+     * @param certificatesFile File with certificates in PEM format
+     * @return Stream of certificates
+     */
+    public Stream<X509Certificate> streamCertificates(Path certificatesFile) {
+        return streamCertificates(certificatesFile, false);
+    }
+
+    /**
+     * Returns a lazily populated stream of the X.509 certificates in the specified PEM file. If parallel
+     * is set, the PEM file is still scanned sequentially but the certificates are decoded in parallel.
+     * The stream has to be closed to release the file.
+     *
+     * @param certificatesFile File with certificates in PEM format
+     * @param parallel         True if the certificates should be decoded using all available cores
+     * @return Stream of certificates
+     */
+    public Stream<X509Certificate> streamCertificates(Path certificatesFile, boolean parallel) {
+        Stream<byte[]> encoded = streamEncodedCertificates(certificatesFile, parallel);
+
+        if (parallel) {
+            encoded = encoded.parallel();
+        }
+
+        return encoded.map(this::decodeCertificate).filter(Objects::nonNull);
+    }
+
+    /**
+     * Returns a lazily populated stream of the X.509 certificates in the specified PEM content, which the
+     * caller has already read from the specified file. If parallel is set, the content is still scanned
+     * sequentially but the certificates are decoded in parallel.
+     *
+     * @param certificatesFile File the content has been read from
+     * @param content          Content of the file
+     * @param parallel         True if the certificates should be decoded using all available cores
+     * @return Stream of certificates
+     */
+    public Stream<X509Certificate> streamCertificates(Path certificatesFile, byte[] content, boolean parallel) {
+        Objects.requireNonNull(certificatesFile);
+        Objects.requireNonNull(content);
+
+        LOGGER.debug("Try to load X.509 certificates from the content of {}", certificatesFile);
+
+        Stream<byte[]> encoded = streamEncodedCertificates(certificatesFile, new PemReader(content), parallel);
+
+        if (parallel) {
+            encoded = encoded.parallel();
+        }
+
+        return encoded.map(this::decodeCertificate).filter(Objects::nonNull);
+    }
+
+    /**
+     * Returns a lazily populated stream of the DER encodings of the certificates in the specified PEM
+     * file. The stream has to be closed to release the file.
+     *
+     * @param certificatesFile File with certificates in PEM format
+     * @return Stream of DER encoded certificates
+     */
+    public Stream<byte[]> streamEncodedCertificates(Path certificatesFile) {
+        return streamEncodedCertificates(certificatesFile, false);
+    }
+
+    /**
+     * Returns a lazily populated stream of the DER encodings of the certificates in the specified PEM
+     * file. A JFR event for the import is committed when the stream is closed.
+     *
+     * @param certificatesFile File with certificates in PEM format
+     * @param parallel         True if the certificates are decoded in parallel (only recorded in the event)
+     * @return Stream of DER encoded certificates
+     */
+    private Stream<byte[]> streamEncodedCertificates(Path certificatesFile, boolean parallel) {
         Objects.requireNonNull(certificatesFile);
 
         if (!Files.exists(certificatesFile)) {
@@ -35,42 +143,151 @@ public class CertificateUtils {
 
         LOGGER.debug("Try to load X.509 certificates from {}", certificatesFile);
 
-        List<X509Certificate> certificates = new ArrayList<>();
+        final PemReader reader;
+        try {
+            reader = new PemReader(certificatesFile);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return streamEncodedCertificates(certificatesFile, reader, parallel);
+    }
+
+    /**
+     * Returns a lazily populated stream of the DER encodings found by the specified reader. A JFR event
+     * for the import is committed when the stream is closed.
+     *
+     * @param certificatesFile File with certificates in PEM format (only recorded in the event)
+     * @param reader           Reader for the content of the file
+     * @param parallel         True if the certificates are decoded in parallel (only recorded in the event)
+     * @return Stream of DER encoded certificates
+     */
+    private Stream<byte[]> streamEncodedCertificates(Path certificatesFile, PemReader reader, boolean parallel) {
+        final CertificateImportEvent event = new CertificateImportEvent();
+        event.begin();
+
+        final PemIterator iterator = new PemIterator(reader);
+
+        Spliterator<byte[]> spliterator = Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                if (event.shouldCommit()) {
+                    event.path = certificatesFile.toString();
+                    event.certificates = iterator.count;
+                    event.bytesRead = reader.getBytesRead();
+                    event.parallel = parallel;
+                    event.commit();
+                }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(certificatesFile.toFile()))) {
-            String line = reader.readLine();
-            while (line != null && !line.contains("BEGIN CERTIFICATE")) {
-                line = reader.readLine();
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
+        });
+    }
+
+    /**
+     * Iterates over the DER encodings found by a PEM reader and counts them.
+     */
+    private static class PemIterator implements Iterator<byte[]> {
+        private final PemReader reader;
+        private int count;
+
+        PemIterator(final PemReader reader) {
+            this.reader = reader;
+        }
 
-            if (line == null || !line.contains("BEGIN CERTIFICATE")) {
+        @Override
+        public boolean hasNext() {
+            boolean result = reader.hasNext();
+
+            if (!result && !reader.isBeginFound()) {
                 throw new RuntimeException("The specified file does not contain a valid certificate in PEM format");
             }
 
-            final CertificateFactory factory = CertificateFactory.getInstance("X.509");
+            return result;
+        }
 
-            StringBuilder sb = new StringBuilder();
-            while (line != null) {
-                if (line.contains("END CERTIFICATE")) {
-                    String hexString = sb.toString();
-                    final byte[] bytes = Base64.getDecoder().decode(hexString);
+        @Override
+        public byte[] next() {
+            byte[] encoded = reader.next();
+            count++;
+            return encoded;
+        }
+    }
 
-                    Certificate certificate = factory.generateCertificate(new ByteArrayInputStream(bytes));
-                    if (certificate instanceof X509Certificate x509Certificate) {
-                        certificates.add(x509Certificate);
-                    }
+    /**
+     * Decodes the specified DER encoded certificate. This method may be called from several threads
+     * at the same time.
+     *
+     * @param encoded DER encoded certificate
+     * @return Decoded certificate or null if the data is no X.509 certificate
+     */
+    public X509Certificate decodeCertificate(byte[] encoded) {
+        Objects.requireNonNull(encoded);
 
-                    sb = new StringBuilder();
-                } else if (!line.startsWith("----")) {
-                    sb.append(line);
-                }
+        return decodeCertificate(encoded, 0, encoded.length);
+    }
+
+    /**
+     * Decodes a DER encoded certificate stored in the specified range of a byte array. This method may
+     * be called from several threads at the same time.
+     *
+     * @param data   Array with the encoded certificate
+     * @param offset Offset of the certificate
+     * @param length Length of the certificate
+     * @return Decoded certificate or null if the data is no X.509 certificate
+     */
+    public X509Certificate decodeCertificate(byte[] data, int offset, int length) {
+        Objects.requireNonNull(data);
 
-                line = reader.readLine();
+        try {
+            Certificate certificate = FACTORY.get().generateCertificate(
+                    new ByteArrayInputStream(data, offset, length));
+            if (certificate instanceof X509Certificate x509Certificate) {
+                return x509Certificate;
             }
-        } catch (IOException | CertificateException e) {
+        } catch (CertificateException e) {
             throw new RuntimeException(e);
         }
 
-        return certificates.toArray(new X509Certificate[0]);
+        return null;
+    }
+
+    /**
+     * Calculates the SHA-256 fingerprint of the specified DER encoded certificate.
+     *
+     * @param encoded DER encoded certificate
+     * @return Fingerprint as lower-case hex string
+     */
+    public static String fingerprint(byte[] encoded) {
+        Objects.requireNonNull(encoded);
+
+        return DigestUtils.sha256Hex(encoded);
+    }
+
+    /**
+     * Calculates the SHA-256 fingerprint of a certificate chain. The fingerprint covers the DER encodings
+     * of all certificates in the given order, so it changes if any certificate of the chain changes.
+     *
+     * @param chain Certificate chain
+     * @return Fingerprint as lower-case hex string
+     */
+    public static String chainFingerprint(Collection<? extends X509Certificate> chain) {
+        Objects.requireNonNull(chain);
+
+        MessageDigest digest = DigestUtils.getSha256Digest();
+
+        try {
+            for (X509Certificate certificate : chain) {
+                digest.update(certificate.getEncoded());
+            }
+        } catch (CertificateEncodingException ex) {
+            throw new IllegalArgumentException("Could not encode certificate", ex);
+        }
+
+        return Hex.encodeHexString(digest.digest());
     }
 }
@@ -0,0 +1,416 @@
+package dev.svero.tools;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Determines the protocol versions and cipher suites a server accepts. The candidates are the protocols and
+ * cipher suites supported by the configured SSL context. Every protocol is enumerated independently and in
+ * parallel: the first handshake offers all cipher suites applicable to the protocol. If the server rejects
+ * it, the protocol is not supported and none of its suites is tried. Otherwise the selected suite is removed
+ * from the offer and the handshake is repeated until the server rejects the remaining suites. A server
+ * accepting n suites of a protocol therefore needs n + 1 handshakes for that protocol.
+ * <p>
+ * The time of an enumeration is bounded: every handshake has a connect and a handshake timeout, the whole
+ * enumeration of a host is given up after the maximum duration (the result is marked incomplete) and all
+ * protocols are given up as soon as the host is found to be unreachable.
+ * <p>
+ * The certificate chain of the server is not validated, so protocols and suites are also enumerated for
+ * servers whose certificates are not trusted. Servers which require a client certificate are only
+ * enumerated correctly if the key managers of the client identity are specified.
+ *
+ * @author Sven Roeseler
+ */
+public class CipherSuiteScanner {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CipherSuiteScanner.class);
+
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration DEFAULT_MAX_DURATION = Duration.ofSeconds(60);
+
+    /**
+     * Result of a single handshake attempt.
+     */
+    private enum Outcome {
+        ACCEPTED,
+        REJECTED,
+        DISABLED_LOCALLY
+    }
+
+    private record Attempt(Outcome outcome, String cipherSuite) {
+    }
+
+    /**
+     * State shared by the enumerations of the protocols of one host.
+     */
+    private static final class Scan {
+        private final String host;
+        private final int port;
+        private final long deadline;
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final AtomicReference<IOException> unreachable = new AtomicReference<>();
+
+        private volatile boolean timedOut;
+
+        private Scan(final String host, final int port, final long deadline) {
+            this.host = host;
+            this.port = port;
+            this.deadline = deadline;
+        }
+
+        private boolean isCancelled() {
+            if (unreachable.get() != null) {
+                return true;
+            }
+
+            if (System.nanoTime() - deadline > 0) {
+                timedOut = true;
+                return true;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Result of the enumeration of one protocol.
+     */
+    private record ProtocolResult(String protocol, Outcome outcome, List<String> suites) {
+    }
+
+    private final SSLContext scanContext;
+    private final List<String> protocols;
+    private final Map<String, List<String>> candidates = new LinkedHashMap<>();
+
+    private volatile Duration connectTimeout = DEFAULT_TIMEOUT;
+    private volatile Duration handshakeTimeout = DEFAULT_TIMEOUT;
+    private volatile Duration maxDuration = DEFAULT_MAX_DURATION;
+
+    /**
+     * Creates a new instance which enumerates the protocols and cipher suites supported by the specified
+     * SSL context without presenting a client certificate.
+     *
+     * @param sslContext Configured SSL context
+     */
+    public CipherSuiteScanner(final SSLContext sslContext) {
+        this(sslContext, null);
+    }
+
+    /**
+     * Creates a new instance which enumerates the protocols and cipher suites supported by the specified
+     * SSL context and presents the client certificate of the specified key managers if the server asks
+     * for one.
+     *
+     * @param sslContext  Configured SSL context
+     * @param keyManagers Key managers of the configured context (see {@link SSLUtils#getKeyManagers(SSLContext)})
+     *                    or null to present no client certificate
+     */
+    public CipherSuiteScanner(final SSLContext sslContext, final KeyManager[] keyManagers) {
+        Objects.requireNonNull(sslContext);
+
+        try {
+            // A context of the same provider and client identity, but without validation of the server
+            // certificates
+            scanContext = SSLContext.getInstance(sslContext.getProtocol(), sslContext.getProvider());
+            scanContext.init(keyManagers, new TrustManager[]{new AcceptingTrustManager()}, null);
+
+            // A resumed session would report the suite of an earlier handshake instead of the selected one
+            scanContext.getClientSessionContext().setSessionTimeout(1);
+        } catch (GeneralSecurityException ex) {
+            throw new RuntimeException("Could not create the SSL context for the enumeration", ex);
+        }
+
+        final SSLParameters supported = sslContext.getSupportedSSLParameters();
+        final List<String> suites = Arrays.stream(supported.getCipherSuites())
+                .filter(suite -> !suite.endsWith("_SCSV"))
+                .toList();
+
+        List<String> supportedProtocols = new ArrayList<>();
+        for (String protocol : supported.getProtocols()) {
+            if (!"SSLv2Hello".equals(protocol)) {
+                supportedProtocols.add(protocol);
+            }
+        }
+
+        // Newest protocol first
+        supportedProtocols.sort(Collections.reverseOrder());
+        this.protocols = List.copyOf(supportedProtocols);
+
+        for (String protocol : protocols) {
+            List<String> applicable = suites.stream().filter(suite -> isApplicable(protocol, suite)).toList();
+            candidates.put(protocol, applicable);
+            LOGGER.debug("{} candidate cipher suites for {}", applicable.size(), protocol);
+        }
+    }
+
+    /**
+     * Sets the timeout for establishing the TCP connection of a handshake.
+     *
+     * @param connectTimeout Connect timeout
+     */
+    public void setConnectTimeout(final Duration connectTimeout) {
+        Objects.requireNonNull(connectTimeout);
+
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Sets the timeout for reading the handshake messages of the server.
+     *
+     * @param handshakeTimeout Handshake timeout
+     */
+    public void setHandshakeTimeout(final Duration handshakeTimeout) {
+        Objects.requireNonNull(handshakeTimeout);
+
+        this.handshakeTimeout = handshakeTimeout;
+    }
+
+    /**
+     * Sets the maximum duration of the enumeration of one host. Handshakes are not started after this time
+     * and the result is marked incomplete.
+     *
+     * @param maxDuration Maximum duration
+     */
+    public void setMaxDuration(final Duration maxDuration) {
+        Objects.requireNonNull(maxDuration);
+
+        this.maxDuration = maxDuration;
+    }
+
+    /**
+     * Gets the candidate protocols.
+     *
+     * @return Protocols supported by the configured context, newest first
+     */
+    public List<String> getProtocols() {
+        return protocols;
+    }
+
+    /**
+     * Enumerates the protocols and cipher suites accepted by the specified server. The protocols are
+     * enumerated in parallel using the specified executor, the handshakes of one protocol one after the
+     * other.
+     *
+     * @param host     Host name
+     * @param port     Port
+     * @param executor Executor for the blocking handshakes
+     * @return Future which is completed with the accepted protocols and cipher suites or with an
+     * IOException if the server is not reachable
+     */
+    public CompletableFuture<TlsSupport> scan(final String host, final int port, final Executor executor) {
+        if (StringUtils.isBlank(host)) {
+            throw new IllegalArgumentException("host may not be blank");
+        }
+
+        Objects.requireNonNull(executor);
+
+        final Scan scan = new Scan(host, port, System.nanoTime() + maxDuration.toNanos());
+
+        List<CompletableFuture<ProtocolResult>> futures = new ArrayList<>(protocols.size());
+        for (String protocol : protocols) {
+            futures.add(CompletableFuture.supplyAsync(() -> scanProtocol(scan, protocol), executor));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+            IOException error = scan.unreachable.get();
+            if (error != null) {
+                throw new CompletionException(error);
+            }
+
+            Map<String, List<String>> accepted = new LinkedHashMap<>();
+            List<String> rejected = new ArrayList<>();
+            List<String> untested = new ArrayList<>();
+
+            for (CompletableFuture<ProtocolResult> future : futures) {
+                ProtocolResult result = future.join();
+                if (!result.suites().isEmpty()) {
+                    accepted.put(result.protocol(), result.suites());
+                } else if (result.outcome() == Outcome.DISABLED_LOCALLY) {
+                    untested.add(result.protocol());
+                } else if (result.outcome() == Outcome.REJECTED) {
+                    rejected.add(result.protocol());
+                }
+            }
+
+            TlsSupport support = new TlsSupport(Collections.unmodifiableMap(accepted), List.copyOf(rejected),
+                    List.copyOf(untested), !scan.timedOut, scan.attempts.get());
+            LOGGER.debug("Enumeration of {}:{} finished after {} handshakes: {}", host, port, support.attempts(),
+                    support.summary());
+            return support;
+        });
+    }
+
+    /**
+     * Enumerates the cipher suites of one protocol by repeated handshakes, removing the selected suite
+     * from the offer every time.
+     */
+    private ProtocolResult scanProtocol(final Scan scan, final String protocol) {
+        final List<String> remaining = new ArrayList<>(candidates.get(protocol));
+        final List<String> accepted = new ArrayList<>();
+
+        while (!remaining.isEmpty() && !scan.isCancelled()) {
+            final Attempt attempt;
+            try {
+                attempt = attempt(scan, protocol, remaining);
+            } catch (IOException ex) {
+                // The host is not reachable at all, so the other protocols are given up as well
+                scan.unreachable.compareAndSet(null, ex);
+                break;
+            }
+
+            if (attempt.outcome() != Outcome.ACCEPTED) {
+                return new ProtocolResult(protocol, accepted.isEmpty() ? attempt.outcome() : Outcome.ACCEPTED,
+                        List.copyOf(accepted));
+            }
+
+            if (!remaining.remove(attempt.cipherSuite())) {
+                // The server selected a suite which was not offered - stop instead of looping forever
+                LOGGER.warn("{}:{} selected the cipher suite {} which was not offered", scan.host, scan.port,
+                        attempt.cipherSuite());
+                break;
+            }
+
+            accepted.add(attempt.cipherSuite());
+        }
+
+        return new ProtocolResult(protocol, Outcome.ACCEPTED, List.copyOf(accepted));
+    }
+
+    /**
+     * Performs a single handshake offering only the specified protocol and cipher suites.
+     *
+     * @throws IOException If the TCP connection could not be established
+     */
+    private Attempt attempt(final Scan scan, final String protocol, final List<String> suites) throws IOException {
+        scan.attempts.incrementAndGet();
+
+        final InetAddress address = InetAddress.getByName(scan.host);
+
+        try (Socket plainSocket = new Socket()) {
+            plainSocket.setTcpNoDelay(true);
+            plainSocket.connect(new InetSocketAddress(address, scan.port), (int) connectTimeout.toMillis());
+            plainSocket.setSoTimeout((int) handshakeTimeout.toMillis());
+
+            try (SSLSocket socket = (SSLSocket) scanContext.getSocketFactory()
+                    .createSocket(plainSocket, scan.host, scan.port, false)) {
+                SSLParameters parameters = socket.getSSLParameters();
+                parameters.setProtocols(new String[]{protocol});
+                parameters.setCipherSuites(suites.toArray(new String[0]));
+                socket.setSSLParameters(parameters);
+
+                socket.startHandshake();
+
+                final String suite = socket.getSession().getCipherSuite();
+                LOGGER.trace("{}:{} accepted {} with {}", scan.host, scan.port, protocol, suite);
+                return new Attempt(Outcome.ACCEPTED, suite);
+            } catch (SSLHandshakeException ex) {
+                // Thrown before anything is sent if the protocol is disabled by the local security policy
+                if (ex.getMessage() != null && ex.getMessage().startsWith("No appropriate protocol")) {
+                    return new Attempt(Outcome.DISABLED_LOCALLY, null);
+                }
+
+                LOGGER.trace("{}:{} rejected {}: {}", scan.host, scan.port, protocol, ex.getMessage());
+                return new Attempt(Outcome.REJECTED, null);
+            } catch (IOException ex) {
+                // Servers which do not support the offer often just close the connection or time out
+                LOGGER.trace("{}:{} rejected {}: {}", scan.host, scan.port, protocol, ex.toString());
+                return new Attempt(Outcome.REJECTED, null);
+            }
+        }
+    }
+
+    /**
+     * Checks if the specified cipher suite can be negotiated with the specified protocol.
+     *
+     * @param protocol    Protocol
+     * @param cipherSuite Name of the cipher suite
+     * @return True if the suite is applicable
+     */
+    static boolean isApplicable(final String protocol, final String cipherSuite) {
+        // TLS 1.3 suites do not name the key exchange and authentication
+        final boolean tls13Suite = !cipherSuite.contains("_WITH_");
+
+        switch (protocol) {
+            case "TLSv1.3":
+                return tls13Suite;
+            case "TLSv1.2":
+                return !tls13Suite;
+            default:
+                // AEAD ciphers and SHA-2 based MACs were introduced with TLS 1.2
+                return !tls13Suite && !cipherSuite.contains("_GCM_") && !cipherSuite.contains("_CCM")
+                        && !cipherSuite.contains("CHACHA20") && !cipherSuite.endsWith("_SHA256")
+                        && !cipherSuite.endsWith("_SHA384");
+        }
+    }
+
+    /**
+     * Trust manager which accepts every server, because the enumeration only looks at the negotiated
+     * parameters.
+     */
+    private static final class AcceptingTrustManager extends X509ExtendedTrustManager {
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType, final Socket socket) {
+            // Not used by clients
+        }
+
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType, final Socket socket) {
+            // Every server is accepted
+        }
+
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType,
+                                       final SSLEngine engine) {
+            // Not used by clients
+        }
+
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType,
+                                       final SSLEngine engine) {
+            // Every server is accepted
+        }
+
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType) {
+            // Not used by clients
+        }
+
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType) {
+            // Every server is accepted
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
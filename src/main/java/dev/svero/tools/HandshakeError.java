@@ -0,0 +1,111 @@
+package dev.svero.tools;
+
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.security.cert.CertPathBuilderException;
+import java.security.cert.CertPathValidatorException;
+import java.security.cert.CertificateException;
+
+/**
+ * Classes of errors of a connect followed by a TLS handshake, used to summarize the failures of a load
+ * test.
+ *
+ * @author Sven Roeseler
+ */
+public enum HandshakeError {
+    /**
+     * The host name could not be resolved.
+     */
+    UNKNOWN_HOST,
+    /**
+     * The peer refused the TCP connection.
+     */
+    CONNECT_REFUSED,
+    /**
+     * The TCP connection could not be established within the connect timeout.
+     */
+    CONNECT_TIMEOUT,
+    /**
+     * Other errors while establishing the TCP connection.
+     */
+    CONNECT_FAILED,
+    /**
+     * The peer did not answer within the handshake timeout.
+     */
+    HANDSHAKE_TIMEOUT,
+    /**
+     * The certificate chain of the peer was not accepted.
+     */
+    CERTIFICATE,
+    /**
+     * The peer closed or reset the connection during the handshake.
+     */
+    CONNECTION_CLOSED,
+    /**
+     * The handshake failed for another reason, e.g. an alert of the peer.
+     */
+    HANDSHAKE_FAILED,
+    /**
+     * Other errors.
+     */
+    OTHER;
+
+    /**
+     * Determines the class of the specified error.
+     *
+     * @param ex        Error of the connect or the handshake
+     * @param connected True if the TCP connection had been established when the error occurred
+     * @return Class of the error
+     */
+    public static HandshakeError classify(final Throwable ex, final boolean connected) {
+        if (ex instanceof UnknownHostException) {
+            return UNKNOWN_HOST;
+        }
+
+        if (!connected) {
+            if (ex instanceof ConnectException) {
+                return CONNECT_REFUSED;
+            }
+
+            if (ex instanceof SocketTimeoutException) {
+                return CONNECT_TIMEOUT;
+            }
+
+            return ex instanceof SocketException ? CONNECT_FAILED : OTHER;
+        }
+
+        if (hasCause(ex, CertificateException.class) || hasCause(ex, CertPathValidatorException.class)
+                || hasCause(ex, CertPathBuilderException.class)) {
+            return CERTIFICATE;
+        }
+
+        if (hasCause(ex, SocketTimeoutException.class)) {
+            return HANDSHAKE_TIMEOUT;
+        }
+
+        // JSSE reports a connection closed by the peer as handshake failure caused by an EOFException
+        if (hasCause(ex, EOFException.class) || hasCause(ex, SocketException.class)) {
+            return CONNECTION_CLOSED;
+        }
+
+        return ex instanceof SSLException ? HANDSHAKE_FAILED : OTHER;
+    }
+
+    private static boolean hasCause(final Throwable ex, final Class<? extends Throwable> type) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return true;
+            }
+
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+
+        return false;
+    }
+}
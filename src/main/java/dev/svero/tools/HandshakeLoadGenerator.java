@@ -0,0 +1,344 @@
+package dev.svero.tools;
+
+import dev.svero.tools.metrics.Histogram;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generates a sustained load of new TLS handshakes against a single server to measure its handshake
+ * capacity. Every handshake uses a new TCP connection, which is closed right after the handshake. The
+ * handshakes are performed by a fixed number of connection threads using the SSL context (and therefore
+ * the client identity) of the specified {@link HandshakeUtils}.
+ * <p>
+ * With a target rate, the load is open-loop: handshake n is scheduled at start + n / rate, independent
+ * of how long the previous handshakes took. A thread which becomes free late starts the overdue
+ * handshakes immediately, and their latency is measured from the scheduled start, so a stalling server
+ * shows up in the percentiles instead of silently lowering the rate (coordinated omission). Handshakes
+ * which are still not started when the test ends are counted as missed and recorded with the time they
+ * have waited so far. The latencies of failed handshakes are measured the same way, but kept in a separate
+ * histogram, so fast failures (e.g. refused connections) do not hide the latency of the successful ones.
+ * Without a target rate, every thread starts the next handshake as soon as the previous
+ * one completed (closed loop), which measures the maximum rate for the number of connections.
+ * <p>
+ * Full handshakes invalidate their session, so the following ones cannot resume it. With resumption
+ * enabled, the sessions are kept in the session cache of the SSL context and reused by all threads. TLS 1.3
+ * servers send their session tickets after the handshake, so after every TLS 1.3 handshake the connection
+ * is handed to a ticket reader thread, which keeps it open until the tickets arrived, while the connection
+ * thread goes on with the next handshake. At most one connection per connection thread waits for its
+ * tickets; if all ticket readers are busy, the connection is closed without waiting. Concurrent handshakes
+ * may therefore resume a session before it is invalidated or perform a full handshake before a session is
+ * cached, so the number of resumed handshakes is always counted.
+ *
+ * @author Sven Roeseler
+ */
+public class HandshakeLoadGenerator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HandshakeLoadGenerator.class);
+
+    private static final int PRECISION_BITS = 8;
+
+    private final HandshakeUtils handshakeUtils;
+    private final int connections;
+
+    private volatile double rate;
+    private volatile Duration duration = Duration.ofSeconds(10);
+    private volatile boolean resume;
+
+    /**
+     * State of a single test run shared by the connection threads.
+     */
+    private static final class Run {
+        private final String host;
+        private final int port;
+        private final long start;
+        private final long end;
+        private final double interval;
+        private final long scheduled;
+
+        private final AtomicLong next = new AtomicLong();
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder resumed = new LongAdder();
+        private final LongAdder missed = new LongAdder();
+        private final AtomicLongArray errors = new AtomicLongArray(HandshakeError.values().length);
+        private final Histogram latency = new Histogram(PRECISION_BITS);
+        private final Histogram errorLatency = new Histogram(PRECISION_BITS);
+        private final Histogram serviceTime = new Histogram(PRECISION_BITS);
+        private final Semaphore ticketReaders;
+        private final ExecutorService ticketExecutor;
+
+        private Run(final String host, final int port, final long start, final Duration duration,
+                    final double rate, final int connections, final boolean resume) {
+            this.host = host;
+            this.port = port;
+            this.start = start;
+            this.end = start + duration.toNanos();
+            this.interval = rate > 0 ? 1_000_000_000.0 / rate : 0;
+            this.scheduled = rate > 0 ? (long) Math.ceil(duration.toNanos() / interval) : 0;
+            this.ticketReaders = new Semaphore(connections);
+            this.ticketExecutor = resume ? Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "handshake-tickets");
+                thread.setDaemon(true);
+                return thread;
+            }) : null;
+        }
+
+        private long scheduledStart(final long index) {
+            return start + (long) (index * interval);
+        }
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param handshakeUtils Performs the connects and handshakes
+     * @param connections    Number of concurrent connections
+     */
+    public HandshakeLoadGenerator(final HandshakeUtils handshakeUtils, final int connections) {
+        Objects.requireNonNull(handshakeUtils);
+
+        if (connections < 1) {
+            throw new IllegalArgumentException("connections must be greater than zero");
+        }
+
+        this.handshakeUtils = handshakeUtils;
+        this.connections = connections;
+    }
+
+    /**
+     * Sets the target rate.
+     *
+     * @param rate Handshakes per second or 0 to start every handshake as soon as a connection is free
+     */
+    public void setRate(final double rate) {
+        if (!(rate >= 0) || Double.isInfinite(rate)) {
+            throw new IllegalArgumentException("rate must be a finite number not less than zero");
+        }
+
+        this.rate = rate;
+    }
+
+    /**
+     * Sets the duration of the test. Handshakes in progress at the end are completed.
+     *
+     * @param duration Duration
+     */
+    public void setDuration(final Duration duration) {
+        Objects.requireNonNull(duration);
+
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("duration must be positive");
+        }
+
+        this.duration = duration;
+    }
+
+    /**
+     * Specifies if the handshakes should resume cached sessions instead of performing full handshakes.
+     *
+     * @param resume True for resumed handshakes
+     */
+    public void setResume(final boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Runs the test against the specified server. Blocks until all handshakes have completed.
+     *
+     * @param host Host name
+     * @param port Port
+     * @return Outcome of the test
+     * @throws InterruptedException If the thread has been interrupted while waiting for the test
+     */
+    public HandshakeLoadResult run(final String host, final int port) throws InterruptedException {
+        if (StringUtils.isBlank(host)) {
+            throw new IllegalArgumentException("host may not be blank");
+        }
+
+        final double targetRate = rate;
+        final Run run = new Run(host, port, System.nanoTime(), duration, targetRate, connections, resume);
+
+        List<Thread> threads = new ArrayList<>(connections);
+        for (int i = 1; i <= connections; i++) {
+            Thread thread = new Thread(() -> generate(run), "handshake-load-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+
+        try {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            threads.forEach(Thread::interrupt);
+            if (run.ticketExecutor != null) {
+                // The readers close their connections after the ticket wait
+                run.ticketExecutor.shutdown();
+            }
+        }
+
+        final long stop = System.nanoTime();
+
+        // Scheduled handshakes no thread got to have waited at least until now
+        for (long index = run.next.get(); index < run.scheduled; index++) {
+            run.latency.record((stop - run.scheduledStart(index)) / 1000);
+            run.missed.increment();
+        }
+
+        Map<HandshakeError, Long> errors = new EnumMap<>(HandshakeError.class);
+        for (HandshakeError error : HandshakeError.values()) {
+            if (run.errors.get(error.ordinal()) > 0) {
+                errors.put(error, run.errors.get(error.ordinal()));
+            }
+        }
+
+        LOGGER.debug("Load test of {}:{} completed: {} succeeded, {} failed, {} missed", host, port,
+                run.succeeded.sum(), errors.values().stream().mapToLong(Long::longValue).sum(), run.missed.sum());
+
+        return new HandshakeLoadResult(targetRate, connections, stop - run.start, run.succeeded.sum(),
+                run.resumed.sum(), run.missed.sum(), errors, run.latency, run.errorLatency, run.serviceTime);
+    }
+
+    /**
+     * Loop of a connection thread.
+     */
+    private void generate(final Run run) {
+        while (!Thread.currentThread().isInterrupted()) {
+            final long now = System.nanoTime();
+
+            if (run.interval == 0) {
+                if (now >= run.end) {
+                    return;
+                }
+
+                handshake(run, now);
+                continue;
+            }
+
+            final long index = run.next.getAndIncrement();
+            if (index >= run.scheduled) {
+                return;
+            }
+
+            final long scheduledStart = run.scheduledStart(index);
+            if (now >= run.end) {
+                // Overdue when the test ended; the remaining indexes are recorded after the test
+                run.latency.record((now - scheduledStart) / 1000);
+                run.missed.increment();
+                return;
+            }
+
+            long wait;
+            while ((wait = scheduledStart - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+
+            handshake(run, scheduledStart);
+        }
+    }
+
+    /**
+     * Performs a single handshake and records its outcome.
+     *
+     * @param run            Test run
+     * @param scheduledStart Time the handshake was scheduled for
+     */
+    private void handshake(final Run run, final long scheduledStart) {
+        final long start = System.nanoTime();
+        final long startMillis = System.currentTimeMillis();
+        boolean connected = false;
+        SSLSocket socket = null;
+
+        try {
+            socket = handshakeUtils.connect(run.host, run.port);
+            connected = true;
+            socket.startHandshake();
+            final long end = System.nanoTime();
+
+            run.latency.record((end - scheduledStart) / 1000);
+            run.serviceTime.record((end - start) / 1000);
+            run.succeeded.increment();
+
+            // A resumed session keeps the creation time of the session it resumes
+            final SSLSession session = socket.getSession();
+            if (session.getCreationTime() < startMillis) {
+                run.resumed.increment();
+            }
+
+            if (!resume) {
+                session.invalidate();
+            } else if ("TLSv1.3".equals(session.getProtocol()) && run.ticketReaders.tryAcquire()) {
+                // TLS 1.3 tickets are used only once, so every handshake has to fetch the next one
+                final SSLSocket waiting = socket;
+                socket = null;
+                readSessionTickets(run, waiting, session);
+            }
+        } catch (IOException | RuntimeException ex) {
+            run.errorLatency.record((System.nanoTime() - scheduledStart) / 1000);
+
+            final HandshakeError error = HandshakeError.classify(ex, connected);
+            run.errors.incrementAndGet(error.ordinal());
+            LOGGER.trace("Handshake with {}:{} failed ({}): {}", run.host, run.port, error, ex.toString());
+        } finally {
+            close(socket);
+        }
+    }
+
+    /**
+     * Waits for the session tickets after a handshake using a ticket reader thread and closes the
+     * connection afterwards. The handshake has already succeeded, so errors only mean that no ticket is
+     * cached. The caller has acquired a ticket reader permit, which is released here.
+     */
+    private static void readSessionTickets(final Run run, final SSLSocket socket, final SSLSession session) {
+        final Runnable reader = () -> {
+            try {
+                HandshakeUtils.readSessionTickets(socket, session);
+            } catch (IOException ex) {
+                LOGGER.trace("Could not read the session tickets: {}", ex.getMessage());
+            } finally {
+                close(socket);
+                run.ticketReaders.release();
+            }
+        };
+
+        try {
+            run.ticketExecutor.execute(reader);
+        } catch (RuntimeException ex) {
+            // The test has ended
+            close(socket);
+            run.ticketReaders.release();
+        }
+    }
+
+    private static void close(final SSLSocket socket) {
+        if (socket == null) {
+            return;
+        }
+
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            LOGGER.trace("Could not close the connection: {}", ex.getMessage());
+        }
+    }
+}
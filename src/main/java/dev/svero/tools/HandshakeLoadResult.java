@@ -0,0 +1,44 @@
+package dev.svero.tools;
+
+import dev.svero.tools.metrics.Histogram;
+
+import java.util.Map;
+
+/**
+ * Holds the outcome of a handshake load test.
+ *
+ * @param targetRate  Intended number of handshakes per second or 0 if the handshakes were not paced
+ * @param connections Number of concurrent connections
+ * @param duration    Time from the start of the test until the last handshake completed in nanoseconds
+ * @param succeeded   Number of successful handshakes
+ * @param resumed     Number of successful handshakes which resumed a session
+ * @param missed      Number of scheduled handshakes which were not started before the end of the test,
+ *                    because all connections were busy
+ * @param errors      Number of failed handshakes per error class
+ * @param latency     Latencies of the successful handshakes in microseconds, measured from the scheduled
+ *                    start (corrected for coordinated omission)
+ * @param errorLatency Latencies of the failed handshakes in microseconds, measured from the scheduled start
+ * @param serviceTime Durations of the successful handshakes in microseconds, measured from the actual start
+ * @author Sven Roeseler
+ */
+public record HandshakeLoadResult(double targetRate, int connections, long duration, long succeeded, long resumed,
+                                  long missed, Map<HandshakeError, Long> errors, Histogram latency,
+                                  Histogram errorLatency, Histogram serviceTime) {
+    /**
+     * Gets the total number of failed handshakes.
+     *
+     * @return Number of failed handshakes
+     */
+    public long failed() {
+        return errors.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Gets the achieved number of successful handshakes per second.
+     *
+     * @return Handshakes per second
+     */
+    public double achievedRate() {
+        return duration > 0 ? succeeded * 1_000_000_000.0 / duration : 0;
+    }
+}
@@ -0,0 +1,371 @@
+package dev.svero.tools;
+
+import dev.svero.tools.jfr.HandshakeEvent;
+import dev.svero.tools.metrics.Phase;
+import dev.svero.tools.metrics.PhaseTimings;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.Objects;
+
+/**
+ * Implements methods for performing plain TLS handshakes without sending any application data.
+ *
+ * @author Sven Roeseler
+ */
+public class HandshakeUtils {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HandshakeUtils.class);
+
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+    private static final int TICKET_WAIT_MILLIS = 200;
+    private static final int TICKET_POLL_MILLIS = 5;
+
+    private volatile SSLContext sslContext;
+    private volatile Duration connectTimeout = DEFAULT_TIMEOUT;
+    private volatile Duration handshakeTimeout = DEFAULT_TIMEOUT;
+
+    /**
+     * Creates a new instance using the specified SSL context.
+     *
+     * @param sslContext SSL context
+     */
+    public HandshakeUtils(final SSLContext sslContext) {
+        setSSLContext(sslContext);
+    }
+
+    /**
+     * Sets the SSL context to the specified value.
+     *
+     * @param sslContext New value for SSL context
+     */
+    public void setSSLContext(final SSLContext sslContext) {
+        Objects.requireNonNull(sslContext);
+
+        this.sslContext = sslContext;
+    }
+
+    /**
+     * Gets the SSL context.
+     *
+     * @return SSL context
+     */
+    public SSLContext getSSLContext() {
+        return sslContext;
+    }
+
+    /**
+     * Sets the timeout for establishing the TCP connection.
+     *
+     * @param connectTimeout Connect timeout
+     */
+    public void setConnectTimeout(final Duration connectTimeout) {
+        Objects.requireNonNull(connectTimeout);
+
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Sets the timeout for reading handshake messages of the peer.
+     *
+     * @param handshakeTimeout Handshake timeout
+     */
+    public void setHandshakeTimeout(final Duration handshakeTimeout) {
+        Objects.requireNonNull(handshakeTimeout);
+
+        this.handshakeTimeout = handshakeTimeout;
+    }
+
+    /**
+     * Connects to the specified host and performs a TLS handshake. The host name of the peer is verified
+     * in the same way as for HTTPS requests. The connection is closed after the handshake.
+     *
+     * @param host Host name
+     * @param port Port
+     * @return Negotiated session parameters
+     * @throws IOException If the connection could not be established or the handshake failed
+     */
+    public TlsSessionInfo handshake(final String host, final int port) throws IOException {
+        return handshake(host, port, new PhaseTimings());
+    }
+
+    /**
+     * Connects to the specified host and performs a TLS handshake. The durations of the name resolution,
+     * the connect and the handshake are recorded in the specified timings, also if the handshake fails.
+     *
+     * @param host    Host name
+     * @param port    Port
+     * @param timings Receives the durations of the phases
+     * @return Negotiated session parameters
+     * @throws IOException If the connection could not be established or the handshake failed
+     */
+    public TlsSessionInfo handshake(final String host, final int port, final PhaseTimings timings)
+            throws IOException {
+        if (StringUtils.isBlank(host)) {
+            throw new IllegalArgumentException("host may not be blank");
+        }
+
+        Objects.requireNonNull(timings);
+
+        HandshakeEvent event = new HandshakeEvent();
+        event.begin();
+
+        try (SSLSocket socket = connect(host, port, timings)) {
+            final long start = System.nanoTime();
+            socket.startHandshake();
+            timings.recordSince(Phase.HANDSHAKE, start);
+
+            TlsSessionInfo info = TlsSessionInfo.of(socket.getSession());
+            LOGGER.debug("Handshake with {}:{} completed using {} and {}", host, port, info.protocol(),
+                    info.cipherSuite());
+
+            event.complete(host, port, false, info, null);
+            return info;
+        } catch (IOException | RuntimeException ex) {
+            event.complete(host, port, false, null, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Measures session resumption: performs a full handshake with the specified host followed by the
+     * specified number of handshakes, which should resume the session. Sessions of the host cached
+     * before are invalidated first, so the first handshake is always a full one. The durations of the
+     * name resolution, the connect and the handshake of the full handshake are recorded in the specified
+     * timings.
+     * <p>
+     * TLS 1.3 servers send their session tickets after the handshake, so the connection is kept open
+     * after every TLS 1.3 handshake until a ticket has been cached, but not longer than
+     * {@value #TICKET_WAIT_MILLIS} ms. This waiting time is not part of the measured durations.
+     *
+     * @param host        Host name
+     * @param port        Port
+     * @param resumptions Number of handshakes after the full handshake
+     * @param timings     Receives the durations of the phases of the full handshake
+     * @return Outcome of the measurement
+     * @throws IOException If a connection could not be established or a handshake failed
+     */
+    public TlsResumption measureResumption(final String host, final int port, final int resumptions,
+                                           final PhaseTimings timings) throws IOException {
+        if (StringUtils.isBlank(host)) {
+            throw new IllegalArgumentException("host may not be blank");
+        }
+
+        if (resumptions < 1) {
+            throw new IllegalArgumentException("resumptions must be greater than zero");
+        }
+
+        Objects.requireNonNull(timings);
+
+        invalidateSessions(host, port);
+
+        final Attempt full = attempt(host, port, timings);
+        SSLSession previous = full.session();
+
+        final long[] durations = new long[resumptions];
+        final long[] cpuTimes = new long[resumptions];
+        int resumed = 0;
+
+        for (int i = 0; i < resumptions; i++) {
+            Attempt attempt = attempt(host, port, new PhaseTimings());
+
+            if (isResumption(previous, attempt.session())) {
+                durations[resumed] = attempt.duration();
+                cpuTimes[resumed] = attempt.cpu();
+                resumed++;
+            } else {
+                // A server may refuse a resumption and issue a new session, which the next one resumes
+                previous = attempt.session();
+            }
+        }
+
+        LOGGER.debug("{} of {} handshakes with {}:{} resumed the session", resumed, resumptions, host, port);
+
+        return new TlsResumption(TlsSessionInfo.of(full.session()), resumptions, resumed, full.duration(),
+                full.cpu(), median(durations, resumed), full.cpu() < 0 ? -1 : median(cpuTimes, resumed));
+    }
+
+    /**
+     * Performs a single handshake for a resumption measurement.
+     */
+    private Attempt attempt(final String host, final int port, final PhaseTimings timings) throws IOException {
+        try (SSLSocket socket = connect(host, port, timings)) {
+            final long cpuStart = cpuTime();
+            final long start = System.nanoTime();
+            socket.startHandshake();
+            final long duration = timings.recordSince(Phase.HANDSHAKE, start) - start;
+            final long cpu = cpuStart < 0 ? -1 : cpuTime() - cpuStart;
+
+            final SSLSession session = socket.getSession();
+            readSessionTickets(socket, session);
+
+            return new Attempt(session, duration, cpu);
+        }
+    }
+
+    /**
+     * Waits for the session tickets of a TLS 1.3 server, which are sent after the handshake. The socket is
+     * read in slices of {@value #TICKET_POLL_MILLIS} ms until the session context of the client has cached
+     * a new session, the server sent data or closed the connection, or {@value #TICKET_WAIT_MILLIS} ms have
+     * passed. Nothing is done for other protocol versions.
+     *
+     * @param socket  Socket after the handshake
+     * @param session Negotiated session
+     * @throws IOException If reading from the socket failed
+     */
+    static void readSessionTickets(final SSLSocket socket, final SSLSession session) throws IOException {
+        if (!"TLSv1.3".equals(session.getProtocol())) {
+            return;
+        }
+
+        final SSLSessionContext context = session.getSessionContext();
+        final int cached = countSessions(context);
+        final long deadline = System.nanoTime() + TICKET_WAIT_MILLIS * 1_000_000L;
+
+        // Reading processes the post-handshake messages including the session tickets
+        socket.setSoTimeout(TICKET_POLL_MILLIS);
+        while (true) {
+            try {
+                socket.getInputStream().read();
+                return;
+            } catch (SocketTimeoutException ex) {
+                // No application data is expected
+                if (countSessions(context) != cached || System.nanoTime() - deadline >= 0) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static int countSessions(final SSLSessionContext context) {
+        if (context == null) {
+            return -1;
+        }
+
+        int count = 0;
+        for (Enumeration<byte[]> ids = context.getIds(); ids.hasMoreElements(); ids.nextElement()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Checks if the specified session resumed the previous session. A resumed session keeps the creation
+     * time of the original session, and a resumed TLS 1.2 session also keeps its identifier. The
+     * identifiers are only compared for TLS 1.2 and below and only if they are not empty: TLS 1.3 sessions
+     * (and TLS 1.2 sessions resumed by a ticket) may have empty identifiers, which would always be equal.
+     */
+    static boolean isResumption(final SSLSession previous, final SSLSession session) {
+        if (session.getCreationTime() == previous.getCreationTime()) {
+            return true;
+        }
+
+        final byte[] id = session.getId();
+        return !"TLSv1.3".equals(session.getProtocol()) && id != null && id.length > 0
+                && Arrays.equals(id, previous.getId());
+    }
+
+    /**
+     * Invalidates the cached client sessions of the specified host.
+     */
+    private void invalidateSessions(final String host, final int port) {
+        final SSLSessionContext sessions = sslContext.getClientSessionContext();
+        if (sessions == null) {
+            return;
+        }
+
+        for (Enumeration<byte[]> ids = sessions.getIds(); ids.hasMoreElements(); ) {
+            SSLSession session = sessions.getSession(ids.nextElement());
+            if (session != null && host.equalsIgnoreCase(session.getPeerHost()) && session.getPeerPort() == port) {
+                session.invalidate();
+            }
+        }
+    }
+
+    private static long cpuTime() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static long median(final long[] values, final int count) {
+        if (count == 0) {
+            return -1;
+        }
+
+        long[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+        return sorted[count / 2];
+    }
+
+    /**
+     * Outcome of a single handshake of a resumption measurement.
+     */
+    private record Attempt(SSLSession session, long duration, long cpu) {
+    }
+
+    /**
+     * Opens a TCP connection to the specified host and wraps it into a SSL socket. The handshake is not
+     * started yet.
+     *
+     * @param host Host name
+     * @param port Port
+     * @return Connected SSL socket
+     * @throws IOException If the connection could not be established
+     */
+    protected SSLSocket connect(final String host, final int port) throws IOException {
+        return connect(host, port, new PhaseTimings());
+    }
+
+    /**
+     * Opens a TCP connection to the specified host and wraps it into a SSL socket. The durations of the
+     * name resolution and the connect are recorded in the specified timings.
+     *
+     * @param host    Host name
+     * @param port    Port
+     * @param timings Receives the durations of the phases
+     * @return Connected SSL socket
+     * @throws IOException If the connection could not be established
+     */
+    protected SSLSocket connect(final String host, final int port, final PhaseTimings timings) throws IOException {
+        long start = System.nanoTime();
+        final InetAddress address = InetAddress.getByName(host);
+        start = timings.recordSince(Phase.DNS, start);
+
+        Socket plainSocket = new Socket();
+
+        try {
+            // The handshake consists of several small writes, which Nagle's algorithm would delay
+            plainSocket.setTcpNoDelay(true);
+            plainSocket.connect(new InetSocketAddress(address, port), (int) connectTimeout.toMillis());
+            timings.recordSince(Phase.CONNECT, start);
+            plainSocket.setSoTimeout((int) handshakeTimeout.toMillis());
+
+            SSLSocket socket = (SSLSocket) sslContext.getSocketFactory()
+                    .createSocket(plainSocket, host, port, true);
+
+            SSLParameters parameters = socket.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            socket.setSSLParameters(parameters);
+
+            return socket;
+        } catch (IOException | RuntimeException ex) {
+            plainSocket.close();
+            throw ex;
+        }
+    }
+}
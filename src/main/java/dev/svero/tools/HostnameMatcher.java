@@ -0,0 +1,124 @@
+package dev.svero.tools;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.naming.InvalidNameException;
+import javax.naming.ldap.LdapName;
+import javax.naming.ldap.Rdn;
+import javax.security.auth.x500.X500Principal;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Implements the verification of host names against the subject alternative names of a certificate as
+ * used for HTTPS (RFC 2818, RFC 6125). Wildcards are only allowed as the complete left-most label.
+ *
+ * @author Sven Roeseler
+ */
+public final class HostnameMatcher {
+    private static final int SAN_DNS = 2;
+    private static final int SAN_IP = 7;
+
+    private HostnameMatcher() {
+    }
+
+    /**
+     * Checks if the specified certificate is valid for the specified host.
+     *
+     * @param host        Host name or IP address
+     * @param certificate Certificate of the peer
+     * @return True if the certificate matches the host
+     */
+    public static boolean matches(final String host, final X509Certificate certificate) {
+        if (StringUtils.isBlank(host) || certificate == null) {
+            return false;
+        }
+
+        Collection<List<?>> alternativeNames;
+        try {
+            alternativeNames = certificate.getSubjectAlternativeNames();
+        } catch (CertificateParsingException ex) {
+            return false;
+        }
+
+        if (isIpAddress(host)) {
+            return alternativeNames != null && alternativeNames.stream()
+                    .filter(name -> name.size() == 2 && Integer.valueOf(SAN_IP).equals(name.get(0)))
+                    .anyMatch(name -> sameAddress(host, String.valueOf(name.get(1))));
+        }
+
+        List<String> dnsNames = new ArrayList<>();
+        if (alternativeNames != null) {
+            for (List<?> name : alternativeNames) {
+                if (name.size() == 2 && Integer.valueOf(SAN_DNS).equals(name.get(0))) {
+                    dnsNames.add(String.valueOf(name.get(1)));
+                }
+            }
+        }
+
+        if (dnsNames.isEmpty()) {
+            String commonName = commonName(certificate.getSubjectX500Principal());
+            if (commonName != null) {
+                dnsNames.add(commonName);
+            }
+        }
+
+        final String normalizedHost = normalize(host);
+        return dnsNames.stream().anyMatch(pattern -> matchesPattern(normalizedHost, normalize(pattern)));
+    }
+
+    private static boolean matchesPattern(final String host, final String pattern) {
+        if (!pattern.startsWith("*.")) {
+            return host.equals(pattern);
+        }
+
+        String suffix = pattern.substring(1);
+        if (suffix.indexOf('.', 1) < 0) {
+            // Wildcards for top-level domains (*.com) are not allowed
+            return false;
+        }
+
+        int firstDot = host.indexOf('.');
+        return firstDot > 0 && host.substring(firstDot).equals(suffix);
+    }
+
+    private static String normalize(final String name) {
+        String result = name.toLowerCase(Locale.ROOT);
+        return result.endsWith(".") ? result.substring(0, result.length() - 1) : result;
+    }
+
+    private static boolean isIpAddress(final String host) {
+        return host.indexOf(':') >= 0 || host.chars().allMatch(c -> c == '.' || Character.isDigit(c));
+    }
+
+    private static boolean sameAddress(final String first, final String second) {
+        try {
+            return InetAddress.getByName(first).equals(InetAddress.getByName(second));
+        } catch (UnknownHostException ex) {
+            return false;
+        }
+    }
+
+    private static String commonName(final X500Principal principal) {
+        try {
+            LdapName name = new LdapName(principal.getName(X500Principal.RFC2253));
+
+            String result = null;
+            for (Rdn rdn : name.getRdns()) {
+                if ("CN".equalsIgnoreCase(rdn.getType())) {
+                    result = String.valueOf(rdn.getValue());
+                }
+            }
+
+            return result;
+        } catch (InvalidNameException ex) {
+            return null;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package dev.svero.tools;
 
+import dev.svero.tools.jfr.HttpRequestEvent;
+import dev.svero.tools.metrics.Phase;
+import dev.svero.tools.metrics.PhaseTimings;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -10,16 +13,35 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 
 /**
- * Implements methods for handling HTTP requests.
+ * Implements methods for handling HTTP requests. The instance owns a long-lived HTTP client which is
+ * shared by all requests, so connections and TLS sessions can be reused. The client is created on first
+ * use and replaced whenever the configuration changes.
  * 
  * @author Sven Roeseler
  */
-public class HttpUtils {
+public class HttpUtils implements AutoCloseable {
     private static final Logger LOGGER = LoggerFactory.getLogger(HttpUtils.class);
 
+    private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Object lock = new Object();
+
     private SSLContext sslContext;
+    private Executor executor;
+    private Duration connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private HttpClient.Version version = HttpClient.Version.HTTP_2;
+
+    private volatile HttpClient client;
 
     /**
      * Creates a new instance.
@@ -43,7 +65,10 @@ public class HttpUtils {
      * @param sslContext New value for SSL context
      */
     public void setSSLContext(final SSLContext sslContext) {
-        this.sslContext = sslContext;
+        synchronized (lock) {
+            this.sslContext = sslContext;
+            resetHttpClient();
+        }
     }
 
     /**
@@ -52,7 +77,75 @@ public class HttpUtils {
      * @return SSL context or null
      */
     public SSLContext getSSLContext() {
-        return sslContext;
+        synchronized (lock) {
+            return sslContext;
+        }
+    }
+
+    /**
+     * Sets the executor used by the HTTP client for asynchronous tasks. If null the default executor
+     * of the HTTP client is used. The executor is not shut down by this class.
+     *
+     * @param executor Executor or null
+     */
+    public void setExecutor(final Executor executor) {
+        synchronized (lock) {
+            this.executor = executor;
+            resetHttpClient();
+        }
+    }
+
+    /**
+     * Sets the timeout for establishing connections.
+     *
+     * @param connectTimeout Connect timeout
+     */
+    public void setConnectTimeout(final Duration connectTimeout) {
+        Objects.requireNonNull(connectTimeout);
+
+        if (connectTimeout.isNegative() || connectTimeout.isZero()) {
+            throw new IllegalArgumentException("connectTimeout must be positive");
+        }
+
+        synchronized (lock) {
+            this.connectTimeout = connectTimeout;
+            resetHttpClient();
+        }
+    }
+
+    /**
+     * Sets the preferred HTTP version.
+     *
+     * @param version HTTP version
+     */
+    public void setVersion(final HttpClient.Version version) {
+        Objects.requireNonNull(version);
+
+        synchronized (lock) {
+            this.version = version;
+            resetHttpClient();
+        }
+    }
+
+    /**
+     * Gets the shared HTTP client. The client is created on first use.
+     *
+     * @return HTTP client.
+     */
+    protected HttpClient getHttpClient() {
+        HttpClient result = client;
+
+        if (result == null) {
+            synchronized (lock) {
+                result = client;
+                if (result == null) {
+                    result = createHttpClient();
+                    client = result;
+                }
+            }
+        }
+
+        return result;
     }
 
     /**
@@ -61,15 +154,51 @@ public class HttpUtils {
      * @return HTTP client.
      */
     private HttpClient createHttpClient() {
-        HttpClient client;
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .version(version);
+
+        if (sslContext != null) {
+            builder.sslContext(sslContext);
+        }
+
+        if (executor != null) {
+            builder.executor(executor);
+        }
+
+        LOGGER.debug("Creating HTTP client (version: {}, connect timeout: {})", version, connectTimeout);
 
-        if (sslContext == null) {
-            client = HttpClient.newBuilder().build();
-        } else {
-            client = HttpClient.newBuilder().sslContext(sslContext).build();
+        return builder.build();
+    }
+
+    /**
+     * Discards the current HTTP client. Requests already running keep using the old client, which
+     * terminates as soon as it is idle and no longer referenced.
+     */
+    private void resetHttpClient() {
+        client = null;
+    }
+
+    /**
+     * Closes the shared HTTP client. On Java 21 and newer this waits for running requests and releases
+     * the client threads immediately. A new client is created if further requests are performed.
+     */
+    @Override
+    public void close() {
+        HttpClient oldClient;
+
+        synchronized (lock) {
+            oldClient = client;
+            client = null;
         }
 
-        return client;
+        if (oldClient instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception ex) {
+                LOGGER.warn("Could not close HTTP client: {}", ex.getMessage());
+            }
+        }
     }
 
     /**
@@ -81,30 +210,55 @@ public class HttpUtils {
      * @throws InterruptedException If the request was interrupted before the response was received
      */
     protected String processRequestWithTextResponse(HttpRequest request) throws IOException, InterruptedException {
+        return processRequestWithTextResponse(request, new PhaseTimings());
+    }
+
+    /**
+     * Performs the specified request and returns the response as string if the status code was 200. The
+     * durations of the phases are recorded in the specified timings.
+     *
+     * @param request Request to perform
+     * @param timings Receives the durations of the phases
+     * @return Response body as string
+     * @throws IOException          If an I/O error happened
+     * @throws InterruptedException If the request was interrupted before the response was received
+     */
+    protected String processRequestWithTextResponse(HttpRequest request, PhaseTimings timings)
+            throws IOException, InterruptedException {
+        return processRequest(request, timings).body();
+    }
+
+    /**
+     * Performs the specified request and returns the response if the status code was 200. The durations
+     * of the phases are recorded in the specified timings.
+     *
+     * @param request Request to perform
+     * @param timings Receives the durations of the phases
+     * @return Response with the body as string
+     * @throws IOException          If an I/O error happened
+     * @throws InterruptedException If the request was interrupted before the response was received
+     */
+    protected HttpResponse<String> processRequest(HttpRequest request, PhaseTimings timings)
+            throws IOException, InterruptedException {
         if (request == null) {
             throw new IllegalArgumentException("request may not be null");
         }
 
-        HttpClient client = createHttpClient();
-
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = send(request, HttpResponse.BodyHandlers.ofString(), timings);
 
-        String result;
-
-        if (response.statusCode() == 200) {
-            result = response.body();
-        } else {
+        if (response.statusCode() != 200) {
             LOGGER.error("Unexpected response received:\n* Status Code: {}\n* Headers: {}\n* Body: {}",
                     response.statusCode(), response.headers().toString(), response.body());
 
-            throw new RuntimeException("Unexpected status code received while processing POST request");
+            throw new RuntimeException("Unexpected status code " + response.statusCode()
+                    + " received while processing " + request.method() + " request");
         }
 
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("Raw result: {}", result);
+            LOGGER.debug("Raw result: {}", response.body());
         }
 
-        return result;
+        return response;
     }
 
     /**
@@ -116,12 +270,248 @@ public class HttpUtils {
      * @throws InterruptedException If the request was interrupted before the response was received.
      */
     public String getRequest(final String url) throws IOException, InterruptedException {
+        return getRequest(url, new PhaseTimings());
+    }
+
+    /**
+     * Performs a GET request and records the durations of the phases in the specified timings.
+     *
+     * @param url     Target URL for the request.
+     * @param timings Receives the durations of the phases.
+     * @return The server response as string.
+     * @throws IOException          If an I/O error occurred.
+     * @throws InterruptedException If the request was interrupted before the response was received.
+     */
+    public String getRequest(final String url, final PhaseTimings timings) throws IOException, InterruptedException {
+        return getResponse(url, timings).body();
+    }
+
+    /**
+     * Performs a GET request and records the durations of the phases in the specified timings. Unlike
+     * {@link #getRequest(String, PhaseTimings)} the complete response is returned, so the TLS session
+     * can be inspected.
+     *
+     * @param url     Target URL for the request.
+     * @param timings Receives the durations of the phases.
+     * @return The server response with the body as string.
+     * @throws IOException          If an I/O error occurred.
+     * @throws InterruptedException If the request was interrupted before the response was received.
+     */
+    public HttpResponse<String> getResponse(final String url, final PhaseTimings timings)
+            throws IOException, InterruptedException {
+        if (StringUtils.isBlank(url)) {
+            throw new IllegalArgumentException("url may not be blank");
+        }
+
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url)).GET().build();
+
+        return processRequest(request, timings);
+    }
+
+    /**
+     * Performs a GET request. The response body is read completely but only counted, not buffered, so
+     * checks which only need the status code and the TLS session do not hold large bodies in memory. The
+     * status code is not checked, so the caller can tell throttling responses (e.g. 429) from other
+     * failures.
+     *
+     * @param url     Target URL for the request.
+     * @param timings Receives the durations of the phases.
+     * @return The server response with the number of body bytes as body.
+     * @throws IOException          If an I/O error occurred.
+     * @throws InterruptedException If the request was interrupted before the response was received.
+     */
+    public HttpResponse<Long> checkRequest(final String url, final PhaseTimings timings)
+            throws IOException, InterruptedException {
         if (StringUtils.isBlank(url)) {
             throw new IllegalArgumentException("url may not be blank");
         }
 
         HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url)).GET().build();
 
-        return processRequestWithTextResponse(request);
+        HttpResponse<Long> response = send(request, responseInfo -> new LimitedBodySubscriber(Long.MAX_VALUE),
+                timings);
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Request to {} returned status code {} and {} body bytes", url, response.statusCode(),
+                    response.body());
+        }
+
+        return response;
+    }
+
+    /**
+     * Performs a GET request but reads at most the specified number of bytes of the response body. The
+     * rest of the body is not downloaded. Every status code is accepted, so the returned response can be
+     * used to inspect the status code and the TLS session.
+     *
+     * @param url          Target URL for the request.
+     * @param maxBodyBytes Maximum number of body bytes to read (0 to skip the body)
+     * @return The server response with the number of read body bytes as body.
+     * @throws IOException          If an I/O error occurred.
+     * @throws InterruptedException If the request was interrupted before the response was received.
+     */
+    public HttpResponse<Long> probeRequest(final String url, final long maxBodyBytes)
+            throws IOException, InterruptedException {
+        return probeRequest(url, maxBodyBytes, new PhaseTimings());
+    }
+
+    /**
+     * Performs a GET request but reads at most the specified number of bytes of the response body. The
+     * durations of the phases are recorded in the specified timings.
+     *
+     * @param url          Target URL for the request.
+     * @param maxBodyBytes Maximum number of body bytes to read (0 to skip the body)
+     * @param timings      Receives the durations of the phases.
+     * @return The server response with the number of read body bytes as body.
+     * @throws IOException          If an I/O error occurred.
+     * @throws InterruptedException If the request was interrupted before the response was received.
+     */
+    public HttpResponse<Long> probeRequest(final String url, final long maxBodyBytes, final PhaseTimings timings)
+            throws IOException, InterruptedException {
+        if (StringUtils.isBlank(url)) {
+            throw new IllegalArgumentException("url may not be blank");
+        }
+
+        if (maxBodyBytes < 0) {
+            throw new IllegalArgumentException("maxBodyBytes may not be negative");
+        }
+
+        HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url)).GET().build();
+
+        HttpResponse<Long> response = send(request, responseInfo -> new LimitedBodySubscriber(maxBodyBytes),
+                timings);
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Probe of {} returned status code {} ({} body bytes read)", url, response.statusCode(),
+                    response.body());
+        }
+
+        return response;
+    }
+
+    /**
+     * Sends the specified request using the shared client. The client resolves the host name itself and
+     * does not report how long that took, so no DNS phase is recorded for HTTP requests. The time to the
+     * first byte includes the name resolution, connecting and the handshake if no pooled connection is
+     * available.
+     */
+    private <T> HttpResponse<T> send(final HttpRequest request, final HttpResponse.BodyHandler<T> bodyHandler,
+                                     final PhaseTimings timings) throws IOException, InterruptedException {
+        Objects.requireNonNull(timings);
+
+        HttpRequestEvent event = new HttpRequestEvent();
+        event.begin();
+
+        try {
+            TimedBodyHandler<T> timedHandler = new TimedBodyHandler<>(bodyHandler, timings);
+            HttpResponse<T> response = getHttpClient().send(request, timedHandler);
+            timings.recordSince(Phase.BODY, timedHandler.headersReceived);
+
+            if (event.shouldCommit()) {
+                event.statusCode = response.statusCode();
+                event.httpVersion = response.version().name();
+                response.sslSession().ifPresent(session -> {
+                    event.protocol = session.getProtocol();
+                    event.cipherSuite = session.getCipherSuite();
+                });
+                commitEvent(event, request, null);
+            }
+
+            return response;
+        } catch (IOException | InterruptedException | RuntimeException ex) {
+            if (event.shouldCommit()) {
+                commitEvent(event, request, ex);
+            }
+
+            throw ex;
+        }
+    }
+
+    private static void commitEvent(final HttpRequestEvent event, final HttpRequest request, final Exception error) {
+        event.method = request.method();
+        event.url = request.uri().toString();
+        event.host = request.uri().getHost();
+        event.success = error == null;
+        event.error = error == null ? null : error.getClass().getSimpleName() + ": " + error.getMessage();
+        event.commit();
+    }
+
+    /**
+     * Body handler which records the time until the response headers have been received.
+     */
+    private static class TimedBodyHandler<T> implements HttpResponse.BodyHandler<T> {
+        private final HttpResponse.BodyHandler<T> delegate;
+        private final PhaseTimings timings;
+        private final long start = System.nanoTime();
+
+        private volatile long headersReceived;
+
+        TimedBodyHandler(final HttpResponse.BodyHandler<T> delegate, final PhaseTimings timings) {
+            this.delegate = delegate;
+            this.timings = timings;
+        }
+
+        @Override
+        public HttpResponse.BodySubscriber<T> apply(final HttpResponse.ResponseInfo responseInfo) {
+            headersReceived = timings.recordSince(Phase.FIRST_BYTE, start);
+            return delegate.apply(responseInfo);
+        }
+    }
+
+    /**
+     * Body subscriber which counts the received bytes and cancels the subscription as soon as the limit
+     * has been reached.
+     */
+    private static class LimitedBodySubscriber implements HttpResponse.BodySubscriber<Long> {
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private final long limit;
+
+        private Flow.Subscription subscription;
+        private long count;
+
+        LimitedBodySubscriber(final long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public CompletionStage<Long> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+
+            if (limit == 0) {
+                subscription.cancel();
+                result.complete(0L);
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onNext(final List<ByteBuffer> buffers) {
+            for (ByteBuffer buffer : buffers) {
+                count += buffer.remaining();
+            }
+
+            if (count >= limit) {
+                subscription.cancel();
+                result.complete(Math.min(count, limit));
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            result.complete(count);
+        }
     }
 }
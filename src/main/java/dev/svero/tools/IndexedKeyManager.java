@@ -0,0 +1,329 @@
+package dev.svero.tools;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedKeyManager;
+import javax.security.auth.x500.X500Principal;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Implements a client key manager for key stores with many client identities. The client certificate is
+ * selected per connection: first by the host name of the peer (the SNI name if present), using a map from
+ * host names to aliases, then by the certificate authorities requested by the server, using an index of
+ * the issuers of all certificate chains. If the server does not name any authority, the first identity
+ * is used like by the default key manager. All private keys are unlocked once when the key manager is
+ * created, so a single SSL context serves every identity of the key store.
+ * <p>
+ * The keys of the host map are host names, host names with port ("host:port") or wildcard patterns for
+ * a complete left-most label ("*.example.com"). Server identities are not supported.
+ *
+ * @author Sven Roeseler
+ */
+public class IndexedKeyManager extends X509ExtendedKeyManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexedKeyManager.class);
+
+    private final Map<String, PrivateKey> keys = new LinkedHashMap<>();
+    private final Map<String, X509Certificate[]> chains = new HashMap<>();
+    private final Map<X500Principal, List<String>> byIssuer = new HashMap<>();
+    private final Map<String, String> hostAliases = new HashMap<>();
+
+    /**
+     * Creates a new instance using all private key entries of the specified key store.
+     *
+     * @param keyStore    Key store with the client identities
+     * @param password    Password of the private keys
+     * @param hostAliases Alias of the identity to use per host (may be empty)
+     */
+    public IndexedKeyManager(final KeyStore keyStore, final String password, final Map<String, String> hostAliases) {
+        Objects.requireNonNull(keyStore);
+        Objects.requireNonNull(password);
+        Objects.requireNonNull(hostAliases);
+
+        final KeyStore.PasswordProtection protection = new KeyStore.PasswordProtection(password.toCharArray());
+
+        try {
+            for (String alias : Collections.list(keyStore.aliases())) {
+                if (!keyStore.isKeyEntry(alias)
+                        || !(keyStore.getEntry(alias, protection) instanceof KeyStore.PrivateKeyEntry entry)) {
+                    continue;
+                }
+
+                X509Certificate[] chain = toX509(entry.getCertificateChain());
+                if (chain.length == 0) {
+                    continue;
+                }
+
+                keys.put(alias, entry.getPrivateKey());
+                chains.put(alias, chain);
+
+                // A server may request the issuing CA or any CA above it
+                for (X509Certificate certificate : chain) {
+                    List<String> aliases = byIssuer.computeIfAbsent(certificate.getIssuerX500Principal(),
+                            key -> new ArrayList<>(1));
+                    if (!aliases.contains(alias)) {
+                        aliases.add(alias);
+                    }
+                }
+            }
+        } catch (GeneralSecurityException ex) {
+            throw new RuntimeException("Could not read the private keys from the key store", ex);
+        }
+
+        for (Map.Entry<String, String> mapping : hostAliases.entrySet()) {
+            if (!keys.containsKey(mapping.getValue())) {
+                throw new IllegalArgumentException("The key store has no private key with alias \""
+                        + mapping.getValue() + "\" (host " + mapping.getKey() + ")");
+            }
+
+            this.hostAliases.put(mapping.getKey().toLowerCase(Locale.ROOT), mapping.getValue());
+        }
+
+        LOGGER.debug("Indexed {} client identities ({} issuers, {} host mappings)", keys.size(), byIssuer.size(),
+                this.hostAliases.size());
+    }
+
+    /**
+     * Reads a map from hosts to aliases from the specified file. Every line contains a host name, a host
+     * name with port or a wildcard pattern followed by the alias, separated by whitespace. Blank lines and
+     * lines starting with # are ignored.
+     *
+     * @param file File with the mappings
+     * @return Map from hosts to aliases in the order of the file
+     */
+    public static Map<String, String> readHostAliases(final Path file) {
+        Objects.requireNonNull(file);
+
+        if (!Files.exists(file)) {
+            throw new IllegalArgumentException("File not found: " + file);
+        }
+
+        Map<String, String> hostAliases = new LinkedHashMap<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (StringUtils.isBlank(line) || line.strip().startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.strip().split("\\s+", 2);
+                if (fields.length != 2) {
+                    throw new IllegalArgumentException("Missing alias in line " + lineNumber + " of " + file);
+                }
+
+                hostAliases.put(fields[0], fields[1]);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not read host aliases from " + file, ex);
+        }
+
+        return hostAliases;
+    }
+
+    @Override
+    public String chooseClientAlias(final String[] keyTypes, final Principal[] issuers, final Socket socket) {
+        SSLSession session = socket instanceof SSLSocket sslSocket ? sslSocket.getHandshakeSession() : null;
+        return chooseAlias(keyTypes, issuers, session);
+    }
+
+    @Override
+    public String chooseEngineClientAlias(final String[] keyTypes, final Principal[] issuers,
+                                          final SSLEngine engine) {
+        return chooseAlias(keyTypes, issuers, engine == null ? null : engine.getHandshakeSession());
+    }
+
+    @Override
+    public String[] getClientAliases(final String keyType, final Principal[] issuers) {
+        List<String> aliases = new ArrayList<>();
+        for (String alias : candidates(issuers)) {
+            if (matchesKeyType(alias, new String[]{keyType})) {
+                aliases.add(alias);
+            }
+        }
+
+        return aliases.isEmpty() ? null : aliases.toArray(new String[0]);
+    }
+
+    @Override
+    public String chooseServerAlias(final String keyType, final Principal[] issuers, final Socket socket) {
+        return null;
+    }
+
+    @Override
+    public String chooseEngineServerAlias(final String keyType, final Principal[] issuers, final SSLEngine engine) {
+        return null;
+    }
+
+    @Override
+    public String[] getServerAliases(final String keyType, final Principal[] issuers) {
+        return null;
+    }
+
+    @Override
+    public X509Certificate[] getCertificateChain(final String alias) {
+        X509Certificate[] chain = chains.get(alias);
+        return chain == null ? null : chain.clone();
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(final String alias) {
+        return keys.get(alias);
+    }
+
+    /**
+     * Selects the alias for a connection: the alias mapped to the peer, the first alias issued by one of
+     * the requested authorities or, if the server did not name any authority, the first alias.
+     */
+    private String chooseAlias(final String[] keyTypes, final Principal[] issuers, final SSLSession session) {
+        if (session != null) {
+            for (String host : peerNames(session)) {
+                String alias = lookupHost(host, session.getPeerPort());
+                if (alias != null && matchesKeyType(alias, keyTypes)) {
+                    LOGGER.debug("Using client identity \"{}\" mapped to {}", alias, host);
+                    return alias;
+                }
+            }
+        }
+
+        for (String alias : candidates(issuers)) {
+            if (matchesKeyType(alias, keyTypes)) {
+                LOGGER.debug("Using client identity \"{}\"", alias);
+                return alias;
+            }
+        }
+
+        LOGGER.debug("No client identity for {}", session == null ? "unknown peer" : session.getPeerHost());
+        return null;
+    }
+
+    /**
+     * Gets the names of the peer: the SNI host names followed by the peer host.
+     */
+    private static List<String> peerNames(final SSLSession session) {
+        List<String> names = new ArrayList<>(2);
+
+        if (session instanceof ExtendedSSLSession extendedSession) {
+            for (SNIServerName serverName : extendedSession.getRequestedServerNames()) {
+                if (serverName instanceof SNIHostName hostName) {
+                    names.add(hostName.getAsciiName().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+
+        final String peerHost = session.getPeerHost();
+        if (peerHost != null && !names.contains(peerHost.toLowerCase(Locale.ROOT))) {
+            names.add(peerHost.toLowerCase(Locale.ROOT));
+        }
+
+        return names;
+    }
+
+    /**
+     * Looks up the alias for the specified host: host with port first, then the host, then the
+     * wildcard pattern of its parent domain.
+     */
+    private String lookupHost(final String host, final int port) {
+        if (hostAliases.isEmpty()) {
+            return null;
+        }
+
+        String alias = port > 0 ? hostAliases.get(host + ":" + port) : null;
+        if (alias == null) {
+            alias = hostAliases.get(host);
+        }
+
+        final int dot = host.indexOf('.');
+        if (alias == null && dot > 0) {
+            alias = hostAliases.get("*" + host.substring(dot));
+        }
+
+        return alias;
+    }
+
+    /**
+     * Gets the aliases issued by one of the specified authorities or all aliases if no authority is
+     * specified.
+     */
+    private List<String> candidates(final Principal[] issuers) {
+        if (issuers == null || issuers.length == 0) {
+            return new ArrayList<>(keys.keySet());
+        }
+
+        List<String> candidates = new ArrayList<>();
+        for (Principal issuer : issuers) {
+            List<String> aliases = issuer instanceof X500Principal principal ? byIssuer.get(principal)
+                    : byIssuer.get(new X500Principal(issuer.getName()));
+            if (aliases == null) {
+                continue;
+            }
+
+            for (String alias : aliases) {
+                if (!candidates.contains(alias)) {
+                    candidates.add(alias);
+                }
+            }
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Checks if the key of the specified alias has one of the specified types. TLS 1.2 key types may
+     * carry the signature algorithm of the certificate after an underscore (e.g. "EC_EC").
+     */
+    private boolean matchesKeyType(final String alias, final String[] keyTypes) {
+        if (keyTypes == null) {
+            return true;
+        }
+
+        final String algorithm = keys.get(alias).getAlgorithm();
+        return Arrays.stream(keyTypes).filter(Objects::nonNull)
+                .map(keyType -> StringUtils.substringBefore(keyType, "_"))
+                .anyMatch(algorithm::equalsIgnoreCase);
+    }
+
+    private static X509Certificate[] toX509(final Certificate[] chain) {
+        if (chain == null) {
+            return new X509Certificate[0];
+        }
+
+        List<X509Certificate> certificates = new ArrayList<>(chain.length);
+        for (Certificate certificate : chain) {
+            if (certificate instanceof X509Certificate x509Certificate) {
+                certificates.add(x509Certificate);
+            }
+        }
+
+        return certificates.toArray(new X509Certificate[0]);
+    }
+}
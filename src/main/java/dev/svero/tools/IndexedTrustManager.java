@@ -0,0 +1,447 @@
+package dev.svero.tools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedTrustManager;
+import javax.security.auth.x500.X500Principal;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.cert.CertPath;
+import java.security.cert.CertPathValidator;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.PKIXParameters;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Implements a trust manager for very large sets of trust anchors. The anchors are indexed by subject
+ * and Subject Key Identifier, and so are the certificates presented by the peer. The path from the end
+ * entity certificate to an anchor is built by looking up the issuer of every link through these indexes
+ * (Authority Key Identifier first, issuer name otherwise), so chains sent out of order or with additional
+ * certificates are handled like by the PKIX builder of the JDK, without searching through all anchors.
+ * The path is then validated by the PKIX validator of the JDK using only the anchor found. The host name
+ * of the peer is verified if the connection requests HTTPS endpoint identification.
+ *
+ * @author Sven Roeseler
+ */
+public class IndexedTrustManager extends X509ExtendedTrustManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexedTrustManager.class);
+
+    private static final String SUBJECT_KEY_IDENTIFIER = "2.5.29.14";
+    private static final String AUTHORITY_KEY_IDENTIFIER = "2.5.29.35";
+    private static final String SERVER_AUTH = "1.3.6.1.5.5.7.3.1";
+    private static final String CLIENT_AUTH = "1.3.6.1.5.5.7.3.2";
+    private static final String ANY_EXTENDED_KEY_USAGE = "2.5.29.37.0";
+
+    private final Map<X500Principal, List<X509Certificate>> bySubject = new HashMap<>();
+    private final Map<ByteBuffer, List<X509Certificate>> byKeyIdentifier = new HashMap<>();
+    private final Map<ByteBuffer, X509Certificate> byEncoding = new HashMap<>();
+    private final X509Certificate[] anchors;
+
+    /**
+     * Creates a new instance using the specified trust anchors.
+     *
+     * @param anchors Trusted certificates
+     */
+    public IndexedTrustManager(final Collection<X509Certificate> anchors) {
+        Objects.requireNonNull(anchors);
+
+        for (X509Certificate anchor : anchors) {
+            try {
+                if (byEncoding.putIfAbsent(ByteBuffer.wrap(anchor.getEncoded()), anchor) != null) {
+                    continue;
+                }
+            } catch (CertificateEncodingException ex) {
+                throw new IllegalArgumentException("Could not encode trust anchor "
+                        + anchor.getSubjectX500Principal(), ex);
+            }
+
+            index(anchor, bySubject, byKeyIdentifier);
+        }
+
+        this.anchors = byEncoding.values().toArray(new X509Certificate[0]);
+        LOGGER.debug("Indexed {} trust anchors ({} subjects, {} key identifiers)", this.anchors.length,
+                bySubject.size(), byKeyIdentifier.size());
+    }
+
+    /**
+     * Creates a new instance using all certificates of the specified trust store as trust anchors.
+     *
+     * @param trustStore Trust store
+     * @return Created trust manager
+     */
+    public static IndexedTrustManager fromKeyStore(final KeyStore trustStore) {
+        Objects.requireNonNull(trustStore);
+
+        List<X509Certificate> anchors = new ArrayList<>();
+
+        try {
+            for (String alias : Collections.list(trustStore.aliases())) {
+                if (trustStore.isCertificateEntry(alias)
+                        && trustStore.getCertificate(alias) instanceof X509Certificate certificate) {
+                    anchors.add(certificate);
+                }
+            }
+        } catch (KeyStoreException ex) {
+            throw new RuntimeException("Could not read the trust anchors from the trust store", ex);
+        }
+
+        return new IndexedTrustManager(anchors);
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        validate(chain, CLIENT_AUTH);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        validate(chain, SERVER_AUTH);
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType, final Socket socket)
+            throws CertificateException {
+        validate(chain, CLIENT_AUTH);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType, final Socket socket)
+            throws CertificateException {
+        validate(chain, SERVER_AUTH);
+
+        if (socket instanceof SSLSocket sslSocket) {
+            verifyHostname(chain[0], sslSocket.getSSLParameters(), sslSocket.getHandshakeSession());
+        }
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine)
+            throws CertificateException {
+        validate(chain, CLIENT_AUTH);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine)
+            throws CertificateException {
+        validate(chain, SERVER_AUTH);
+
+        if (engine != null) {
+            verifyHostname(chain[0], engine.getSSLParameters(), engine.getHandshakeSession());
+        }
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        return anchors.clone();
+    }
+
+    /**
+     * Builds the certification path for the specified chain. Starting with the end entity certificate,
+     * the issuer of every certificate is looked up among the trust anchors and, if it is not an anchor,
+     * among the other certificates of the chain. The order of these certificates does not matter and
+     * certificates not needed for the path are ignored. If a certificate has several possible issuers in
+     * the chain (e.g. cross-signed certificates), the alternatives are tried until an anchor is reached.
+     *
+     * @param chain Certificate chain starting with the end entity certificate
+     * @return Path to a trust anchor or null if no anchor can be reached
+     */
+    public CertificatePath buildPath(final X509Certificate[] chain) {
+        if (chain == null || chain.length == 0) {
+            return null;
+        }
+
+        try {
+            X509Certificate trusted = byEncoding.get(ByteBuffer.wrap(chain[0].getEncoded()));
+            if (trusted != null) {
+                return new CertificatePath(List.of(), trusted);
+            }
+        } catch (CertificateEncodingException ex) {
+            return null;
+        }
+
+        Map<X500Principal, List<X509Certificate>> chainBySubject = new HashMap<>();
+        Map<ByteBuffer, List<X509Certificate>> chainByKeyIdentifier = new HashMap<>();
+        for (int i = 1; i < chain.length; i++) {
+            index(chain[i], chainBySubject, chainByKeyIdentifier);
+        }
+
+        List<X509Certificate> path = new ArrayList<>(chain.length);
+        path.add(chain[0]);
+        return extendPath(path, chainBySubject, chainByKeyIdentifier, chain.length);
+    }
+
+    /**
+     * Certification path from the end entity certificate to a trust anchor.
+     *
+     * @param certificates Certificates of the path starting with the end entity certificate, without the
+     *                     anchor (empty if the end entity certificate itself is trusted)
+     * @param anchor       Trusted certificate
+     */
+    public record CertificatePath(List<X509Certificate> certificates, X509Certificate anchor) {
+        /**
+         * Gets the issuer of the certificate at the specified position of the path.
+         *
+         * @param index Position in the path
+         * @return Next certificate of the path or the anchor for the last certificate
+         */
+        public X509Certificate issuer(final int index) {
+            return index + 1 < certificates.size() ? certificates.get(index + 1) : anchor;
+        }
+    }
+
+    /**
+     * Extends the path by the issuer of its last certificate until an anchor is reached.
+     *
+     * @return Completed path or null if no anchor can be reached from the path
+     */
+    private CertificatePath extendPath(final List<X509Certificate> path,
+                                       final Map<X500Principal, List<X509Certificate>> chainBySubject,
+                                       final Map<ByteBuffer, List<X509Certificate>> chainByKeyIdentifier,
+                                       final int maxLength) {
+        X509Certificate last = path.get(path.size() - 1);
+
+        List<X509Certificate> anchorIssuers = findIssuers(last, bySubject, byKeyIdentifier);
+        if (!anchorIssuers.isEmpty()) {
+            return new CertificatePath(List.copyOf(path), anchorIssuers.get(0));
+        }
+
+        if (path.size() >= maxLength) {
+            return null;
+        }
+
+        for (X509Certificate issuer : findIssuers(last, chainBySubject, chainByKeyIdentifier)) {
+            if (path.contains(issuer)) {
+                continue;
+            }
+
+            path.add(issuer);
+            CertificatePath result = extendPath(path, chainBySubject, chainByKeyIdentifier, maxLength);
+            if (result != null) {
+                return result;
+            }
+            path.remove(path.size() - 1);
+        }
+
+        return null;
+    }
+
+    private static void index(final X509Certificate certificate,
+                              final Map<X500Principal, List<X509Certificate>> subjects,
+                              final Map<ByteBuffer, List<X509Certificate>> keyIdentifiers) {
+        subjects.computeIfAbsent(certificate.getSubjectX500Principal(), key -> new ArrayList<>(1)).add(certificate);
+
+        byte[] keyIdentifier = subjectKeyIdentifier(certificate);
+        if (keyIdentifier != null) {
+            keyIdentifiers.computeIfAbsent(ByteBuffer.wrap(keyIdentifier), key -> new ArrayList<>(1)).add(certificate);
+        }
+    }
+
+    /**
+     * Finds the certificates in the specified indexes which have signed the certificate.
+     *
+     * @return Issuers, empty if no certificate of the indexes has signed the certificate
+     */
+    private static List<X509Certificate> findIssuers(final X509Certificate certificate,
+                                                     final Map<X500Principal, List<X509Certificate>> subjects,
+                                                     final Map<ByteBuffer, List<X509Certificate>> keyIdentifiers) {
+        byte[] keyIdentifier = authorityKeyIdentifier(certificate);
+
+        List<X509Certificate> candidates = null;
+        if (keyIdentifier != null) {
+            candidates = keyIdentifiers.get(ByteBuffer.wrap(keyIdentifier));
+        }
+
+        if (candidates == null) {
+            candidates = subjects.get(certificate.getIssuerX500Principal());
+        }
+
+        if (candidates == null) {
+            return List.of();
+        }
+
+        List<X509Certificate> issuers = new ArrayList<>(1);
+        for (X509Certificate candidate : candidates) {
+            if (!candidate.getSubjectX500Principal().equals(certificate.getIssuerX500Principal())) {
+                continue;
+            }
+
+            try {
+                certificate.verify(candidate.getPublicKey());
+                issuers.add(candidate);
+            } catch (GeneralSecurityException ex) {
+                // Same name or key identifier but a different key - try the next candidate
+            }
+        }
+
+        return issuers;
+    }
+
+    private void validate(final X509Certificate[] chain, final String purpose) throws CertificateException {
+        if (chain == null || chain.length == 0) {
+            throw new IllegalArgumentException("chain may not be empty");
+        }
+
+        CertificatePath match = buildPath(chain);
+        if (match == null) {
+            throw new CertificateException("No trust anchor found for " + chain[0].getSubjectX500Principal());
+        }
+
+        if (match.certificates().isEmpty()) {
+            // The end entity certificate itself is trusted
+            chain[0].checkValidity();
+            return;
+        }
+
+        try {
+            CertificateFactory factory = CertificateFactory.getInstance("X.509");
+            CertPath path = factory.generateCertPath(match.certificates());
+
+            PKIXParameters parameters = new PKIXParameters(Set.of(new TrustAnchor(match.anchor(), null)));
+            parameters.setRevocationEnabled(false);
+
+            CertPathValidator.getInstance("PKIX").validate(path, parameters);
+        } catch (GeneralSecurityException ex) {
+            throw new CertificateException("Certificate chain validation failed: " + ex.getMessage(), ex);
+        }
+
+        checkExtendedKeyUsage(chain[0], purpose);
+    }
+
+    private static void checkExtendedKeyUsage(final X509Certificate certificate, final String purpose)
+            throws CertificateException {
+        List<String> usages;
+        try {
+            usages = certificate.getExtendedKeyUsage();
+        } catch (CertificateParsingException ex) {
+            throw new CertificateException("Invalid extended key usage", ex);
+        }
+
+        if (usages != null && !usages.contains(purpose) && !usages.contains(ANY_EXTENDED_KEY_USAGE)) {
+            throw new CertificateException("Extended key usage does not permit use for " + purpose);
+        }
+    }
+
+    private static void verifyHostname(final X509Certificate certificate, final SSLParameters parameters,
+                                       final SSLSession session) throws CertificateException {
+        if (parameters == null || !"HTTPS".equalsIgnoreCase(parameters.getEndpointIdentificationAlgorithm())) {
+            return;
+        }
+
+        String host = session == null ? null : session.getPeerHost();
+        if (host == null) {
+            throw new CertificateException("Host name of the peer is unknown");
+        }
+
+        if (!HostnameMatcher.matches(host, certificate)) {
+            throw new CertificateException("No subject alternative name matching " + host.toLowerCase(Locale.ROOT)
+                    + " found");
+        }
+    }
+
+    private static byte[] subjectKeyIdentifier(final X509Certificate certificate) {
+        // OCTET STRING (extension value) containing OCTET STRING (key identifier)
+        byte[] value = certificate.getExtensionValue(SUBJECT_KEY_IDENTIFIER);
+        if (value == null) {
+            return null;
+        }
+
+        byte[] inner = unwrapOctetString(value);
+        return inner == null ? null : unwrapOctetString(inner);
+    }
+
+    private static byte[] authorityKeyIdentifier(final X509Certificate certificate) {
+        // OCTET STRING containing SEQUENCE { [0] keyIdentifier OPTIONAL, ... }
+        byte[] value = certificate.getExtensionValue(AUTHORITY_KEY_IDENTIFIER);
+        if (value == null) {
+            return null;
+        }
+
+        byte[] sequence = unwrapOctetString(value);
+        if (sequence == null || sequence.length < 2 || sequence[0] != 0x30) {
+            return null;
+        }
+
+        int[] header = readHeader(sequence, 0);
+        if (header == null) {
+            return null;
+        }
+
+        int offset = header[0];
+        if (offset >= sequence.length || (sequence[offset] & 0xff) != 0x80) {
+            return null;
+        }
+
+        int[] field = readHeader(sequence, offset);
+        if (field == null || field[0] + field[1] > sequence.length) {
+            return null;
+        }
+
+        return Arrays.copyOfRange(sequence, field[0], field[0] + field[1]);
+    }
+
+    private static byte[] unwrapOctetString(final byte[] data) {
+        if (data.length < 2 || data[0] != 0x04) {
+            return null;
+        }
+
+        int[] header = readHeader(data, 0);
+        if (header == null || header[0] + header[1] > data.length) {
+            return null;
+        }
+
+        return Arrays.copyOfRange(data, header[0], header[0] + header[1]);
+    }
+
+    /**
+     * Reads the tag and length of the DER element at the specified offset.
+     *
+     * @return Offset of the content and content length or null if the encoding is invalid
+     */
+    private static int[] readHeader(final byte[] data, final int offset) {
+        if (offset + 1 >= data.length) {
+            return null;
+        }
+
+        int length = data[offset + 1] & 0xff;
+        int position = offset + 2;
+
+        if (length > 0x80) {
+            int count = length & 0x7f;
+            if (count > 3 || position + count > data.length) {
+                return null;
+            }
+
+            length = 0;
+            for (int i = 0; i < count; i++) {
+                length = (length << 8) | (data[position++] & 0xff);
+            }
+        } else if (length == 0x80) {
+            return null;
+        }
+
+        return new int[]{position, length};
+    }
+}
@@ -0,0 +1,47 @@
+package dev.svero.tools;
+
+/**
+ * Writes values as JSON literals for the reports and metrics exports.
+ *
+ * @author Sven Roeseler
+ */
+public final class JsonUtils {
+    private JsonUtils() {
+    }
+
+    /**
+     * Appends the specified value as quoted and escaped JSON string or as null.
+     *
+     * @param sb    Destination
+     * @param value Value or null
+     * @return Destination
+     */
+    public static StringBuilder appendString(final StringBuilder sb, final String value) {
+        if (value == null) {
+            return sb.append("null");
+        }
+
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"');
+    }
+
+    /**
+     * Gets the specified value as quoted and escaped JSON string or as null.
+     *
+     * @param value Value or null
+     * @return JSON literal
+     */
+    public static String quote(final String value) {
+        return appendString(new StringBuilder(), value).toString();
+    }
+}
@@ -1,16 +1,25 @@
 package dev.svero.tools;
 
+import dev.svero.tools.jfr.KeyStoreEvent;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.security.*;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -44,6 +53,9 @@ public class KeyStoreUtils {
     public KeyStore createKeyStore(X509Certificate[] certificates) throws KeyStoreException {
         Objects.requireNonNull(certificates);
 
+        KeyStoreEvent event = new KeyStoreEvent();
+        event.begin();
+
         KeyStore trustStore = KeyStore.getInstance("PKCS12");
 
         try {
@@ -57,9 +69,41 @@ public class KeyStoreUtils {
                 }
             }
         } catch (Exception ex) {
+            commitEvent(event, "create", "PKCS12", null, certificates.length, ex);
+            throw new RuntimeException("Could not create a keystore", ex);
+        }
+
+        commitEvent(event, "create", "PKCS12", null, certificates.length, null);
+        return trustStore;
+    }
+
+    /**
+     * Creates a keystore using the specified certificates and their aliases.
+     *
+     * @param certificates Map with aliases as keys and X.509 certificates as values
+     * @return Created keystore
+     * @throws KeyStoreException If the keystore instance in PKCS.12 format could not be loaded
+     */
+    public KeyStore createKeyStore(Map<String, X509Certificate> certificates) throws KeyStoreException {
+        Objects.requireNonNull(certificates);
+
+        KeyStoreEvent event = new KeyStoreEvent();
+        event.begin();
+
+        KeyStore trustStore = KeyStore.getInstance("PKCS12");
+
+        try {
+            trustStore.load(null);
+
+            for (Map.Entry<String, X509Certificate> entry : certificates.entrySet()) {
+                trustStore.setCertificateEntry(entry.getKey(), entry.getValue());
+            }
+        } catch (Exception ex) {
+            commitEvent(event, "create", "PKCS12", null, certificates.size(), ex);
             throw new RuntimeException("Could not create a keystore", ex);
         }
 
+        commitEvent(event, "create", "PKCS12", null, certificates.size(), null);
         return trustStore;
     }
 
@@ -96,6 +140,9 @@ public class KeyStoreUtils {
             return loadKeyStore(keyStoreFilename, keyStorePassword);
         }
 
+        KeyStoreEvent event = new KeyStoreEvent();
+        event.begin();
+
         KeyStore keyStore;
 
         try {
@@ -108,8 +155,13 @@ public class KeyStoreUtils {
 
             LOGGER.debug("Try to load key store from {}", keyStoreFilename);
 
-            keyStore.load(new FileInputStream(keyStoreFilename), keyStorePassword.toCharArray());
+            try (FileInputStream in = new FileInputStream(keyStoreFilename)) {
+                keyStore.load(in, keyStorePassword.toCharArray());
+            }
+
+            commitEvent(event, "load", keyStoreType, keyStoreFilename, keyStore.size(), null);
         } catch (KeyStoreException | CertificateException | IOException | NoSuchAlgorithmException e) {
+            commitEvent(event, "load", keyStoreType, keyStoreFilename, 0, e);
             throw new RuntimeException("Could not create a KeyStore instance", e);
         }
 
@@ -126,4 +178,61 @@ public class KeyStoreUtils {
     public KeyStore loadKeyStore(final String keyStoreFilename, final String keyStorePassword) {
         return loadKeyStore(keyStoreFilename, keyStorePassword, "PKCS12");
     }
+
+    /**
+     * Commits the specified JFR event if it is enabled and exceeds the configured threshold.
+     */
+    private static void commitEvent(final KeyStoreEvent event, final String operation, final String storeType,
+                                    final String path, final int entries, final Exception error) {
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.storeType = storeType;
+            event.path = path;
+            event.entries = entries;
+            event.success = error == null;
+            event.error = error == null ? null : error.getMessage();
+            event.commit();
+        }
+    }
+
+    /**
+     * Calculates a fingerprint of the contents of the specified keystore. The fingerprint covers the
+     * type, the aliases, the entry types and the certificates (or certificate chains) of all entries.
+     * Two keystores with the same fingerprint contain the same trust and key material.
+     *
+     * @param keyStore Keystore
+     * @return SHA-256 fingerprint as lower-case hex string
+     */
+    public static String fingerprint(final KeyStore keyStore) {
+        Objects.requireNonNull(keyStore);
+
+        MessageDigest digest = DigestUtils.getSha256Digest();
+
+        try {
+            digest.update(keyStore.getType().getBytes(StandardCharsets.UTF_8));
+
+            List<String> aliases = Collections.list(keyStore.aliases());
+            Collections.sort(aliases);
+
+            for (String alias : aliases) {
+                digest.update((byte) 0);
+                digest.update(alias.getBytes(StandardCharsets.UTF_8));
+                digest.update(keyStore.isKeyEntry(alias) ? (byte) 'K' : (byte) 'C');
+
+                Certificate[] chain = keyStore.getCertificateChain(alias);
+                if (chain == null) {
+                    Certificate certificate = keyStore.getCertificate(alias);
+                    chain = certificate == null ? new Certificate[0] : new Certificate[]{certificate};
+                }
+
+                for (Certificate certificate : chain) {
+                    digest.update(certificate.getEncoded());
+                }
+            }
+        } catch (KeyStoreException | CertificateEncodingException ex) {
+            throw new RuntimeException("Could not calculate the fingerprint of the keystore", ex);
+        }
+
+        return Hex.encodeHexString(digest.digest());
+    }
 }
@@ -0,0 +1,147 @@
+package dev.svero.tools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.net.Socket;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Trust manager which skips the validation of server certificate chains that have already been validated
+ * for the same endpoint under the same trust configuration. A chain is known if {@link KnownChains}
+ * accepts the endpoint (host:port), the fingerprint of the trust configuration of this trust manager and
+ * the SHA-256 fingerprint of the chain. Known chains are only checked for expired certificates. All
+ * other chains, and client certificate chains, are validated by the wrapped trust manager.
+ * <p>
+ * Only the path validation is skipped: a {@link dev.svero.tools.revocation.RevocationTrustManager}
+ * has to wrap this trust manager, not the other way round, so the revocation status of known chains is
+ * still checked.
+ *
+ * @author Sven Roeseler
+ */
+public class KnownChainTrustManager extends X509ExtendedTrustManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(KnownChainTrustManager.class);
+
+    private final X509ExtendedTrustManager delegate;
+    private final String trustConfiguration;
+    private final KnownChains knownChains;
+
+    /**
+     * Lookup of the chains which have already been validated.
+     */
+    @FunctionalInterface
+    public interface KnownChains {
+        /**
+         * Checks if the chain has already been validated for the endpoint under the trust configuration.
+         *
+         * @param endpoint           Host and port (host:port)
+         * @param trustConfiguration Fingerprint of the trust configuration
+         * @param fingerprint        SHA-256 fingerprint of the chain
+         * @return True if the chain is known
+         */
+        boolean isKnownChain(String endpoint, String trustConfiguration, String fingerprint);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param delegate           Trust manager which validates unknown chains
+     * @param trustConfiguration Fingerprint of the trust configuration of the delegate (trust anchors and
+     *                           validation settings)
+     * @param knownChains        Lookup of the chains which have already been validated
+     */
+    public KnownChainTrustManager(final X509ExtendedTrustManager delegate, final String trustConfiguration,
+                                  final KnownChains knownChains) {
+        Objects.requireNonNull(delegate);
+        Objects.requireNonNull(trustConfiguration);
+        Objects.requireNonNull(knownChains);
+
+        this.delegate = delegate;
+        this.trustConfiguration = trustConfiguration;
+        this.knownChains = knownChains;
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        delegate.checkClientTrusted(chain, authType);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        delegate.checkServerTrusted(chain, authType);
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType, final Socket socket)
+            throws CertificateException {
+        delegate.checkClientTrusted(chain, authType, socket);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType, final Socket socket)
+            throws CertificateException {
+        SSLSession session = socket instanceof SSLSocket sslSocket ? sslSocket.getHandshakeSession() : null;
+        if (session == null || !isKnown(chain, session.getPeerHost(), session.getPeerPort())) {
+            delegate.checkServerTrusted(chain, authType, socket);
+        }
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine)
+            throws CertificateException {
+        delegate.checkClientTrusted(chain, authType, engine);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine)
+            throws CertificateException {
+        if (engine == null || !isKnown(chain, engine.getPeerHost(), engine.getPeerPort())) {
+            delegate.checkServerTrusted(chain, authType, engine);
+        }
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        return delegate.getAcceptedIssuers();
+    }
+
+    /**
+     * Checks if the chain has already been validated for the endpoint under the same trust configuration
+     * and none of its certificates has expired since.
+     */
+    private boolean isKnown(final X509Certificate[] chain, final String host, final int port) {
+        if (host == null || port < 0 || chain == null || chain.length == 0) {
+            return false;
+        }
+
+        final String endpoint = host + ":" + port;
+        final String fingerprint;
+        try {
+            fingerprint = CertificateUtils.chainFingerprint(Arrays.asList(chain));
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+
+        if (!knownChains.isKnownChain(endpoint, trustConfiguration, fingerprint)) {
+            return false;
+        }
+
+        final Date now = new Date();
+        for (X509Certificate certificate : chain) {
+            if (now.after(certificate.getNotAfter())) {
+                return false;
+            }
+        }
+
+        LOGGER.debug("Chain of {} is unchanged - skipping validation", endpoint);
+        return true;
+    }
+}
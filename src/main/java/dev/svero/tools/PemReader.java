@@ -0,0 +1,299 @@
+package dev.svero.tools;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Reads the DER encoded certificates of a PEM file one after the other. The file is scanned on byte
+ * level in chunks without creating strings for the lines. Large files are memory-mapped, small files
+ * are read through the file channel. Content which has already been read into memory can be scanned
+ * as well. Blocks other than certificates (e.g. private keys) are skipped.
+ *
+ * @author Sven Roeseler
+ */
+public class PemReader implements Iterator<byte[]>, Closeable {
+    private static final byte[] BEGIN_MARKER = "-----BEGIN CERTIFICATE-----".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END_MARKER = "-----END CERTIFICATE-----".getBytes(StandardCharsets.US_ASCII);
+
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_MARKER_LINE = 128;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final boolean mapped;
+
+    private final byte[] chunk = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    private final byte[] markerLine = new byte[MAX_MARKER_LINE];
+    private byte[] base64 = new byte[4096];
+    private int base64Length;
+
+    private boolean inCertificate;
+    private boolean beginFound;
+    private boolean endOfFile;
+    private long bytesRead;
+    private byte[] next;
+
+    /**
+     * Creates a reader for the specified PEM content.
+     *
+     * @param content PEM content
+     */
+    public PemReader(final byte[] content) {
+        Objects.requireNonNull(content);
+
+        this.channel = null;
+        this.buffer = ByteBuffer.wrap(content);
+        this.mapped = true;
+    }
+
+    /**
+     * Opens the specified PEM file.
+     *
+     * @param file PEM file
+     * @throws IOException If the file could not be opened
+     */
+    public PemReader(final Path file) throws IOException {
+        Objects.requireNonNull(file);
+
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+
+        try {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD && size <= Integer.MAX_VALUE) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                this.mapped = true;
+            } else {
+                this.buffer = null;
+                this.mapped = false;
+            }
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !endOfFile) {
+            try {
+                next = readNext();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        return next != null;
+    }
+
+    /**
+     * Gets the DER encoding of the next certificate.
+     *
+     * @return DER encoded certificate
+     */
+    @Override
+    public byte[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        byte[] result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * Checks if at least one begin marker of a certificate has been found so far.
+     *
+     * @return True if a certificate block has been found
+     */
+    public boolean isBeginFound() {
+        return beginFound;
+    }
+
+    /**
+     * Gets the number of bytes consumed from the file so far.
+     *
+     * @return Number of bytes
+     */
+    public long getBytesRead() {
+        return bytesRead + position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Scans the file up to the end of the next certificate block.
+     *
+     * @return DER encoded certificate or null if the end of the file has been reached
+     * @throws IOException If the file could not be read
+     */
+    private byte[] readNext() throws IOException {
+        while (fill()) {
+            byte b = chunk[position];
+
+            if (b == '\n' || b == '\r' || b == ' ' || b == '\t') {
+                position++;
+                continue;
+            }
+
+            if (b == '-') {
+                int length = readLine(markerLine);
+                if (!inCertificate && startsWith(markerLine, length, BEGIN_MARKER)) {
+                    inCertificate = true;
+                    beginFound = true;
+                    base64Length = 0;
+                } else if (inCertificate && startsWith(markerLine, length, END_MARKER)) {
+                    inCertificate = false;
+                    return decode();
+                }
+            } else if (inCertificate) {
+                appendBase64Line();
+            } else {
+                readLine(null);
+            }
+        }
+
+        endOfFile = true;
+        return null;
+    }
+
+    /**
+     * Consumes the rest of the current line. If a target is specified, the bytes are copied into it
+     * as far as it has room.
+     *
+     * @param target Target for the line or null
+     * @return Number of bytes copied into the target
+     * @throws IOException If the file could not be read
+     */
+    private int readLine(final byte[] target) throws IOException {
+        int length = 0;
+
+        while (fill()) {
+            int start = position;
+            int end = start;
+            while (end < limit && chunk[end] != '\n' && chunk[end] != '\r') {
+                end++;
+            }
+
+            if (target != null && length < target.length) {
+                int count = Math.min(end - start, target.length - length);
+                System.arraycopy(chunk, start, target, length, count);
+                length += count;
+            }
+
+            position = end;
+            if (end < limit) {
+                break;
+            }
+        }
+
+        return length;
+    }
+
+    /**
+     * Appends the rest of the current line to the base64 buffer, skipping blanks.
+     *
+     * @throws IOException If the file could not be read
+     */
+    private void appendBase64Line() throws IOException {
+        while (fill()) {
+            int end = position;
+            while (end < limit) {
+                byte b = chunk[end];
+                if (b == '\n' || b == '\r' || b == ' ' || b == '\t') {
+                    break;
+                }
+                end++;
+            }
+
+            int count = end - position;
+            if (base64Length + count > base64.length) {
+                base64 = Arrays.copyOf(base64, Math.max(base64.length * 2, base64Length + count));
+            }
+
+            System.arraycopy(chunk, position, base64, base64Length, count);
+            base64Length += count;
+            position = end;
+
+            if (end < limit) {
+                byte b = chunk[end];
+                if (b == '\n' || b == '\r') {
+                    return;
+                }
+                position++;
+            }
+        }
+    }
+
+    private byte[] decode() {
+        ByteBuffer decoded = Base64.getDecoder().decode(ByteBuffer.wrap(base64, 0, base64Length));
+        if (decoded.hasArray() && decoded.arrayOffset() == 0 && decoded.array().length == decoded.remaining()) {
+            return decoded.array();
+        }
+
+        byte[] der = new byte[decoded.remaining()];
+        decoded.get(der);
+        return der;
+    }
+
+    /**
+     * Makes sure that the chunk contains unread bytes.
+     *
+     * @return False if the end of the file has been reached
+     * @throws IOException If the file could not be read
+     */
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+
+        bytesRead += limit;
+        position = 0;
+        limit = 0;
+
+        if (mapped) {
+            int count = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, count);
+            limit = count;
+        } else {
+            int count = channel.read(ByteBuffer.wrap(chunk));
+            limit = Math.max(count, 0);
+        }
+
+        return limit > 0;
+    }
+
+    private static boolean startsWith(final byte[] line, final int length, final byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (line[i] != prefix[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
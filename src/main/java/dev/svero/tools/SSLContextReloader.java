@@ -0,0 +1,299 @@
+package dev.svero.tools;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Watches the files of the trust store and key store and rebuilds the SSL context in the background if
+ * one of them changes. Changes are debounced, so a file which is written in several steps only triggers
+ * one rebuild. The new context is handed to the registered listeners, which swap it in atomically. If the
+ * rebuild fails, the current context stays in use.
+ * <p>
+ * Events are not matched against the names of the files, because a rotation may only touch other directory
+ * entries: swapping a symbolic link (e.g. the {@code ..data} link of a Kubernetes secret or {@code ln -sfn})
+ * changes the link, not the file. Instead, every event in a watched directory compares the real path, size
+ * and modification time of the files with the state of the last load. The directories containing symbolic
+ * links on the path of a file are watched as well. If events have been lost, the context is always rebuilt.
+ *
+ * @author Sven Roeseler
+ */
+public class SSLContextReloader implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SSLContextReloader.class);
+
+    private final Supplier<SSLContext> contextFactory;
+    private final Set<Path> files = new HashSet<>();
+    private final Set<Path> directories = new HashSet<>();
+    private final Duration debounce;
+    private final List<Consumer<SSLContext>> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicReference<SSLContext> current;
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ssl-context-reloader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Map<Path, FileState> loaded;
+    private WatchService watchService;
+    private ScheduledFuture<?> pendingReload;
+
+    /**
+     * State of a watched file. The status change time is included where the file system provides it, so
+     * a file rewritten with the same size and a preserved modification time (e.g. by {@code cp -p}) is
+     * noticed as well.
+     *
+     * @param realPath Path with all symbolic links resolved or null if the file does not exist
+     * @param size     Size in bytes
+     * @param modified Modification time
+     * @param changed  Status change time or null if not available
+     */
+    private record FileState(Path realPath, long size, FileTime modified, Object changed) {
+        private static final FileState MISSING = new FileState(null, -1, null, null);
+
+        private static FileState of(final Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return new FileState(file.toRealPath(), attributes.size(), attributes.lastModifiedTime(),
+                        changeTime(file));
+            } catch (IOException ex) {
+                return MISSING;
+            }
+        }
+
+        private static Object changeTime(final Path file) throws IOException {
+            try {
+                return Files.getAttribute(file, "unix:ctime");
+            } catch (UnsupportedOperationException | IllegalArgumentException ex) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param contextFactory Creates a new SSL context from the current contents of the files
+     * @param initialContext SSL context currently in use
+     * @param files          Files to watch
+     * @param debounce       Time to wait after the last change before the context is rebuilt
+     */
+    public SSLContextReloader(final Supplier<SSLContext> contextFactory, final SSLContext initialContext,
+                              final List<Path> files, final Duration debounce) {
+        Objects.requireNonNull(contextFactory);
+        Objects.requireNonNull(initialContext);
+        Objects.requireNonNull(files);
+        Objects.requireNonNull(debounce);
+
+        this.contextFactory = contextFactory;
+        this.current = new AtomicReference<>(initialContext);
+        this.debounce = debounce;
+
+        for (Path file : files) {
+            Path absolute = file.toAbsolutePath().normalize();
+            this.files.add(absolute);
+            this.directories.add(absolute.getParent());
+
+            // A swapped link changes the entries of the directory containing it
+            for (Path path = absolute.getParent(); path.getParent() != null; path = path.getParent()) {
+                if (Files.isSymbolicLink(path)) {
+                    this.directories.add(path.getParent());
+                }
+            }
+        }
+
+        this.loaded = fileStates();
+    }
+
+    /**
+     * Registers a listener which is called with every newly built SSL context.
+     *
+     * @param listener Listener
+     */
+    public void addListener(final Consumer<SSLContext> listener) {
+        Objects.requireNonNull(listener);
+
+        listeners.add(listener);
+    }
+
+    /**
+     * Gets the SSL context currently in use.
+     *
+     * @return SSL context
+     */
+    public SSLContext getSSLContext() {
+        return current.get();
+    }
+
+    /**
+     * Gets the number of successful reloads.
+     *
+     * @return Number of reloads
+     */
+    public long getReloads() {
+        return reloads.get();
+    }
+
+    /**
+     * Gets the number of failed reloads.
+     *
+     * @return Number of failures
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Starts watching the files.
+     *
+     * @throws IOException If the directories of the files could not be watched
+     */
+    public synchronized void start() throws IOException {
+        if (watchService != null) {
+            return;
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        for (Path directory : directories) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+
+        Thread watcher = new Thread(this::watch, "ssl-context-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        LOGGER.info("Watching {} for changes", files);
+    }
+
+    /**
+     * Rebuilds the SSL context immediately.
+     *
+     * @return True if the context has been rebuilt successfully
+     */
+    public boolean reload() {
+        final long start = System.nanoTime();
+        // Taken before reading the files, so a change during the rebuild triggers another one
+        final Map<Path, FileState> states = fileStates();
+
+        try {
+            SSLContext context = contextFactory.get();
+            if (context == null) {
+                throw new IllegalStateException("No SSL context created");
+            }
+
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            loaded = states;
+            SSLContext previous = current.getAndSet(context);
+            if (previous == context) {
+                LOGGER.info("Trust and key material unchanged - keeping SSL context (checked in {} ms)", millis);
+                return true;
+            }
+
+            for (Consumer<SSLContext> listener : listeners) {
+                listener.accept(context);
+            }
+
+            reloads.incrementAndGet();
+            LOGGER.info("SSL context reloaded in {} ms", millis);
+            return true;
+        } catch (RuntimeException ex) {
+            failures.incrementAndGet();
+            LOGGER.error("Could not reload SSL context after {} ms - keeping the current context: {}",
+                    (System.nanoTime() - start) / 1_000_000, ex.getMessage());
+            return false;
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+
+                boolean overflow = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    }
+                }
+
+                key.reset();
+
+                if (overflow) {
+                    LOGGER.debug("Lost file system events - reloading SSL context");
+                    scheduleReload();
+                } else if (!fileStates().equals(loaded)) {
+                    scheduleReload();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ex) {
+            // Reloader has been closed
+        }
+    }
+
+    private Map<Path, FileState> fileStates() {
+        Map<Path, FileState> states = new HashMap<>();
+        for (Path file : files) {
+            states.put(file, FileState.of(file));
+        }
+
+        return states;
+    }
+
+    private synchronized void scheduleReload() {
+        if (pendingReload != null) {
+            pendingReload.cancel(false);
+        }
+
+        pendingReload = scheduler.schedule(this::reload, debounce.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops watching the files.
+     */
+    @Override
+    public synchronized void close() {
+        scheduler.shutdownNow();
+
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ex) {
+                LOGGER.warn("Could not close watch service: {}", ex.getMessage());
+            }
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package dev.svero.tools;
 
+import dev.svero.tools.jfr.SSLContextEvent;
+import dev.svero.tools.revocation.RevocationChecker;
+import dev.svero.tools.revocation.RevocationTrustManager;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -7,6 +11,12 @@ import org.slf4j.LoggerFactory;
 import javax.net.ssl.*;
 import java.security.*;
 import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
 
 /**
  * Implements methods for handling SSL/TLS contexts.
@@ -16,6 +26,243 @@ import java.security.cert.X509Certificate;
 public class SSLUtils {
     private static final Logger LOGGER = LoggerFactory.getLogger(SSLUtils.class);
 
+    private static final String PROTOCOL = "TLS";
+    private static final int DEFAULT_CACHE_SIZE = 16;
+
+    /**
+     * Details of a created context which cannot be queried from the context itself.
+     *
+     * @param trustConfiguration Fingerprint of the trust configuration
+     * @param keyManagers        Key managers the context was initialized with or null
+     */
+    private record ContextDetails(String trustConfiguration, KeyManager[] keyManagers) {
+    }
+
+    private final Map<String, SSLContext> contextCache;
+    private final Map<SSLContext, ContextDetails> contextDetails = Collections.synchronizedMap(new WeakHashMap<>());
+    private final int cacheSize;
+
+    private long cacheHits;
+    private long cacheMisses;
+
+    private volatile boolean indexedTrustManager;
+    private volatile Map<String, String> hostAliases;
+    private volatile RevocationChecker revocationChecker;
+    private volatile boolean revocationHardFail;
+    private volatile KnownChainTrustManager.KnownChains knownChains;
+    private volatile long knownChainsId;
+    private volatile int sessionCacheSize = -1;
+    private volatile int sessionTimeout = -1;
+
+    /**
+     * Creates a new instance which caches up to 16 SSL contexts.
+     */
+    public SSLUtils() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a new instance which caches up to the specified number of SSL contexts. If the limit is
+     * reached, the least recently used context is evicted.
+     *
+     * @param cacheSize Maximum number of cached SSL contexts (0 disables the cache)
+     */
+    public SSLUtils(final int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("cacheSize may not be negative");
+        }
+
+        this.cacheSize = cacheSize;
+        this.contextCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, SSLContext> eldest) {
+                return size() > SSLUtils.this.cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Enables or disables the indexed trust manager. If enabled, contexts created for a custom trust
+     * store use an {@link IndexedTrustManager} instead of the default trust manager of the JVM. This is
+     * much faster for trust stores with many thousands of anchors.
+     *
+     * @param indexedTrustManager True to use the indexed trust manager
+     */
+    public void setIndexedTrustManager(final boolean indexedTrustManager) {
+        this.indexedTrustManager = indexedTrustManager;
+    }
+
+    /**
+     * Enables or disables the indexed key manager. If enabled, contexts created for a key store use an
+     * {@link IndexedKeyManager} instead of the default key manager, which selects the client identity per
+     * connection using the specified map from hosts to aliases and the authorities requested by the server.
+     *
+     * @param hostAliases Alias of the identity to use per host or null to use the default key manager
+     */
+    public void setHostAliases(final Map<String, String> hostAliases) {
+        this.hostAliases = hostAliases == null ? null : Map.copyOf(hostAliases);
+    }
+
+    /**
+     * Enables revocation checking for contexts created afterwards. The trust managers of these contexts
+     * are wrapped by a {@link RevocationTrustManager} which uses the specified checker.
+     *
+     * @param revocationChecker Checker for the revocation status or null to disable revocation checking
+     * @param hardFail          True to reject certificates whose revocation status is unknown
+     */
+    public void setRevocationChecker(final RevocationChecker revocationChecker, final boolean hardFail) {
+        this.revocationChecker = revocationChecker;
+        this.revocationHardFail = hardFail;
+    }
+
+    /**
+     * Skips the validation of server certificate chains already validated for the same endpoint and
+     * trust configuration in contexts created afterwards. See {@link KnownChainTrustManager} and
+     * {@link #getTrustConfiguration(SSLContext)}.
+     *
+     * @param knownChains Lookup of the known chains or null to validate all chains
+     */
+    public synchronized void setKnownChains(final KnownChainTrustManager.KnownChains knownChains) {
+        // Every lookup gets its own id, so contexts are never shared between different lookups
+        this.knownChainsId = knownChains == null ? 0 : knownChainsId + 1;
+        this.knownChains = knownChains;
+    }
+
+    /**
+     * Sets the size and timeout of the client session cache of contexts created afterwards. Cached
+     * sessions are resumed by later connections to the same endpoint, which saves the key exchange and the
+     * validation of the certificate chain.
+     *
+     * @param sessionCacheSize Maximum number of cached sessions (0 for no limit, -1 for the JVM default)
+     * @param sessionTimeout   Lifetime of cached sessions in seconds (0 for no limit, -1 for the JVM default)
+     */
+    public void setSessionCache(final int sessionCacheSize, final int sessionTimeout) {
+        if (sessionCacheSize < -1 || sessionTimeout < -1) {
+            throw new IllegalArgumentException("sessionCacheSize and sessionTimeout may not be less than -1");
+        }
+
+        this.sessionCacheSize = sessionCacheSize;
+        this.sessionTimeout = sessionTimeout;
+    }
+
+    /**
+     * Gets a SSL context for the specified trust and key material. Contexts are cached using a fingerprint
+     * of the contents of the trust store and key store, so a context is only created once for the same
+     * material even if the keystore instances differ.
+     *
+     * @param trustStore       Trust store to use or null for the default JVM trust store
+     * @param keyStore         Key store to use or null
+     * @param keyStorePassword Password of the key store
+     * @return Cached or newly created SSL context
+     */
+    public SSLContext getSSLContext(KeyStore trustStore, KeyStore keyStore, String keyStorePassword) {
+        SSLContextEvent event = new SSLContextEvent();
+        event.begin();
+
+        final String trustConfiguration = trustConfiguration(trustStore);
+        final String key = contextKey(trustConfiguration, keyStore, keyStorePassword);
+
+        synchronized (contextCache) {
+            SSLContext context = contextCache.get(key);
+            if (context != null) {
+                cacheHits++;
+                LOGGER.debug("Using cached SSL context ({} hits, {} misses)", cacheHits, cacheMisses);
+                commitEvent(event, trustStore, keyStore, true, null);
+                return context;
+            }
+
+            cacheMisses++;
+        }
+
+        SSLContext context = createSSLContext(trustStore, keyStore, keyStorePassword, trustConfiguration);
+
+        synchronized (contextCache) {
+            SSLContext existing = contextCache.putIfAbsent(key, context);
+            return existing != null ? existing : context;
+        }
+    }
+
+    /**
+     * Removes all cached SSL contexts.
+     */
+    public void clearCache() {
+        synchronized (contextCache) {
+            contextCache.clear();
+        }
+    }
+
+    /**
+     * Gets the fingerprint of the trust configuration of the specified context, i.e. of its trust anchors,
+     * its trust manager and its revocation checking mode. Chains validated by contexts with the same trust
+     * configuration are accepted by all of them.
+     *
+     * @param context SSL context created by this instance
+     * @return SHA-256 fingerprint as lower-case hex string or null if the context was not created by this
+     * instance
+     */
+    public String getTrustConfiguration(SSLContext context) {
+        final ContextDetails details = context == null ? null : contextDetails.get(context);
+        return details == null ? null : details.trustConfiguration();
+    }
+
+    /**
+     * Gets the key managers the specified context was initialized with, so other contexts can present the
+     * same client identity (e.g. the context of the {@link CipherSuiteScanner}).
+     *
+     * @param context SSL context created by this instance
+     * @return Key managers or null if the context has no key store or was not created by this instance
+     */
+    public KeyManager[] getKeyManagers(SSLContext context) {
+        final ContextDetails details = context == null ? null : contextDetails.get(context);
+        return details == null || details.keyManagers() == null ? null : details.keyManagers().clone();
+    }
+
+    /**
+     * Calculates the fingerprint of the trust configuration for the specified trust store and the current
+     * settings.
+     */
+    private String trustConfiguration(KeyStore trustStore) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(indexedTrustManager && trustStore != null ? "indexed" : "default").append('|');
+        sb.append(revocationChecker == null ? "norevocation" : revocationHardFail ? "hardfail" : "softfail")
+                .append('|');
+        sb.append(trustStore == null ? "jvm" : KeyStoreUtils.fingerprint(trustStore));
+
+        return DigestUtils.sha256Hex(sb.toString());
+    }
+
+    /**
+     * Calculates the cache key for the specified trust configuration and key material.
+     */
+    private String contextKey(String trustConfiguration, KeyStore keyStore, String keyStorePassword) {
+        StringBuilder sb = new StringBuilder(PROTOCOL).append('|');
+        sb.append(trustConfiguration).append('|');
+        sb.append(knownChains == null ? "" : "known#" + knownChainsId).append('|');
+        sb.append(sessionCacheSize).append(',').append(sessionTimeout).append('|');
+        sb.append(hostAliases == null ? "" : "aliases#" + aliasesFingerprint(hostAliases)).append('|');
+
+        if (keyStore != null) {
+            sb.append(KeyStoreUtils.fingerprint(keyStore)).append('|');
+            sb.append(keyStorePassword == null ? "" : DigestUtils.sha256Hex(keyStorePassword));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Calculates a SHA-256 fingerprint of the specified map from hosts to aliases. The entries are sorted
+     * and every value is prefixed by its length, so different maps never produce the same input.
+     */
+    private static String aliasesFingerprint(Map<String, String> aliases) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : new TreeMap<>(aliases).entrySet()) {
+            sb.append(entry.getKey().length()).append(':').append(entry.getKey());
+            sb.append(entry.getValue().length()).append(':').append(entry.getValue());
+        }
+
+        return DigestUtils.sha256Hex(sb.toString());
+    }
+
     /**
      * Creates a new SSL context using the default key managers and trust managers.
      *
@@ -41,30 +288,67 @@ public class SSLUtils {
      * @return SSL context or null
      */
     public SSLContext createSSLContext(KeyStore trustStore, KeyStore keyStore, String keyStorePassword) {
+        return createSSLContext(trustStore, keyStore, keyStorePassword, trustConfiguration(trustStore));
+    }
+
+    /**
+     * Creates a SSL context whose trust configuration has the specified fingerprint.
+     */
+    private SSLContext createSSLContext(KeyStore trustStore, KeyStore keyStore, String keyStorePassword,
+                                        String trustConfiguration) {
+        SSLContextEvent event = new SSLContextEvent();
+        event.begin();
+
         SSLContext context;
 
         try {
-            context = SSLContext.getInstance("TLS");
+            context = SSLContext.getInstance(PROTOCOL);
 
             TrustManager[] trustManagers;
             KeyManager[] keyManagers = null;
 
-            TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
-            if (trustStore != null) {
-                tmf.init(trustStore);
+            if (trustStore != null && indexedTrustManager) {
+                trustManagers = new TrustManager[]{IndexedTrustManager.fromKeyStore(trustStore)};
             } else {
-                LOGGER.debug("Using default JVM trust store");
-                tmf.init((KeyStore) null);
+                TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+                if (trustStore != null) {
+                    tmf.init(trustStore);
+                } else {
+                    LOGGER.debug("Using default JVM trust store");
+                    tmf.init((KeyStore) null);
+                }
+
+                trustManagers = tmf.getTrustManagers();
             }
 
-            trustManagers = tmf.getTrustManagers();
+            // The revocation check wraps the known chains, so it is never skipped
+            final KnownChainTrustManager.KnownChains known = knownChains;
+            final RevocationChecker checker = revocationChecker;
+            for (int i = 0; i < trustManagers.length; i++) {
+                if (trustManagers[i] instanceof X509ExtendedTrustManager base) {
+                    X509ExtendedTrustManager trustManager = base;
+                    if (known != null) {
+                        trustManager = new KnownChainTrustManager(trustManager, trustConfiguration, known);
+                    }
 
-            for (TrustManager tm : trustManagers) {
-                if (tm instanceof X509TrustManager x509TrustManager) {
-                    X509Certificate[] acceptedIssuers = x509TrustManager.getAcceptedIssuers();
-                    LOGGER.debug("Has {} accepted issueres", acceptedIssuers.length);
-                } else {
-                    LOGGER.debug("Unexpected trust manager instance found: {}", tm.getClass());
+                    if (checker != null) {
+                        IndexedTrustManager paths = base instanceof IndexedTrustManager indexed ? indexed
+                                : new IndexedTrustManager(List.of(base.getAcceptedIssuers()));
+                        trustManager = new RevocationTrustManager(trustManager, paths, checker, revocationHardFail);
+                    }
+
+                    trustManagers[i] = trustManager;
+                }
+            }
+
+            if (LOGGER.isDebugEnabled()) {
+                for (TrustManager tm : trustManagers) {
+                    if (tm instanceof X509TrustManager x509TrustManager) {
+                        X509Certificate[] acceptedIssuers = x509TrustManager.getAcceptedIssuers();
+                        LOGGER.debug("Has {} accepted issueres", acceptedIssuers.length);
+                    } else {
+                        LOGGER.debug("Unexpected trust manager instance found: {}", tm.getClass());
+                    }
                 }
             }
 
@@ -73,28 +357,85 @@ public class SSLUtils {
                     throw new IllegalArgumentException("Keystore password may not be blank");
                 }
 
-                KeyManagerFactory kmf;
-                try {
-                    kmf = KeyManagerFactory.getInstance("PKIX");
-                } catch (NoSuchAlgorithmException ex) {
-                    kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
-                }
+                final Map<String, String> aliases = hostAliases;
+                if (aliases != null) {
+                    keyManagers = new KeyManager[]{new IndexedKeyManager(keyStore, keyStorePassword, aliases)};
+                } else {
+                    KeyManagerFactory kmf;
+                    try {
+                        kmf = KeyManagerFactory.getInstance("PKIX");
+                    } catch (NoSuchAlgorithmException ex) {
+                        kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+                    }
 
-                if (LOGGER.isDebugEnabled()) {
-                    LOGGER.debug("Used algorithm for key manager factory: {}", kmf.getAlgorithm());
-                }
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("Used algorithm for key manager factory: {}", kmf.getAlgorithm());
+                    }
 
-                kmf.init(keyStore, keyStorePassword.toCharArray());
-                keyManagers = kmf.getKeyManagers();
+                    kmf.init(keyStore, keyStorePassword.toCharArray());
+                    keyManagers = kmf.getKeyManagers();
+                }
             } else {
                 LOGGER.info("No keystore will be used for SSL context");
             }
 
             context.init(keyManagers, trustManagers, new SecureRandom());
+            configureSessionCache(context);
+            contextDetails.put(context, new ContextDetails(trustConfiguration, keyManagers));
         } catch (NoSuchAlgorithmException | UnrecoverableKeyException | KeyStoreException | KeyManagementException e) {
+            commitEvent(event, trustStore, keyStore, false, e);
             throw new RuntimeException("Could not create SSL context instance", e);
         }
 
+        commitEvent(event, trustStore, keyStore, false, null);
         return context;
     }
+
+    /**
+     * Applies the configured size and timeout to the client session cache of the specified context.
+     */
+    private void configureSessionCache(SSLContext context) {
+        SSLSessionContext sessions = context.getClientSessionContext();
+        if (sessions == null) {
+            return;
+        }
+
+        if (sessionCacheSize >= 0) {
+            sessions.setSessionCacheSize(sessionCacheSize);
+        }
+
+        if (sessionTimeout >= 0) {
+            sessions.setSessionTimeout(sessionTimeout);
+        }
+
+        LOGGER.debug("Client session cache: {} sessions, {} s timeout", sessions.getSessionCacheSize(),
+                sessions.getSessionTimeout());
+    }
+
+    /**
+     * Commits the specified JFR event if it is enabled and exceeds the configured threshold.
+     */
+    private void commitEvent(SSLContextEvent event, KeyStore trustStore, KeyStore keyStore, boolean cached,
+                             Exception error) {
+        if (!event.shouldCommit()) {
+            return;
+        }
+
+        event.protocol = PROTOCOL;
+        event.trustManager = trustStore == null ? "jvm" : indexedTrustManager ? "indexed" : "default";
+        event.trustAnchors = size(trustStore);
+        event.keyEntries = size(keyStore);
+        event.cached = cached;
+        event.success = error == null;
+        event.error = error == null ? null : error.getMessage();
+        event.commit();
+    }
+
+    private static int size(KeyStore keyStore) {
+        try {
+            return keyStore == null ? 0 : keyStore.size();
+        } catch (KeyStoreException ex) {
+            return 0;
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package dev.svero.tools;
+
+import java.util.Locale;
+
+/**
+ * Holds the outcome of a session resumption measurement: a full handshake followed by a number of
+ * handshakes which should resume the session of the full handshake.
+ *
+ * @param session          Negotiated parameters of the full handshake
+ * @param attempts         Number of handshakes after the full handshake
+ * @param resumed          Number of these handshakes which resumed a session
+ * @param fullHandshake    Duration of the full handshake in nanoseconds
+ * @param fullCpu          CPU time of the full handshake in nanoseconds or -1 if unknown
+ * @param resumedHandshake Median duration of the resumed handshakes in nanoseconds or -1 if none resumed
+ * @param resumedCpu       Median CPU time of the resumed handshakes in nanoseconds or -1 if unknown
+ * @author Sven Roeseler
+ */
+public record TlsResumption(TlsSessionInfo session, int attempts, int resumed, long fullHandshake, long fullCpu,
+                            long resumedHandshake, long resumedCpu) {
+    /**
+     * Checks if every handshake after the full handshake resumed a session.
+     *
+     * @return True if resumption works
+     */
+    public boolean isWorking() {
+        return attempts > 0 && resumed == attempts;
+    }
+
+    /**
+     * Creates a short summary, e.g. "TLSv1.3: 5/5 resumed, full 58.1 ms (40.2 ms CPU), resumed 9.8 ms
+     * (3.1 ms CPU)".
+     *
+     * @return Summary
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(session.protocol()).append(": ").append(resumed).append('/').append(attempts)
+                .append(" resumed, full ");
+        appendDuration(sb, fullHandshake, fullCpu);
+
+        if (resumedHandshake >= 0) {
+            sb.append(", resumed ");
+            appendDuration(sb, resumedHandshake, resumedCpu);
+        }
+
+        return sb.toString();
+    }
+
+    private static void appendDuration(final StringBuilder sb, final long duration, final long cpu) {
+        sb.append(String.format(Locale.ROOT, "%.1f ms", duration / 1_000_000.0));
+        if (cpu >= 0) {
+            sb.append(String.format(Locale.ROOT, " (%.1f ms CPU)", cpu / 1_000_000.0));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package dev.svero.tools;
+
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Holds the negotiated parameters of a TLS session.
+ *
+ * @param protocol         Negotiated protocol (e.g. TLSv1.3)
+ * @param cipherSuite      Negotiated cipher suite
+ * @param peerCertificates Certificate chain presented by the peer
+ * @author Sven Roeseler
+ */
+public record TlsSessionInfo(String protocol, String cipherSuite, List<X509Certificate> peerCertificates) {
+    /**
+     * Creates an instance using the values of the specified SSL session.
+     *
+     * @param session SSL session
+     * @return Created instance
+     */
+    public static TlsSessionInfo of(final SSLSession session) {
+        Objects.requireNonNull(session);
+
+        List<X509Certificate> certificates = new ArrayList<>();
+
+        try {
+            for (Certificate certificate : session.getPeerCertificates()) {
+                if (certificate instanceof X509Certificate x509Certificate) {
+                    certificates.add(x509Certificate);
+                }
+            }
+        } catch (SSLPeerUnverifiedException ex) {
+            // The peer did not present a certificate chain
+        }
+
+        return new TlsSessionInfo(session.getProtocol(), session.getCipherSuite(), List.copyOf(certificates));
+    }
+
+    /**
+     * Gets the certificate of the peer itself (the first certificate of the chain).
+     *
+     * @return Peer certificate or null if the peer did not present any certificate
+     */
+    public X509Certificate peerCertificate() {
+        return peerCertificates.isEmpty() ? null : peerCertificates.get(0);
+    }
+}
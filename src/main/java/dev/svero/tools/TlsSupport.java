@@ -0,0 +1,54 @@
+package dev.svero.tools;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the protocol versions and cipher suites accepted by a server.
+ *
+ * @param accepted  Accepted cipher suites per accepted protocol, newest protocol first. The suites are
+ *                  listed in the order the server selected them, which is the preference order of the
+ *                  server if it enforces one.
+ * @param rejected  Protocols rejected by the server
+ * @param untested  Protocols which could not be tested because they are disabled locally
+ * @param complete  False if the enumeration was cut short by its time limit
+ * @param attempts  Number of handshakes performed
+ * @author Sven Roeseler
+ */
+public record TlsSupport(Map<String, List<String>> accepted, List<String> rejected, List<String> untested,
+                         boolean complete, int attempts) {
+    /**
+     * Gets the total number of accepted combinations of protocol and cipher suite.
+     *
+     * @return Number of combinations
+     */
+    public int combinations() {
+        return accepted.values().stream().mapToInt(List::size).sum();
+    }
+
+    /**
+     * Creates a short summary, e.g. "TLSv1.3 (3 suites), TLSv1.2 (5 suites)".
+     *
+     * @return Summary
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, List<String>> entry : accepted.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append(" (").append(entry.getValue().size())
+                    .append(entry.getValue().size() == 1 ? " suite)" : " suites)");
+        }
+
+        if (sb.length() == 0) {
+            sb.append("No protocol accepted");
+        }
+
+        if (!complete) {
+            sb.append(" - incomplete");
+        }
+
+        return sb.toString();
+    }
+}
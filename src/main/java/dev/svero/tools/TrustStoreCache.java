@@ -0,0 +1,207 @@
+package dev.svero.tools;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Implements an on-disk cache for PEM certificate bundles. The first time a bundle is loaded it is parsed
+ * and compiled into a binary cache file with the DER encodings, fingerprint-based aliases and an index.
+ * Later loads read the cache file instead of parsing the PEM file again. A cache file is only used if the
+ * path and the SHA-256 hash of the content of the bundle still match, so any change of the bundle
+ * invalidates it, even if the size and the modification time have been preserved. The bundle is read
+ * only once per load: the hash is taken from the same content that is parsed if the cache is outdated.
+ *
+ * @author Sven Roeseler
+ */
+public class TrustStoreCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrustStoreCache.class);
+
+    private static final int MAGIC = 0x53534c43;
+    private static final int VERSION = 3;
+    private static final String SUFFIX = ".tsc";
+
+    private final Path cacheDirectory;
+    private final CertificateUtils certificateUtils;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param cacheDirectory   Directory for the cache files (created if necessary)
+     * @param certificateUtils Instance of CertificateUtils
+     */
+    public TrustStoreCache(final Path cacheDirectory, final CertificateUtils certificateUtils) {
+        Objects.requireNonNull(cacheDirectory);
+        Objects.requireNonNull(certificateUtils);
+
+        this.cacheDirectory = cacheDirectory;
+        this.certificateUtils = certificateUtils;
+    }
+
+    /**
+     * Loads the certificates of the specified PEM bundle. Uses the cache file if it is still valid.
+     * Otherwise the bundle is parsed and the cache file is (re-)created.
+     *
+     * @param bundle PEM file with certificates
+     * @return Map with the fingerprint-based aliases as keys and the certificates as values
+     */
+    public Map<String, X509Certificate> load(final Path bundle) {
+        Objects.requireNonNull(bundle);
+
+        if (!Files.exists(bundle)) {
+            throw new IllegalArgumentException("File not found: " + bundle);
+        }
+
+        final Path absolute = bundle.toAbsolutePath().normalize();
+        final Path cacheFile = cacheDirectory.resolve(DigestUtils.sha256Hex(absolute.toString()) + SUFFIX);
+
+        try {
+            final byte[] content = Files.readAllBytes(absolute);
+            final String hash = DigestUtils.sha256Hex(content);
+
+            if (Files.exists(cacheFile)) {
+                Map<String, X509Certificate> cached = readCacheFile(cacheFile, absolute, hash);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+
+            Map<String, X509Certificate> certificates = new LinkedHashMap<>();
+            List<byte[]> encodings = new ArrayList<>();
+
+            try (Stream<X509Certificate> stream = certificateUtils.streamCertificates(absolute, content, true)) {
+                for (X509Certificate certificate : (Iterable<X509Certificate>) stream::iterator) {
+                    byte[] encoded = certificate.getEncoded();
+                    if (certificates.putIfAbsent(CertificateUtils.fingerprint(encoded), certificate) == null) {
+                        encodings.add(encoded);
+                    }
+                }
+            }
+
+            writeCacheFile(cacheFile, absolute, hash, certificates.keySet(), encodings);
+            return certificates;
+        } catch (IOException | CertificateEncodingException ex) {
+            throw new RuntimeException("Could not load certificates from " + bundle, ex);
+        }
+    }
+
+    /**
+     * Reads the specified cache file if it matches the bundle.
+     *
+     * @return Certificates or null if the cache file is outdated or invalid
+     */
+    private Map<String, X509Certificate> readCacheFile(final Path cacheFile, final Path bundle,
+                                                       final String hash) {
+        final long start = System.nanoTime();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.debug("Ignoring cache file {} with unknown format", cacheFile);
+                return null;
+            }
+
+            final String path = in.readUTF();
+            final String cachedHash = in.readUTF();
+
+            if (!path.equals(bundle.toString()) || !cachedHash.equals(hash)) {
+                LOGGER.debug("Content of {} has changed - cache file {} is outdated", bundle, cacheFile);
+                return null;
+            }
+
+            final int count = in.readInt();
+            final String[] aliases = new String[count];
+            final int[] offsets = new int[count];
+            final int[] lengths = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                aliases[i] = in.readUTF();
+                offsets[i] = in.readInt();
+                lengths[i] = in.readInt();
+            }
+
+            final byte[] data = in.readNBytes(in.readInt());
+
+            X509Certificate[] certificates = IntStream.range(0, count).parallel()
+                    .mapToObj(i -> certificateUtils.decodeCertificate(data, offsets[i], lengths[i]))
+                    .toArray(X509Certificate[]::new);
+
+            Map<String, X509Certificate> result = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                result.put(aliases[i], certificates[i]);
+            }
+
+            LOGGER.debug("Loaded {} certificates for {} from cache in {} ms", count, bundle,
+                    (System.nanoTime() - start) / 1_000_000);
+
+            return result;
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Could not read cache file {}: {}", cacheFile, ex.getMessage());
+            return null;
+        }
+    }
+
+    private void writeCacheFile(final Path cacheFile, final Path bundle, final String hash,
+                                final Iterable<String> aliases, final List<byte[]> encodings) {
+        Path temporary = null;
+
+        try {
+            Files.createDirectories(cacheDirectory);
+
+            temporary = Files.createTempFile(cacheDirectory, "cache", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(bundle.toString());
+                out.writeUTF(hash);
+                out.writeInt(encodings.size());
+
+                int offset = 0;
+                int i = 0;
+                for (String alias : aliases) {
+                    int length = encodings.get(i++).length;
+                    out.writeUTF(alias);
+                    out.writeInt(offset);
+                    out.writeInt(length);
+                    offset += length;
+                }
+
+                out.writeInt(offset);
+                for (byte[] encoded : encodings) {
+                    out.write(encoded);
+                }
+            }
+
+            Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.debug("Created cache file {} for {}", cacheFile, bundle);
+        } catch (IOException ex) {
+            LOGGER.warn("Could not write cache file {}: {}", cacheFile, ex.getMessage());
+
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // Nothing to do
+                }
+            }
+        }
+    }
+}
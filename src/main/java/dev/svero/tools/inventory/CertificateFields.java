@@ -0,0 +1,19 @@
+package dev.svero.tools.inventory;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Holds the fields of a certificate needed for inventory reports.
+ *
+ * @param subject         Subject in the format of RFC 2253
+ * @param issuer          Issuer in the format of RFC 2253
+ * @param notBefore       Start of the validity period
+ * @param notAfter        End of the validity period
+ * @param subjectAltNames Subject alternative names with type prefix (DNS:, IP:, email:, URI:)
+ * @param sha256          SHA-256 fingerprint of the encoded certificate as lower-case hex string
+ * @author Sven Roeseler
+ */
+public record CertificateFields(String subject, String issuer, Instant notBefore, Instant notAfter,
+                                List<String> subjectAltNames, String sha256) {
+}
@@ -0,0 +1,249 @@
+package dev.svero.tools.inventory;
+
+import dev.svero.tools.KeyStoreUtils;
+import dev.svero.tools.PemReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Extracts the inventory fields of all certificates in directories of PEM bundles, DER files and key
+ * stores. The files are processed in parallel, every thread with its own {@link DerFieldExtractor}. The
+ * entries are passed to the consumer as soon as they are extracted, so the memory used does not depend
+ * on the number of certificates.
+ * <p>
+ * The type of a file is determined by its content: files with PEM certificate blocks are read with the
+ * {@link PemReader}, a single DER encoded certificate is read directly, JKS and PKCS #12 key stores are
+ * loaded with the {@link KeyStoreUtils}. Other files are skipped.
+ *
+ * @author Sven Roeseler
+ */
+public class CertificateInventory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CertificateInventory.class);
+
+    private static final int JKS_MAGIC = 0xfeedfeed;
+    private static final long MAX_DER_SIZE = 64 * 1024;
+
+    private final KeyStoreUtils keyStoreUtils;
+    private final String storePassword;
+    private final int threads;
+
+    private final ThreadLocal<DerFieldExtractor> extractors = ThreadLocal.withInitial(DerFieldExtractor::new);
+
+    /**
+     * Single certificate of the inventory.
+     *
+     * @param file   File containing the certificate
+     * @param entry  Position of the certificate in a PEM file (starting at 1) or alias in a key store
+     * @param fields Extracted fields
+     */
+    public record Entry(Path file, String entry, CertificateFields fields) {
+    }
+
+    /**
+     * Statistics of a completed scan.
+     *
+     * @param files        Number of files containing certificates
+     * @param certificates Number of certificates found
+     * @param failed       Number of files or certificates which could not be read
+     * @param duration     Duration of the scan in nanoseconds
+     */
+    public record Summary(int files, long certificates, int failed, long duration) {
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param keyStoreUtils Utilities for loading key stores
+     * @param storePassword Password of the key stores
+     * @param threads       Number of files processed in parallel
+     */
+    public CertificateInventory(final KeyStoreUtils keyStoreUtils, final String storePassword, final int threads) {
+        Objects.requireNonNull(keyStoreUtils);
+        Objects.requireNonNull(storePassword);
+
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be greater than zero");
+        }
+
+        this.keyStoreUtils = keyStoreUtils;
+        this.storePassword = storePassword;
+        this.threads = threads;
+    }
+
+    /**
+     * Scans the specified files and directories (recursively). Blocks until all files have been processed.
+     * The consumer is called from several threads at the same time.
+     *
+     * @param roots    Files and directories to scan
+     * @param consumer Receives every certificate found
+     * @return Statistics of the scan
+     * @throws InterruptedException If the thread has been interrupted while waiting for the scan
+     */
+    public Summary scan(final List<Path> roots, final Consumer<Entry> consumer) throws InterruptedException {
+        Objects.requireNonNull(roots);
+        Objects.requireNonNull(consumer);
+
+        final long start = System.nanoTime();
+        final AtomicInteger files = new AtomicInteger();
+        final AtomicLong certificates = new AtomicLong();
+        final AtomicInteger failed = new AtomicInteger();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // Bounds the number of queued files while the directories are still being walked
+        final Semaphore pending = new Semaphore(threads * 4);
+
+        try {
+            for (Path root : roots) {
+                try (Stream<Path> paths = Files.walk(root)) {
+                    for (Path file : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                        pending.acquire();
+                        executor.execute(() -> {
+                            try {
+                                long count = scanFile(file, consumer, failed);
+                                if (count > 0) {
+                                    files.incrementAndGet();
+                                    certificates.addAndGet(count);
+                                }
+                            } finally {
+                                pending.release();
+                            }
+                        });
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    LOGGER.warn("Could not scan {}: {}", root, ex.getMessage());
+                    failed.incrementAndGet();
+                }
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        return new Summary(files.get(), certificates.get(), failed.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Scans a single file.
+     *
+     * @return Number of certificates found
+     */
+    private long scanFile(final Path file, final Consumer<Entry> consumer, final AtomicInteger failed) {
+        try {
+            final int magic = readMagic(file);
+
+            if (magic == JKS_MAGIC) {
+                return scanKeyStore(file, "JKS", consumer, failed);
+            }
+
+            long count = scanPem(file, consumer, failed);
+            if (count > 0 || (magic >>> 24) != 0x30) {
+                return count;
+            }
+
+            // A DER SEQUENCE is either a single certificate or a PKCS #12 key store
+            if (Files.size(file) <= MAX_DER_SIZE) {
+                try {
+                    consumer.accept(new Entry(file, "1", extractors.get().extract(Files.readAllBytes(file))));
+                    return 1;
+                } catch (IllegalArgumentException ex) {
+                    LOGGER.trace("{} is not a DER encoded certificate: {}", file, ex.getMessage());
+                }
+            }
+
+            return scanKeyStore(file, "PKCS12", consumer, failed);
+        } catch (IOException | KeyStoreException | RuntimeException ex) {
+            LOGGER.warn("Could not read {}: {}{}", file, ex.getMessage(),
+                    ex.getCause() == null ? "" : " (" + ex.getCause().getMessage() + ")");
+            failed.incrementAndGet();
+            return 0;
+        }
+    }
+
+    private long scanPem(final Path file, final Consumer<Entry> consumer, final AtomicInteger failed)
+            throws IOException {
+        final DerFieldExtractor extractor = extractors.get();
+        long count = 0;
+
+        try (PemReader reader = new PemReader(file)) {
+            while (reader.hasNext()) {
+                final byte[] encoded = reader.next();
+                count++;
+
+                try {
+                    consumer.accept(new Entry(file, Long.toString(count), extractor.extract(encoded)));
+                } catch (IllegalArgumentException ex) {
+                    LOGGER.warn("Could not decode certificate {} of {}: {}", count, file, ex.getMessage());
+                    failed.incrementAndGet();
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private long scanKeyStore(final Path file, final String type, final Consumer<Entry> consumer,
+                              final AtomicInteger failed) throws KeyStoreException {
+        final KeyStore keyStore = keyStoreUtils.loadKeyStore(file.toString(), storePassword, type);
+        final DerFieldExtractor extractor = extractors.get();
+        long count = 0;
+
+        for (String alias : Collections.list(keyStore.aliases())) {
+            Certificate[] chain = keyStore.isKeyEntry(alias) ? keyStore.getCertificateChain(alias)
+                    : new Certificate[]{keyStore.getCertificate(alias)};
+            if (chain == null) {
+                continue;
+            }
+
+            for (int i = 0; i < chain.length; i++) {
+                if (chain[i] == null || !"X.509".equals(chain[i].getType())) {
+                    continue;
+                }
+
+                final String entry = chain.length == 1 ? alias : String.format(Locale.ROOT, "%s[%d]", alias, i);
+                count++;
+
+                try {
+                    consumer.accept(new Entry(file, entry, extractor.extract(chain[i].getEncoded())));
+                } catch (CertificateEncodingException | IllegalArgumentException ex) {
+                    LOGGER.warn("Could not decode certificate {} of {}: {}", entry, file, ex.getMessage());
+                    failed.incrementAndGet();
+                }
+            }
+        }
+
+        return count;
+    }
+
+    private static int readMagic(final Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] magic = in.readNBytes(4);
+            if (magic.length < 4) {
+                return 0;
+            }
+
+            return ((magic[0] & 0xff) << 24) | ((magic[1] & 0xff) << 16) | ((magic[2] & 0xff) << 8)
+                    | (magic[3] & 0xff);
+        }
+    }
+}
@@ -0,0 +1,499 @@
+package dev.svero.tools.inventory;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Extracts subject, issuer, validity, subject alternative names and fingerprint directly from the DER
+ * encoding of a X.509 certificate. Unlike the {@code CertificateFactory}, the extractor does not build a
+ * certificate object and skips everything else (keys, signatures, other extensions) without decoding it.
+ * The encoding is traversed with offsets into the given array, and the digest and string buffers are
+ * reused, so the only allocations per certificate are the extracted values themselves.
+ * <p>
+ * The signature is not verified. Instances are not thread-safe; use one instance per thread.
+ *
+ * @author Sven Roeseler
+ */
+public final class DerFieldExtractor {
+    private static final int SEQUENCE = 0x30;
+    private static final int SET = 0x31;
+    private static final int OID = 0x06;
+    private static final int UTC_TIME = 0x17;
+    private static final int GENERALIZED_TIME = 0x18;
+    private static final int VERSION = 0xa0;
+    private static final int EXTENSIONS = 0xa3;
+
+    private static final int SAN_EMAIL = 0x81;
+    private static final int SAN_DNS = 0x82;
+    private static final int SAN_URI = 0x86;
+    private static final int SAN_IP = 0x87;
+
+    private static final byte[] SUBJECT_ALT_NAME = {0x55, 0x1d, 0x11};
+
+    /**
+     * Characters escaped with a backslash by {@code X500Principal.getName()} (more than RFC 2253 requires).
+     */
+    private static final String ESCAPED = ",=+<>#;\"\\";
+
+    /**
+     * Short names of the attribute types used by {@code X500Principal.getName()}, as content of the
+     * encoded OBJECT IDENTIFIER.
+     */
+    private static final byte[][] ATTRIBUTE_OIDS = {
+            {0x55, 0x04, 0x03}, {0x55, 0x04, 0x06}, {0x55, 0x04, 0x07}, {0x55, 0x04, 0x08},
+            {0x55, 0x04, 0x0a}, {0x55, 0x04, 0x0b}, {0x55, 0x04, 0x09},
+            {0x09, (byte) 0x92, 0x26, (byte) 0x89, (byte) 0x93, (byte) 0xf2, 0x2c, 0x64, 0x01, 0x19},
+            {0x09, (byte) 0x92, 0x26, (byte) 0x89, (byte) 0x93, (byte) 0xf2, 0x2c, 0x64, 0x01, 0x01}
+    };
+    private static final String[] ATTRIBUTE_NAMES = {"CN", "C", "L", "ST", "O", "OU", "STREET", "DC", "UID"};
+
+    private final MessageDigest digest = DigestUtils.getSha256Digest();
+    private final byte[] hash = new byte[32];
+    private final StringBuilder sb = new StringBuilder(256);
+    private int[] rdnOffsets = new int[16];
+
+    private byte[] data;
+
+    // Result of the last call of header()
+    private int tag;
+    private int contentOffset;
+    private int contentEnd;
+
+    /**
+     * Extracts the fields of the certificate which fills the complete array.
+     *
+     * @param encoded DER encoded certificate
+     * @return Extracted fields
+     * @throws IllegalArgumentException If the encoding is not a valid certificate
+     */
+    public CertificateFields extract(final byte[] encoded) {
+        Objects.requireNonNull(encoded);
+
+        return extract(encoded, 0, encoded.length);
+    }
+
+    /**
+     * Extracts the fields of the certificate at the specified position of the array.
+     *
+     * @param encoded Array containing the DER encoded certificate
+     * @param offset  Offset of the certificate
+     * @param length  Length of the certificate
+     * @return Extracted fields
+     * @throws IllegalArgumentException If the encoding is not a valid certificate
+     */
+    public CertificateFields extract(final byte[] encoded, final int offset, final int length) {
+        Objects.requireNonNull(encoded);
+        Objects.checkFromIndexSize(offset, length, encoded.length);
+
+        this.data = encoded;
+
+        try {
+            final int end = offset + length;
+
+            // Certificate ::= SEQUENCE { tbsCertificate, signatureAlgorithm, signatureValue }
+            if (header(offset, end, SEQUENCE) != end) {
+                throw new IllegalArgumentException("Trailing data after the certificate");
+            }
+
+            final int tbsEnd = header(contentOffset, contentEnd, SEQUENCE);
+            int position = contentOffset;
+
+            if (peek(position, tbsEnd) == VERSION) {
+                position = header(position, tbsEnd, VERSION);
+            }
+
+            position = header(position, tbsEnd, 0x02);       // serialNumber
+            position = header(position, tbsEnd, SEQUENCE);   // signature
+            final String issuer = name(position, tbsEnd);
+            position = contentEnd;
+
+            final int validityEnd = header(position, tbsEnd, SEQUENCE);
+            final Instant notBefore = time(contentOffset, validityEnd);
+            final Instant notAfter = time(contentEnd, validityEnd);
+            position = validityEnd;
+
+            final String subject = name(position, tbsEnd);
+            position = header(contentEnd, tbsEnd, SEQUENCE);   // subjectPublicKeyInfo
+
+            List<String> subjectAltNames = List.of();
+            while (position < tbsEnd) {
+                final int next = header(position, tbsEnd, -1);
+                if (tag == EXTENSIONS) {
+                    subjectAltNames = extensions(contentOffset, contentEnd);
+                }
+                position = next;
+            }
+
+            digest.update(encoded, offset, length);
+            digest.digest(hash, 0, hash.length);
+
+            return new CertificateFields(subject, issuer, notBefore, notAfter, subjectAltNames,
+                    Hex.encodeHexString(hash));
+        } catch (DigestException ex) {
+            throw new IllegalStateException("Could not calculate the fingerprint", ex);
+        } finally {
+            digest.reset();
+            this.data = null;
+        }
+    }
+
+    /**
+     * Reads the tag and length at the specified position and stores the tag and the bounds of the
+     * content in the fields.
+     *
+     * @param position Offset of the tag
+     * @param limit    Offset after the last byte the element may use
+     * @param expected Expected tag or -1 for any tag
+     * @return Offset after the element
+     */
+    private int header(final int position, final int limit, final int expected) {
+        if (position + 2 > limit) {
+            throw new IllegalArgumentException("Truncated DER element");
+        }
+
+        tag = data[position] & 0xff;
+        if (expected >= 0 && tag != expected) {
+            throw new IllegalArgumentException(String.format("Expected tag 0x%02x but found 0x%02x", expected,
+                    tag));
+        }
+
+        if ((tag & 0x1f) == 0x1f) {
+            throw new IllegalArgumentException("Multi-byte tags are not supported");
+        }
+
+        int length = data[position + 1] & 0xff;
+        int offset = position + 2;
+
+        if (length == 0x80) {
+            throw new IllegalArgumentException("Indefinite lengths are not supported");
+        }
+
+        if (length > 0x80) {
+            final int count = length & 0x7f;
+            if (count > 4 || offset + count > limit) {
+                throw new IllegalArgumentException("Invalid DER length");
+            }
+
+            length = 0;
+            for (int i = 0; i < count; i++) {
+                length = (length << 8) | (data[offset++] & 0xff);
+            }
+        }
+
+        if (length < 0 || offset + length > limit) {
+            throw new IllegalArgumentException("Truncated DER element");
+        }
+
+        contentOffset = offset;
+        contentEnd = offset + length;
+        return contentEnd;
+    }
+
+    private int peek(final int position, final int limit) {
+        return position < limit ? data[position] & 0xff : -1;
+    }
+
+    /**
+     * Decodes the UTCTime or GeneralizedTime at the specified position. Afterwards the content end
+     * points to the first byte after the time.
+     */
+    private Instant time(final int position, final int limit) {
+        header(position, limit, -1);
+
+        int i = contentOffset;
+        final int year;
+        if (tag == UTC_TIME) {
+            final int yy = digits(i, 2);
+            year = yy >= 50 ? 1900 + yy : 2000 + yy;
+            i += 2;
+        } else if (tag == GENERALIZED_TIME) {
+            year = digits(i, 4);
+            i += 4;
+        } else {
+            throw new IllegalArgumentException(String.format("Expected a time but found tag 0x%02x", tag));
+        }
+
+        if (contentEnd - i < 11 || data[contentEnd - 1] != 'Z') {
+            throw new IllegalArgumentException("Unsupported time format");
+        }
+
+        final int month = digits(i, 2);
+        final int day = digits(i + 2, 2);
+        final int hour = digits(i + 4, 2);
+        final int minute = digits(i + 6, 2);
+        final int second = digits(i + 8, 2);
+
+        if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 60) {
+            throw new IllegalArgumentException("Invalid time");
+        }
+
+        return Instant.ofEpochSecond(epochDay(year, month, day) * 86400L + hour * 3600L + minute * 60L + second);
+    }
+
+    private int digits(final int position, final int count) {
+        int value = 0;
+        for (int i = position; i < position + count; i++) {
+            final int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("Invalid digit in time");
+            }
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+
+    /**
+     * Calculates the number of days since 1970-01-01 for a date of the proleptic Gregorian calendar.
+     */
+    private static long epochDay(final int year, final int month, final int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = Math.floorDiv(y, 400);
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /**
+     * Formats the Name at the specified position like {@code X500Principal.getName()}: the relative
+     * distinguished names in reverse order, separated by commas. Afterwards the content end points to
+     * the first byte after the Name.
+     */
+    private String name(final int position, final int limit) {
+        final int end = header(position, limit, SEQUENCE);
+
+        int count = 0;
+        int rdn = contentOffset;
+        while (rdn < end) {
+            if (count == rdnOffsets.length) {
+                rdnOffsets = Arrays.copyOf(rdnOffsets, count * 2);
+            }
+            rdnOffsets[count++] = rdn;
+            rdn = header(rdn, end, SET);
+        }
+
+        sb.setLength(0);
+        for (int i = count - 1; i >= 0; i--) {
+            final int setEnd = header(rdnOffsets[i], end, SET);
+            int attribute = contentOffset;
+            boolean first = true;
+
+            while (attribute < setEnd) {
+                final int attributeEnd = header(attribute, setEnd, SEQUENCE);
+                sb.append(first ? (i == count - 1 ? "" : ",") : "+");
+                appendAttribute(contentOffset, attributeEnd);
+                attribute = attributeEnd;
+                first = false;
+            }
+        }
+
+        contentEnd = end;
+        return sb.toString();
+    }
+
+    /**
+     * Appends an AttributeTypeAndValue as "type=value".
+     */
+    private void appendAttribute(final int position, final int end) {
+        final int valueOffset = header(position, end, OID);
+        final int oidOffset = contentOffset;
+        final int oidLength = contentEnd - contentOffset;
+
+        String name = null;
+        for (int i = 0; i < ATTRIBUTE_OIDS.length && name == null; i++) {
+            if (Arrays.equals(data, oidOffset, oidOffset + oidLength, ATTRIBUTE_OIDS[i], 0,
+                    ATTRIBUTE_OIDS[i].length)) {
+                name = ATTRIBUTE_NAMES[i];
+            }
+        }
+
+        if (name == null) {
+            appendOid(oidOffset, oidOffset + oidLength);
+            sb.append("=#");
+            appendHex(valueOffset, end);
+            return;
+        }
+
+        sb.append(name).append('=');
+
+        header(valueOffset, end, -1);
+        switch (tag) {
+            // UTF8String, PrintableString, T61String, IA5String, GeneralString, BMPString
+            case 0x0c, 0x13, 0x14, 0x16, 0x1b, 0x1e -> appendString(contentOffset, contentEnd);
+            default -> {
+                sb.append('#');
+                appendHex(valueOffset, end);
+            }
+        }
+    }
+
+    /**
+     * Appends a string value escaped like {@code X500Principal.getName()}: the characters of
+     * {@link #ESCAPED} and leading and trailing blanks are prefixed with a backslash, null characters are
+     * written as "\00". Like the JDK, the value is decoded as UTF-8 whatever its string type is (so the
+     * zero bytes of a BMPString show up as "\00"). ASCII values are appended byte by byte.
+     */
+    private void appendString(final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (data[i] < 0) {
+                appendEscaped(new String(data, start, end - start, StandardCharsets.UTF_8));
+                return;
+            }
+        }
+
+        int lead = start;
+        while (lead < end && isBlank((char) data[lead])) {
+            lead++;
+        }
+
+        int trail = end - 1;
+        while (trail >= lead && isBlank((char) data[trail])) {
+            trail--;
+        }
+
+        for (int i = start; i < end; i++) {
+            appendEscaped((char) data[i], i < lead || i > trail);
+        }
+    }
+
+    private void appendEscaped(final String value) {
+        int lead = 0;
+        while (lead < value.length() && isBlank(value.charAt(lead))) {
+            lead++;
+        }
+
+        int trail = value.length() - 1;
+        while (trail >= lead && isBlank(value.charAt(trail))) {
+            trail--;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            appendEscaped(value.charAt(i), i < lead || i > trail);
+        }
+    }
+
+    private void appendEscaped(final char c, final boolean blankAtEdge) {
+        if (c == 0) {
+            sb.append("\\00");
+            return;
+        }
+
+        if (blankAtEdge || ESCAPED.indexOf(c) >= 0) {
+            sb.append('\\');
+        }
+        sb.append(c);
+    }
+
+    private static boolean isBlank(final char c) {
+        return c == ' ' || c == '\r';
+    }
+
+    private void appendOid(final int start, final int end) {
+        long value = 0;
+        boolean first = true;
+
+        for (int i = start; i < end; i++) {
+            value = (value << 7) | (data[i] & 0x7f);
+            if ((data[i] & 0x80) != 0) {
+                continue;
+            }
+
+            if (first) {
+                final int arc = (int) Math.min(value / 40, 2);
+                sb.append(arc).append('.').append(value - arc * 40L);
+                first = false;
+            } else {
+                sb.append('.').append(value);
+            }
+
+            value = 0;
+        }
+    }
+
+    private void appendHex(final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            sb.append(Character.forDigit((data[i] >> 4) & 0xf, 16)).append(Character.forDigit(data[i] & 0xf, 16));
+        }
+    }
+
+    /**
+     * Searches the extensions for the subject alternative names.
+     */
+    private List<String> extensions(final int start, final int end) {
+        final int listEnd = header(start, end, SEQUENCE);
+        int position = contentOffset;
+
+        while (position < listEnd) {
+            final int extensionEnd = header(position, listEnd, SEQUENCE);
+            int field = header(contentOffset, extensionEnd, OID);
+
+            if (Arrays.equals(data, contentOffset, contentEnd, SUBJECT_ALT_NAME, 0, SUBJECT_ALT_NAME.length)) {
+                if (peek(field, extensionEnd) == 0x01) {
+                    field = header(field, extensionEnd, 0x01);   // critical
+                }
+
+                header(field, extensionEnd, 0x04);
+                return subjectAltNames(contentOffset, contentEnd);
+            }
+
+            position = extensionEnd;
+        }
+
+        return List.of();
+    }
+
+    private List<String> subjectAltNames(final int start, final int end) {
+        final int namesEnd = header(start, end, SEQUENCE);
+        final List<String> names = new ArrayList<>(4);
+        int position = contentOffset;
+
+        while (position < namesEnd) {
+            final int next = header(position, namesEnd, -1);
+            final int length = contentEnd - contentOffset;
+
+            switch (tag) {
+                case SAN_DNS -> names.add("DNS:" + new String(data, contentOffset, length, StandardCharsets.US_ASCII));
+                case SAN_EMAIL -> names.add("email:" + new String(data, contentOffset, length,
+                        StandardCharsets.US_ASCII));
+                case SAN_URI -> names.add("URI:" + new String(data, contentOffset, length, StandardCharsets.US_ASCII));
+                case SAN_IP -> names.add("IP:" + ipAddress(contentOffset, length));
+                default -> {
+                    // Other names and directory names are not needed for the inventory
+                }
+            }
+
+            position = next;
+        }
+
+        return names;
+    }
+
+    private String ipAddress(final int offset, final int length) {
+        sb.setLength(0);
+
+        if (length == 4) {
+            for (int i = 0; i < 4; i++) {
+                sb.append(i == 0 ? "" : ".").append(data[offset + i] & 0xff);
+            }
+        } else if (length == 16) {
+            for (int i = 0; i < 16; i += 2) {
+                sb.append(i == 0 ? "" : ":").append(Integer.toHexString(((data[offset + i] & 0xff) << 8)
+                        | (data[offset + i + 1] & 0xff)));
+            }
+        } else {
+            appendHex(offset, offset + length);
+        }
+
+        return sb.toString();
+    }
+}
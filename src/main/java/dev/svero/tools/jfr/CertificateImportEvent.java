@@ -0,0 +1,37 @@
+package dev.svero.tools.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for reading the certificates of a PEM file. The event spans the time from opening the file
+ * until the stream of certificates is closed.
+ *
+ * @author Sven Roeseler
+ */
+@Name("dev.svero.CertificateImport")
+@Label("Certificate Import")
+@Description("Certificates read from a PEM file")
+@Category({"SSLChecker", "Certificates"})
+@StackTrace(false)
+public class CertificateImportEvent extends Event {
+    @Label("File")
+    public String path;
+
+    @Label("Certificates")
+    @Description("Number of PEM encoded certificates found")
+    public int certificates;
+
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytesRead;
+
+    @Label("Parallel")
+    @Description("True if the certificates were decoded in parallel")
+    public boolean parallel;
+}
@@ -0,0 +1,75 @@
+package dev.svero.tools.jfr;
+
+import dev.svero.tools.TlsSessionInfo;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a TLS handshake without HTTP request, including name resolution and connect.
+ *
+ * @author Sven Roeseler
+ */
+@Name("dev.svero.Handshake")
+@Label("TLS Handshake")
+@Description("TLS handshake performed by the checker")
+@Category({"SSLChecker", "Network"})
+@StackTrace(false)
+public class HandshakeEvent extends Event {
+    @Label("Host")
+    public String host;
+
+    @Label("Port")
+    public int port;
+
+    @Label("TLS Protocol")
+    public String protocol;
+
+    @Label("Cipher Suite")
+    public String cipherSuite;
+
+    @Label("Non-Blocking")
+    @Description("True if the handshake was performed by the non-blocking engine")
+    public boolean nonBlocking;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Error")
+    public String error;
+
+    /**
+     * Sets the fields and commits the event if it is enabled and exceeds the configured threshold.
+     *
+     * @param host        Host name
+     * @param port        Port
+     * @param nonBlocking True if the handshake was performed by the non-blocking engine
+     * @param info        Negotiated session parameters or null if the handshake failed
+     * @param error       Cause of the failure or null
+     */
+    public void complete(final String host, final int port, final boolean nonBlocking, final TlsSessionInfo info,
+                         final Throwable error) {
+        if (!shouldCommit()) {
+            return;
+        }
+
+        this.host = host;
+        this.port = port;
+        this.nonBlocking = nonBlocking;
+        this.success = error == null;
+
+        if (info != null) {
+            this.protocol = info.protocol();
+            this.cipherSuite = info.cipherSuite();
+        }
+
+        if (error != null) {
+            this.error = error.getClass().getSimpleName() + ": " + error.getMessage();
+        }
+
+        commit();
+    }
+}
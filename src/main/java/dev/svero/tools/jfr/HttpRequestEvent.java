@@ -0,0 +1,48 @@
+package dev.svero.tools.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for a single HTTP request including name resolution and reading the body.
+ *
+ * @author Sven Roeseler
+ */
+@Name("dev.svero.HttpRequest")
+@Label("HTTP Request")
+@Description("HTTP request sent by the checker")
+@Category({"SSLChecker", "Network"})
+@StackTrace(false)
+public class HttpRequestEvent extends Event {
+    @Label("Method")
+    public String method;
+
+    @Label("URL")
+    public String url;
+
+    @Label("Host")
+    public String host;
+
+    @Label("Status Code")
+    public int statusCode;
+
+    @Label("HTTP Version")
+    public String httpVersion;
+
+    @Label("TLS Protocol")
+    public String protocol;
+
+    @Label("Cipher Suite")
+    public String cipherSuite;
+
+    @Label("Success")
+    @Description("True if a response was received")
+    public boolean success;
+
+    @Label("Error")
+    public String error;
+}
@@ -0,0 +1,39 @@
+package dev.svero.tools.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for creating a key store from certificates or loading it from a file.
+ *
+ * @author Sven Roeseler
+ */
+@Name("dev.svero.KeyStore")
+@Label("Key Store")
+@Description("Key store created or loaded")
+@Category({"SSLChecker", "Certificates"})
+@StackTrace(false)
+public class KeyStoreEvent extends Event {
+    @Label("Operation")
+    @Description("create or load")
+    public String operation;
+
+    @Label("Store Type")
+    public String storeType;
+
+    @Label("File")
+    public String path;
+
+    @Label("Entries")
+    public int entries;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Error")
+    public String error;
+}
@@ -0,0 +1,45 @@
+package dev.svero.tools.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for building a SSL context or taking it from the context cache.
+ *
+ * @author Sven Roeseler
+ */
+@Name("dev.svero.SSLContext")
+@Label("SSL Context")
+@Description("SSL context built or taken from the cache")
+@Category({"SSLChecker", "TLS"})
+@StackTrace(false)
+public class SSLContextEvent extends Event {
+    @Label("Protocol")
+    public String protocol;
+
+    @Label("Trust Manager")
+    @Description("jvm (default trust store), default or indexed")
+    public String trustManager;
+
+    @Label("Trust Anchors")
+    @Description("Number of entries of the trust store (0 for the default trust store)")
+    public int trustAnchors;
+
+    @Label("Key Entries")
+    @Description("Number of entries of the key store")
+    public int keyEntries;
+
+    @Label("Cached")
+    @Description("True if the context was taken from the cache")
+    public boolean cached;
+
+    @Label("Success")
+    public boolean success;
+
+    @Label("Error")
+    public String error;
+}
@@ -0,0 +1,71 @@
+package dev.svero.tools.limit;
+
+/**
+ * Concurrency limit which is adapted by additive increase and multiplicative decrease (AIMD). Until the
+ * first drop the limit grows by one with every success (slow start). After a drop it is halved and then
+ * grows by one per window of successes. Drops of operations started before the last decrease are
+ * ignored, so one overload burst only halves the limit once. Instances are not thread-safe;
+ * {@link ConnectionLimiter} only uses them while holding its lock.
+ *
+ * @author Sven Roeseler
+ */
+final class AimdLimit {
+    private static final double BACKOFF = 0.5;
+
+    private final int max;
+
+    private double limit;
+    private double threshold;
+    private long lastDecrease = Long.MIN_VALUE;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param initial Initial limit
+     * @param max     Maximum limit
+     */
+    AimdLimit(final int initial, final int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("max must be greater than zero");
+        }
+
+        this.max = max;
+        this.limit = Math.max(1, Math.min(initial, max));
+        this.threshold = max;
+    }
+
+    /**
+     * Gets the current limit.
+     *
+     * @return Maximum number of concurrent operations
+     */
+    int get() {
+        return (int) limit;
+    }
+
+    /**
+     * Increases the limit after a successful operation.
+     */
+    void onSuccess() {
+        limit = Math.min(max, limit < threshold ? limit + 1 : limit + 1 / limit);
+    }
+
+    /**
+     * Decreases the limit after an operation was dropped by the peer (timeout, reset, throttling).
+     *
+     * @param now       Current value of {@link System#nanoTime()}
+     * @param startedAt Start of the dropped operation ({@link System#nanoTime()})
+     * @return True if the limit has changed
+     */
+    boolean onDrop(final long now, final long startedAt) {
+        if (startedAt - lastDecrease < 0 && lastDecrease != Long.MIN_VALUE) {
+            return false;
+        }
+
+        final int before = get();
+        limit = Math.max(1, limit * BACKOFF);
+        threshold = limit;
+        lastDecrease = now;
+        return get() != before;
+    }
+}
@@ -0,0 +1,496 @@
+package dev.svero.tools.limit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the outbound connections per host and in total. Every connection needs a {@link Permit}, which
+ * is granted when
+ * <ul>
+ *     <li>fewer connections than the global limit are open,</li>
+ *     <li>fewer connections to the host than its adaptive limit are open and</li>
+ *     <li>the global and the per-host token buckets (if configured) contain a token.</li>
+ * </ul>
+ * The limit of every host starts low and is adapted by AIMD: it grows with every successful connection
+ * up to the configured maximum and is halved when a connection is dropped (timeout, reset or throttling
+ * response). Permits are granted asynchronously, so waiting callers do not block a thread. Hosts waiting
+ * for permits are served round-robin, so a slow host does not hold up the others.
+ * <p>
+ * The state of a host is only kept while it has open connections or waiting callers. Idle hosts whose
+ * connections have been dropped (or whose token bucket is still empty) are kept in a bounded LRU of
+ * {@value #MAX_IDLE_HOSTS} hosts, so a throttled host does not start over with a fresh limit, while a
+ * scan over many distinct hosts does not accumulate their state for the life of the process.
+ * <p>
+ * All methods are thread-safe.
+ *
+ * @author Sven Roeseler
+ */
+public class ConnectionLimiter implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionLimiter.class);
+
+    private static final int INITIAL_HOST_LIMIT = 4;
+    private static final int MAX_IDLE_HOSTS = 1024;
+
+    /**
+     * Outcome of a connection, which adapts the limit of the host.
+     */
+    public enum Outcome {
+        /**
+         * The connection succeeded. The limit is increased.
+         */
+        SUCCESS,
+
+        /**
+         * The connection was dropped by the peer or timed out. The limit is decreased.
+         */
+        DROPPED,
+
+        /**
+         * The connection failed for a reason unrelated to load (e.g. an invalid certificate). The limit
+         * is not changed.
+         */
+        IGNORED
+    }
+
+    /**
+     * Snapshot of the state of a host.
+     *
+     * @param host     Name of the host
+     * @param limit    Current concurrency limit
+     * @param inFlight Number of connections currently open
+     * @param waiting  Number of callers waiting for a permit
+     * @param released Number of released permits
+     * @param dropped  Number of dropped connections
+     */
+    public record HostStatistics(String host, int limit, int inFlight, int waiting, long released, long dropped) {
+    }
+
+    /**
+     * Snapshot of the state of the limiter.
+     *
+     * @param globalLimit Maximum number of connections in total
+     * @param hostLimit   Maximum concurrency limit of a single host
+     * @param globalRate  Maximum number of new connections per second in total (0 if unlimited)
+     * @param hostRate    Maximum number of new connections per second and host (0 if unlimited)
+     * @param inFlight    Number of connections currently open
+     * @param waiting     Number of callers waiting for a permit
+     * @param hosts       State of every active or throttled host, ordered by name
+     */
+    public record Statistics(int globalLimit, int hostLimit, double globalRate, double hostRate, int inFlight,
+                             int waiting, List<HostStatistics> hosts) {
+    }
+
+    /**
+     * Permit for a single connection. It must be released exactly once when the connection is closed.
+     */
+    public final class Permit {
+        private final Host host;
+        private final long grantedAt;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(final Host host, final long grantedAt) {
+            this.host = host;
+            this.grantedAt = grantedAt;
+        }
+
+        /**
+         * Gets the host the permit was granted for.
+         *
+         * @return Name of the host
+         */
+        public String getHost() {
+            return host.name;
+        }
+
+        /**
+         * Releases the permit and adapts the limit of the host. Further calls are ignored.
+         *
+         * @param outcome Outcome of the connection
+         */
+        public void release(final Outcome outcome) {
+            Objects.requireNonNull(outcome);
+
+            if (released.compareAndSet(false, true)) {
+                ConnectionLimiter.this.release(this, outcome);
+            }
+        }
+    }
+
+    /**
+     * State of a host. Only accessed while holding the lock of the limiter.
+     */
+    private static final class Host {
+        private final String name;
+        private final AimdLimit limit;
+        private final TokenBucket bucket;
+        private final ArrayDeque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+
+        private int inFlight;
+        private long released;
+        private long dropped;
+        private boolean ready;
+
+        private Host(final String name, final AimdLimit limit, final TokenBucket bucket) {
+            this.name = name;
+            this.limit = limit;
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * Permit to hand out after the lock has been released.
+     */
+    private record Grant(CompletableFuture<Permit> future, Permit permit) {
+    }
+
+    private final int globalLimit;
+    private final int hostLimit;
+    private final double hostRate;
+    private final TokenBucket globalBucket;
+
+    private final Map<String, Host> hosts = new HashMap<>();
+    private final Map<String, Host> idleHosts = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Host> eldest) {
+            return size() > MAX_IDLE_HOSTS;
+        }
+    };
+    private final ArrayDeque<Host> ready = new ArrayDeque<>();
+    private final ScheduledExecutorService scheduler;
+
+    private int inFlight;
+    private int waiting;
+    private long wakeUpAt;
+    private boolean wakeUpScheduled;
+    private boolean closed;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param globalLimit Maximum number of connections in total
+     * @param hostLimit   Maximum number of connections per host
+     * @param globalRate  Maximum number of new connections per second in total (0 for no limit)
+     * @param hostRate    Maximum number of new connections per second and host (0 for no limit)
+     */
+    public ConnectionLimiter(final int globalLimit, final int hostLimit, final double globalRate,
+                             final double hostRate) {
+        if (globalLimit < 1) {
+            throw new IllegalArgumentException("globalLimit must be greater than zero");
+        }
+
+        if (hostLimit < 1) {
+            throw new IllegalArgumentException("hostLimit must be greater than zero");
+        }
+
+        if (!(globalRate >= 0) || !(hostRate >= 0)) {
+            throw new IllegalArgumentException("Rates must not be negative");
+        }
+
+        this.globalLimit = globalLimit;
+        this.hostLimit = hostLimit;
+        this.hostRate = hostRate;
+
+        // The global burst is one second worth of tokens, hosts get no bursts at all
+        this.globalBucket = globalRate > 0
+                ? new TokenBucket(globalRate, (int) Math.max(1, Math.min(globalLimit, globalRate)), System.nanoTime())
+                : null;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-limiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Requests a permit for a connection to the specified host. The returned future is completed as
+     * soon as the limits allow a further connection. A caller which is no longer interested in the
+     * permit may cancel the future.
+     *
+     * @param host Name of the host
+     * @return Future which is completed with the permit
+     */
+    public CompletableFuture<Permit> acquire(final String host) {
+        Objects.requireNonNull(host);
+
+        final CompletableFuture<Permit> future = new CompletableFuture<>();
+        final List<Grant> grants;
+
+        synchronized (this) {
+            if (closed) {
+                future.completeExceptionally(new IllegalStateException("The limiter has been closed"));
+                return future;
+            }
+
+            final Host state = hosts.computeIfAbsent(host.toLowerCase(Locale.ROOT), this::activate);
+
+            state.waiters.add(future);
+            waiting++;
+            markReady(state);
+
+            grants = dispatch(System.nanoTime());
+        }
+
+        complete(grants);
+        return future;
+    }
+
+    /**
+     * Gets the state of a host which becomes active. The state of an idle host is reused.
+     */
+    private Host activate(final String name) {
+        final Host idle = idleHosts.remove(name);
+        if (idle != null) {
+            return idle;
+        }
+
+        return new Host(name, new AimdLimit(INITIAL_HOST_LIMIT, hostLimit),
+                hostRate > 0 ? new TokenBucket(hostRate, 1, System.nanoTime()) : null);
+    }
+
+    /**
+     * Removes the state of a host without open connections and waiting callers. It is only kept in the
+     * LRU of idle hosts if its connections have been dropped or its token bucket is still empty.
+     */
+    private void retireIfIdle(final Host host, final long now) {
+        if (host.inFlight > 0 || !host.waiters.isEmpty() || hosts.get(host.name) != host) {
+            return;
+        }
+
+        hosts.remove(host.name);
+        if (host.dropped > 0 || (host.bucket != null && host.bucket.nanosUntilAvailable(now) > 0)) {
+            idleHosts.put(host.name, host);
+        }
+    }
+
+    /**
+     * Creates a snapshot of the limits and the connections of the active hosts and the idle hosts whose
+     * state is kept.
+     *
+     * @return Statistics
+     */
+    public synchronized Statistics getStatistics() {
+        List<HostStatistics> snapshot = new ArrayList<>(hosts.size() + idleHosts.size());
+        for (Host host : hosts.values()) {
+            snapshot.add(new HostStatistics(host.name, host.limit.get(), host.inFlight, host.waiters.size(),
+                    host.released, host.dropped));
+        }
+        for (Host host : idleHosts.values()) {
+            snapshot.add(new HostStatistics(host.name, host.limit.get(), 0, 0, host.released, host.dropped));
+        }
+        snapshot.sort(Comparator.comparing(HostStatistics::host));
+
+        return new Statistics(globalLimit, hostLimit, globalBucket == null ? 0 : globalBucket.getRatePerSecond(),
+                hostRate, inFlight, waiting, snapshot);
+    }
+
+    /**
+     * Stops granting permits. Callers still waiting for a permit get an exception.
+     */
+    @Override
+    public void close() {
+        final List<CompletableFuture<Permit>> pending = new ArrayList<>();
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            for (Host host : hosts.values()) {
+                pending.addAll(host.waiters);
+                host.waiters.clear();
+            }
+            ready.clear();
+            waiting = 0;
+        }
+
+        scheduler.shutdownNow();
+
+        IllegalStateException ex = new IllegalStateException("The limiter has been closed");
+        pending.forEach(future -> future.completeExceptionally(ex));
+    }
+
+    private void release(final Permit permit, final Outcome outcome) {
+        final List<Grant> grants;
+
+        synchronized (this) {
+            final long now = System.nanoTime();
+            final Host host = permit.host;
+
+            host.inFlight--;
+            host.released++;
+            inFlight--;
+
+            if (outcome == Outcome.SUCCESS) {
+                host.limit.onSuccess();
+            } else if (outcome == Outcome.DROPPED) {
+                host.dropped++;
+                if (host.limit.onDrop(now, permit.grantedAt)) {
+                    LOGGER.debug("Connection to {} dropped - limit decreased to {}", host.name, host.limit.get());
+                }
+            }
+
+            if (closed) {
+                return;
+            }
+
+            markReady(host);
+            grants = dispatch(now);
+            retireIfIdle(host, now);
+        }
+
+        complete(grants);
+    }
+
+    /**
+     * Adds the host to the hosts which are served by {@link #dispatch(long)} if it has waiting callers.
+     */
+    private void markReady(final Host host) {
+        if (!host.ready && !host.waiters.isEmpty()) {
+            host.ready = true;
+            ready.add(host);
+        }
+    }
+
+    /**
+     * Grants permits to waiting callers as far as the limits allow. Every pass over the ready hosts grants
+     * at most one permit per host. Hosts which reached their concurrency limit leave the ready queue until
+     * one of their permits is released. If a token bucket is empty, a new attempt is scheduled for the time
+     * the next token is available.
+     *
+     * @param now Current value of {@link System#nanoTime()}
+     * @return Permits to hand out
+     */
+    private List<Grant> dispatch(final long now) {
+        List<Grant> grants = null;
+        long delay = Long.MAX_VALUE;
+
+        boolean progress = true;
+        passes:
+        while (progress && inFlight < globalLimit && !ready.isEmpty()) {
+            progress = false;
+
+            for (int i = ready.size(); i > 0 && inFlight < globalLimit; i--) {
+                final Host host = ready.poll();
+
+                // Callers which cancelled their request are skipped
+                while (!host.waiters.isEmpty() && host.waiters.peek().isDone()) {
+                    host.waiters.poll();
+                    waiting--;
+                }
+
+                if (host.waiters.isEmpty() || host.inFlight >= host.limit.get()) {
+                    host.ready = false;
+                    retireIfIdle(host, now);
+                    continue;
+                }
+
+                if (globalBucket != null) {
+                    long wait = globalBucket.nanosUntilAvailable(now);
+                    if (wait > 0) {
+                        delay = Math.min(delay, wait);
+                        ready.addFirst(host);
+                        break passes;
+                    }
+                }
+
+                if (host.bucket != null) {
+                    long wait = host.bucket.nanosUntilAvailable(now);
+                    if (wait > 0) {
+                        delay = Math.min(delay, wait);
+                        ready.add(host);
+                        continue;
+                    }
+                    host.bucket.take(now);
+                }
+
+                if (globalBucket != null) {
+                    globalBucket.take(now);
+                }
+
+                host.inFlight++;
+                inFlight++;
+                waiting--;
+
+                if (grants == null) {
+                    grants = new ArrayList<>();
+                }
+                grants.add(new Grant(host.waiters.poll(), new Permit(host, now)));
+                progress = true;
+
+                if (host.waiters.isEmpty()) {
+                    host.ready = false;
+                } else {
+                    ready.add(host);
+                }
+            }
+        }
+
+        if (delay != Long.MAX_VALUE && delay > 0) {
+            scheduleWakeUp(now, delay);
+        }
+
+        return grants == null ? List.of() : grants;
+    }
+
+    /**
+     * Schedules a call of {@link #dispatch(long)} after the specified delay unless an earlier one is
+     * already scheduled.
+     */
+    private void scheduleWakeUp(final long now, final long delay) {
+        final long at = now + delay;
+        if (wakeUpScheduled && wakeUpAt - at <= 0) {
+            return;
+        }
+
+        wakeUpScheduled = true;
+        wakeUpAt = at;
+        scheduler.schedule(this::wakeUp, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void wakeUp() {
+        final List<Grant> grants;
+
+        synchronized (this) {
+            final long now = System.nanoTime();
+            if (closed || wakeUpAt - now > 0) {
+                // A later wake-up was replaced by an earlier one, which is still pending
+                return;
+            }
+
+            wakeUpScheduled = false;
+            grants = dispatch(now);
+        }
+
+        complete(grants);
+    }
+
+    /**
+     * Hands out the permits. Called without holding the lock, so the callbacks of the callers do not
+     * run under the lock.
+     */
+    private void complete(final List<Grant> grants) {
+        for (Grant grant : grants) {
+            if (!grant.future().complete(grant.permit())) {
+                // The caller cancelled the request in the meantime
+                grant.permit().release(Outcome.IGNORED);
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package dev.svero.tools.limit;
+
+/**
+ * Token bucket which allows a number of events per second with bursts up to its capacity. The bucket
+ * starts full. Instances are not thread-safe; {@link ConnectionLimiter} only uses them while holding
+ * its lock.
+ *
+ * @author Sven Roeseler
+ */
+final class TokenBucket {
+    private final double ratePerSecond;
+    private final double tokensPerNano;
+    private final double capacity;
+
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param ratePerSecond Number of tokens added per second
+     * @param capacity      Maximum number of tokens in the bucket
+     * @param now           Current value of {@link System#nanoTime()}
+     */
+    TokenBucket(final double ratePerSecond, final int capacity, final long now) {
+        if (!(ratePerSecond > 0)) {
+            throw new IllegalArgumentException("ratePerSecond must be greater than zero");
+        }
+
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be greater than zero");
+        }
+
+        this.ratePerSecond = ratePerSecond;
+        this.tokensPerNano = ratePerSecond / 1_000_000_000.0;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefill = now;
+    }
+
+    /**
+     * Calculates the time until the next token is available.
+     *
+     * @param now Current value of {@link System#nanoTime()}
+     * @return Nanoseconds to wait or 0 if a token is available now
+     */
+    long nanosUntilAvailable(final long now) {
+        refill(now);
+
+        if (tokens >= 1) {
+            return 0;
+        }
+
+        return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+    }
+
+    /**
+     * Takes a token. The caller must make sure a token is available.
+     *
+     * @param now Current value of {@link System#nanoTime()}
+     */
+    void take(final long now) {
+        refill(now);
+        tokens -= 1;
+    }
+
+    /**
+     * Gets the configured rate.
+     *
+     * @return Tokens per second
+     */
+    double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    private void refill(final long now) {
+        if (now > lastRefill) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+        }
+    }
+}
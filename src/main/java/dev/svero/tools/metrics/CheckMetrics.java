@@ -0,0 +1,136 @@
+package dev.svero.tools.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects the phase timings of checks in histograms, once for all checks and optionally per target.
+ * The durations are recorded in microseconds. Recording is lock-free and may happen from any number of
+ * threads at the same time.
+ *
+ * @author Sven Roeseler
+ */
+public class CheckMetrics {
+    /**
+     * Precision of the aggregate histograms (relative error below 1 %).
+     */
+    private static final int AGGREGATE_PRECISION_BITS = 8;
+
+    /**
+     * Precision of the per-target histograms (relative error about 3 %), which keeps them small for
+     * runs with many targets.
+     */
+    private static final int TARGET_PRECISION_BITS = 6;
+
+    private final Series aggregate = new Series(AGGREGATE_PRECISION_BITS);
+    private final Map<String, Series> targets = new ConcurrentHashMap<>();
+    private final boolean perTarget;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param perTarget True if histograms should also be kept for every single target
+     */
+    public CheckMetrics(final boolean perTarget) {
+        this.perTarget = perTarget;
+    }
+
+    /**
+     * Histograms and counters for a set of checks.
+     */
+    public static final class Series {
+        private final Histogram[] histograms = new Histogram[Phase.values().length];
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        private Series(final int precisionBits) {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new Histogram(precisionBits);
+            }
+        }
+
+        /**
+         * Gets the histogram of the specified phase.
+         *
+         * @param phase Phase
+         * @return Histogram with durations in microseconds
+         */
+        public Histogram getHistogram(final Phase phase) {
+            return histograms[phase.ordinal()];
+        }
+
+        /**
+         * Gets the number of successful checks.
+         *
+         * @return Number of checks
+         */
+        public long getSucceeded() {
+            return succeeded.sum();
+        }
+
+        /**
+         * Gets the number of failed checks.
+         *
+         * @return Number of checks
+         */
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        private void record(final boolean success, final PhaseTimings timings, final long duration) {
+            (success ? succeeded : failed).increment();
+
+            if (timings != null) {
+                for (Phase phase : Phase.values()) {
+                    if (phase != Phase.TOTAL && timings.isRecorded(phase)) {
+                        getHistogram(phase).record(TimeUnit.NANOSECONDS.toMicros(timings.get(phase)));
+                    }
+                }
+            }
+
+            getHistogram(Phase.TOTAL).record(TimeUnit.NANOSECONDS.toMicros(duration));
+        }
+    }
+
+    /**
+     * Records the outcome of a check.
+     *
+     * @param target   Name of the target (e.g. the URL)
+     * @param success  True if the check succeeded
+     * @param timings  Timings of the phases or null if unknown
+     * @param duration Duration of the complete check in nanoseconds
+     */
+    public void record(final String target, final boolean success, final PhaseTimings timings,
+                       final long duration) {
+        Objects.requireNonNull(target);
+
+        aggregate.record(success, timings, duration);
+
+        if (perTarget) {
+            targets.computeIfAbsent(target, key -> new Series(TARGET_PRECISION_BITS))
+                    .record(success, timings, duration);
+        }
+    }
+
+    /**
+     * Gets the histograms and counters of all checks.
+     *
+     * @return Aggregate series
+     */
+    public Series getAggregate() {
+        return aggregate;
+    }
+
+    /**
+     * Gets the histograms and counters per target. The map is empty if per-target metrics are disabled.
+     *
+     * @return Unmodifiable map with the target names as keys
+     */
+    public Map<String, Series> getTargets() {
+        return Collections.unmodifiableMap(targets);
+    }
+}
@@ -0,0 +1,165 @@
+package dev.svero.tools.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Implements a lock-free histogram with log-linear buckets in the style of HdrHistogram. Values below
+ * 2^precisionBits are counted exactly. Larger values are counted in buckets whose width doubles with
+ * every power of two, so the relative error stays below 2^-(precisionBits - 1). The buckets of a power
+ * of two are only allocated when the first value in this range is recorded, which keeps histograms with
+ * few values small.
+ *
+ * @author Sven Roeseler
+ */
+public class Histogram {
+    private final int precisionBits;
+    private final int halfCount;
+    private final AtomicReferenceArray<AtomicLongArray> buckets;
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Creates a new instance.
+     *
+     * @param precisionBits Number of bits of a value which are kept exactly (1 to 16)
+     */
+    public Histogram(final int precisionBits) {
+        if (precisionBits < 1 || precisionBits > 16) {
+            throw new IllegalArgumentException("precisionBits must be between 1 and 16");
+        }
+
+        this.precisionBits = precisionBits;
+        this.halfCount = 1 << (precisionBits - 1);
+        this.buckets = new AtomicReferenceArray<>(64 - precisionBits + 1);
+    }
+
+    /**
+     * Records the specified value. Negative values are recorded as 0.
+     *
+     * @param value Value to record
+     */
+    public void record(final long value) {
+        final long v = Math.max(0, value);
+
+        final int bucket;
+        final int index;
+        if (v < (1L << precisionBits)) {
+            bucket = 0;
+            index = (int) v;
+        } else {
+            bucket = 63 - Long.numberOfLeadingZeros(v) - precisionBits + 1;
+            index = (int) (v >>> bucket) - halfCount;
+        }
+
+        AtomicLongArray counts = buckets.get(bucket);
+        if (counts == null) {
+            counts = new AtomicLongArray(bucket == 0 ? 2 * halfCount : halfCount);
+            if (!buckets.compareAndSet(bucket, null, counts)) {
+                counts = buckets.get(bucket);
+            }
+        }
+
+        counts.incrementAndGet(index);
+        count.incrementAndGet();
+        sum.addAndGet(v);
+        min.accumulateAndGet(v, Math::min);
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return Number of values
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the sum of all recorded values.
+     *
+     * @return Sum
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Gets the smallest recorded value.
+     *
+     * @return Minimum or 0 if no value has been recorded
+     */
+    public long getMin() {
+        return getCount() == 0 ? 0 : min.get();
+    }
+
+    /**
+     * Gets the largest recorded value.
+     *
+     * @return Maximum or 0 if no value has been recorded
+     */
+    public long getMax() {
+        return getCount() == 0 ? 0 : max.get();
+    }
+
+    /**
+     * Gets the arithmetic mean of the recorded values.
+     *
+     * @return Mean or 0 if no value has been recorded
+     */
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) getSum() / n;
+    }
+
+    /**
+     * Gets the value at the specified percentile. The result is the highest value which is counted in
+     * the same bucket as the value at the percentile, but never more than the recorded maximum.
+     *
+     * @param percentile Percentile (0 to 100)
+     * @return Value at the percentile or 0 if no value has been recorded
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+
+        final long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+
+        long seen = 0;
+        for (int bucket = 0; bucket < buckets.length(); bucket++) {
+            AtomicLongArray counts = buckets.get(bucket);
+            if (counts == null) {
+                continue;
+            }
+
+            for (int index = 0; index < counts.length(); index++) {
+                seen += counts.get(index);
+                if (seen >= rank) {
+                    return Math.min(highestEquivalentValue(bucket, index), getMax());
+                }
+            }
+        }
+
+        return getMax();
+    }
+
+    private long highestEquivalentValue(final int bucket, final int index) {
+        if (bucket == 0) {
+            return index;
+        }
+
+        long lowest = (long) (index + halfCount) << bucket;
+        return lowest + (1L << bucket) - 1;
+    }
+}
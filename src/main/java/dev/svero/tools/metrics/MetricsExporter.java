@@ -0,0 +1,294 @@
+package dev.svero.tools.metrics;
+
+import dev.svero.tools.JsonUtils;
+import dev.svero.tools.limit.ConnectionLimiter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Writes collected check metrics in the Prometheus text exposition format or as JSON summary.
+ *
+ * @author Sven Roeseler
+ */
+public final class MetricsExporter {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private MetricsExporter() {
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text format. The phase durations are exported as summaries in
+     * seconds, the number of checks as counters.
+     *
+     * @param metrics Metrics to write
+     * @param out     Target
+     * @throws IOException If the metrics could not be written
+     */
+    public static void writePrometheus(final CheckMetrics metrics, final Appendable out) throws IOException {
+        Objects.requireNonNull(metrics);
+        Objects.requireNonNull(out);
+
+        Map<String, CheckMetrics.Series> targets = new TreeMap<>(metrics.getTargets());
+
+        out.append("# HELP sslchecker_checks_total Number of checks\n");
+        out.append("# TYPE sslchecker_checks_total counter\n");
+        writeCounters(out, "sslchecker_checks_total", "", metrics.getAggregate());
+
+        out.append("# HELP sslchecker_phase_seconds Duration of the check phases\n");
+        out.append("# TYPE sslchecker_phase_seconds summary\n");
+        writeSummaries(out, "sslchecker_phase_seconds", "", metrics.getAggregate());
+
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        out.append("# HELP sslchecker_target_checks_total Number of checks per target\n");
+        out.append("# TYPE sslchecker_target_checks_total counter\n");
+        for (Map.Entry<String, CheckMetrics.Series> entry : targets.entrySet()) {
+            writeCounters(out, "sslchecker_target_checks_total", targetLabel(entry.getKey()), entry.getValue());
+        }
+
+        out.append("# HELP sslchecker_target_phase_seconds Duration of the check phases per target\n");
+        out.append("# TYPE sslchecker_target_phase_seconds summary\n");
+        for (Map.Entry<String, CheckMetrics.Series> entry : targets.entrySet()) {
+            writeSummaries(out, "sslchecker_target_phase_seconds", targetLabel(entry.getKey()), entry.getValue());
+        }
+    }
+
+    /**
+     * Writes the metrics as JSON summary. The durations are given in milliseconds.
+     *
+     * @param metrics Metrics to write
+     * @param out     Target
+     * @throws IOException If the metrics could not be written
+     */
+    public static void writeJson(final CheckMetrics metrics, final Appendable out) throws IOException {
+        writeJson(metrics, null, out);
+    }
+
+    /**
+     * Writes the metrics and the current limits of a connection limiter as JSON summary. The durations
+     * are given in milliseconds.
+     *
+     * @param metrics    Metrics to write
+     * @param statistics Snapshot of the limiter or null if no limiter is used
+     * @param out        Target
+     * @throws IOException If the metrics could not be written
+     */
+    public static void writeJson(final CheckMetrics metrics, final ConnectionLimiter.Statistics statistics,
+                                 final Appendable out) throws IOException {
+        Objects.requireNonNull(metrics);
+        Objects.requireNonNull(out);
+
+        out.append("{\"aggregate\":");
+        writeJsonSeries(out, metrics.getAggregate());
+
+        out.append(",\"targets\":{");
+        boolean first = true;
+        for (Map.Entry<String, CheckMetrics.Series> entry : new TreeMap<>(metrics.getTargets()).entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+
+            out.append(JsonUtils.quote(entry.getKey())).append(':');
+            writeJsonSeries(out, entry.getValue());
+        }
+        out.append('}');
+
+        if (statistics != null) {
+            out.append(",\"limiter\":");
+            writeJsonLimiter(out, statistics);
+        }
+        out.append("}\n");
+    }
+
+    /**
+     * Writes the current limits of a connection limiter in the Prometheus text format as gauges, the
+     * number of dropped connections per host as counters. The series of a host are only written while it
+     * has open connections or waiting callers or has been throttled, so the number of series does not
+     * grow with every host ever checked.
+     *
+     * @param statistics Snapshot of the limiter
+     * @param out        Target
+     * @throws IOException If the metrics could not be written
+     */
+    public static void writePrometheus(final ConnectionLimiter.Statistics statistics, final Appendable out)
+            throws IOException {
+        Objects.requireNonNull(statistics);
+        Objects.requireNonNull(out);
+
+        final List<ConnectionLimiter.HostStatistics> hosts = new ArrayList<>();
+        for (ConnectionLimiter.HostStatistics host : statistics.hosts()) {
+            if (host.inFlight() > 0 || host.waiting() > 0 || host.dropped() > 0) {
+                hosts.add(host);
+            }
+        }
+
+        out.append("# HELP sslchecker_limiter_limit Maximum number of concurrent connections\n");
+        out.append("# TYPE sslchecker_limiter_limit gauge\n");
+        out.append("sslchecker_limiter_limit{scope=\"global\"} ").append(Integer.toString(statistics.globalLimit()))
+                .append('\n');
+        for (ConnectionLimiter.HostStatistics host : hosts) {
+            out.append("sslchecker_limiter_limit{scope=\"host\",").append(label("host", host.host())).append("} ")
+                    .append(Integer.toString(host.limit())).append('\n');
+        }
+
+        out.append("# HELP sslchecker_limiter_in_flight Number of open connections\n");
+        out.append("# TYPE sslchecker_limiter_in_flight gauge\n");
+        out.append("sslchecker_limiter_in_flight{scope=\"global\"} ").append(Integer.toString(statistics.inFlight()))
+                .append('\n');
+        for (ConnectionLimiter.HostStatistics host : hosts) {
+            out.append("sslchecker_limiter_in_flight{scope=\"host\",").append(label("host", host.host()))
+                    .append("} ").append(Integer.toString(host.inFlight())).append('\n');
+        }
+
+        out.append("# HELP sslchecker_limiter_waiting Number of checks waiting for a connection permit\n");
+        out.append("# TYPE sslchecker_limiter_waiting gauge\n");
+        out.append("sslchecker_limiter_waiting ").append(Integer.toString(statistics.waiting())).append('\n');
+
+        if (statistics.globalRate() > 0 || statistics.hostRate() > 0) {
+            out.append("# HELP sslchecker_limiter_rate Maximum number of new connections per second\n");
+            out.append("# TYPE sslchecker_limiter_rate gauge\n");
+            if (statistics.globalRate() > 0) {
+                out.append("sslchecker_limiter_rate{scope=\"global\"} ")
+                        .append(Double.toString(statistics.globalRate())).append('\n');
+            }
+            if (statistics.hostRate() > 0) {
+                out.append("sslchecker_limiter_rate{scope=\"host\"} ")
+                        .append(Double.toString(statistics.hostRate())).append('\n');
+            }
+        }
+
+        out.append("# HELP sslchecker_limiter_dropped_total Number of connections dropped by the host\n");
+        out.append("# TYPE sslchecker_limiter_dropped_total counter\n");
+        for (ConnectionLimiter.HostStatistics host : hosts) {
+            out.append("sslchecker_limiter_dropped_total{").append(label("host", host.host())).append("} ")
+                    .append(Long.toString(host.dropped())).append('\n');
+        }
+    }
+
+    private static void writeJsonLimiter(final Appendable out, final ConnectionLimiter.Statistics statistics)
+            throws IOException {
+        out.append("{\"globalLimit\":").append(Integer.toString(statistics.globalLimit()))
+                .append(",\"hostLimit\":").append(Integer.toString(statistics.hostLimit()))
+                .append(",\"globalRate\":").append(Double.toString(statistics.globalRate()))
+                .append(",\"hostRate\":").append(Double.toString(statistics.hostRate()))
+                .append(",\"inFlight\":").append(Integer.toString(statistics.inFlight()))
+                .append(",\"waiting\":").append(Integer.toString(statistics.waiting()))
+                .append(",\"hosts\":{");
+
+        boolean first = true;
+        for (ConnectionLimiter.HostStatistics host : statistics.hosts()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+
+            out.append(JsonUtils.quote(host.host())).append(":{")
+                    .append("\"limit\":").append(Integer.toString(host.limit()))
+                    .append(",\"inFlight\":").append(Integer.toString(host.inFlight()))
+                    .append(",\"waiting\":").append(Integer.toString(host.waiting()))
+                    .append(",\"released\":").append(Long.toString(host.released()))
+                    .append(",\"dropped\":").append(Long.toString(host.dropped()))
+                    .append('}');
+        }
+        out.append("}}");
+    }
+
+    private static void writeCounters(final Appendable out, final String name, final String labels,
+                                      final CheckMetrics.Series series) throws IOException {
+        out.append(name).append('{').append(labels).append("result=\"success\"} ")
+                .append(Long.toString(series.getSucceeded())).append('\n');
+        out.append(name).append('{').append(labels).append("result=\"failure\"} ")
+                .append(Long.toString(series.getFailed())).append('\n');
+    }
+
+    private static void writeSummaries(final Appendable out, final String name, final String labels,
+                                       final CheckMetrics.Series series) throws IOException {
+        for (Phase phase : Phase.values()) {
+            Histogram histogram = series.getHistogram(phase);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+
+            String phaseLabels = labels + "phase=\"" + phase.getLabel() + "\"";
+
+            for (double quantile : QUANTILES) {
+                out.append(name).append('{').append(phaseLabels).append(",quantile=\"")
+                        .append(Double.toString(quantile)).append("\"} ")
+                        .append(seconds(histogram.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+
+            out.append(name).append("_sum{").append(phaseLabels).append("} ")
+                    .append(seconds(histogram.getSum())).append('\n');
+            out.append(name).append("_count{").append(phaseLabels).append("} ")
+                    .append(Long.toString(histogram.getCount())).append('\n');
+        }
+    }
+
+    private static void writeJsonSeries(final Appendable out, final CheckMetrics.Series series) throws IOException {
+        out.append("{\"succeeded\":").append(Long.toString(series.getSucceeded()))
+                .append(",\"failed\":").append(Long.toString(series.getFailed()))
+                .append(",\"phases\":{");
+
+        boolean first = true;
+        for (Phase phase : Phase.values()) {
+            Histogram histogram = series.getHistogram(phase);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+
+            out.append('"').append(phase.getLabel()).append("\":{")
+                    .append("\"count\":").append(Long.toString(histogram.getCount()))
+                    .append(",\"min\":").append(millis(histogram.getMin()))
+                    .append(",\"mean\":").append(millis(histogram.getMean()))
+                    .append(",\"p50\":").append(millis(histogram.getValueAtPercentile(50)))
+                    .append(",\"p90\":").append(millis(histogram.getValueAtPercentile(90)))
+                    .append(",\"p99\":").append(millis(histogram.getValueAtPercentile(99)))
+                    .append(",\"max\":").append(millis(histogram.getMax()))
+                    .append('}');
+        }
+
+        out.append("}}");
+    }
+
+    private static String targetLabel(final String target) {
+        return label("target", target) + ",";
+    }
+
+    private static String label(final String name, final String value) {
+        StringBuilder sb = new StringBuilder(name).append("=\"");
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '"' -> sb.append("\\\"");
+                case '\n' -> sb.append("\\n");
+                default -> sb.append(c);
+            }
+        }
+
+        return sb.append('"').toString();
+    }
+
+    private static String seconds(final long micros) {
+        return String.format(Locale.ROOT, "%.6f", micros / 1_000_000.0);
+    }
+
+    private static String millis(final double micros) {
+        return String.format(Locale.ROOT, "%.3f", micros / 1_000.0);
+    }
+}
@@ -0,0 +1,56 @@
+package dev.svero.tools.metrics;
+
+/**
+ * Phases of a check which are timed separately.
+ *
+ * @author Sven Roeseler
+ */
+public enum Phase {
+    /**
+     * Resolution of the host name. Only recorded by the modes which resolve the host name themselves
+     * (handshake modes), for HTTP checks it is part of {@link #FIRST_BYTE}.
+     */
+    DNS("dns"),
+
+    /**
+     * Establishing the TCP connection.
+     */
+    CONNECT("connect"),
+
+    /**
+     * TLS handshake.
+     */
+    HANDSHAKE("handshake"),
+
+    /**
+     * Time from sending the request until the response headers have been received. For HTTP checks
+     * this includes the name resolution, connecting and the handshake if no pooled connection could be
+     * reused.
+     */
+    FIRST_BYTE("ttfb"),
+
+    /**
+     * Reading the response body.
+     */
+    BODY("body"),
+
+    /**
+     * Complete check.
+     */
+    TOTAL("total");
+
+    private final String label;
+
+    Phase(final String label) {
+        this.label = label;
+    }
+
+    /**
+     * Gets the name of the phase used in exported metrics.
+     *
+     * @return Label
+     */
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,85 @@
+package dev.svero.tools.metrics;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Holds the durations of the phases of a single check. The phases are recorded one after the other,
+ * possibly by different threads, and read once the check has completed. Phases which have not been
+ * reached (or do not apply to the check mode) stay unrecorded.
+ *
+ * @author Sven Roeseler
+ */
+public final class PhaseTimings {
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long[] durations = new long[PHASES.length];
+
+    /**
+     * Creates a new instance without recorded phases.
+     */
+    public PhaseTimings() {
+        Arrays.fill(durations, -1);
+    }
+
+    /**
+     * Records the duration of the specified phase.
+     *
+     * @param phase    Phase
+     * @param duration Duration in nanoseconds
+     */
+    public void record(final Phase phase, final long duration) {
+        Objects.requireNonNull(phase);
+
+        durations[phase.ordinal()] = Math.max(0, duration);
+    }
+
+    /**
+     * Records the duration of the specified phase which started at the specified time.
+     *
+     * @param phase Phase
+     * @param start Start of the phase as returned by {@link System#nanoTime()}
+     * @return Current time, which can be used as start of the next phase
+     */
+    public long recordSince(final Phase phase, final long start) {
+        final long now = System.nanoTime();
+        record(phase, now - start);
+        return now;
+    }
+
+    /**
+     * Checks if the specified phase has been recorded.
+     *
+     * @param phase Phase
+     * @return True if a duration is available
+     */
+    public boolean isRecorded(final Phase phase) {
+        return durations[phase.ordinal()] >= 0;
+    }
+
+    /**
+     * Gets the duration of the specified phase.
+     *
+     * @param phase Phase
+     * @return Duration in nanoseconds or -1 if the phase has not been recorded
+     */
+    public long get(final Phase phase) {
+        return durations[phase.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+
+        for (Phase phase : PHASES) {
+            if (isRecorded(phase)) {
+                if (sb.length() > 0) {
+                    sb.append(", ");
+                }
+                sb.append(phase.getLabel()).append(' ').append(get(phase) / 1_000_000).append(" ms");
+            }
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package dev.svero.tools.nio;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implements a pool of direct byte buffers with a fixed size. Released buffers are kept up to the
+ * configured maximum and handed out again, so direct memory is not allocated for every connection.
+ *
+ * @author Sven Roeseler
+ */
+public class BufferPool {
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final AtomicInteger allocated = new AtomicInteger();
+    private final AtomicInteger inUse = new AtomicInteger();
+
+    private final int bufferSize;
+    private final int maxPooled;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param bufferSize Size of every buffer in bytes
+     * @param maxPooled  Maximum number of idle buffers kept in the pool
+     */
+    public BufferPool(final int bufferSize, final int maxPooled) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+
+        if (maxPooled < 0) {
+            throw new IllegalArgumentException("maxPooled may not be negative");
+        }
+
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Takes a cleared buffer from the pool or allocates a new one if the pool is empty.
+     *
+     * @return Buffer
+     */
+    public ByteBuffer acquire() {
+        inUse.incrementAndGet();
+
+        ByteBuffer buffer = buffers.poll();
+        if (buffer != null) {
+            pooled.decrementAndGet();
+            buffer.clear();
+            return buffer;
+        }
+
+        allocated.incrementAndGet();
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Returns the specified buffer to the pool.
+     *
+     * @param buffer Buffer previously acquired from this pool
+     */
+    public void release(final ByteBuffer buffer) {
+        Objects.requireNonNull(buffer);
+
+        inUse.decrementAndGet();
+
+        if (pooled.incrementAndGet() <= maxPooled) {
+            buffers.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+            allocated.decrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the size of the buffers of this pool.
+     *
+     * @return Buffer size in bytes
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Gets the number of buffers currently allocated by this pool (in use or idle).
+     *
+     * @return Number of allocated buffers
+     */
+    public int getAllocated() {
+        return allocated.get();
+    }
+
+    /**
+     * Gets the number of buffers currently in use.
+     *
+     * @return Number of buffers in use
+     */
+    public int getInUse() {
+        return inUse.get();
+    }
+}
@@ -0,0 +1,636 @@
+package dev.svero.tools.nio;
+
+import dev.svero.tools.TlsSessionInfo;
+import dev.svero.tools.jfr.HandshakeEvent;
+import dev.svero.tools.metrics.Phase;
+import dev.svero.tools.metrics.PhaseTimings;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Performs TLS handshakes using non-blocking socket channels and SSL engines. A small number of I/O
+ * threads drives all connections, so many thousands of handshakes can be in progress at the same time.
+ * Connect and handshake deadlines are tracked by a timer wheel per I/O thread. Delegated tasks of the SSL
+ * engines (certificate validation including revocation lookups) run on a separate executor, so a slow
+ * validation does not stall the other connections of a loop. Network buffers are only
+ * taken from a pool of direct buffers while data is pending, so connections waiting for a slow peer hold
+ * almost no buffer memory.
+ *
+ * @author Sven Roeseler
+ */
+public class NioHandshakeEngine implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NioHandshakeEngine.class);
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int WHEEL_SIZE = 1024;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    /**
+     * Snapshot of the engine statistics.
+     *
+     * @param active           Number of connections currently in progress
+     * @param peakActive       Highest number of connections in progress at the same time
+     * @param completed        Number of successful handshakes
+     * @param failed           Number of failed handshakes
+     * @param buffersAllocated Number of direct network buffers currently allocated
+     * @param bufferSize       Size of a network buffer in bytes
+     */
+    public record Statistics(int active, int peakActive, long completed, long failed, int buffersAllocated,
+                             int bufferSize) {
+    }
+
+    private volatile SSLContext sslContext;
+    private final Duration connectTimeout;
+    private final Duration handshakeTimeout;
+    private final ExecutorService completionExecutor;
+    private final ExecutorService resolver;
+    private final ExecutorService taskExecutor;
+    private final BufferPool bufferPool;
+    private final int applicationBufferSize;
+    private final IoLoop[] loops;
+
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peakActive = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a new engine and starts its I/O threads.
+     *
+     * @param sslContext       SSL context used for all handshakes
+     * @param ioThreads        Number of I/O threads
+     * @param connectTimeout   Timeout for establishing the TCP connection
+     * @param handshakeTimeout Timeout for the TLS handshake
+     * @throws IOException If a selector could not be opened
+     */
+    public NioHandshakeEngine(final SSLContext sslContext, final int ioThreads, final Duration connectTimeout,
+                              final Duration handshakeTimeout) throws IOException {
+        Objects.requireNonNull(sslContext);
+        Objects.requireNonNull(connectTimeout);
+        Objects.requireNonNull(handshakeTimeout);
+
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("ioThreads must be greater than zero");
+        }
+
+        this.sslContext = sslContext;
+        this.connectTimeout = connectTimeout;
+        this.handshakeTimeout = handshakeTimeout;
+        this.completionExecutor = Executors.newFixedThreadPool(Math.max(2, ioThreads), daemonThreads("nio-complete"));
+        this.resolver = Executors.newFixedThreadPool(Math.max(4, ioThreads * 4), daemonThreads("nio-resolve"));
+        this.taskExecutor = Executors.newFixedThreadPool(Math.max(4, ioThreads * 4), daemonThreads("nio-task"));
+
+        SSLEngine probe = sslContext.createSSLEngine();
+        this.bufferPool = new BufferPool(probe.getSession().getPacketBufferSize(), 1024 * ioThreads);
+        this.applicationBufferSize = probe.getSession().getApplicationBufferSize();
+
+        this.loops = new IoLoop[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            loops[i] = new IoLoop(i);
+        }
+
+        for (IoLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    /**
+     * Starts a handshake with the specified host. The host name of the peer is verified in the same way
+     * as for HTTPS requests.
+     *
+     * @param host Host name
+     * @param port Port
+     * @return Future which is completed with the negotiated session parameters
+     */
+    public CompletableFuture<TlsSessionInfo> handshake(final String host, final int port) {
+        return handshake(host, port, new PhaseTimings());
+    }
+
+    /**
+     * Starts a handshake with the specified host. The durations of the name resolution, the connect and
+     * the handshake are recorded in the specified timings and can be read once the future has completed.
+     *
+     * @param host    Host name
+     * @param port    Port
+     * @param timings Receives the durations of the phases
+     * @return Future which is completed with the negotiated session parameters
+     */
+    public CompletableFuture<TlsSessionInfo> handshake(final String host, final int port,
+                                                       final PhaseTimings timings) {
+        if (StringUtils.isBlank(host)) {
+            throw new IllegalArgumentException("host may not be blank");
+        }
+
+        Objects.requireNonNull(timings);
+
+        CompletableFuture<TlsSessionInfo> future = new CompletableFuture<>();
+
+        if (closed) {
+            future.completeExceptionally(new IllegalStateException("Engine has been closed"));
+            return future;
+        }
+
+        final HandshakeEvent event = new HandshakeEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            future.whenComplete((info, ex) -> event.complete(host, port, true, info,
+                    ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex));
+        }
+
+        final IoLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+
+        try {
+            resolver.execute(() -> {
+                final long start = System.nanoTime();
+                InetSocketAddress address = new InetSocketAddress(host, port);
+
+                if (address.isUnresolved()) {
+                    failed.incrementAndGet();
+                    future.completeExceptionally(new IOException("Could not resolve host " + host));
+                    return;
+                }
+
+                timings.recordSince(Phase.DNS, start);
+
+                loop.register(new Connection(loop, host, port, address, future, timings));
+            });
+        } catch (RejectedExecutionException ex) {
+            // close() has shut down the resolver after the check above
+            future.completeExceptionally(new IllegalStateException("Engine has been closed", ex));
+        }
+
+        return future;
+    }
+
+    /**
+     * Replaces the SSL context. Handshakes already in progress keep using the previous context.
+     *
+     * @param sslContext New SSL context
+     */
+    public void setSSLContext(final SSLContext sslContext) {
+        Objects.requireNonNull(sslContext);
+
+        this.sslContext = sslContext;
+    }
+
+    /**
+     * Gets a snapshot of the engine statistics.
+     *
+     * @return Statistics
+     */
+    public Statistics getStatistics() {
+        return new Statistics(active.get(), peakActive.get(), completed.get(), failed.get(),
+                bufferPool.getAllocated(), bufferPool.getBufferSize());
+    }
+
+    /**
+     * Stops the I/O threads. Handshakes still in progress fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+
+        for (IoLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+
+        for (IoLoop loop : loops) {
+            try {
+                loop.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        resolver.shutdown();
+        taskExecutor.shutdown();
+        completionExecutor.shutdown();
+    }
+
+    private static ThreadFactory daemonThreads(final String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Event loop owning a selector, a timer wheel and all connections registered with it.
+     */
+    private final class IoLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<Connection> registrations = new ConcurrentLinkedQueue<>();
+        private final Queue<Connection> resumptions = new ConcurrentLinkedQueue<>();
+        private final TimerWheel timers = new TimerWheel(TICK_NANOS, WHEEL_SIZE, System.nanoTime());
+        private final ByteBuffer applicationBuffer = ByteBuffer.allocateDirect(applicationBufferSize);
+
+        IoLoop(final int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "nio-handshake-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void register(final Connection connection) {
+            registrations.add(connection);
+            selector.wakeup();
+
+            if (closed) {
+                // The loop may already have stopped - fail the registrations which are left over
+                Connection pending;
+                while ((pending = registrations.poll()) != null) {
+                    pending.fail(new IllegalStateException("Engine has been closed"));
+                }
+            }
+        }
+
+        void resume(final Connection connection) {
+            resumptions.add(connection);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    selector.select(TimeUnit.NANOSECONDS.toMillis(TICK_NANOS));
+
+                    Connection connection;
+                    while ((connection = registrations.poll()) != null) {
+                        connection.start();
+                    }
+
+                    while ((connection = resumptions.poll()) != null) {
+                        connection.resume();
+                    }
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+
+                        if (key.isValid()) {
+                            ((Connection) key.attachment()).handle(key);
+                        }
+                    }
+
+                    timers.advance(System.nanoTime());
+                }
+            } catch (IOException | ClosedSelectorException ex) {
+                LOGGER.error("I/O loop stopped unexpectedly", ex);
+            } finally {
+                shutdown();
+            }
+        }
+
+        private void shutdown() {
+            IllegalStateException ex = new IllegalStateException("Engine has been closed");
+
+            Connection connection;
+            while ((connection = registrations.poll()) != null) {
+                connection.fail(ex);
+            }
+
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection pending) {
+                    pending.fail(ex);
+                }
+            }
+
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // Nothing to do
+            }
+        }
+    }
+
+    /**
+     * State of a single handshake. All methods except {@link #fail(Exception)} are called on the I/O
+     * thread of the owning loop. Releasing the resources is synchronized, so a connection can also be
+     * failed by a thread registering it after the engine has been closed. While delegated tasks are
+     * running, the connection has no interest in any I/O event and is only driven again after the tasks
+     * have been handed back to the loop.
+     */
+    private final class Connection {
+        private final IoLoop loop;
+        private final String host;
+        private final int port;
+        private final InetSocketAddress address;
+        private final CompletableFuture<TlsSessionInfo> future;
+        private final PhaseTimings timings;
+
+        private SocketChannel channel;
+        private SelectionKey key;
+        private SSLEngine engine;
+        private TimerWheel.Timeout timeout;
+        private ByteBuffer netIn;
+        private ByteBuffer netOut;
+        private boolean finished;
+        private long phaseStart;
+
+        Connection(final IoLoop loop, final String host, final int port, final InetSocketAddress address,
+                   final CompletableFuture<TlsSessionInfo> future, final PhaseTimings timings) {
+            this.loop = loop;
+            this.host = host;
+            this.port = port;
+            this.address = address;
+            this.future = future;
+            this.timings = timings;
+        }
+
+        void start() {
+            if (future.isDone()) {
+                return;
+            }
+
+            try {
+                channel = SocketChannel.open();
+
+                // Counted only once the channel exists, finish() releases it together with the channel
+                int current = active.incrementAndGet();
+                peakActive.accumulateAndGet(current, Math::max);
+
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                key = channel.register(loop.selector, 0, this);
+
+                phaseStart = System.nanoTime();
+                if (channel.connect(address)) {
+                    beginHandshake();
+                } else {
+                    key.interestOps(SelectionKey.OP_CONNECT);
+                    timeout = loop.timers.schedule(connectTimeout.toNanos(), System.nanoTime(),
+                            () -> fail(new SocketTimeoutException("Connect timed out")));
+                }
+            } catch (Exception ex) {
+                fail(ex);
+            }
+        }
+
+        void handle(final SelectionKey selectionKey) {
+            try {
+                if (selectionKey.isConnectable()) {
+                    channel.finishConnect();
+                    timeout.cancel();
+                    beginHandshake();
+                } else {
+                    selectionKey.interestOps(0);
+                    drive();
+                }
+            } catch (Exception ex) {
+                fail(ex);
+            }
+        }
+
+        void resume() {
+            if (finished) {
+                return;
+            }
+
+            try {
+                drive();
+            } catch (Exception ex) {
+                fail(ex);
+            }
+        }
+
+        private void beginHandshake() throws IOException {
+            phaseStart = timings.recordSince(Phase.CONNECT, phaseStart);
+
+            timeout = loop.timers.schedule(handshakeTimeout.toNanos(), phaseStart,
+                    () -> fail(new SocketTimeoutException("Handshake timed out")));
+
+            engine = sslContext.createSSLEngine(host, port);
+            engine.setUseClientMode(true);
+
+            SSLParameters parameters = engine.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            engine.setSSLParameters(parameters);
+
+            key.interestOps(0);
+            engine.beginHandshake();
+            drive();
+        }
+
+        private void drive() throws IOException {
+            while (!finished) {
+                switch (engine.getHandshakeStatus()) {
+                    case NEED_WRAP:
+                        if (!wrap()) {
+                            return;
+                        }
+                        break;
+                    case NEED_UNWRAP:
+                    case NEED_UNWRAP_AGAIN:
+                        if (!unwrap()) {
+                            return;
+                        }
+                        break;
+                    case NEED_TASK:
+                        runDelegatedTasks();
+                        return;
+                    default:
+                        succeed();
+                        return;
+                }
+            }
+        }
+
+        private void runDelegatedTasks() {
+            key.interestOps(0);
+
+            taskExecutor.execute(() -> {
+                try {
+                    Runnable task;
+                    while ((task = engine.getDelegatedTask()) != null) {
+                        task.run();
+                    }
+                } finally {
+                    // Failures of a task are reported by the engine on the next wrap or unwrap
+                    loop.resume(this);
+                }
+            });
+        }
+
+        private boolean wrap() throws IOException {
+            if (netOut != null && !flush()) {
+                return false;
+            }
+
+            netOut = bufferPool.acquire();
+            SSLEngineResult result = engine.wrap(EMPTY, netOut);
+            netOut.flip();
+
+            if (result.getStatus() != SSLEngineResult.Status.OK) {
+                throw new SSLException("Unexpected result while wrapping handshake data: " + result.getStatus());
+            }
+
+            return flush();
+        }
+
+        private boolean flush() throws IOException {
+            channel.write(netOut);
+
+            if (netOut.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+                return false;
+            }
+
+            bufferPool.release(netOut);
+            netOut = null;
+            return true;
+        }
+
+        private boolean unwrap() throws IOException {
+            if (netIn == null) {
+                netIn = bufferPool.acquire();
+            }
+
+            if (netIn.position() == 0 && !read()) {
+                return false;
+            }
+
+            netIn.flip();
+            SSLEngineResult result = engine.unwrap(netIn, loop.applicationBuffer);
+            netIn.compact();
+            loop.applicationBuffer.clear();
+
+            switch (result.getStatus()) {
+                case BUFFER_UNDERFLOW:
+                    if (!netIn.hasRemaining()) {
+                        throw new SSLException("Record exceeds the network buffer size");
+                    }
+                    return read();
+                case CLOSED:
+                    throw new SSLException("Connection closed by peer during handshake",
+                            new EOFException("close_notify received"));
+                default:
+                    if (netIn.position() == 0) {
+                        bufferPool.release(netIn);
+                        netIn = null;
+                    }
+                    return true;
+            }
+        }
+
+        private boolean read() throws IOException {
+            int count = channel.read(netIn);
+
+            if (count < 0) {
+                throw new EOFException("Connection closed by peer during handshake");
+            }
+
+            if (count == 0) {
+                if (netIn.position() == 0) {
+                    // Nothing buffered - do not hold a buffer while waiting for the peer
+                    bufferPool.release(netIn);
+                    netIn = null;
+                }
+
+                key.interestOps(SelectionKey.OP_READ);
+                return false;
+            }
+
+            return true;
+        }
+
+        private void succeed() {
+            timings.recordSince(Phase.HANDSHAKE, phaseStart);
+
+            TlsSessionInfo info = TlsSessionInfo.of(engine.getSession());
+            if (finish()) {
+                completed.incrementAndGet();
+                completionExecutor.execute(() -> future.complete(info));
+            }
+        }
+
+        void fail(final Exception ex) {
+            if (finish()) {
+                failed.incrementAndGet();
+
+                try {
+                    completionExecutor.execute(() -> future.completeExceptionally(ex));
+                } catch (RejectedExecutionException rejected) {
+                    future.completeExceptionally(ex);
+                }
+            }
+        }
+
+        private synchronized boolean finish() {
+            if (finished) {
+                return false;
+            }
+
+            finished = true;
+
+            if (timeout != null) {
+                timeout.cancel();
+            }
+
+            if (channel != null) {
+                active.decrementAndGet();
+
+                if (engine != null) {
+                    engine.closeOutbound();
+                }
+
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Nothing to do
+                }
+            }
+
+            if (netIn != null) {
+                bufferPool.release(netIn);
+                netIn = null;
+            }
+
+            if (netOut != null) {
+                bufferPool.release(netOut);
+                netOut = null;
+            }
+
+            return true;
+        }
+    }
+}
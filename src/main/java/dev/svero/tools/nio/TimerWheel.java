@@ -0,0 +1,166 @@
+package dev.svero.tools.nio;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Implements a hashed timer wheel for a large number of timeouts. Scheduling and cancelling a timeout
+ * are constant-time operations. Timeouts expire with a precision of one tick.
+ * <p>
+ * The class is not thread-safe. It is meant to be owned by a single event loop which calls
+ * {@link #advance(long)} regularly.
+ *
+ * @author Sven Roeseler
+ */
+public class TimerWheel {
+    /**
+     * Handle for a scheduled task.
+     */
+    public final class Timeout {
+        private final long targetTick;
+        private final Runnable task;
+
+        private Timeout previous;
+        private Timeout next;
+        private int slot = -1;
+
+        private Timeout(final long targetTick, final Runnable task) {
+            this.targetTick = targetTick;
+            this.task = task;
+        }
+
+        /**
+         * Cancels the timeout. Does nothing if it has already expired or been cancelled.
+         */
+        public void cancel() {
+            if (slot >= 0) {
+                unlink(this);
+                pending--;
+            }
+        }
+    }
+
+    private final Timeout[] slots;
+    private final int mask;
+    private final long tickNanos;
+    private final long startNanos;
+
+    private long currentTick;
+    private int pending;
+
+    /**
+     * Creates a new timer wheel.
+     *
+     * @param tickNanos Duration of a tick in nanoseconds
+     * @param wheelSize Number of slots (rounded up to the next power of two)
+     * @param nowNanos  Current time as returned by {@link System#nanoTime()}
+     */
+    public TimerWheel(final long tickNanos, final int wheelSize, final long nowNanos) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("tickNanos must be positive");
+        }
+
+        if (wheelSize < 1 || wheelSize > (1 << 20)) {
+            throw new IllegalArgumentException("wheelSize must be between 1 and 2^20");
+        }
+
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+
+        this.slots = new Timeout[size];
+        this.mask = size - 1;
+        this.tickNanos = tickNanos;
+        this.startNanos = nowNanos;
+    }
+
+    /**
+     * Schedules the specified task.
+     *
+     * @param delayNanos Delay in nanoseconds
+     * @param nowNanos   Current time as returned by {@link System#nanoTime()}
+     * @param task       Task to run when the timeout expires
+     * @return Handle for cancelling the timeout
+     */
+    public Timeout schedule(final long delayNanos, final long nowNanos, final Runnable task) {
+        Objects.requireNonNull(task);
+
+        long deadlineTick = (nowNanos - startNanos + Math.max(0, delayNanos) + tickNanos - 1) / tickNanos;
+        Timeout timeout = new Timeout(Math.max(deadlineTick, currentTick + 1), task);
+
+        int slot = (int) (timeout.targetTick & mask);
+        timeout.slot = slot;
+        timeout.next = slots[slot];
+        if (slots[slot] != null) {
+            slots[slot].previous = timeout;
+        }
+        slots[slot] = timeout;
+        pending++;
+
+        return timeout;
+    }
+
+    /**
+     * Runs all tasks whose timeout has expired up to the specified time.
+     *
+     * @param nowNanos Current time as returned by {@link System#nanoTime()}
+     * @return Number of expired timeouts
+     */
+    public int advance(final long nowNanos) {
+        final long nowTick = (nowNanos - startNanos) / tickNanos;
+        if (nowTick <= currentTick) {
+            return 0;
+        }
+
+        List<Timeout> expired = new ArrayList<>();
+
+        long steps = Math.min(nowTick - currentTick, slots.length);
+        for (long i = 1; i <= steps; i++) {
+            Timeout timeout = slots[(int) ((currentTick + i) & mask)];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.targetTick <= nowTick) {
+                    unlink(timeout);
+                    pending--;
+                    expired.add(timeout);
+                }
+                timeout = next;
+            }
+        }
+
+        currentTick = nowTick;
+
+        for (Timeout timeout : expired) {
+            timeout.task.run();
+        }
+
+        return expired.size();
+    }
+
+    /**
+     * Gets the number of scheduled timeouts.
+     *
+     * @return Number of pending timeouts
+     */
+    public int size() {
+        return pending;
+    }
+
+    private void unlink(final Timeout timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            slots[timeout.slot] = timeout.next;
+        }
+
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.slot = -1;
+    }
+}
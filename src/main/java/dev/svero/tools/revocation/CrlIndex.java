@@ -0,0 +1,274 @@
+package dev.svero.tools.revocation;
+
+import javax.security.auth.x500.X500Principal;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.security.cert.X509CRL;
+import java.security.cert.X509CRLEntry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Compact index of the serial numbers revoked by a CRL. The serial numbers are sorted and stored
+ * back-to-back in a single byte array with an array of offsets, so a CRL with a million entries takes
+ * about 20 MB instead of the several hundred megabytes the parsed CRL needs. Lookups are a binary search.
+ * <p>
+ * The index remembers a hash of the key the CRL was verified with, so an index read from a cache file
+ * is only used for certificates of the same issuer key. A CRL without nextUpdate is only used for one
+ * hour after it has been downloaded.
+ * <p>
+ * Instances are immutable and thread-safe.
+ *
+ * @author Sven Roeseler
+ */
+public final class CrlIndex {
+    private static final int MAX_SERIAL_LENGTH = 255;
+    private static final Duration MAX_AGE_WITHOUT_NEXT_UPDATE = Duration.ofHours(1);
+
+    private final X500Principal issuer;
+    private final byte[] issuerKeyHash;
+    private final Instant thisUpdate;
+    private final Instant nextUpdate;
+    private final Instant fetchedAt;
+    private final byte[] serials;
+    private final int[] offsets;
+
+    private CrlIndex(final X500Principal issuer, final byte[] issuerKeyHash, final Instant thisUpdate,
+                     final Instant nextUpdate, final Instant fetchedAt, final byte[] serials, final int[] offsets) {
+        this.issuer = issuer;
+        this.issuerKeyHash = issuerKeyHash;
+        this.thisUpdate = thisUpdate;
+        this.nextUpdate = nextUpdate;
+        this.fetchedAt = fetchedAt;
+        this.serials = serials;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Creates the index for the specified CRL. The signature of the CRL is not verified, the caller must
+     * have verified it with the key of the specified issuer.
+     *
+     * @param crl       Parsed CRL
+     * @param issuer    Certificate whose key the CRL was verified with
+     * @param fetchedAt Time the CRL was downloaded
+     * @return Created index
+     */
+    public static CrlIndex of(final X509CRL crl, final X509Certificate issuer, final Instant fetchedAt) {
+        Objects.requireNonNull(crl);
+        Objects.requireNonNull(issuer);
+        Objects.requireNonNull(fetchedAt);
+
+        Set<? extends X509CRLEntry> entries = crl.getRevokedCertificates();
+        BigInteger[] numbers = entries == null ? new BigInteger[0] : entries.stream()
+                .map(X509CRLEntry::getSerialNumber)
+                .sorted()
+                .toArray(BigInteger[]::new);
+
+        byte[][] encodings = new byte[numbers.length][];
+        int size = 0;
+        for (int i = 0; i < numbers.length; i++) {
+            encodings[i] = numbers[i].toByteArray();
+            if (encodings[i].length > MAX_SERIAL_LENGTH) {
+                throw new IllegalArgumentException("Serial number of CRL entry is longer than " + MAX_SERIAL_LENGTH
+                        + " bytes");
+            }
+
+            size += encodings[i].length;
+        }
+
+        byte[] serials = new byte[size];
+        int[] offsets = new int[numbers.length + 1];
+        int position = 0;
+        for (int i = 0; i < encodings.length; i++) {
+            offsets[i] = position;
+            System.arraycopy(encodings[i], 0, serials, position, encodings[i].length);
+            position += encodings[i].length;
+        }
+        offsets[numbers.length] = position;
+
+        return new CrlIndex(crl.getIssuerX500Principal(), keyHash(issuer), crl.getThisUpdate().toInstant(),
+                crl.getNextUpdate() == null ? null : crl.getNextUpdate().toInstant(), fetchedAt, serials, offsets);
+    }
+
+    /**
+     * Reads an index written by {@link #write(DataOutputStream)}.
+     *
+     * @param in Input stream
+     * @return Read index
+     * @throws IOException If the index could not be read
+     */
+    public static CrlIndex read(final DataInputStream in) throws IOException {
+        Objects.requireNonNull(in);
+
+        final X500Principal issuer = new X500Principal(in.readNBytes(in.readInt()));
+        final byte[] issuerKeyHash = in.readNBytes(in.readUnsignedByte());
+        final Instant thisUpdate = Instant.ofEpochMilli(in.readLong());
+        final long next = in.readLong();
+        final Instant fetchedAt = Instant.ofEpochMilli(in.readLong());
+        final int count = in.readInt();
+
+        int[] offsets = new int[count + 1];
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = position;
+            position += in.readUnsignedByte();
+        }
+        offsets[count] = position;
+
+        byte[] serials = in.readNBytes(position);
+        if (serials.length != position) {
+            throw new IOException("Truncated CRL index");
+        }
+
+        return new CrlIndex(issuer, issuerKeyHash, thisUpdate, next < 0 ? null : Instant.ofEpochMilli(next),
+                fetchedAt, serials, offsets);
+    }
+
+    /**
+     * Writes the index to the specified stream.
+     *
+     * @param out Output stream
+     * @throws IOException If the index could not be written
+     */
+    public void write(final DataOutputStream out) throws IOException {
+        Objects.requireNonNull(out);
+
+        byte[] encodedIssuer = issuer.getEncoded();
+        out.writeInt(encodedIssuer.length);
+        out.write(encodedIssuer);
+        out.writeByte(issuerKeyHash.length);
+        out.write(issuerKeyHash);
+        out.writeLong(thisUpdate.toEpochMilli());
+        out.writeLong(nextUpdate == null ? -1 : nextUpdate.toEpochMilli());
+        out.writeLong(fetchedAt.toEpochMilli());
+        out.writeInt(size());
+
+        for (int i = 0; i < size(); i++) {
+            out.writeByte(offsets[i + 1] - offsets[i]);
+        }
+
+        out.write(serials);
+    }
+
+    /**
+     * Checks if the specified serial number has been revoked.
+     *
+     * @param serialNumber Serial number
+     * @return True if the serial number is contained in the CRL
+     */
+    public boolean isRevoked(final BigInteger serialNumber) {
+        Objects.requireNonNull(serialNumber);
+
+        int low = 0;
+        int high = size() - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = new BigInteger(serials, offsets[middle], offsets[middle + 1] - offsets[middle])
+                    .compareTo(serialNumber);
+
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if the CRL may still be used at the specified time.
+     *
+     * @param now Current time
+     * @return True if the next update is in the future or, for a CRL without next update, if it has been
+     * downloaded less than an hour ago
+     */
+    public boolean isCurrent(final Instant now) {
+        return nextUpdate != null ? now.isBefore(nextUpdate)
+                : now.isBefore(fetchedAt.plus(MAX_AGE_WITHOUT_NEXT_UPDATE));
+    }
+
+    /**
+     * Checks if the CRL applies to certificates of the specified issuer: the CRL has been issued under
+     * the subject of the issuer and verified with its key.
+     *
+     * @param issuerCertificate Issuer of the certificates to check
+     * @return True if the subject and the key match
+     */
+    public boolean isIssuedBy(final X509Certificate issuerCertificate) {
+        Objects.requireNonNull(issuerCertificate);
+
+        return issuer.equals(issuerCertificate.getSubjectX500Principal())
+                && Arrays.equals(issuerKeyHash, keyHash(issuerCertificate));
+    }
+
+    private static byte[] keyHash(final X509Certificate certificate) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(certificate.getPublicKey().getEncoded());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+
+    /**
+     * Gets the issuer of the CRL.
+     *
+     * @return Issuer
+     */
+    public X500Principal getIssuer() {
+        return issuer;
+    }
+
+    /**
+     * Gets the time the CRL was issued.
+     *
+     * @return This update
+     */
+    public Instant getThisUpdate() {
+        return thisUpdate;
+    }
+
+    /**
+     * Gets the time by which the next CRL will be issued.
+     *
+     * @return Next update or null if not specified
+     */
+    public Instant getNextUpdate() {
+        return nextUpdate;
+    }
+
+    /**
+     * Gets the time the CRL was downloaded.
+     *
+     * @return Download time
+     */
+    public Instant getFetchedAt() {
+        return fetchedAt;
+    }
+
+    /**
+     * Gets the number of revoked serial numbers.
+     *
+     * @return Number of entries
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "CrlIndex{issuer=" + issuer + ", entries=" + size() + ", bytes=" + serials.length + ", nextUpdate="
+                + nextUpdate + "}";
+    }
+}
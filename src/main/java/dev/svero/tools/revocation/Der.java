@@ -0,0 +1,300 @@
+package dev.svero.tools.revocation;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Minimal DER reader and writer for the structures needed for revocation checking (OCSP requests and
+ * responses, certificate extensions). Only definite lengths are supported, which is all DER allows.
+ *
+ * @author Sven Roeseler
+ */
+final class Der {
+    static final int BOOLEAN = 0x01;
+    static final int INTEGER = 0x02;
+    static final int BIT_STRING = 0x03;
+    static final int OCTET_STRING = 0x04;
+    static final int NULL = 0x05;
+    static final int OID = 0x06;
+    static final int ENUMERATED = 0x0a;
+    static final int GENERALIZED_TIME = 0x18;
+    static final int SEQUENCE = 0x30;
+
+    private static final DateTimeFormatter GENERALIZED_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    /**
+     * Single DER element within a byte array.
+     *
+     * @param tag    Tag of the element (only single byte tags are supported)
+     * @param data   Byte array containing the element
+     * @param start  Offset of the tag
+     * @param offset Offset of the content
+     * @param length Length of the content
+     */
+    record Element(int tag, byte[] data, int start, int offset, int length) {
+        /**
+         * Gets the offset of the first byte after the element.
+         *
+         * @return End offset
+         */
+        int end() {
+            return offset + length;
+        }
+
+        /**
+         * Gets the complete encoding of the element including tag and length.
+         *
+         * @return Encoded element
+         */
+        byte[] encoded() {
+            return Arrays.copyOfRange(data, start, end());
+        }
+
+        /**
+         * Gets the content of the element.
+         *
+         * @return Content bytes
+         */
+        byte[] content() {
+            return Arrays.copyOfRange(data, offset, end());
+        }
+
+        /**
+         * Parses the content of a constructed element.
+         *
+         * @return Child elements
+         */
+        List<Element> children() {
+            List<Element> children = new ArrayList<>();
+            int position = offset;
+            while (position < end()) {
+                Element child = read(data, position, end());
+                children.add(child);
+                position = child.end();
+            }
+
+            return children;
+        }
+
+        /**
+         * Parses the content of an explicitly tagged element.
+         *
+         * @return Wrapped element
+         */
+        Element unwrap() {
+            return read(data, offset, end());
+        }
+
+        /**
+         * Decodes the element as INTEGER.
+         *
+         * @return Value
+         */
+        BigInteger integer() {
+            expect(INTEGER);
+            return new BigInteger(data, offset, length);
+        }
+
+        /**
+         * Decodes the element as OBJECT IDENTIFIER.
+         *
+         * @return Dotted representation of the identifier
+         */
+        String oid() {
+            expect(OID);
+
+            StringBuilder sb = new StringBuilder();
+            long value = 0;
+            boolean first = true;
+
+            for (int i = offset; i < end(); i++) {
+                value = (value << 7) | (data[i] & 0x7f);
+                if ((data[i] & 0x80) != 0) {
+                    continue;
+                }
+
+                if (first) {
+                    int arc = (int) Math.min(value / 40, 2);
+                    sb.append(arc).append('.').append(value - arc * 40L);
+                    first = false;
+                } else {
+                    sb.append('.').append(value);
+                }
+
+                value = 0;
+            }
+
+            return sb.toString();
+        }
+
+        /**
+         * Decodes the element as GeneralizedTime. Fractions of seconds are ignored.
+         *
+         * @return Decoded time
+         */
+        Instant time() {
+            expect(GENERALIZED_TIME);
+
+            String value = new String(data, offset, length, StandardCharsets.US_ASCII);
+            if (value.length() < 15 || !value.endsWith("Z")) {
+                throw new IllegalArgumentException("Unsupported GeneralizedTime " + value);
+            }
+
+            return LocalDateTime.parse(value.substring(0, 14), GENERALIZED_TIME_FORMAT).toInstant(ZoneOffset.UTC);
+        }
+
+        /**
+         * Decodes the element as BIT STRING without unused bits.
+         *
+         * @return Bits as bytes
+         */
+        byte[] bits() {
+            expect(BIT_STRING);
+
+            if (length < 1 || data[offset] != 0) {
+                throw new IllegalArgumentException("Unsupported BIT STRING with unused bits");
+            }
+
+            return Arrays.copyOfRange(data, offset + 1, end());
+        }
+
+        private void expect(final int expected) {
+            if (tag != expected) {
+                throw new IllegalArgumentException(String.format("Expected tag 0x%02x but found 0x%02x", expected,
+                        tag));
+            }
+        }
+    }
+
+    private Der() {
+    }
+
+    /**
+     * Parses the element which fills the complete array.
+     *
+     * @param data Encoded element
+     * @return Parsed element
+     */
+    static Element read(final byte[] data) {
+        Element element = read(data, 0, data.length);
+        if (element.end() != data.length) {
+            throw new IllegalArgumentException("Trailing data after DER element");
+        }
+
+        return element;
+    }
+
+    /**
+     * Parses the element at the specified offset.
+     *
+     * @param data   Byte array
+     * @param offset Offset of the tag
+     * @param limit  Offset after the last byte the element may use
+     * @return Parsed element
+     */
+    static Element read(final byte[] data, final int offset, final int limit) {
+        if (offset + 2 > limit) {
+            throw new IllegalArgumentException("Truncated DER element");
+        }
+
+        final int tag = data[offset] & 0xff;
+        if ((tag & 0x1f) == 0x1f) {
+            throw new IllegalArgumentException("Multi-byte tags are not supported");
+        }
+
+        int length = data[offset + 1] & 0xff;
+        int position = offset + 2;
+
+        if (length == 0x80) {
+            throw new IllegalArgumentException("Indefinite lengths are not supported");
+        }
+
+        if (length > 0x80) {
+            final int count = length & 0x7f;
+            if (count > 4 || position + count > limit) {
+                throw new IllegalArgumentException("Invalid DER length");
+            }
+
+            length = 0;
+            for (int i = 0; i < count; i++) {
+                length = (length << 8) | (data[position++] & 0xff);
+            }
+        }
+
+        if (length < 0 || position + length > limit) {
+            throw new IllegalArgumentException("Truncated DER element");
+        }
+
+        return new Element(tag, data, offset, position, length);
+    }
+
+    /**
+     * Encodes an element with the specified tag and content.
+     *
+     * @param tag     Tag
+     * @param content Parts of the content, concatenated in the given order
+     * @return Encoded element
+     */
+    static byte[] encode(final int tag, final byte[]... content) {
+        int length = 0;
+        for (byte[] part : content) {
+            length += part.length;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length + 6);
+        out.write(tag);
+
+        if (length < 0x80) {
+            out.write(length);
+        } else {
+            int count = (Integer.SIZE - Integer.numberOfLeadingZeros(length) + 7) / 8;
+            out.write(0x80 | count);
+            for (int i = count - 1; i >= 0; i--) {
+                out.write(length >>> (i * 8));
+            }
+        }
+
+        for (byte[] part : content) {
+            out.writeBytes(part);
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes an OBJECT IDENTIFIER.
+     *
+     * @param oid Dotted representation of the identifier
+     * @return Encoded element
+     */
+    static byte[] encodeOid(final String oid) {
+        String[] arcs = oid.split("\\.");
+        if (arcs.length < 2) {
+            throw new IllegalArgumentException("Invalid OID " + oid);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeArc(out, Long.parseLong(arcs[0]) * 40 + Long.parseLong(arcs[1]));
+        for (int i = 2; i < arcs.length; i++) {
+            writeArc(out, Long.parseLong(arcs[i]));
+        }
+
+        return encode(OID, out.toByteArray());
+    }
+
+    private static void writeArc(final ByteArrayOutputStream out, final long value) {
+        int groups = Math.max(1, (Long.SIZE - Long.numberOfLeadingZeros(value) + 6) / 7);
+        for (int i = groups - 1; i >= 0; i--) {
+            int group = (int) ((value >>> (i * 7)) & 0x7f);
+            out.write(i > 0 ? group | 0x80 : group);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package dev.svero.tools.revocation;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.PSSParameterSpec;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes OCSP requests and decodes OCSP responses as defined by RFC 6960. Only the parts needed for
+ * checking a single certificate are supported: requests without extensions (no nonce, so responses can
+ * be cached) and basic responses signed by the issuer or by a responder certificate issued by it.
+ *
+ * @author Sven Roeseler
+ */
+final class Ocsp {
+    static final String CONTENT_TYPE_REQUEST = "application/ocsp-request";
+
+    private static final String SHA1 = "1.3.14.3.2.26";
+    private static final String BASIC_RESPONSE = "1.3.6.1.5.5.7.48.1.1";
+    private static final String OCSP_SIGNING = "1.3.6.1.5.5.7.3.9";
+    private static final String RSASSA_PSS = "1.2.840.113549.1.1.10";
+
+    private static final Map<String, String> SIGNATURE_ALGORITHMS = Map.of(
+            "1.2.840.113549.1.1.5", "SHA1withRSA",
+            "1.2.840.113549.1.1.11", "SHA256withRSA",
+            "1.2.840.113549.1.1.12", "SHA384withRSA",
+            "1.2.840.113549.1.1.13", "SHA512withRSA",
+            "1.2.840.10045.4.1", "SHA1withECDSA",
+            "1.2.840.10045.4.3.2", "SHA256withECDSA",
+            "1.2.840.10045.4.3.3", "SHA384withECDSA",
+            "1.2.840.10045.4.3.4", "SHA512withECDSA",
+            "1.3.101.112", "Ed25519",
+            "1.3.101.113", "Ed448");
+
+    /**
+     * Identifies a certificate in OCSP requests and responses. SHA-1 is used as hash algorithm, because
+     * it is the only algorithm all responders support.
+     *
+     * @param issuerNameHash Hash of the DER encoded subject of the issuer
+     * @param issuerKeyHash  Hash of the public key of the issuer
+     * @param serialNumber   Serial number of the certificate
+     */
+    record CertId(byte[] issuerNameHash, byte[] issuerKeyHash, BigInteger serialNumber) {
+        /**
+         * Creates the identifier of the specified certificate.
+         *
+         * @param certificate Certificate
+         * @param issuer      Issuer of the certificate
+         * @return Created identifier
+         */
+        static CertId of(final X509Certificate certificate, final X509Certificate issuer) {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new RuntimeException("SHA-1 is not available", ex);
+            }
+
+            byte[] nameHash = digest.digest(issuer.getSubjectX500Principal().getEncoded());
+
+            // SubjectPublicKeyInfo ::= SEQUENCE { algorithm AlgorithmIdentifier, subjectPublicKey BIT STRING }
+            List<Der.Element> keyInfo = Der.read(issuer.getPublicKey().getEncoded()).children();
+            byte[] keyHash = digest.digest(keyInfo.get(1).bits());
+
+            return new CertId(nameHash, keyHash, certificate.getSerialNumber());
+        }
+
+        /**
+         * Gets a string which identifies the certificate, e.g. for cache keys.
+         *
+         * @return Key
+         */
+        String key() {
+            HexFormat hex = HexFormat.of();
+            return hex.formatHex(issuerNameHash) + ':' + hex.formatHex(issuerKeyHash) + ':'
+                    + serialNumber.toString(16);
+        }
+
+        byte[] encode() {
+            return Der.encode(Der.SEQUENCE,
+                    Der.encode(Der.SEQUENCE, Der.encodeOid(SHA1), Der.encode(Der.NULL)),
+                    Der.encode(Der.OCTET_STRING, issuerNameHash),
+                    Der.encode(Der.OCTET_STRING, issuerKeyHash),
+                    Der.encode(Der.INTEGER, serialNumber.toByteArray()));
+        }
+
+        boolean matches(final Der.Element certId) {
+            List<Der.Element> fields = certId.children();
+            return SHA1.equals(fields.get(0).children().get(0).oid())
+                    && Arrays.equals(issuerNameHash, fields.get(1).content())
+                    && Arrays.equals(issuerKeyHash, fields.get(2).content())
+                    && serialNumber.equals(fields.get(3).integer());
+        }
+    }
+
+    /**
+     * Status of a single certificate as reported by a responder.
+     *
+     * @param status         Revocation status
+     * @param thisUpdate     Time at which the status was known to be correct
+     * @param nextUpdate     Time at or before which newer information will be available or null
+     * @param revocationTime Time of the revocation or null
+     */
+    record Response(RevocationStatus status, Instant thisUpdate, Instant nextUpdate, Instant revocationTime) {
+    }
+
+    private Ocsp() {
+    }
+
+    /**
+     * Encodes a request for the status of a single certificate.
+     *
+     * @param certId Identifier of the certificate
+     * @return DER encoded OCSPRequest
+     */
+    static byte[] encodeRequest(final CertId certId) {
+        // OCSPRequest { TBSRequest { requestList SEQUENCE OF Request { reqCert CertID } } }
+        return Der.encode(Der.SEQUENCE,
+                Der.encode(Der.SEQUENCE,
+                        Der.encode(Der.SEQUENCE,
+                                Der.encode(Der.SEQUENCE, certId.encode()))));
+    }
+
+    /**
+     * Decodes and verifies a response. The signature must have been created by the issuer itself or by a
+     * certificate included in the response which was issued by the issuer for OCSP signing.
+     *
+     * @param encoded DER encoded OCSPResponse
+     * @param certId  Identifier of the requested certificate
+     * @param issuer  Issuer of the requested certificate
+     * @param now     Current time
+     * @return Status of the certificate
+     * @throws GeneralSecurityException If the response is not successful, invalid or not signed correctly
+     */
+    static Response decodeResponse(final byte[] encoded, final CertId certId, final X509Certificate issuer,
+                                   final Instant now) throws GeneralSecurityException {
+        try {
+            // OCSPResponse { responseStatus ENUMERATED, responseBytes [0] EXPLICIT ResponseBytes OPTIONAL }
+            List<Der.Element> response = Der.read(encoded).children();
+
+            Der.Element status = response.get(0);
+            if (status.tag() != Der.ENUMERATED || status.length() != 1 || encoded[status.offset()] != 0) {
+                throw new GeneralSecurityException("OCSP responder returned status "
+                        + (status.length() == 1 ? encoded[status.offset()] : -1));
+            }
+
+            if (response.size() < 2 || response.get(1).tag() != 0xa0) {
+                throw new GeneralSecurityException("OCSP response without response bytes");
+            }
+
+            // ResponseBytes { responseType OID, response OCTET STRING }
+            List<Der.Element> responseBytes = response.get(1).unwrap().children();
+            if (!BASIC_RESPONSE.equals(responseBytes.get(0).oid())) {
+                throw new GeneralSecurityException("Unsupported OCSP response type " + responseBytes.get(0).oid());
+            }
+
+            // BasicOCSPResponse { tbsResponseData, signatureAlgorithm, signature, certs [0] EXPLICIT OPTIONAL }
+            List<Der.Element> basic = Der.read(responseBytes.get(1).content()).children();
+            Der.Element tbsResponseData = basic.get(0);
+
+            verifySignature(tbsResponseData.encoded(), basic.get(1), basic.get(2).bits(),
+                    responderCandidates(basic, issuer, now));
+
+            return findResponse(tbsResponseData, certId);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException ex) {
+            throw new GeneralSecurityException("Invalid OCSP response: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Finds the status of the requested certificate in the response data.
+     */
+    private static Response findResponse(final Der.Element tbsResponseData, final CertId certId)
+            throws GeneralSecurityException {
+        // ResponseData { version [0] OPTIONAL, responderID, producedAt, responses, responseExtensions [1] OPTIONAL }
+        List<Der.Element> fields = tbsResponseData.children();
+        int index = fields.get(0).tag() == 0xa0 ? 1 : 0;
+        Der.Element responses = fields.get(index + 2);
+
+        for (Der.Element single : responses.children()) {
+            // SingleResponse { certID, certStatus, thisUpdate, nextUpdate [0] EXPLICIT OPTIONAL, ... }
+            List<Der.Element> singleFields = single.children();
+            if (!certId.matches(singleFields.get(0))) {
+                continue;
+            }
+
+            Der.Element certStatus = singleFields.get(1);
+            Instant thisUpdate = singleFields.get(2).time();
+            Instant nextUpdate = null;
+            if (singleFields.size() > 3 && singleFields.get(3).tag() == 0xa0) {
+                nextUpdate = singleFields.get(3).unwrap().time();
+            }
+
+            return switch (certStatus.tag()) {
+                case 0x80 -> new Response(RevocationStatus.GOOD, thisUpdate, nextUpdate, null);
+                // RevokedInfo { revocationTime GeneralizedTime, revocationReason [0] EXPLICIT OPTIONAL }
+                case 0xa1 -> new Response(RevocationStatus.REVOKED, thisUpdate, nextUpdate,
+                        certStatus.children().get(0).time());
+                default -> new Response(RevocationStatus.UNKNOWN, thisUpdate, nextUpdate, null);
+            };
+        }
+
+        throw new GeneralSecurityException("OCSP response does not contain the requested certificate");
+    }
+
+    /**
+     * Gets the keys which may have signed the response: the key of the issuer and the keys of the
+     * included certificates which the issuer has authorized for OCSP signing.
+     */
+    private static List<PublicKey> responderCandidates(final List<Der.Element> basic, final X509Certificate issuer,
+                                                       final Instant now) throws CertificateException {
+        if (basic.size() < 4 || basic.get(3).tag() != 0xa0) {
+            return List.of(issuer.getPublicKey());
+        }
+
+        CertificateFactory factory = CertificateFactory.getInstance("X.509");
+        List<PublicKey> keys = new ArrayList<>();
+        keys.add(issuer.getPublicKey());
+
+        for (Der.Element element : basic.get(3).unwrap().children()) {
+            X509Certificate responder = (X509Certificate) factory.generateCertificate(
+                    new ByteArrayInputStream(element.encoded()));
+
+            try {
+                List<String> usages = responder.getExtendedKeyUsage();
+                if (usages == null || !usages.contains(OCSP_SIGNING)
+                        || !responder.getIssuerX500Principal().equals(issuer.getSubjectX500Principal())) {
+                    continue;
+                }
+
+                responder.checkValidity(Date.from(now));
+                responder.verify(issuer.getPublicKey());
+                keys.add(responder.getPublicKey());
+            } catch (GeneralSecurityException ex) {
+                // Not authorized by the issuer - ignore the certificate
+            }
+        }
+
+        return keys;
+    }
+
+    private static void verifySignature(final byte[] signed, final Der.Element algorithm, final byte[] signature,
+                                        final List<PublicKey> keys) throws GeneralSecurityException {
+        List<Der.Element> algorithmFields = algorithm.children();
+        String oid = algorithmFields.get(0).oid();
+
+        for (PublicKey key : keys) {
+            Signature verifier;
+            if (RSASSA_PSS.equals(oid)) {
+                verifier = Signature.getInstance("RSASSA-PSS");
+                AlgorithmParameters parameters = AlgorithmParameters.getInstance("RSASSA-PSS");
+                try {
+                    parameters.init(algorithmFields.get(1).encoded());
+                } catch (IOException ex) {
+                    throw new GeneralSecurityException("Invalid RSASSA-PSS parameters", ex);
+                }
+
+                verifier.setParameter(parameters.getParameterSpec(PSSParameterSpec.class));
+            } else {
+                String name = SIGNATURE_ALGORITHMS.get(oid);
+                if (name == null) {
+                    throw new NoSuchAlgorithmException("Unsupported OCSP signature algorithm " + oid);
+                }
+
+                verifier = Signature.getInstance(name);
+            }
+
+            try {
+                verifier.initVerify(key);
+                verifier.update(signed);
+                if (verifier.verify(signature)) {
+                    return;
+                }
+            } catch (GeneralSecurityException ex) {
+                // Key does not match the algorithm - try the next one
+            }
+        }
+
+        throw new GeneralSecurityException("OCSP response is not signed by the issuer or an authorized responder");
+    }
+}
@@ -0,0 +1,514 @@
+package dev.svero.tools.revocation;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Determines the revocation status of certificates using OCSP and CRLs. Answers are cached so that
+ * repeated checks of the same certificate do not hit the network:
+ * <ul>
+ *     <li>OCSP responses are kept until their nextUpdate time (or one hour if the responder does not
+ *     specify it).</li>
+ *     <li>CRLs are downloaded and verified once and converted into a {@link CrlIndex}, which is kept
+ *     until the nextUpdate time of the CRL (or one hour if the CRL does not specify it). An index is only
+ *     used for certificates whose issuer has the subject and key the CRL was verified with.</li>
+ * </ul>
+ * If a cache directory is configured, the CRL indexes are written to it as soon as they have been
+ * created and the OCSP responses are written by {@link #save()}, so later runs start with warm caches.
+ * <p>
+ * Concurrent checks of certificates with the same OCSP responder or CRL share a single request.
+ *
+ * @author Sven Roeseler
+ */
+public class RevocationChecker implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RevocationChecker.class);
+
+    private static final String AUTHORITY_INFO_ACCESS = "1.3.6.1.5.5.7.1.1";
+    private static final String CRL_DISTRIBUTION_POINTS = "2.5.29.31";
+    private static final String OCSP_ACCESS_METHOD = "1.3.6.1.5.5.7.48.1";
+    private static final int URI_NAME = 0x86;
+
+    private static final int MAGIC = 0x5353524b;
+    private static final int VERSION = 2;
+    private static final String OCSP_CACHE_FILE = "ocsp.cache";
+    private static final String CRL_SUFFIX = ".crl";
+
+    private static final Duration DEFAULT_OCSP_LIFETIME = Duration.ofHours(1);
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(5);
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final Path cacheDirectory;
+    private final HttpClient client;
+
+    private final Map<String, Ocsp.Response> ocspResponses = new ConcurrentHashMap<>();
+    private final Map<String, CrlIndex> crlIndexes = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Object>> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong ocspRequests = new AtomicLong();
+    private final AtomicLong crlDownloads = new AtomicLong();
+
+    /**
+     * Creates a new instance which keeps its caches in memory only.
+     */
+    public RevocationChecker() {
+        this(null);
+    }
+
+    /**
+     * Creates a new instance which persists its caches in the specified directory. Cached OCSP
+     * responses are loaded immediately, CRL indexes when they are needed.
+     *
+     * @param cacheDirectory Directory for the cache files or null to keep the caches in memory only
+     */
+    public RevocationChecker(final Path cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+
+        if (cacheDirectory != null) {
+            loadOcspResponses();
+        }
+    }
+
+    /**
+     * Determines the revocation status of the specified certificate. Cached answers are used first.
+     * Otherwise the OCSP responders and then the CRL distribution points of the certificate are asked.
+     *
+     * @param certificate Certificate to check
+     * @param issuer      Issuer of the certificate
+     * @return Revocation status
+     */
+    public RevocationStatus check(final X509Certificate certificate, final X509Certificate issuer) {
+        Objects.requireNonNull(certificate);
+        Objects.requireNonNull(issuer);
+
+        final Instant now = Instant.now();
+        final Ocsp.CertId certId = Ocsp.CertId.of(certificate, issuer);
+        final List<String> ocspUrls = ocspUrls(certificate);
+        final List<String> crlUrls = crlUrls(certificate);
+
+        Ocsp.Response cached = ocspResponses.get(certId.key());
+        if (cached != null && now.isBefore(cached.nextUpdate())) {
+            cacheHits.incrementAndGet();
+            return cached.status();
+        }
+
+        for (String url : crlUrls) {
+            CrlIndex index = cachedCrlIndex(url, issuer, now);
+            if (index != null) {
+                cacheHits.incrementAndGet();
+                return index.isRevoked(certificate.getSerialNumber()) ? RevocationStatus.REVOKED
+                        : RevocationStatus.GOOD;
+            }
+        }
+
+        for (String url : ocspUrls) {
+            try {
+                Ocsp.Response response = (Ocsp.Response) shared("ocsp|" + url + "|" + certId.key(),
+                        () -> requestOcsp(url, certId, issuer));
+                if (response.status() != RevocationStatus.UNKNOWN) {
+                    return response.status();
+                }
+            } catch (Exception ex) {
+                if (ex instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    return RevocationStatus.UNKNOWN;
+                }
+
+                LOGGER.debug("OCSP request to {} for {} failed: {}", url, certificate.getSubjectX500Principal(),
+                        ex.toString());
+            }
+        }
+
+        for (String url : crlUrls) {
+            try {
+                CrlIndex index = (CrlIndex) shared("crl|" + url, () -> downloadCrl(url, issuer));
+                if (index.isIssuedBy(issuer)) {
+                    return index.isRevoked(certificate.getSerialNumber()) ? RevocationStatus.REVOKED
+                            : RevocationStatus.GOOD;
+                }
+            } catch (Exception ex) {
+                if (ex instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    return RevocationStatus.UNKNOWN;
+                }
+
+                LOGGER.debug("Could not use CRL {} for {}: {}", url, certificate.getSubjectX500Principal(),
+                        ex.toString());
+            }
+        }
+
+        return RevocationStatus.UNKNOWN;
+    }
+
+    /**
+     * Writes the cached OCSP responses to the cache directory. Expired responses are dropped. Does nothing
+     * if no cache directory is configured.
+     */
+    public void save() {
+        if (cacheDirectory == null) {
+            return;
+        }
+
+        final Instant now = Instant.now();
+        ocspResponses.values().removeIf(response -> !now.isBefore(response.nextUpdate()));
+
+        writeAtomically(cacheDirectory.resolve(OCSP_CACHE_FILE), out -> {
+            List<Map.Entry<String, Ocsp.Response>> entries = new ArrayList<>(ocspResponses.entrySet());
+            out.writeInt(entries.size());
+
+            for (Map.Entry<String, Ocsp.Response> entry : entries) {
+                Ocsp.Response response = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeByte(response.status().ordinal());
+                out.writeLong(response.thisUpdate().toEpochMilli());
+                out.writeLong(response.nextUpdate().toEpochMilli());
+                out.writeLong(response.revocationTime() == null ? -1 : response.revocationTime().toEpochMilli());
+            }
+        });
+    }
+
+    /**
+     * Saves the caches and logs how often they were used.
+     */
+    @Override
+    public void close() {
+        save();
+        LOGGER.debug("Revocation checks: {} answered from cache, {} OCSP requests, {} CRL downloads",
+                cacheHits.get(), ocspRequests.get(), crlDownloads.get());
+    }
+
+    /**
+     * Runs the specified task unless a task with the same key is already running, in which case its
+     * result is used.
+     */
+    private Object shared(final String key, final Fetch fetch) throws Exception {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = pending.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException ex) {
+                throw ex.getCause() instanceof Exception cause ? cause : ex;
+            }
+        }
+
+        try {
+            Object result = fetch.run();
+            future.complete(result);
+            return result;
+        } catch (Exception ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            pending.remove(key, future);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Fetch {
+        Object run() throws Exception;
+    }
+
+    private Ocsp.Response requestOcsp(final String url, final Ocsp.CertId certId, final X509Certificate issuer)
+            throws IOException, InterruptedException, GeneralSecurityException {
+        ocspRequests.incrementAndGet();
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(TIMEOUT)
+                .header("Content-Type", Ocsp.CONTENT_TYPE_REQUEST)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(Ocsp.encodeRequest(certId)))
+                .build();
+
+        final Instant now = Instant.now();
+        Ocsp.Response response = Ocsp.decodeResponse(fetch(request), certId, issuer, now);
+
+        if (response.thisUpdate().isAfter(now.plus(CLOCK_SKEW))) {
+            throw new GeneralSecurityException("OCSP response from " + url + " is not yet valid");
+        }
+
+        Instant nextUpdate = response.nextUpdate();
+        if (nextUpdate == null) {
+            nextUpdate = now.plus(DEFAULT_OCSP_LIFETIME);
+        } else if (!now.isBefore(nextUpdate)) {
+            throw new GeneralSecurityException("OCSP response from " + url + " has expired");
+        }
+
+        Ocsp.Response cached = new Ocsp.Response(response.status(), response.thisUpdate(), nextUpdate,
+                response.revocationTime());
+        if (cached.status() != RevocationStatus.UNKNOWN) {
+            ocspResponses.put(certId.key(), cached);
+        }
+
+        LOGGER.debug("OCSP responder {} reported {} for serial {} (next update {})", url, cached.status(),
+                certId.serialNumber().toString(16), nextUpdate);
+
+        return cached;
+    }
+
+    private CrlIndex downloadCrl(final String url, final X509Certificate issuer)
+            throws IOException, InterruptedException, GeneralSecurityException {
+        final Instant now = Instant.now();
+
+        // Another thread may have downloaded the CRL in the meantime
+        CrlIndex current = cachedCrlIndex(url, issuer, now);
+        if (current != null) {
+            return current;
+        }
+
+        crlDownloads.incrementAndGet();
+        final long start = System.nanoTime();
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).timeout(TIMEOUT).GET().build();
+        byte[] encoded = fetch(request);
+
+        X509CRL crl = (X509CRL) CertificateFactory.getInstance("X.509")
+                .generateCRL(new ByteArrayInputStream(encoded));
+        if (!crl.getIssuerX500Principal().equals(issuer.getSubjectX500Principal())) {
+            throw new GeneralSecurityException("CRL " + url + " was issued by " + crl.getIssuerX500Principal());
+        }
+
+        crl.verify(issuer.getPublicKey());
+
+        CrlIndex index = CrlIndex.of(crl, issuer, now);
+        if (!index.isCurrent(now)) {
+            throw new GeneralSecurityException("CRL " + url + " has expired at " + index.getNextUpdate());
+        }
+
+        crlIndexes.put(url, index);
+        LOGGER.debug("Downloaded CRL {} ({} bytes, {} entries) in {} ms", url, encoded.length, index.size(),
+                (System.nanoTime() - start) / 1_000_000);
+
+        if (cacheDirectory != null) {
+            writeAtomically(crlFile(url), out -> {
+                out.writeUTF(url);
+                index.write(out);
+            });
+        }
+
+        return index;
+    }
+
+    /**
+     * Gets the current index of the specified CRL from memory or from the cache directory.
+     *
+     * @return Index or null if no current index verified with the key of the issuer is available
+     */
+    private CrlIndex cachedCrlIndex(final String url, final X509Certificate issuer, final Instant now) {
+        CrlIndex index = crlIndexes.get(url);
+        if (index == null && cacheDirectory != null) {
+            index = readCrlIndex(url);
+            if (index != null) {
+                crlIndexes.putIfAbsent(url, index);
+            }
+        }
+
+        return index != null && index.isCurrent(now) && index.isIssuedBy(issuer) ? index : null;
+    }
+
+    private CrlIndex readCrlIndex(final String url) {
+        final Path file = crlFile(url);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !url.equals(in.readUTF())) {
+                LOGGER.debug("Ignoring cache file {} with unknown format", file);
+                return null;
+            }
+
+            return CrlIndex.read(in);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Could not read cache file {}: {}", file, ex.getMessage());
+            return null;
+        }
+    }
+
+    private void loadOcspResponses() {
+        final Path file = cacheDirectory.resolve(OCSP_CACHE_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        final Instant now = Instant.now();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.debug("Ignoring cache file {} with unknown format", file);
+                return;
+            }
+
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String key = in.readUTF();
+                final RevocationStatus status = RevocationStatus.values()[in.readUnsignedByte()];
+                final Instant thisUpdate = Instant.ofEpochMilli(in.readLong());
+                final Instant nextUpdate = Instant.ofEpochMilli(in.readLong());
+                final long revocationTime = in.readLong();
+
+                if (now.isBefore(nextUpdate)) {
+                    ocspResponses.put(key, new Ocsp.Response(status, thisUpdate, nextUpdate,
+                            revocationTime < 0 ? null : Instant.ofEpochMilli(revocationTime)));
+                }
+            }
+
+            LOGGER.debug("Loaded {} cached OCSP responses from {}", ocspResponses.size(), file);
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Could not read cache file {}: {}", file, ex.getMessage());
+        }
+    }
+
+    private Path crlFile(final String url) {
+        return cacheDirectory.resolve(DigestUtils.sha256Hex(url) + CRL_SUFFIX);
+    }
+
+    @FunctionalInterface
+    private interface Content {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Writes a cache file using a temporary file, so readers never see a partially written file.
+     */
+    private void writeAtomically(final Path file, final Content content) {
+        Path temporary = null;
+
+        try {
+            Files.createDirectories(cacheDirectory);
+
+            temporary = Files.createTempFile(cacheDirectory, "cache", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                content.write(out);
+            }
+
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            LOGGER.warn("Could not write cache file {}: {}", file, ex.getMessage());
+
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // Nothing to do
+                }
+            }
+        }
+    }
+
+    private byte[] fetch(final HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException(request.uri() + " returned status code " + response.statusCode());
+        }
+
+        return response.body();
+    }
+
+    /**
+     * Gets the URLs of the OCSP responders from the Authority Information Access extension.
+     */
+    static List<String> ocspUrls(final X509Certificate certificate) {
+        List<String> urls = new ArrayList<>();
+        byte[] value = certificate.getExtensionValue(AUTHORITY_INFO_ACCESS);
+        if (value == null) {
+            return urls;
+        }
+
+        try {
+            // SEQUENCE OF AccessDescription { accessMethod OID, accessLocation GeneralName }
+            for (Der.Element description : Der.read(Der.read(value).content()).children()) {
+                List<Der.Element> fields = description.children();
+                if (OCSP_ACCESS_METHOD.equals(fields.get(0).oid()) && fields.get(1).tag() == URI_NAME) {
+                    addHttpUrl(urls, fields.get(1));
+                }
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException ex) {
+            LOGGER.debug("Invalid Authority Information Access extension in {}: {}",
+                    certificate.getSubjectX500Principal(), ex.getMessage());
+        }
+
+        return urls;
+    }
+
+    /**
+     * Gets the URLs of the full names of the CRL distribution points.
+     */
+    static List<String> crlUrls(final X509Certificate certificate) {
+        List<String> urls = new ArrayList<>();
+        byte[] value = certificate.getExtensionValue(CRL_DISTRIBUTION_POINTS);
+        if (value == null) {
+            return urls;
+        }
+
+        try {
+            // SEQUENCE OF DistributionPoint { distributionPoint [0] { fullName [0] GeneralNames }, ... }
+            for (Der.Element point : Der.read(Der.read(value).content()).children()) {
+                for (Der.Element field : point.children()) {
+                    if (field.tag() != 0xa0) {
+                        continue;
+                    }
+
+                    Der.Element name = field.unwrap();
+                    if (name.tag() == 0xa0) {
+                        for (Der.Element generalName : name.children()) {
+                            if (generalName.tag() == URI_NAME) {
+                                addHttpUrl(urls, generalName);
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException ex) {
+            LOGGER.debug("Invalid CRL Distribution Points extension in {}: {}",
+                    certificate.getSubjectX500Principal(), ex.getMessage());
+        }
+
+        return urls;
+    }
+
+    private static void addHttpUrl(final List<String> urls, final Der.Element uri) {
+        String url = new String(uri.content(), StandardCharsets.US_ASCII);
+        String lower = url.toLowerCase(Locale.ROOT);
+        if (lower.startsWith("http://") || lower.startsWith("https://")) {
+            urls.add(url);
+        }
+    }
+}
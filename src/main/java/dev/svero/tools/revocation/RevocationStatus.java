@@ -0,0 +1,23 @@
+package dev.svero.tools.revocation;
+
+/**
+ * Revocation status of a certificate.
+ *
+ * @author Sven Roeseler
+ */
+public enum RevocationStatus {
+    /**
+     * The certificate has not been revoked.
+     */
+    GOOD,
+
+    /**
+     * The certificate has been revoked.
+     */
+    REVOKED,
+
+    /**
+     * The status could not be determined (no responder, no CRL or no valid answer).
+     */
+    UNKNOWN
+}
@@ -0,0 +1,155 @@
+package dev.svero.tools.revocation;
+
+import dev.svero.tools.IndexedTrustManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.net.Socket;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Trust manager which checks the revocation status of the certificates of a chain after the chain has
+ * been validated by the wrapped trust manager. The certification path is rebuilt from the chain and the
+ * trust anchors of the wrapped trust manager (see {@link IndexedTrustManager#buildPath(X509Certificate[])}),
+ * so the issuer of every certificate is the one it was validated against, even if the peer sent the
+ * chain out of order or with additional certificates. Trust anchors themselves are not checked.
+ * <p>
+ * A revoked certificate always fails the validation. If the status of a certificate cannot be
+ * determined, or no path to an anchor can be built for the chain, the validation only fails in hard-fail
+ * mode.
+ *
+ * @author Sven Roeseler
+ */
+public class RevocationTrustManager extends X509ExtendedTrustManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RevocationTrustManager.class);
+
+    private final X509ExtendedTrustManager delegate;
+    private final RevocationChecker checker;
+    private final boolean hardFail;
+    private final IndexedTrustManager paths;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param delegate Trust manager which validates the chains
+     * @param checker  Checker for the revocation status
+     * @param hardFail True to reject certificates whose revocation status is unknown
+     */
+    public RevocationTrustManager(final X509ExtendedTrustManager delegate, final RevocationChecker checker,
+                                  final boolean hardFail) {
+        this(delegate, delegate instanceof IndexedTrustManager indexed ? indexed
+                : new IndexedTrustManager(List.of(delegate.getAcceptedIssuers())), checker, hardFail);
+    }
+
+    /**
+     * Creates a new instance which rebuilds the certification paths using the specified index. This
+     * avoids indexing the trust anchors again if the delegate wraps an {@link IndexedTrustManager}.
+     *
+     * @param delegate Trust manager which validates the chains
+     * @param paths    Index of the trust anchors of the delegate
+     * @param checker  Checker for the revocation status
+     * @param hardFail True to reject certificates whose revocation status is unknown
+     */
+    public RevocationTrustManager(final X509ExtendedTrustManager delegate, final IndexedTrustManager paths,
+                                  final RevocationChecker checker, final boolean hardFail) {
+        Objects.requireNonNull(delegate);
+        Objects.requireNonNull(paths);
+        Objects.requireNonNull(checker);
+
+        this.delegate = delegate;
+        this.checker = checker;
+        this.hardFail = hardFail;
+        this.paths = paths;
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        delegate.checkClientTrusted(chain, authType);
+        checkRevocation(chain);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+        delegate.checkServerTrusted(chain, authType);
+        checkRevocation(chain);
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType, final Socket socket)
+            throws CertificateException {
+        delegate.checkClientTrusted(chain, authType, socket);
+        checkRevocation(chain);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType, final Socket socket)
+            throws CertificateException {
+        delegate.checkServerTrusted(chain, authType, socket);
+        checkRevocation(chain);
+    }
+
+    @Override
+    public void checkClientTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine)
+            throws CertificateException {
+        delegate.checkClientTrusted(chain, authType, engine);
+        checkRevocation(chain);
+    }
+
+    @Override
+    public void checkServerTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine)
+            throws CertificateException {
+        delegate.checkServerTrusted(chain, authType, engine);
+        checkRevocation(chain);
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+        return delegate.getAcceptedIssuers();
+    }
+
+    /**
+     * Checks the revocation status of all certificates of the path of the already validated chain.
+     *
+     * @param chain Certificate chain starting with the end entity certificate
+     * @throws CertificateException If a certificate has been revoked or, in hard-fail mode, its status is
+     *                              unknown or no path to an anchor could be built
+     */
+    private void checkRevocation(final X509Certificate[] chain) throws CertificateException {
+        IndexedTrustManager.CertificatePath path = paths.buildPath(chain);
+        if (path == null) {
+            if (hardFail) {
+                throw new CertificateException("No path to a trust anchor found for "
+                        + chain[0].getSubjectX500Principal() + " - revocation status cannot be checked");
+            }
+
+            LOGGER.debug("No path to a trust anchor found for {} - skipping revocation check",
+                    chain[0].getSubjectX500Principal());
+            return;
+        }
+
+        List<X509Certificate> certificates = path.certificates();
+        for (int i = 0; i < certificates.size(); i++) {
+            X509Certificate certificate = certificates.get(i);
+
+            RevocationStatus status = checker.check(certificate, path.issuer(i));
+            if (status == RevocationStatus.REVOKED) {
+                throw new CertificateException("Certificate " + certificate.getSubjectX500Principal()
+                        + " (serial " + certificate.getSerialNumber().toString(16) + ") has been revoked");
+            }
+
+            if (status == RevocationStatus.UNKNOWN) {
+                if (hardFail) {
+                    throw new CertificateException("Revocation status of " + certificate.getSubjectX500Principal()
+                            + " is unknown");
+                }
+
+                LOGGER.debug("Revocation status of {} is unknown", certificate.getSubjectX500Principal());
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package dev.svero.sslchecker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that failures of the result consumer are not lost.
+ */
+class BulkCheckerTest {
+    @Test
+    void countsConsumerFailuresAsFailedChecks() throws InterruptedException {
+        BulkChecker checker = new BulkChecker(target -> CheckResult.success(target, "OK", 0), 2);
+        List<Target> targets = List.of(Target.parse("a.example"), Target.parse("b.example"),
+                Target.parse("c.example"));
+
+        BulkChecker.Summary summary = checker.run(targets, result -> {
+            if (!result.target().host().equals("b.example")) {
+                throw new IllegalStateException("Could not write state");
+            }
+        });
+
+        assertEquals(3, summary.total());
+        assertEquals(1, summary.succeeded());
+        assertEquals(2, summary.failed());
+    }
+}
@@ -0,0 +1,118 @@
+package dev.svero.sslchecker;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the access control of the resident server and the client.
+ */
+class CheckServerTest {
+    @TempDir
+    Path directory;
+
+    private Path tokenFile;
+    private CheckServer server;
+    private int port;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        tokenFile = directory.resolve("server.token");
+        server = new CheckServer(0, 4, (mode, certs) -> target -> CheckResult.success(target, "OK", 0),
+                result -> {
+                }, out -> out.append("# metrics\n"), tokenFile);
+        port = server.getAddress().getPort();
+
+        Thread thread = new Thread(() -> {
+            try {
+                server.run();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, "check-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @Test
+    void writesTokenOnlyReadableByOwner() throws IOException {
+        assertEquals(64, Files.readString(tokenFile).length());
+        if (Files.getFileStore(tokenFile).supportsFileAttributeView("posix")) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile)));
+        }
+
+        server.close();
+        assertFalse(Files.exists(tokenFile));
+    }
+
+    @Test
+    void rejectsRequestsWithoutTokenOrForOtherHosts() throws IOException {
+        final String token = Files.readString(tokenFile);
+
+        assertTrue(request("localhost:" + port, null, "/health").startsWith("HTTP/1.1 200"));
+        assertTrue(request("localhost:" + port, null, "/metrics").startsWith("HTTP/1.1 401"));
+        assertTrue(request("localhost:" + port, "wrong", "/metrics").startsWith("HTTP/1.1 401"));
+        assertTrue(request("localhost:" + port, token, "/metrics").startsWith("HTTP/1.1 200"));
+
+        // DNS rebinding: a page of another site which resolves to the loopback interface
+        assertTrue(request("attacker.example:" + port, token, "/metrics").startsWith("HTTP/1.1 421"));
+        assertTrue(request("attacker.example", null, "/health").startsWith("HTTP/1.1 421"));
+        assertTrue(request("127.0.0.1:" + port, token, "/metrics").startsWith("HTTP/1.1 200"));
+        assertTrue(request("[::1]:" + port, token, "/metrics").startsWith("HTTP/1.1 200"));
+    }
+
+    @Test
+    void clientSendsToken() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        int exitCode = CheckClient.run(new String[]{"--port", String.valueOf(port), "--token", tokenFile.toString(),
+                "--url", "https://localhost/"}, new PrintStream(out), new PrintStream(err));
+
+        assertEquals(0, exitCode, err.toString(StandardCharsets.UTF_8));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("\"success\":true"));
+    }
+
+    @Test
+    void clientFailsWithoutToken() {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        int exitCode = CheckClient.run(new String[]{"--port", String.valueOf(port), "--token",
+                directory.resolve("missing.token").toString(), "--url", "https://localhost/"},
+                new PrintStream(new ByteArrayOutputStream()), new PrintStream(err));
+
+        assertEquals(2, exitCode);
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("token"));
+    }
+
+    private String request(final String host, final String token, final String path) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(10_000);
+            String request = "GET " + path + " HTTP/1.1\r\nHost: " + host + "\r\n"
+                    + (token == null ? "" : "Authorization: Bearer " + token + "\r\n")
+                    + "Connection: close\r\n\r\n";
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package dev.svero.sslchecker;
+
+import dev.svero.tools.limit.ConnectionLimiter;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.security.cert.CertificateException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the classification of check results for the connection limiter.
+ */
+class LimitedTargetCheckerTest {
+    private static final Target TARGET = Target.parse("https://localhost:8443");
+
+    @Test
+    void throttlingStatusCodesDecreaseTheLimit() {
+        // Get mode reports these as failures, probe mode as successes
+        assertEquals(ConnectionLimiter.Outcome.DROPPED, classify(
+                CheckResult.failure(TARGET, "Unexpected status code 429", 0).withStatusCode(429)));
+        assertEquals(ConnectionLimiter.Outcome.DROPPED, classify(
+                CheckResult.failure(TARGET, "Unexpected status code 503", 0).withStatusCode(503)));
+        assertEquals(ConnectionLimiter.Outcome.DROPPED, classify(
+                CheckResult.success(TARGET, "HTTP 503", 0).withStatusCode(503)));
+
+        assertEquals(ConnectionLimiter.Outcome.IGNORED, classify(
+                CheckResult.failure(TARGET, "Unexpected status code 404", 0).withStatusCode(404)));
+        assertEquals(ConnectionLimiter.Outcome.SUCCESS, classify(
+                CheckResult.success(TARGET, "HTTP 404", 0).withStatusCode(404)));
+    }
+
+    @Test
+    void classifiesErrorsByType() {
+        assertEquals(ConnectionLimiter.Outcome.DROPPED, classify(
+                CheckResult.failure(TARGET, new ConnectException("Connection refused"), 0)));
+        assertEquals(ConnectionLimiter.Outcome.DROPPED, classify(
+                CheckResult.failure(TARGET, new HttpConnectTimeoutException("HTTP connect timed out"), 0)));
+        assertEquals(ConnectionLimiter.Outcome.DROPPED, classify(CheckResult.failure(TARGET,
+                new SSLException("Remote host terminated the handshake", new EOFException()), 0)));
+
+        assertEquals(ConnectionLimiter.Outcome.IGNORED, classify(CheckResult.failure(TARGET,
+                new SSLException("PKIX path building failed", new CertificateException()), 0)));
+        // Only the type counts, not a message which looks like an overload
+        assertEquals(ConnectionLimiter.Outcome.IGNORED, classify(
+                CheckResult.failure(TARGET, new IOException("Connection reset"), 0)));
+    }
+
+    private static ConnectionLimiter.Outcome classify(final CheckResult result) {
+        return LimitedTargetChecker.classify(result);
+    }
+}
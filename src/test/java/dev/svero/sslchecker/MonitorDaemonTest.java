@@ -0,0 +1,85 @@
+package dev.svero.sslchecker;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that stopping the daemon completes the running checks.
+ */
+class MonitorDaemonTest {
+    private static final SchedulePolicy POLICY = new SchedulePolicy(Duration.ofMillis(1), Duration.ofHours(1));
+
+    @Test
+    void stopWaitsForRunningChecks() throws InterruptedException {
+        for (int i = 0; i < 20; i++) {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger delivered = new AtomicInteger();
+
+            MonitorDaemon daemon = new MonitorDaemon(target -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return CheckResult.success(target, "OK", 0);
+            }, 1, POLICY);
+
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            Thread runner = new Thread(() -> {
+                try {
+                    daemon.run(List.of(Target.parse("a.example")), result -> delivered.incrementAndGet());
+                } catch (Throwable ex) {
+                    error.set(ex);
+                }
+            });
+            runner.start();
+
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            daemon.stop();
+            Thread.sleep(5);
+            release.countDown();
+            runner.join(10_000);
+
+            assertNull(error.get());
+            assertEquals(1, delivered.get());
+        }
+    }
+
+    @Test
+    void countsConsumerFailuresAsFailedChecks() throws InterruptedException {
+        CountDownLatch checked = new CountDownLatch(1);
+        MonitorDaemon daemon = new MonitorDaemon(target -> CheckResult.success(target, "OK", 0), 1, POLICY);
+
+        Thread runner = new Thread(() -> {
+            try {
+                daemon.run(List.of(Target.parse("a.example")), result -> {
+                    checked.countDown();
+                    throw new IllegalStateException("The writer has been closed");
+                });
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        runner.start();
+
+        assertTrue(checked.await(10, TimeUnit.SECONDS));
+        daemon.stop();
+        runner.join(10_000);
+
+        MonitorDaemon.Statistics statistics = daemon.getStatistics();
+        assertTrue(statistics.checks() >= 1);
+        assertEquals(statistics.checks(), statistics.failedChecks());
+    }
+}
@@ -0,0 +1,27 @@
+package dev.svero.sslchecker;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks the parsing of the lines of a targets file.
+ */
+class TargetTest {
+    @Test
+    void acceptsPortsInRange() {
+        assertEquals(1, Target.parse("example.com:1").port());
+        assertEquals(65535, Target.parse("[::1]:65535").port());
+        assertEquals(8443, Target.parse("https://example.com:8443/").port());
+        assertEquals(443, Target.parse("https://example.com/").port());
+    }
+
+    @Test
+    void rejectsPortsOutOfRange() {
+        for (String line : new String[]{"example.com:0", "example.com:70000", "example.com:-1", "[::1]:0",
+                "[::1]:65536", "https://example.com:0/", "https://example.com:70000/"}) {
+            assertThrows(IllegalArgumentException.class, () -> Target.parse(line), line);
+        }
+    }
+}
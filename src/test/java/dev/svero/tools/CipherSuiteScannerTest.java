@@ -0,0 +1,58 @@
+package dev.svero.tools;
+
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.security.KeyStore;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the enumeration of servers which require a client certificate.
+ */
+class CipherSuiteScannerTest {
+    @Test
+    void presentsClientCertificateOfConfiguredContext() throws Exception {
+        TestPki.Issued root = TestPki.ca("Scanner Root");
+        TestPki.Issued client = TestPki.certificate("client").issuer(root).extendedKeyUsage(TestPki.CLIENT_AUTH)
+                .build();
+
+        SSLUtils sslUtils = new SSLUtils();
+        KeyStore keyStore = TestPki.keyStore("client", client.privateKey(), client.certificate(),
+                root.certificate());
+        SSLContext context = sslUtils.getSSLContext(TestPki.trustStore(root.certificate()), keyStore,
+                TestPki.PASSWORD);
+        assertNotNull(sslUtils.getKeyManagers(context));
+
+        // TLS 1.2 only: a TLS 1.3 client completes its handshake before the server checks its certificate
+        try (TestTlsServer server = new TestTlsServer(serverContext(root), "TLSv1.2")) {
+            server.setNeedClientAuth(true);
+
+            TlsSupport anonymous = new CipherSuiteScanner(context).scan("localhost", server.getPort(),
+                    Runnable::run).join();
+            TlsSupport authenticated = new CipherSuiteScanner(context, sslUtils.getKeyManagers(context))
+                    .scan("localhost", server.getPort(), Runnable::run).join();
+
+            assertFalse(anonymous.accepted().containsKey("TLSv1.2"), anonymous.summary());
+            assertTrue(authenticated.accepted().containsKey("TLSv1.2"), authenticated.summary());
+        }
+    }
+
+    /**
+     * Creates a server context which trusts the client certificates issued by the specified CA.
+     */
+    private static SSLContext serverContext(final TestPki.Issued root) throws Exception {
+        TestPki.Issued server = TestPki.server(root);
+
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(TestPki.keyStore("server", server.privateKey(), server.certificate(), root.certificate()),
+                TestPki.PASSWORD.toCharArray());
+
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), TestPki.trustManagers(root.certificate()), null);
+        return context;
+    }
+}
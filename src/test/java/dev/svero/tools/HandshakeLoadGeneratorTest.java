@@ -0,0 +1,117 @@
+package dev.svero.tools;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the handshake load generator against an in-process TLS server.
+ */
+class HandshakeLoadGeneratorTest {
+    private TestPki.Issued root;
+    private TestTlsServer server;
+    private HandshakeUtils handshakeUtils;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = TestPki.ca("Load Root");
+        server = new TestTlsServer(TestPki.serverContext(TestPki.server(root)), "TLSv1.3");
+        handshakeUtils = new HandshakeUtils(TestPki.clientContext(root.certificate()));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void pacedRunStartsScheduledHandshakes() throws InterruptedException {
+        HandshakeLoadGenerator generator = new HandshakeLoadGenerator(handshakeUtils, 4);
+        generator.setRate(20);
+        generator.setDuration(Duration.ofSeconds(1));
+
+        HandshakeLoadResult result = generator.run("localhost", server.getPort());
+
+        assertEquals(0, result.failed(), result.errors().toString());
+        assertEquals(20, result.succeeded() + result.missed());
+        assertEquals(result.succeeded(), result.latency().getCount());
+        assertEquals(result.succeeded(), result.serviceTime().getCount());
+        assertEquals(0, result.errorLatency().getCount());
+        assertEquals(0, result.resumed());
+    }
+
+    @Test
+    void unpacedRunKeepsConnectionsBusy() throws InterruptedException {
+        HandshakeLoadGenerator generator = new HandshakeLoadGenerator(handshakeUtils, 2);
+        generator.setDuration(Duration.ofMillis(500));
+
+        HandshakeLoadResult result = generator.run("localhost", server.getPort());
+
+        assertEquals(0, result.failed(), result.errors().toString());
+        assertEquals(0, result.missed());
+        assertTrue(result.succeeded() > 0);
+        assertEquals(result.succeeded(), result.latency().getCount());
+    }
+
+    @Test
+    void resumedRunDoesNotWaitForTicketsOnConnectionThread() throws InterruptedException {
+        // The server keeps the connections open, so only the tickets end the wait
+        server.setSilent(true);
+
+        HandshakeLoadGenerator generator = new HandshakeLoadGenerator(handshakeUtils, 1);
+        generator.setResume(true);
+        generator.setDuration(Duration.ofSeconds(1));
+
+        HandshakeLoadResult result = generator.run("localhost", server.getPort());
+
+        assertEquals(0, result.failed(), result.errors().toString());
+        assertTrue(result.resumed() > 0);
+        // Waiting for the tickets on the connection thread would allow less than five handshakes
+        assertTrue(result.succeeded() > 10, "Only " + result.succeeded() + " handshakes");
+    }
+
+    @Test
+    void refusedRunRecordsErrorLatency() throws IOException, InterruptedException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+
+        HandshakeLoadGenerator generator = new HandshakeLoadGenerator(handshakeUtils, 2);
+        generator.setRate(20);
+        generator.setDuration(Duration.ofMillis(500));
+
+        HandshakeLoadResult result = generator.run("localhost", port);
+
+        assertEquals(0, result.succeeded());
+        assertEquals(0, result.latency().getCount());
+        assertEquals(Map.of(HandshakeError.CONNECT_REFUSED, result.failed()), result.errors());
+        assertEquals(result.failed(), result.errorLatency().getCount());
+        assertEquals(10, result.failed() + result.missed());
+    }
+
+    @Test
+    void ticketWaitEndsWhenTicketIsCached() throws IOException {
+        server.setSilent(true);
+
+        try (SSLSocket socket = handshakeUtils.connect("localhost", server.getPort())) {
+            socket.startHandshake();
+
+            long start = System.nanoTime();
+            HandshakeUtils.readSessionTickets(socket, socket.getSession());
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            assertTrue(millis < 150, "Waited " + millis + " ms");
+        }
+    }
+}
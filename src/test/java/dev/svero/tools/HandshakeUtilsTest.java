@@ -0,0 +1,50 @@
+package dev.svero.tools;
+
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSession;
+import java.lang.reflect.Proxy;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the detection of resumed sessions.
+ */
+class HandshakeUtilsTest {
+    private static final byte[] EMPTY = new byte[0];
+
+    @Test
+    void emptyIdentifiersDoNotIndicateResumption() {
+        assertFalse(HandshakeUtils.isResumption(session("TLSv1.3", 1000, EMPTY), session("TLSv1.3", 2000, EMPTY)));
+        assertFalse(HandshakeUtils.isResumption(session("TLSv1.2", 1000, EMPTY), session("TLSv1.2", 2000, EMPTY)));
+    }
+
+    @Test
+    void identifiersAreOnlyComparedBeforeTls13() {
+        final byte[] id = {1, 2, 3, 4};
+
+        assertTrue(HandshakeUtils.isResumption(session("TLSv1.2", 1000, id), session("TLSv1.2", 2000, id)));
+        assertFalse(HandshakeUtils.isResumption(session("TLSv1.3", 1000, id), session("TLSv1.3", 2000, id)));
+        assertFalse(HandshakeUtils.isResumption(session("TLSv1.2", 1000, id),
+                session("TLSv1.2", 2000, new byte[]{5, 6, 7, 8})));
+    }
+
+    @Test
+    void creationTimeIndicatesResumption() {
+        assertTrue(HandshakeUtils.isResumption(session("TLSv1.3", 1000, EMPTY), session("TLSv1.3", 1000, EMPTY)));
+    }
+
+    /**
+     * Creates a session which only provides the protocol, the creation time and the identifier.
+     */
+    private static SSLSession session(final String protocol, final long creationTime, final byte[] id) {
+        return (SSLSession) Proxy.newProxyInstance(SSLSession.class.getClassLoader(), new Class<?>[]{SSLSession.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getProtocol" -> protocol;
+                    case "getCreationTime" -> creationTime;
+                    case "getId" -> id.clone();
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,193 @@
+package dev.svero.tools;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.Principal;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks which client identity the key manager presents to a server.
+ */
+class IndexedKeyManagerTest {
+    private TestPki.Issued root;
+    private TestPki.Issued first;
+    private TestPki.Issued second;
+    private KeyStore keyStore;
+    private volatile X509Certificate presented;
+
+    @BeforeEach
+    void setUp() throws GeneralSecurityException, IOException {
+        root = TestPki.ca("Server Root");
+        first = TestPki.ca("First Tenant CA");
+        second = TestPki.ca("Second Tenant CA");
+
+        keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null);
+        add("a", client("a", first), first);
+        add("b", client("b", second), second);
+        add("c", client("c", first), first);
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        add("rsa", TestPki.certificate("rsa").keys(generator.generateKeyPair()).issuer(second)
+                .extendedKeyUsage(TestPki.CLIENT_AUTH).build(), second);
+    }
+
+    @Test
+    void looksUpHostWithPortBeforeHostAndWildcard() throws Exception {
+        try (TestTlsServer server = server()) {
+            final int port = server.getPort();
+
+            assertEquals("a", presented(server, Map.of("localhost:" + port, "a", "localhost", "b"), null));
+            assertEquals("b", presented(server, Map.of("localhost:" + (port + 1), "a", "localhost", "b"), null));
+            assertEquals("c", presented(server, Map.of("api.tenant.example", "c", "*.tenant.example", "b"),
+                    "api.tenant.example"));
+            assertEquals("b", presented(server, Map.of("*.tenant.example", "b", "tenant.example", "c"),
+                    "api.tenant.example"));
+        }
+    }
+
+    @Test
+    void serverNameWinsOverPeerHost() throws Exception {
+        try (TestTlsServer server = server()) {
+            assertEquals("c", presented(server, Map.of("localhost", "a", "api.tenant.example", "c"),
+                    "api.tenant.example"));
+            assertEquals("a", presented(server, Map.of("localhost", "a", "other.example", "c"),
+                    "api.tenant.example"));
+        }
+    }
+
+    @Test
+    void selectsByRequestedIssuer() {
+        IndexedKeyManager keyManager = new IndexedKeyManager(keyStore, TestPki.PASSWORD, Map.of());
+        String[] ec = {"EC"};
+
+        assertEquals("a", keyManager.chooseClientAlias(ec, null, null));
+        assertEquals("b", keyManager.chooseClientAlias(ec, issuers(second), null));
+        assertEquals("a", keyManager.chooseClientAlias(ec, issuers(root, first), null));
+        assertEquals(null, keyManager.chooseClientAlias(ec, issuers(root), null));
+        assertArrayEquals(new String[]{"a", "c"}, keyManager.getClientAliases("EC", issuers(first)));
+    }
+
+    @Test
+    void filtersByKeyType() {
+        IndexedKeyManager keyManager = new IndexedKeyManager(keyStore, TestPki.PASSWORD, Map.of());
+
+        assertEquals("rsa", keyManager.chooseClientAlias(new String[]{"RSA"}, null, null));
+        assertEquals("rsa", keyManager.chooseClientAlias(new String[]{"RSA"}, issuers(second), null));
+        assertEquals("b", keyManager.chooseClientAlias(new String[]{"EC_EC"}, issuers(second), null));
+        assertArrayEquals(new String[]{"rsa"}, keyManager.getClientAliases("RSA", null));
+        assertEquals(null, keyManager.getClientAliases("DSA", null));
+    }
+
+    @Test
+    void rejectsUnknownAliases() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new IndexedKeyManager(keyStore, TestPki.PASSWORD, Map.of("localhost", "missing")));
+    }
+
+    private TestTlsServer server() throws GeneralSecurityException, IOException {
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        TestPki.Issued issued = TestPki.server(root);
+        keyManagers.init(TestPki.keyStore("server", issued.privateKey(), issued.certificate()),
+                TestPki.PASSWORD.toCharArray());
+
+        X509TrustManager trustManager = (X509TrustManager) TestPki.trustManagers(first.certificate(),
+                second.certificate())[0];
+        X509TrustManager recorder = new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(final X509Certificate[] chain, final String authType)
+                    throws CertificateException {
+                trustManager.checkClientTrusted(chain, authType);
+                presented = chain[0];
+            }
+
+            @Override
+            public void checkServerTrusted(final X509Certificate[] chain, final String authType)
+                    throws CertificateException {
+                trustManager.checkServerTrusted(chain, authType);
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return trustManager.getAcceptedIssuers();
+            }
+        };
+
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), new TrustManager[]{recorder}, null);
+
+        TestTlsServer server = new TestTlsServer(context);
+        server.setNeedClientAuth(true);
+        // With TLS 1.3 the client completes its handshake before the server has checked the client
+        // certificate, so the server reads a byte from the client before it closes the connection
+        server.setSilent(true);
+        return server;
+    }
+
+    /**
+     * Connects to the server and gets the common name of the client certificate it received.
+     */
+    private String presented(final TestTlsServer server, final Map<String, String> hostAliases,
+                             final String serverName) throws GeneralSecurityException, IOException {
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(new KeyManager[]{new IndexedKeyManager(keyStore, TestPki.PASSWORD, hostAliases)},
+                TestPki.trustManagers(root.certificate()), null);
+
+        try (SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket("localhost",
+                server.getPort())) {
+            if (serverName != null) {
+                SSLParameters parameters = socket.getSSLParameters();
+                parameters.setServerNames(List.of(new SNIHostName(serverName)));
+                socket.setSSLParameters(parameters);
+            }
+
+            presented = null;
+            socket.startHandshake();
+            socket.getOutputStream().write('.');
+            socket.getOutputStream().flush();
+            // The server closes the connection once it has read the byte
+            assertEquals(-1, socket.getInputStream().read());
+        }
+
+        return presented.getSubjectX500Principal().getName().substring("CN=".length());
+    }
+
+    private void add(final String alias, final TestPki.Issued issued, final TestPki.Issued issuer)
+            throws GeneralSecurityException {
+        keyStore.setKeyEntry(alias, issued.privateKey(), TestPki.PASSWORD.toCharArray(),
+                new X509Certificate[]{issued.certificate(), issuer.certificate()});
+    }
+
+    private static TestPki.Issued client(final String commonName, final TestPki.Issued issuer) {
+        return TestPki.certificate(commonName).issuer(issuer).extendedKeyUsage(TestPki.CLIENT_AUTH).build();
+    }
+
+    private static Principal[] issuers(final TestPki.Issued... authorities) {
+        Principal[] principals = new Principal[authorities.length];
+        for (int i = 0; i < authorities.length; i++) {
+            principals[i] = authorities[i].certificate().getSubjectX500Principal();
+        }
+        return principals;
+    }
+}
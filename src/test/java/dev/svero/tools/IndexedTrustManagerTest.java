@@ -0,0 +1,160 @@
+package dev.svero.tools;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.X509TrustManager;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Runs the same chains through the {@link IndexedTrustManager} and the default PKIX trust manager of the
+ * JDK and checks that both come to the same result.
+ */
+class IndexedTrustManagerTest {
+    private static final String AUTH_TYPE = "ECDHE_ECDSA";
+
+    private static TestPki.Issued root;
+    private static TestPki.Issued intermediate;
+    private static TestPki.Issued leaf;
+    private static TestPki.Issued oldRoot;
+    private static TestPki.Issued crossSigned;
+    private static TestPki.Issued unrelated;
+
+    @BeforeAll
+    static void createPki() {
+        root = TestPki.ca("Indexed Root");
+        intermediate = TestPki.certificate("Indexed Intermediate").issuer(root).ca().build();
+        leaf = TestPki.server(intermediate);
+
+        // The same root, cross-signed by an older root
+        oldRoot = TestPki.ca("Indexed Old Root");
+        crossSigned = TestPki.certificate("Indexed Root").keys(root.keys()).issuer(oldRoot).ca().build();
+
+        unrelated = TestPki.ca("Unrelated");
+    }
+
+    @Test
+    void acceptsOrderedChain() throws Exception {
+        assertSameResult(true, anchors(root), leaf, intermediate);
+    }
+
+    @Test
+    void acceptsChainWithAnchor() throws Exception {
+        assertSameResult(true, anchors(root), leaf, intermediate, root);
+    }
+
+    @Test
+    void acceptsUnorderedChain() throws Exception {
+        TestPki.Issued second = TestPki.certificate("Indexed Intermediate 2").issuer(intermediate).ca().build();
+        TestPki.Issued deepLeaf = TestPki.server(second);
+
+        assertSameResult(true, anchors(root), deepLeaf, intermediate, second);
+    }
+
+    @Test
+    void acceptsPaddedChain() throws Exception {
+        assertSameResult(true, anchors(root), leaf, unrelated, intermediate, TestPki.ca("Padding"));
+    }
+
+    @Test
+    void acceptsCrossSignedChainForNewRoot() throws Exception {
+        assertSameResult(true, anchors(root), leaf, intermediate, crossSigned);
+    }
+
+    @Test
+    void acceptsCrossSignedChainForOldRoot() throws Exception {
+        assertSameResult(true, anchors(oldRoot), leaf, intermediate, crossSigned);
+    }
+
+    @Test
+    void acceptsTrustedEndEntity() throws Exception {
+        assertSameResult(true, anchors(unrelated, leaf), leaf);
+    }
+
+    @Test
+    void rejectsExpiredCertificate() throws Exception {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        TestPki.Issued expired = TestPki.certificate("localhost").issuer(intermediate).dnsName("localhost")
+                .validity(now.minusYears(2), now.minusYears(1)).extendedKeyUsage(TestPki.SERVER_AUTH).build();
+
+        assertSameResult(false, anchors(root), expired, intermediate);
+    }
+
+    @Test
+    void rejectsWrongExtendedKeyUsage() throws Exception {
+        TestPki.Issued client = TestPki.certificate("localhost").issuer(intermediate).dnsName("localhost")
+                .extendedKeyUsage(TestPki.CLIENT_AUTH).build();
+
+        assertSameResult(false, anchors(root), client, intermediate);
+    }
+
+    @Test
+    void rejectsIntermediateWithoutCaFlag() throws Exception {
+        TestPki.Issued notCa = TestPki.certificate("Not a CA").issuer(root).build();
+        TestPki.Issued below = TestPki.server(notCa);
+
+        assertSameResult(false, anchors(root), below, notCa);
+    }
+
+    @Test
+    void rejectsUnknownAnchor() throws Exception {
+        assertSameResult(false, anchors(unrelated), leaf, intermediate, root);
+    }
+
+    @Test
+    void rejectsMissingIntermediate() throws Exception {
+        assertSameResult(false, anchors(root), leaf);
+    }
+
+    @Test
+    void buildsPathThroughChainIndex() {
+        TestPki.Issued second = TestPki.certificate("Indexed Intermediate 2").issuer(intermediate).ca().build();
+        TestPki.Issued deepLeaf = TestPki.server(second);
+
+        IndexedTrustManager manager = new IndexedTrustManager(anchors(root));
+        IndexedTrustManager.CertificatePath path = manager.buildPath(new X509Certificate[]{
+                deepLeaf.certificate(), unrelated.certificate(), intermediate.certificate(), second.certificate()});
+
+        assertNotNull(path);
+        assertEquals(List.of(deepLeaf.certificate(), second.certificate(), intermediate.certificate()),
+                path.certificates());
+        assertEquals(root.certificate(), path.anchor());
+        assertEquals(intermediate.certificate(), path.issuer(1));
+        assertEquals(root.certificate(), path.issuer(2));
+
+        assertNull(manager.buildPath(new X509Certificate[]{deepLeaf.certificate(), second.certificate()}));
+    }
+
+    private static List<X509Certificate> anchors(final TestPki.Issued... issued) {
+        return List.of(issued).stream().map(TestPki.Issued::certificate).toList();
+    }
+
+    private static void assertSameResult(final boolean expected, final List<X509Certificate> anchors,
+                                         final TestPki.Issued... chain) {
+        X509Certificate[] certificates = List.of(chain).stream().map(TestPki.Issued::certificate)
+                .toArray(X509Certificate[]::new);
+
+        X509TrustManager jdk = (X509TrustManager) TestPki.trustManagers(anchors.toArray(new X509Certificate[0]))[0];
+        IndexedTrustManager indexed = new IndexedTrustManager(anchors);
+
+        assertEquals(expected, accepts(jdk, certificates), "JDK PKIX trust manager");
+        assertEquals(expected, accepts(indexed, certificates), "Indexed trust manager");
+    }
+
+    private static boolean accepts(final X509TrustManager trustManager, final X509Certificate[] chain) {
+        try {
+            trustManager.checkServerTrusted(chain, AUTH_TYPE);
+            return true;
+        } catch (CertificateException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package dev.svero.tools;
+
+import dev.svero.tools.revocation.RevocationChecker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks that known chains are only accepted for the trust configuration they were validated with.
+ */
+class KnownChainTrustManagerTest {
+    private static final String AUTH_TYPE = "ECDHE_ECDSA";
+    private static final String ENDPOINT = "localhost:443";
+
+    private TestPki.Issued root;
+    private X509Certificate[] chain;
+    private SSLEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        root = TestPki.ca("Known Root");
+        chain = new X509Certificate[]{TestPki.server(root).certificate()};
+        engine = TestPki.clientContext().createSSLEngine("localhost", 443);
+    }
+
+    @Test
+    void skipsValidationOnlyForSameTrustConfiguration() {
+        // Trusts another root, so every chain it has to validate is rejected
+        X509ExtendedTrustManager other = (X509ExtendedTrustManager)
+                TestPki.trustManagers(TestPki.ca("Other Root").certificate())[0];
+        String fingerprint = CertificateUtils.chainFingerprint(Arrays.asList(chain));
+
+        KnownChainTrustManager.KnownChains known = (endpoint, trust, chainFingerprint) ->
+                ENDPOINT.equals(endpoint) && "before".equals(trust) && fingerprint.equals(chainFingerprint);
+
+        KnownChainTrustManager same = new KnownChainTrustManager(other, "before", known);
+        KnownChainTrustManager changed = new KnownChainTrustManager(other, "after", known);
+
+        assertDoesNotThrow(() -> same.checkServerTrusted(chain, AUTH_TYPE, engine));
+        assertThrows(CertificateException.class, () -> changed.checkServerTrusted(chain, AUTH_TYPE, engine));
+    }
+
+    @Test
+    void trustConfigurationCoversTrustStoreAndRevocationMode() {
+        SSLUtils sslUtils = new SSLUtils();
+
+        String first = sslUtils.getTrustConfiguration(
+                sslUtils.getSSLContext(TestPki.trustStore(root.certificate()), null, null));
+        String second = sslUtils.getTrustConfiguration(
+                sslUtils.getSSLContext(TestPki.trustStore(TestPki.ca("Other Root").certificate()), null, null));
+        String again = sslUtils.getTrustConfiguration(
+                sslUtils.getSSLContext(TestPki.trustStore(root.certificate()), null, null));
+
+        assertEquals(first, again);
+        assertNotEquals(first, second);
+
+        try (RevocationChecker checker = new RevocationChecker()) {
+            sslUtils.setRevocationChecker(checker, true);
+            String revocation = sslUtils.getTrustConfiguration(
+                    sslUtils.getSSLContext(TestPki.trustStore(root.certificate()), null, null));
+            assertNotEquals(first, revocation);
+        }
+    }
+
+    @Test
+    void contextsAreNotSharedBetweenLookupsOrAliasMaps() {
+        SSLUtils sslUtils = new SSLUtils();
+        KnownChainTrustManager.KnownChains none = (endpoint, trust, fingerprint) -> false;
+
+        sslUtils.setKnownChains(none);
+        SSLContext first = sslUtils.getSSLContext(null, null, null);
+        assertSame(first, sslUtils.getSSLContext(null, null, null));
+
+        sslUtils.setKnownChains((endpoint, trust, fingerprint) -> false);
+        assertNotSame(first, sslUtils.getSSLContext(null, null, null));
+
+        sslUtils.setKnownChains(null);
+        sslUtils.setHostAliases(Map.of("a", "b=c"));
+        SSLContext aliases = sslUtils.getSSLContext(null, null, null);
+        sslUtils.setHostAliases(Map.of("a=b", "c"));
+        assertNotSame(aliases, sslUtils.getSSLContext(null, null, null));
+    }
+}
@@ -0,0 +1,110 @@
+package dev.svero.tools;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the reloader notices rotations which do not write the watched file itself.
+ */
+class SSLContextReloaderTest {
+    private static final Duration DEBOUNCE = Duration.ofMillis(50);
+    private static final long TIMEOUT_MILLIS = 20_000;
+
+    @TempDir
+    Path directory;
+
+    private SSLContextReloader reloader;
+
+    @AfterEach
+    void tearDown() {
+        if (reloader != null) {
+            reloader.close();
+        }
+    }
+
+    @Test
+    void reloadsAfterAtomicRename() throws Exception {
+        Path store = directory.resolve("trust.pem");
+        Files.writeString(store, "first");
+        start(store);
+
+        Path temporary = directory.resolve("trust.pem.tmp");
+        Files.writeString(temporary, "second");
+        Files.move(temporary, store, StandardCopyOption.ATOMIC_MOVE);
+
+        awaitReloads(1);
+    }
+
+    @Test
+    void reloadsAfterDataLinkSwap() throws Exception {
+        // Layout of a mounted Kubernetes secret: trust.pem -> ..data/trust.pem, ..data -> ..first
+        Files.createDirectory(directory.resolve("..first"));
+        Files.writeString(directory.resolve("..first/trust.pem"), "first");
+        Files.createDirectory(directory.resolve("..second"));
+        Files.writeString(directory.resolve("..second/trust.pem"), "first");
+
+        Files.createSymbolicLink(directory.resolve("..data"), Path.of("..first"));
+        Path store = Files.createSymbolicLink(directory.resolve("trust.pem"), Path.of("..data/trust.pem"));
+        start(store);
+
+        Path link = Files.createSymbolicLink(directory.resolve("..data_tmp"), Path.of("..second"));
+        Files.move(link, directory.resolve("..data"), StandardCopyOption.ATOMIC_MOVE);
+
+        awaitReloads(1);
+    }
+
+    @Test
+    void reloadsAfterDirectoryLinkSwap() throws Exception {
+        // Like "ln -sfn releases/2 current" with the store below the linked directory
+        Files.createDirectories(directory.resolve("releases/1"));
+        Files.writeString(directory.resolve("releases/1/trust.pem"), "first");
+        Files.createDirectories(directory.resolve("releases/2"));
+        Files.writeString(directory.resolve("releases/2/trust.pem"), "first");
+
+        Path current = Files.createSymbolicLink(directory.resolve("current"), Path.of("releases/1"));
+        start(current.resolve("trust.pem"));
+
+        Path link = Files.createSymbolicLink(directory.resolve("current.tmp"), Path.of("releases/2"));
+        Files.move(link, current, StandardCopyOption.ATOMIC_MOVE);
+
+        awaitReloads(1);
+    }
+
+    private void start(final Path store) throws IOException {
+        reloader = new SSLContextReloader(SSLContextReloaderTest::newContext, newContext(), List.of(store),
+                DEBOUNCE);
+        reloader.start();
+    }
+
+    private void awaitReloads(final long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (reloader.getReloads() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(expected, reloader.getReloads());
+        assertEquals(0, reloader.getFailures());
+    }
+
+    private static SSLContext newContext() {
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, null, null);
+            return context;
+        } catch (GeneralSecurityException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package dev.svero.tools;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates certificates for the tests. The certificates are encoded by hand (DER) and signed with ECDSA
+ * P-256, so no external library and no keytool run is needed. The DER helpers are public, so tests can
+ * encode OCSP responses and CRLs with them as well.
+ *
+ * @author Sven Roeseler
+ */
+public final class TestPki {
+    /**
+     * Password of all generated key stores.
+     */
+    public static final String PASSWORD = "changeit";
+
+    public static final String ECDSA_WITH_SHA256 = "1.2.840.10045.4.3.2";
+    public static final String SERVER_AUTH = "1.3.6.1.5.5.7.3.1";
+    public static final String CLIENT_AUTH = "1.3.6.1.5.5.7.3.2";
+
+    private static final String COMMON_NAME = "2.5.4.3";
+    private static final String SUBJECT_KEY_IDENTIFIER = "2.5.29.14";
+    private static final String AUTHORITY_KEY_IDENTIFIER = "2.5.29.35";
+    private static final String BASIC_CONSTRAINTS = "2.5.29.19";
+    private static final String KEY_USAGE = "2.5.29.15";
+    private static final String SUBJECT_ALTERNATIVE_NAME = "2.5.29.17";
+    private static final String EXTENDED_KEY_USAGE = "2.5.29.37";
+    private static final String CRL_DISTRIBUTION_POINTS = "2.5.29.31";
+    private static final String AUTHORITY_INFORMATION_ACCESS = "1.3.6.1.5.5.7.1.1";
+    private static final String OCSP = "1.3.6.1.5.5.7.48.1";
+
+    private static final DateTimeFormatter UTC_TIME = DateTimeFormatter.ofPattern("yyMMddHHmmss'Z'");
+    private static final DateTimeFormatter GENERALIZED_TIME = DateTimeFormatter.ofPattern("yyyyMMddHHmmss'Z'");
+    private static final AtomicLong SERIALS = new AtomicLong(System.currentTimeMillis());
+
+    private TestPki() {
+    }
+
+    /**
+     * Certificate together with its key pair.
+     *
+     * @param certificate Certificate
+     * @param keys        Key pair of the certificate subject
+     */
+    public record Issued(X509Certificate certificate, KeyPair keys) {
+        /**
+         * Gets the private key of the subject.
+         *
+         * @return Private key
+         */
+        public PrivateKey privateKey() {
+            return keys.getPrivate();
+        }
+    }
+
+    /**
+     * Starts a new certificate for the specified common name. Without {@link Builder#issuer(Issued)} the
+     * certificate is self-signed.
+     *
+     * @param commonName Common name of the subject
+     * @return Builder
+     */
+    public static Builder certificate(final String commonName) {
+        return new Builder(commonName);
+    }
+
+    /**
+     * Creates a self-signed CA certificate.
+     *
+     * @param commonName Common name
+     * @return CA
+     */
+    public static Issued ca(final String commonName) {
+        return certificate(commonName).ca().build();
+    }
+
+    /**
+     * Creates a server certificate for localhost and 127.0.0.1 issued by the specified CA.
+     *
+     * @param issuer Issuing CA
+     * @return Server certificate
+     */
+    public static Issued server(final Issued issuer) {
+        return certificate("localhost").issuer(issuer).dnsName("localhost").ipAddress(new byte[]{127, 0, 0, 1})
+                .extendedKeyUsage(SERVER_AUTH).build();
+    }
+
+    /**
+     * Creates a PKCS12 trust store with the specified certificates.
+     *
+     * @param certificates Trusted certificates
+     * @return Trust store
+     */
+    public static KeyStore trustStore(final X509Certificate... certificates) {
+        try {
+            KeyStore trustStore = KeyStore.getInstance("PKCS12");
+            trustStore.load(null);
+            for (int i = 0; i < certificates.length; i++) {
+                trustStore.setCertificateEntry("ca" + i, certificates[i]);
+            }
+            return trustStore;
+        } catch (GeneralSecurityException | IOException ex) {
+            throw new RuntimeException("Could not create the trust store", ex);
+        }
+    }
+
+    /**
+     * Creates a PKCS12 key store with a single key entry.
+     *
+     * @param alias Alias of the entry
+     * @param key   Private key
+     * @param chain Certificate chain, starting with the certificate of the key
+     * @return Key store
+     */
+    public static KeyStore keyStore(final String alias, final PrivateKey key, final X509Certificate... chain) {
+        try {
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            keyStore.load(null);
+            keyStore.setKeyEntry(alias, key, PASSWORD.toCharArray(), chain);
+            return keyStore;
+        } catch (GeneralSecurityException | IOException ex) {
+            throw new RuntimeException("Could not create the key store", ex);
+        }
+    }
+
+    /**
+     * Creates a server SSL context using the specified certificate and its chain.
+     *
+     * @param server Server certificate
+     * @param chain  Remaining certificates of the chain
+     * @return SSL context
+     */
+    public static SSLContext serverContext(final Issued server, final X509Certificate... chain) {
+        X509Certificate[] certificates = new X509Certificate[chain.length + 1];
+        certificates[0] = server.certificate();
+        System.arraycopy(chain, 0, certificates, 1, chain.length);
+
+        try {
+            KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagers.init(keyStore("server", server.privateKey(), certificates), PASSWORD.toCharArray());
+
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(keyManagers.getKeyManagers(), null, null);
+            return context;
+        } catch (GeneralSecurityException ex) {
+            throw new RuntimeException("Could not create the server context", ex);
+        }
+    }
+
+    /**
+     * Creates a client SSL context trusting the specified certificates.
+     *
+     * @param trusted Trusted certificates
+     * @return SSL context
+     */
+    public static SSLContext clientContext(final X509Certificate... trusted) {
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, trustManagers(trusted), null);
+            return context;
+        } catch (GeneralSecurityException ex) {
+            throw new RuntimeException("Could not create the client context", ex);
+        }
+    }
+
+    /**
+     * Creates the default (PKIX) trust managers for the specified certificates.
+     *
+     * @param trusted Trusted certificates
+     * @return Trust managers
+     */
+    public static TrustManager[] trustManagers(final X509Certificate... trusted) {
+        try {
+            TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            factory.init(trustStore(trusted));
+            return factory.getTrustManagers();
+        } catch (GeneralSecurityException ex) {
+            throw new RuntimeException("Could not create the trust managers", ex);
+        }
+    }
+
+    /**
+     * Generates a new EC key pair.
+     *
+     * @return Key pair
+     */
+    public static KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException ex) {
+            throw new RuntimeException("Could not generate EC key pair", ex);
+        }
+    }
+
+    /**
+     * Builder for a single certificate.
+     */
+    public static final class Builder {
+        private final String commonName;
+        private KeyPair keys;
+        private Issued issuer;
+        private BigInteger serial = BigInteger.valueOf(SERIALS.incrementAndGet());
+        private ZonedDateTime notBefore = ZonedDateTime.now(ZoneOffset.UTC).minusDays(1);
+        private ZonedDateTime notAfter = ZonedDateTime.now(ZoneOffset.UTC).plusYears(1);
+        private boolean ca;
+        private final List<String> extendedKeyUsages = new ArrayList<>();
+        private final List<byte[]> alternativeNames = new ArrayList<>();
+        private String ocspUrl;
+        private String crlUrl;
+        private byte[] subject;
+        private boolean generalizedTime;
+
+        private Builder(final String commonName) {
+            this.commonName = Objects.requireNonNull(commonName);
+        }
+
+        public Builder keys(final KeyPair keys) {
+            this.keys = keys;
+            return this;
+        }
+
+        public Builder issuer(final Issued issuer) {
+            this.issuer = issuer;
+            return this;
+        }
+
+        public Builder serial(final BigInteger serial) {
+            this.serial = serial;
+            return this;
+        }
+
+        public Builder validity(final ZonedDateTime notBefore, final ZonedDateTime notAfter) {
+            this.notBefore = notBefore;
+            this.notAfter = notAfter;
+            return this;
+        }
+
+        /**
+         * Uses the specified encoded Name as subject instead of the common name alone.
+         *
+         * @param name Encoded Name
+         * @return Builder
+         */
+        public Builder subject(final byte[] name) {
+            this.subject = name;
+            return this;
+        }
+
+        /**
+         * Encodes the validity as GeneralizedTime instead of UTCTime.
+         *
+         * @return Builder
+         */
+        public Builder generalizedTime() {
+            this.generalizedTime = true;
+            return this;
+        }
+
+        public Builder ca() {
+            this.ca = true;
+            return this;
+        }
+
+        public Builder extendedKeyUsage(final String oid) {
+            extendedKeyUsages.add(oid);
+            return this;
+        }
+
+        public Builder dnsName(final String name) {
+            alternativeNames.add(tlv(0x82, name.getBytes(StandardCharsets.US_ASCII)));
+            return this;
+        }
+
+        public Builder ipAddress(final byte[] address) {
+            alternativeNames.add(tlv(0x87, address));
+            return this;
+        }
+
+        public Builder ocspUrl(final String url) {
+            this.ocspUrl = url;
+            return this;
+        }
+
+        public Builder crlUrl(final String url) {
+            this.crlUrl = url;
+            return this;
+        }
+
+        public Issued build() {
+            KeyPair subjectKeys = keys != null ? keys : generateKeyPair();
+            KeyPair issuerKeys = issuer != null ? issuer.keys() : subjectKeys;
+            byte[] subjectName = subject != null ? subject : name(commonName);
+            byte[] issuerName = issuer != null ? issuer.certificate().getSubjectX500Principal().getEncoded()
+                    : subjectName;
+
+            List<byte[]> extensions = new ArrayList<>();
+            extensions.add(extension(SUBJECT_KEY_IDENTIFIER, false, tlv(0x04, keyIdentifier(subjectKeys.getPublic()))));
+            extensions.add(extension(AUTHORITY_KEY_IDENTIFIER, false,
+                    sequence(tlv(0x80, keyIdentifier(issuerKeys.getPublic())))));
+
+            if (ca) {
+                extensions.add(extension(BASIC_CONSTRAINTS, true, sequence(tlv(0x01, new byte[]{(byte) 0xff}))));
+                // keyCertSign and cRLSign
+                extensions.add(extension(KEY_USAGE, true, tlv(0x03, new byte[]{1, 0x06})));
+            }
+
+            if (!alternativeNames.isEmpty()) {
+                extensions.add(extension(SUBJECT_ALTERNATIVE_NAME, false,
+                        sequence(alternativeNames.toArray(new byte[0][]))));
+            }
+
+            if (!extendedKeyUsages.isEmpty()) {
+                extensions.add(extension(EXTENDED_KEY_USAGE, false,
+                        sequence(extendedKeyUsages.stream().map(TestPki::oid).toArray(byte[][]::new))));
+            }
+
+            if (crlUrl != null) {
+                byte[] uri = tlv(0x86, crlUrl.getBytes(StandardCharsets.US_ASCII));
+                extensions.add(extension(CRL_DISTRIBUTION_POINTS, false,
+                        sequence(sequence(tlv(0xa0, tlv(0xa0, uri))))));
+            }
+
+            if (ocspUrl != null) {
+                byte[] uri = tlv(0x86, ocspUrl.getBytes(StandardCharsets.US_ASCII));
+                extensions.add(extension(AUTHORITY_INFORMATION_ACCESS, false, sequence(sequence(oid(OCSP), uri))));
+            }
+
+            byte[] algorithm = sequence(oid(ECDSA_WITH_SHA256));
+            byte[] tbs = sequence(
+                    tlv(0xa0, tlv(0x02, new byte[]{2})),
+                    tlv(0x02, serial.toByteArray()),
+                    algorithm,
+                    issuerName,
+                    generalizedTime ? sequence(TestPki.generalizedTime(notBefore), TestPki.generalizedTime(notAfter))
+                            : sequence(utcTime(notBefore), utcTime(notAfter)),
+                    subjectName,
+                    subjectKeys.getPublic().getEncoded(),
+                    tlv(0xa3, sequence(extensions.toArray(new byte[0][]))));
+
+            try {
+                X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+                        .generateCertificate(new ByteArrayInputStream(signed(tbs, issuerKeys.getPrivate())));
+                return new Issued(certificate, subjectKeys);
+            } catch (GeneralSecurityException ex) {
+                throw new RuntimeException("Could not create certificate for " + commonName, ex);
+            }
+        }
+    }
+
+    /**
+     * Signs the specified to-be-signed structure with ECDSA and SHA-256 and wraps it together with the
+     * algorithm identifier and the signature, as used by certificates, CRLs and OCSP responses.
+     *
+     * @param tbs Encoded to-be-signed structure
+     * @param key Signing key
+     * @return Encoded signed structure
+     */
+    public static byte[] signed(final byte[] tbs, final PrivateKey key) {
+        try {
+            Signature signature = Signature.getInstance("SHA256withECDSA");
+            signature.initSign(key);
+            signature.update(tbs);
+            return sequence(tbs, sequence(oid(ECDSA_WITH_SHA256)), bitString(signature.sign()));
+        } catch (GeneralSecurityException ex) {
+            throw new RuntimeException("Could not sign", ex);
+        }
+    }
+
+    /**
+     * Computes the SHA-1 key identifier of a public key (over the whole encoded key).
+     *
+     * @param key Public key
+     * @return Key identifier
+     */
+    public static byte[] keyIdentifier(final PublicKey key) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(key.getEncoded());
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static byte[] extension(final String id, final boolean critical, final byte[] value) {
+        return critical
+                ? sequence(oid(id), tlv(0x01, new byte[]{(byte) 0xff}), tlv(0x04, value))
+                : sequence(oid(id), tlv(0x04, value));
+    }
+
+    /**
+     * Encodes a name consisting of a single common name.
+     *
+     * @param commonName Common name
+     * @return Encoded name
+     */
+    public static byte[] name(final String commonName) {
+        byte[] attribute = sequence(oid(COMMON_NAME), tlv(0x0c, commonName.getBytes(StandardCharsets.UTF_8)));
+        return sequence(tlv(0x31, attribute));
+    }
+
+    public static byte[] utcTime(final ZonedDateTime time) {
+        return tlv(0x17, UTC_TIME.format(time.withZoneSameInstant(ZoneOffset.UTC)).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static byte[] generalizedTime(final ZonedDateTime time) {
+        return tlv(0x18, GENERALIZED_TIME.format(time.withZoneSameInstant(ZoneOffset.UTC))
+                .getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static byte[] bitString(final byte[] bits) {
+        byte[] content = new byte[bits.length + 1];
+        System.arraycopy(bits, 0, content, 1, bits.length);
+        return tlv(0x03, content);
+    }
+
+    public static byte[] integer(final BigInteger value) {
+        return tlv(0x02, value.toByteArray());
+    }
+
+    public static byte[] octetString(final byte[] value) {
+        return tlv(0x04, value);
+    }
+
+    public static byte[] oid(final String id) {
+        String[] parts = id.split("\\.");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(Integer.parseInt(parts[0]) * 40 + Integer.parseInt(parts[1]));
+
+        for (int i = 2; i < parts.length; i++) {
+            long value = Long.parseLong(parts[i]);
+
+            int shift = 63 - Long.numberOfLeadingZeros(value | 1);
+            for (int bits = shift / 7 * 7; bits > 0; bits -= 7) {
+                out.write((int) ((value >>> bits) & 0x7f) | 0x80);
+            }
+            out.write((int) (value & 0x7f));
+        }
+
+        return tlv(0x06, out.toByteArray());
+    }
+
+    public static byte[] sequence(final byte[]... elements) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] element : elements) {
+            out.writeBytes(element);
+        }
+
+        return tlv(0x30, out.toByteArray());
+    }
+
+    public static byte[] tlv(final int tag, final byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length + 6);
+        out.write(tag);
+
+        int length = content.length;
+        if (length < 0x80) {
+            out.write(length);
+        } else {
+            int count = (32 - Integer.numberOfLeadingZeros(length) + 7) / 8;
+            out.write(0x80 | count);
+            for (int i = count - 1; i >= 0; i--) {
+                out.write(length >>> (i * 8));
+            }
+        }
+
+        out.writeBytes(content);
+        return out.toByteArray();
+    }
+
+    /**
+     * Gets the encoded form of a certificate without checked exceptions.
+     *
+     * @param certificate Certificate
+     * @return DER encoding
+     */
+    public static byte[] encoded(final Certificate certificate) {
+        try {
+            return certificate.getEncoded();
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
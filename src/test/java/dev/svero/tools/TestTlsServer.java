@@ -0,0 +1,147 @@
+package dev.svero.tools;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.security.cert.Certificate;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal TLS server on the loopback interface for the tests. Every connection completes the handshake,
+ * receives a single byte (so TLS 1.3 session tickets are delivered before it) and is closed. A silent
+ * server sends no data and keeps the connection open until the client closes it.
+ *
+ * @author Sven Roeseler
+ */
+public class TestTlsServer implements AutoCloseable {
+    private final SSLServerSocket serverSocket;
+    private final AtomicInteger handshakes = new AtomicInteger();
+    private volatile boolean needClientAuth;
+    private volatile boolean silent;
+    private volatile Certificate[] peerCertificates;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "test-tls-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates and starts a new server on a free port.
+     *
+     * @param sslContext SSL context with the key material of the server
+     * @param protocols  Enabled protocol versions, all supported versions if none are specified
+     * @throws IOException If the server socket could not be created
+     */
+    public TestTlsServer(final SSLContext sslContext, final String... protocols) throws IOException {
+        Objects.requireNonNull(sslContext);
+
+        serverSocket = (SSLServerSocket) sslContext.getServerSocketFactory()
+                .createServerSocket(0, 512, InetAddress.getLoopbackAddress());
+        if (protocols.length > 0) {
+            serverSocket.setEnabledProtocols(protocols);
+        }
+
+        executor.execute(this::accept);
+    }
+
+    /**
+     * Requires a client certificate trusted by the SSL context of the server for every handshake.
+     *
+     * @param needClientAuth True to require a client certificate
+     */
+    public void setNeedClientAuth(final boolean needClientAuth) {
+        // Applied to each accepted socket, the server socket copies its settings before it blocks in accept()
+        this.needClientAuth = needClientAuth;
+    }
+
+    /**
+     * Sends no data after the handshake and keeps the connection open until the client closes it.
+     *
+     * @param silent True to send no data
+     */
+    public void setSilent(final boolean silent) {
+        this.silent = silent;
+    }
+
+    /**
+     * Gets the certificate chain the client presented in the last handshake.
+     *
+     * @return Certificate chain or null if no client certificate has been presented
+     */
+    public Certificate[] getPeerCertificates() {
+        return peerCertificates;
+    }
+
+    /**
+     * Gets the port of the server.
+     *
+     * @return Port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Gets the number of completed handshakes.
+     *
+     * @return Number of handshakes
+     */
+    public int getHandshakes() {
+        return handshakes.get();
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                SSLSocket socket = (SSLSocket) serverSocket.accept();
+                executor.execute(() -> handle(socket));
+            }
+        } catch (SocketException ex) {
+            // Server has been closed
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not accept connection", ex);
+        }
+    }
+
+    private void handle(final SSLSocket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            socket.setNeedClientAuth(needClientAuth);
+            socket.startHandshake();
+            try {
+                peerCertificates = socket.getSession().getPeerCertificates();
+            } catch (SSLPeerUnverifiedException ex) {
+                peerCertificates = null;
+            }
+            handshakes.incrementAndGet();
+
+            if (silent) {
+                socket.getInputStream().read();
+                return;
+            }
+
+            OutputStream out = socket.getOutputStream();
+            out.write('.');
+            out.flush();
+        } catch (IOException ex) {
+            // Client went away - nothing to do for a test server
+        }
+    }
+
+    /**
+     * Stops the server.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+}
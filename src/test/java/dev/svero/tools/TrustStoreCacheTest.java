@@ -0,0 +1,52 @@
+package dev.svero.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that the compiled trust bundle cache follows the content of the bundle.
+ */
+class TrustStoreCacheTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void replacedBundleWithPreservedModificationTimeIsReloaded() throws IOException {
+        final X509Certificate first = TestPki.ca("First Root").certificate();
+        final X509Certificate second = TestPki.ca("Other Root").certificate();
+
+        final Path bundle = directory.resolve("bundle.pem");
+        final TrustStoreCache cache = new TrustStoreCache(directory.resolve("cache"), new CertificateUtils());
+
+        Files.writeString(bundle, pem(first), StandardCharsets.US_ASCII);
+        final FileTime modified = Files.getLastModifiedTime(bundle);
+        assertEquals(List.of(first), List.copyOf(cache.load(bundle).values()));
+        assertEquals(List.of(first), List.copyOf(cache.load(bundle).values()));
+
+        // Like "cp -p" or "rsync -t": new content, same modification time
+        Files.writeString(bundle, pem(second), StandardCharsets.US_ASCII);
+        Files.setLastModifiedTime(bundle, modified);
+
+        final Map<String, X509Certificate> reloaded = cache.load(bundle);
+        assertEquals(List.of(second), List.copyOf(reloaded.values()));
+        assertEquals(reloaded, cache.load(bundle));
+    }
+
+    private static String pem(final X509Certificate certificate) {
+        return "-----BEGIN CERTIFICATE-----\n"
+                + Base64.getMimeEncoder(64, new byte[]{'\n'}).encodeToString(TestPki.encoded(certificate))
+                + "\n-----END CERTIFICATE-----\n";
+    }
+}
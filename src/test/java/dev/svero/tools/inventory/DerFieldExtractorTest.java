@@ -0,0 +1,124 @@
+package dev.svero.tools.inventory;
+
+import dev.svero.tools.TestPki;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the fields extracted from the DER encoding with the fields of the decoded certificate.
+ */
+class DerFieldExtractorTest {
+    private static final byte[] IPV6 = {0x20, 0x01, 0x0d, (byte) 0xb8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1};
+
+    private final DerFieldExtractor extractor = new DerFieldExtractor();
+
+    @Test
+    void matchesDecodedCertificates() throws CertificateParsingException {
+        TestPki.Issued root = TestPki.ca("Extractor Root");
+        compare(root.certificate());
+        compare(TestPki.server(root).certificate());
+    }
+
+    @Test
+    void formatsNamesLikeX500Principal() throws CertificateParsingException {
+        byte[] name = TestPki.sequence(
+                rdn(attribute("2.5.4.6", 0x13, "DE")),
+                // Multi-valued RDN
+                rdn(attribute("2.5.4.10", 0x0c, "Example, Inc."), attribute("2.5.4.11", 0x0c, "Ops+Dev")),
+                rdn(attribute("2.5.4.7", 0x0c, "München")),
+                rdn(TestPki.sequence(TestPki.oid("2.5.4.8"),
+                        TestPki.tlv(0x1e, "Île-de-France".getBytes(StandardCharsets.UTF_16BE)))),
+                // Unknown attribute types are written as OID and hex encoded value
+                rdn(attribute("1.3.6.1.4.1.99999.1", 0x0c, "custom")),
+                rdn(attribute("2.5.4.3", 0x0c, " #Leading")));
+
+        X509Certificate certificate = TestPki.certificate("ignored").subject(name).build().certificate();
+        compare(certificate);
+
+        String subject = extractor.extract(TestPki.encoded(certificate)).subject();
+        assertTrue(subject.startsWith("CN=\\ \\#Leading,1.3.6.1.4.1.99999.1=#0c06637573746f6d,"), subject);
+        assertTrue(subject.endsWith(",L=München,O=Example\\, Inc.+OU=Ops\\+Dev,C=DE"), subject);
+    }
+
+    @Test
+    void readsIpv6NamesAndGeneralizedTime() throws CertificateParsingException {
+        TestPki.Issued root = TestPki.ca("Extractor Root");
+        X509Certificate certificate = TestPki.certificate("long-lived").issuer(root).dnsName("example.com")
+                .ipAddress(IPV6).ipAddress(new byte[]{10, 0, 0, 1}).generalizedTime()
+                .validity(ZonedDateTime.of(2050, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC),
+                        ZonedDateTime.of(2099, 12, 31, 23, 59, 59, 0, ZoneOffset.UTC))
+                .build().certificate();
+
+        compare(certificate);
+    }
+
+    @Test
+    void rejectsTruncatedInput() {
+        byte[] encoded = TestPki.encoded(TestPki.server(TestPki.ca("Extractor Root")).certificate());
+
+        for (int length = 0; length < encoded.length; length++) {
+            byte[] truncated = Arrays.copyOf(encoded, length);
+            assertThrows(IllegalArgumentException.class, () -> extractor.extract(truncated), "Length " + length);
+        }
+    }
+
+    private void compare(final X509Certificate certificate) throws CertificateParsingException {
+        byte[] encoded = TestPki.encoded(certificate);
+        CertificateFields fields = extractor.extract(encoded);
+
+        assertEquals(certificate.getSubjectX500Principal().getName(), fields.subject());
+        assertEquals(certificate.getIssuerX500Principal().getName(), fields.issuer());
+        assertEquals(certificate.getNotBefore().toInstant(), fields.notBefore());
+        assertEquals(certificate.getNotAfter().toInstant(), fields.notAfter());
+        assertEquals(subjectAltNames(certificate), fields.subjectAltNames());
+        assertEquals(DigestUtils.sha256Hex(encoded), fields.sha256());
+    }
+
+    private static List<String> subjectAltNames(final X509Certificate certificate)
+            throws CertificateParsingException {
+        List<String> names = new ArrayList<>();
+        Collection<List<?>> entries = certificate.getSubjectAlternativeNames();
+        if (entries == null) {
+            return names;
+        }
+
+        for (List<?> entry : entries) {
+            String prefix = switch ((Integer) entry.get(0)) {
+                case 1 -> "email:";
+                case 2 -> "DNS:";
+                case 6 -> "URI:";
+                case 7 -> "IP:";
+                default -> null;
+            };
+            if (prefix != null) {
+                names.add(prefix + entry.get(1));
+            }
+        }
+
+        return names;
+    }
+
+    private static byte[] rdn(final byte[]... attributes) {
+        byte[] set = TestPki.sequence(attributes);
+        set[0] = 0x31;
+        return set;
+    }
+
+    private static byte[] attribute(final String oid, final int tag, final String value) {
+        return TestPki.sequence(TestPki.oid(oid), TestPki.tlv(tag, value.getBytes(StandardCharsets.UTF_8)));
+    }
+}
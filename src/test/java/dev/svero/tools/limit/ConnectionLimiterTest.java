@@ -0,0 +1,71 @@
+package dev.svero.tools.limit;
+
+import dev.svero.tools.metrics.MetricsExporter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the limiter only keeps the state of active and throttled hosts.
+ */
+class ConnectionLimiterTest {
+    @Test
+    void forgetsIdleHostsAndKeepsThrottledOnes() {
+        try (ConnectionLimiter limiter = new ConnectionLimiter(16, 16, 0, 0)) {
+            for (int i = 0; i < 100; i++) {
+                limiter.acquire("host" + i + ".example").join().release(ConnectionLimiter.Outcome.SUCCESS);
+            }
+            assertEquals(List.of(), limiter.getStatistics().hosts());
+
+            ConnectionLimiter.Permit first = limiter.acquire("slow.example").join();
+            ConnectionLimiter.Permit second = limiter.acquire("slow.example").join();
+            assertEquals(1, limiter.getStatistics().hosts().size());
+
+            first.release(ConnectionLimiter.Outcome.DROPPED);
+            second.release(ConnectionLimiter.Outcome.SUCCESS);
+
+            ConnectionLimiter.HostStatistics slow = limiter.getStatistics().hosts().get(0);
+            assertEquals("slow.example", slow.host());
+            assertEquals(0, slow.inFlight());
+            assertEquals(1, slow.dropped());
+
+            // The reduced limit survives until the host is used again
+            limiter.acquire("slow.example").join().release(ConnectionLimiter.Outcome.IGNORED);
+            assertEquals(slow.limit(), limiter.getStatistics().hosts().get(0).limit());
+        }
+    }
+
+    @Test
+    void keepsABoundedNumberOfThrottledHosts() {
+        try (ConnectionLimiter limiter = new ConnectionLimiter(16, 16, 0, 0)) {
+            for (int i = 0; i < 2000; i++) {
+                limiter.acquire("host" + i + ".example").join().release(ConnectionLimiter.Outcome.DROPPED);
+            }
+
+            List<ConnectionLimiter.HostStatistics> hosts = limiter.getStatistics().hosts();
+            assertEquals(1024, hosts.size());
+            assertTrue(hosts.stream().anyMatch(host -> host.host().equals("host1999.example")));
+            assertFalse(hosts.stream().anyMatch(host -> host.host().equals("host0.example")));
+        }
+    }
+
+    @Test
+    void exportsOnlyActiveOrThrottledHosts() throws IOException {
+        ConnectionLimiter.Statistics statistics = new ConnectionLimiter.Statistics(16, 16, 0, 0, 1, 0, List.of(
+                new ConnectionLimiter.HostStatistics("active.example", 4, 1, 0, 0, 0),
+                new ConnectionLimiter.HostStatistics("throttled.example", 2, 0, 0, 10, 3),
+                new ConnectionLimiter.HostStatistics("idle.example", 4, 0, 0, 10, 0)));
+
+        StringBuilder out = new StringBuilder();
+        MetricsExporter.writePrometheus(statistics, out);
+
+        assertTrue(out.toString().contains("host=\"active.example\""));
+        assertTrue(out.toString().contains("host=\"throttled.example\""));
+        assertFalse(out.toString().contains("idle.example"));
+    }
+}
@@ -0,0 +1,231 @@
+package dev.svero.tools.nio;
+
+import dev.svero.tools.TestPki;
+import dev.svero.tools.TestTlsServer;
+import dev.svero.tools.TlsSessionInfo;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the NIO handshake engine against in-process servers on the loopback interface.
+ */
+class NioHandshakeEngineTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static TestPki.Issued ca;
+    private static TestPki.Issued server;
+
+    @BeforeAll
+    static void createPki() {
+        ca = TestPki.ca("NIO Test CA");
+        server = TestPki.server(ca);
+    }
+
+    @Test
+    void completesHandshakesConcurrently() throws Exception {
+        final int connections = 200;
+
+        try (TestTlsServer tlsServer = new TestTlsServer(TestPki.serverContext(server, ca.certificate()));
+             NioHandshakeEngine engine = new NioHandshakeEngine(TestPki.clientContext(ca.certificate()), 2,
+                     TIMEOUT, TIMEOUT)) {
+            List<CompletableFuture<TlsSessionInfo>> futures = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                futures.add(engine.handshake("localhost", tlsServer.getPort()));
+            }
+
+            for (CompletableFuture<TlsSessionInfo> future : futures) {
+                TlsSessionInfo info = future.get(30, TimeUnit.SECONDS);
+                assertEquals(server.certificate(), info.peerCertificate());
+            }
+
+            NioHandshakeEngine.Statistics statistics = engine.getStatistics();
+
+            assertEquals(connections, statistics.completed());
+            assertEquals(0, statistics.failed());
+            assertEquals(0, statistics.active());
+            assertTrue(statistics.peakActive() > 1, "Handshakes should overlap");
+        }
+    }
+
+    @Test
+    void holdsNoBuffersWhileWaitingForPeers() throws Exception {
+        final int connections = 500;
+
+        // Accepts the connections but never answers the ClientHello
+        try (ServerSocket silent = new ServerSocket(0, connections, InetAddress.getLoopbackAddress());
+             NioHandshakeEngine engine = new NioHandshakeEngine(TestPki.clientContext(ca.certificate()), 1,
+                     TIMEOUT, TIMEOUT)) {
+            List<Socket> accepted = new ArrayList<>();
+            List<CompletableFuture<TlsSessionInfo>> futures = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                futures.add(engine.handshake("localhost", silent.getLocalPort()));
+            }
+
+            for (int i = 0; i < connections; i++) {
+                accepted.add(silent.accept());
+            }
+
+            NioHandshakeEngine.Statistics statistics = awaitActive(engine, connections);
+            assertEquals(connections, statistics.active());
+            assertTrue(statistics.buffersAllocated() < connections / 10,
+                    "Waiting connections should not hold network buffers");
+
+            for (Socket socket : accepted) {
+                socket.close();
+            }
+
+            for (CompletableFuture<TlsSessionInfo> future : futures) {
+                assertThrows(ExecutionException.class, () -> future.get(30, TimeUnit.SECONDS));
+            }
+
+            assertEquals(0, engine.getStatistics().active());
+            assertEquals(connections, engine.getStatistics().failed());
+        }
+    }
+
+    @Test
+    void doesNotBlockTheLoopWhileValidating() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingTrustManager trustManager = new BlockingTrustManager(
+                (X509ExtendedTrustManager) TestPki.trustManagers(ca.certificate())[0], release);
+
+        SSLContext clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, new TrustManager[]{trustManager}, null);
+
+        try (TestTlsServer tlsServer = new TestTlsServer(TestPki.serverContext(server, ca.certificate()));
+             NioHandshakeEngine engine = new NioHandshakeEngine(clientContext, 1, TIMEOUT, TIMEOUT)) {
+            CompletableFuture<TlsSessionInfo> blocked = engine.handshake("localhost", tlsServer.getPort());
+            assertTrue(trustManager.blocking.await(10, TimeUnit.SECONDS));
+
+            // The single I/O thread has to complete the second handshake while the first one validates
+            TlsSessionInfo info = engine.handshake("localhost", tlsServer.getPort()).get(10, TimeUnit.SECONDS);
+            assertNotNull(info.peerCertificate());
+            assertFalse(blocked.isDone());
+
+            release.countDown();
+            assertNotNull(blocked.get(10, TimeUnit.SECONDS).peerCertificate());
+        }
+    }
+
+    @Test
+    void releasesConnectionsOfFailedHandshakes() throws Exception {
+        int port;
+        try (ServerSocket closed = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = closed.getLocalPort();
+        }
+
+        try (NioHandshakeEngine engine = new NioHandshakeEngine(TestPki.clientContext(ca.certificate()), 1,
+                TIMEOUT, TIMEOUT)) {
+            CompletableFuture<TlsSessionInfo> future = engine.handshake("localhost", port);
+            assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+
+            NioHandshakeEngine.Statistics statistics = engine.getStatistics();
+            assertEquals(0, statistics.active());
+            assertEquals(1, statistics.failed());
+            assertEquals(0, statistics.buffersAllocated());
+        }
+    }
+
+    private static NioHandshakeEngine.Statistics awaitActive(final NioHandshakeEngine engine, final int expected)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        NioHandshakeEngine.Statistics statistics = engine.getStatistics();
+        while (statistics.active() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            statistics = engine.getStatistics();
+        }
+
+        // Give the loop time to send the ClientHello of the last connections
+        Thread.sleep(200);
+        return engine.getStatistics();
+    }
+
+    /**
+     * Blocks the first server certificate validation until it is released.
+     */
+    private static final class BlockingTrustManager extends X509ExtendedTrustManager {
+        private final X509ExtendedTrustManager delegate;
+        private final CountDownLatch release;
+        private final CountDownLatch blocking = new CountDownLatch(1);
+        private final AtomicInteger calls = new AtomicInteger();
+
+        BlockingTrustManager(final X509ExtendedTrustManager delegate, final CountDownLatch release) {
+            this.delegate = delegate;
+            this.release = release;
+        }
+
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine)
+                throws CertificateException {
+            if (calls.getAndIncrement() == 0) {
+                blocking.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            delegate.checkServerTrusted(chain, authType, engine);
+        }
+
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType, final Socket socket)
+                throws CertificateException {
+            delegate.checkServerTrusted(chain, authType, socket);
+        }
+
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType)
+                throws CertificateException {
+            delegate.checkServerTrusted(chain, authType);
+        }
+
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine)
+                throws CertificateException {
+            delegate.checkClientTrusted(chain, authType, engine);
+        }
+
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType, final Socket socket)
+                throws CertificateException {
+            delegate.checkClientTrusted(chain, authType, socket);
+        }
+
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType)
+                throws CertificateException {
+            delegate.checkClientTrusted(chain, authType);
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return delegate.getAcceptedIssuers();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package dev.svero.tools.revocation;
+
+import dev.svero.tools.TestPki;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509CRL;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the revocation status of certificates against a stand-in OCSP responder and CRL distribution
+ * point on the loopback interface.
+ */
+class RevocationCheckerTest {
+    private TestPki.Issued ca;
+    private RevocationServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        ca = TestPki.ca("Revocation CA");
+        server = new RevocationServer(ca);
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void reportsGoodOcspStatus() {
+        X509Certificate leaf = ocspCertificate();
+        server.setStatus(leaf, RevocationStatus.GOOD);
+
+        try (RevocationChecker checker = new RevocationChecker()) {
+            assertEquals(RevocationStatus.GOOD, checker.check(leaf, ca.certificate()));
+        }
+    }
+
+    @Test
+    void reportsRevokedOcspStatus() {
+        X509Certificate leaf = ocspCertificate();
+        server.setStatus(leaf, RevocationStatus.REVOKED);
+
+        try (RevocationChecker checker = new RevocationChecker()) {
+            assertEquals(RevocationStatus.REVOKED, checker.check(leaf, ca.certificate()));
+        }
+    }
+
+    @Test
+    void reportsUnknownOcspStatusWithoutCaching() {
+        X509Certificate leaf = ocspCertificate();
+
+        try (RevocationChecker checker = new RevocationChecker()) {
+            assertEquals(RevocationStatus.UNKNOWN, checker.check(leaf, ca.certificate()));
+            assertEquals(RevocationStatus.UNKNOWN, checker.check(leaf, ca.certificate()));
+        }
+
+        assertEquals(2, server.ocspRequests());
+    }
+
+    @Test
+    void rejectsOcspResponseOfOtherSigner() {
+        X509Certificate leaf = ocspCertificate();
+        server.setStatus(leaf, RevocationStatus.REVOKED);
+        server.setIssuer(TestPki.ca("Revocation CA"));
+
+        try (RevocationChecker checker = new RevocationChecker()) {
+            assertEquals(RevocationStatus.UNKNOWN, checker.check(leaf, ca.certificate()));
+        }
+    }
+
+    @Test
+    void answersFromCacheUntilNextUpdate() {
+        X509Certificate leaf = ocspCertificate();
+        server.setStatus(leaf, RevocationStatus.GOOD);
+
+        try (RevocationChecker checker = new RevocationChecker()) {
+            assertEquals(RevocationStatus.GOOD, checker.check(leaf, ca.certificate()));
+
+            server.setStatus(leaf, RevocationStatus.REVOKED);
+            assertEquals(RevocationStatus.GOOD, checker.check(leaf, ca.certificate()));
+        }
+
+        assertEquals(1, server.ocspRequests());
+    }
+
+    @Test
+    void checksMembershipInCrl() {
+        X509Certificate revoked = crlCertificate();
+        X509Certificate good = crlCertificate();
+        server.setStatus(revoked, RevocationStatus.REVOKED);
+
+        try (RevocationChecker checker = new RevocationChecker()) {
+            assertEquals(RevocationStatus.REVOKED, checker.check(revoked, ca.certificate()));
+            assertEquals(RevocationStatus.GOOD, checker.check(good, ca.certificate()));
+        }
+
+        assertEquals(1, server.crlRequests());
+    }
+
+    @Test
+    void keepsCrlWithoutNextUpdateForLimitedTime() throws Exception {
+        X509CRL crl = (X509CRL) CertificateFactory.getInstance("X.509").generateCRL(new ByteArrayInputStream(
+                RevocationServer.encodeCrl(ca, List.of(), false)));
+        Instant now = Instant.now();
+
+        assertTrue(CrlIndex.of(crl, ca.certificate(), now).isCurrent(now));
+        assertFalse(CrlIndex.of(crl, ca.certificate(), now.minus(Duration.ofHours(2))).isCurrent(now));
+    }
+
+    @Test
+    void reloadsPersistedCaches(@TempDir final Path directory) {
+        X509Certificate ocspLeaf = ocspCertificate();
+        X509Certificate crlLeaf = crlCertificate();
+        server.setStatus(ocspLeaf, RevocationStatus.GOOD);
+        server.setStatus(crlLeaf, RevocationStatus.REVOKED);
+
+        try (RevocationChecker checker = new RevocationChecker(directory)) {
+            assertEquals(RevocationStatus.GOOD, checker.check(ocspLeaf, ca.certificate()));
+            assertEquals(RevocationStatus.REVOKED, checker.check(crlLeaf, ca.certificate()));
+        }
+
+        server.close();
+
+        try (RevocationChecker checker = new RevocationChecker(directory)) {
+            assertEquals(RevocationStatus.GOOD, checker.check(ocspLeaf, ca.certificate()));
+            assertEquals(RevocationStatus.REVOKED, checker.check(crlLeaf, ca.certificate()));
+        }
+
+        assertEquals(1, server.ocspRequests());
+        assertEquals(1, server.crlRequests());
+    }
+
+    @Test
+    void ignoresPersistedCrlOfOtherIssuerKey(@TempDir final Path directory) {
+        X509Certificate first = crlCertificate();
+
+        try (RevocationChecker checker = new RevocationChecker(directory)) {
+            assertEquals(RevocationStatus.GOOD, checker.check(first, ca.certificate()));
+        }
+
+        // Same subject, different key
+        TestPki.Issued rekeyed = TestPki.ca("Revocation CA");
+        server.setIssuer(rekeyed);
+        X509Certificate second = TestPki.certificate("localhost").issuer(rekeyed).crlUrl(server.crlUrl()).build()
+                .certificate();
+        server.setStatus(second, RevocationStatus.REVOKED);
+
+        try (RevocationChecker checker = new RevocationChecker(directory)) {
+            assertEquals(RevocationStatus.REVOKED, checker.check(second, rekeyed.certificate()));
+        }
+
+        assertEquals(2, server.crlRequests());
+    }
+
+    private X509Certificate ocspCertificate() {
+        return TestPki.certificate("localhost").issuer(ca).ocspUrl(server.ocspUrl()).build().certificate();
+    }
+
+    private X509Certificate crlCertificate() {
+        return TestPki.certificate("localhost").issuer(ca).crlUrl(server.crlUrl()).build().certificate();
+    }
+}
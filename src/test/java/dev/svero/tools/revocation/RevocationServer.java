@@ -0,0 +1,169 @@
+package dev.svero.tools.revocation;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.svero.tools.TestPki;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.cert.X509Certificate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static dev.svero.tools.TestPki.generalizedTime;
+import static dev.svero.tools.TestPki.integer;
+import static dev.svero.tools.TestPki.octetString;
+import static dev.svero.tools.TestPki.oid;
+import static dev.svero.tools.TestPki.sequence;
+import static dev.svero.tools.TestPki.tlv;
+import static dev.svero.tools.TestPki.utcTime;
+
+/**
+ * Stand-in OCSP responder and CRL distribution point on the loopback interface. OCSP responses and CRLs
+ * are signed by the configured issuer. Counts the requests, so tests can check which answers came from
+ * the cache.
+ */
+final class RevocationServer implements AutoCloseable {
+    private static final String BASIC_RESPONSE = "1.3.6.1.5.5.7.48.1.1";
+
+    private final HttpServer server;
+    private final Map<BigInteger, RevocationStatus> statuses = new ConcurrentHashMap<>();
+    private final AtomicInteger ocspRequests = new AtomicInteger();
+    private final AtomicInteger crlRequests = new AtomicInteger();
+
+    private volatile TestPki.Issued issuer;
+    private volatile boolean crlNextUpdate = true;
+
+    RevocationServer(final TestPki.Issued issuer) throws IOException {
+        this.issuer = issuer;
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/ocsp", this::ocsp);
+        server.createContext("/crl", this::crl);
+        server.start();
+    }
+
+    String ocspUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/ocsp";
+    }
+
+    String crlUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/crl";
+    }
+
+    /**
+     * Sets the status reported for the specified certificate. Certificates without status are reported
+     * as unknown by the OCSP responder. Revoked certificates are listed in the CRL.
+     */
+    void setStatus(final X509Certificate certificate, final RevocationStatus status) {
+        statuses.put(certificate.getSerialNumber(), status);
+    }
+
+    void setIssuer(final TestPki.Issued issuer) {
+        this.issuer = issuer;
+    }
+
+    void setCrlNextUpdate(final boolean crlNextUpdate) {
+        this.crlNextUpdate = crlNextUpdate;
+    }
+
+    int ocspRequests() {
+        return ocspRequests.get();
+    }
+
+    int crlRequests() {
+        return crlRequests.get();
+    }
+
+    private void ocsp(final HttpExchange exchange) throws IOException {
+        ocspRequests.incrementAndGet();
+        // OCSPRequest { TBSRequest { requestList SEQUENCE OF Request { reqCert CertID } } }
+        Der.Element certId = Der.read(exchange.getRequestBody().readAllBytes())
+                .children().get(0).children().get(0).children().get(0).children().get(0);
+        BigInteger serial = certId.children().get(3).integer();
+
+        TestPki.Issued signer = issuer;
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+
+        byte[] certStatus = switch (statuses.getOrDefault(serial, RevocationStatus.UNKNOWN)) {
+            case GOOD -> tlv(0x80, new byte[0]);
+            case REVOKED -> tlv(0xa1, generalizedTime(now.minusDays(1)));
+            case UNKNOWN -> tlv(0x82, new byte[0]);
+        };
+
+        byte[] single = sequence(
+                certId.encoded(),
+                certStatus,
+                generalizedTime(now.minusMinutes(1)),
+                tlv(0xa0, generalizedTime(now.plusHours(1))));
+
+        byte[] responseData = sequence(
+                tlv(0xa2, octetString(TestPki.keyIdentifier(signer.certificate().getPublicKey()))),
+                generalizedTime(now),
+                sequence(single));
+
+        byte[] basic = TestPki.signed(responseData, signer.privateKey());
+        byte[] response = sequence(
+                tlv(0x0a, new byte[]{0}),
+                tlv(0xa0, sequence(oid(BASIC_RESPONSE), octetString(basic))));
+
+        send(exchange, "application/ocsp-response", response);
+    }
+
+    private void crl(final HttpExchange exchange) throws IOException {
+        crlRequests.incrementAndGet();
+
+        List<BigInteger> revoked = statuses.entrySet().stream()
+                .filter(entry -> entry.getValue() == RevocationStatus.REVOKED)
+                .map(Map.Entry::getKey)
+                .toList();
+
+        send(exchange, "application/pkix-crl", encodeCrl(issuer, revoked, crlNextUpdate));
+    }
+
+    /**
+     * Encodes a CRL signed by the specified issuer.
+     *
+     * @param issuer     Issuer of the CRL
+     * @param revoked    Revoked serial numbers
+     * @param nextUpdate True to include a next update one day from now
+     * @return DER encoded CRL
+     */
+    static byte[] encodeCrl(final TestPki.Issued issuer, final List<BigInteger> revoked, final boolean nextUpdate) {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+
+        byte[] issuerName = issuer.certificate().getSubjectX500Principal().getEncoded();
+        byte[] version = integer(BigInteger.ONE);
+        byte[] algorithm = sequence(oid(TestPki.ECDSA_WITH_SHA256));
+        byte[] entries = revoked.isEmpty() ? new byte[0] : sequence(revoked.stream()
+                .map(serial -> sequence(integer(serial), utcTime(now.minusDays(1))))
+                .toArray(byte[][]::new));
+        byte[] tbs = nextUpdate
+                ? sequence(version, algorithm, issuerName, utcTime(now.minusMinutes(1)), utcTime(now.plusDays(1)),
+                entries)
+                : sequence(version, algorithm, issuerName, utcTime(now.minusMinutes(1)), entries);
+
+        return TestPki.signed(tbs, issuer.privateKey());
+    }
+
+    private static void send(final HttpExchange exchange, final String contentType, final byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
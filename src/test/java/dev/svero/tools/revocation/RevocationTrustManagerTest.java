@@ -0,0 +1,128 @@
+package dev.svero.tools.revocation;
+
+import dev.svero.tools.SSLUtils;
+import dev.svero.tools.TestPki;
+import dev.svero.tools.TestTlsServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.net.Socket;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the revocation trust manager checks the certificates of the validated path.
+ */
+class RevocationTrustManagerTest {
+    private static final String AUTH_TYPE = "ECDHE_ECDSA";
+
+    private TestPki.Issued root;
+    private TestPki.Issued intermediate;
+    private RevocationServer server;
+    private RevocationChecker checker;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        root = TestPki.ca("Revocation Root");
+        intermediate = TestPki.certificate("Revocation Intermediate").issuer(root).ca().build();
+        server = new RevocationServer(intermediate);
+        checker = new RevocationChecker();
+    }
+
+    @AfterEach
+    void tearDown() {
+        checker.close();
+        server.close();
+    }
+
+    @Test
+    void checksIssuerFromValidatedPath() {
+        TestPki.Issued leaf = TestPki.certificate("localhost").issuer(intermediate).dnsName("localhost")
+                .extendedKeyUsage(TestPki.SERVER_AUTH).crlUrl(server.crlUrl()).build();
+        server.setStatus(leaf.certificate(), RevocationStatus.REVOKED);
+
+        X509ExtendedTrustManager jdk = (X509ExtendedTrustManager) TestPki.trustManagers(root.certificate())[0];
+        RevocationTrustManager manager = new RevocationTrustManager(jdk, checker, false);
+
+        // Padded and out of order - the certificate following the leaf is not its issuer
+        X509Certificate[] chain = {leaf.certificate(), TestPki.ca("Padding").certificate(),
+                intermediate.certificate()};
+
+        CertificateException ex = assertThrows(CertificateException.class,
+                () -> manager.checkServerTrusted(chain, AUTH_TYPE));
+        assertTrue(ex.getMessage().contains("revoked"), ex.getMessage());
+    }
+
+    @Test
+    void rejectsChainWithoutPathInHardFailMode() {
+        TestPki.Issued leaf = TestPki.server(intermediate);
+        X509Certificate[] chain = {leaf.certificate()};
+
+        RevocationTrustManager hard = new RevocationTrustManager(new AcceptingTrustManager(), checker, true);
+        RevocationTrustManager soft = new RevocationTrustManager(new AcceptingTrustManager(), checker, false);
+
+        assertThrows(CertificateException.class, () -> hard.checkServerTrusted(chain, AUTH_TYPE));
+        assertDoesNotThrow(() -> soft.checkServerTrusted(chain, AUTH_TYPE));
+    }
+
+    @Test
+    void checksRevocationOfKnownChains() throws Exception {
+        TestPki.Issued leaf = TestPki.certificate("localhost").issuer(intermediate).dnsName("localhost")
+                .extendedKeyUsage(TestPki.SERVER_AUTH).crlUrl(server.crlUrl()).build();
+        server.setStatus(leaf.certificate(), RevocationStatus.REVOKED);
+
+        SSLUtils sslUtils = new SSLUtils();
+        sslUtils.setRevocationChecker(checker, false);
+        sslUtils.setKnownChains((endpoint, trust, fingerprint) -> true);
+        SSLContext client = sslUtils.getSSLContext(TestPki.trustStore(root.certificate()), null, null);
+
+        try (TestTlsServer tls = new TestTlsServer(TestPki.serverContext(leaf, intermediate.certificate()));
+             SSLSocket socket = (SSLSocket) client.getSocketFactory().createSocket("localhost", tls.getPort())) {
+            assertThrows(SSLHandshakeException.class, socket::startHandshake);
+        }
+    }
+
+    /**
+     * Accepts every chain without knowing any anchor.
+     */
+    private static final class AcceptingTrustManager extends X509ExtendedTrustManager {
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType, final Socket socket) {
+        }
+
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType, final Socket socket) {
+        }
+
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine) {
+        }
+
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType, final SSLEngine engine) {
+        }
+
+        @Override
+        public void checkClientTrusted(final X509Certificate[] chain, final String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(final X509Certificate[] chain, final String authType) {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}